@@ -3,8 +3,11 @@ package com.qcloud.cos;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import com.qcloud.cos.exception.CosClientException;
 import com.qcloud.cos.exception.CosServiceException;
@@ -45,6 +48,7 @@ import com.qcloud.cos.model.GetBucketVersioningConfigurationRequest;
 import com.qcloud.cos.model.GetObjectAclRequest;
 import com.qcloud.cos.model.GetObjectMetadataRequest;
 import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.HeadObjectResult;
 import com.qcloud.cos.model.HeadBucketRequest;
 import com.qcloud.cos.model.HeadBucketResult;
 import com.qcloud.cos.model.InitiateMultipartUploadRequest;
@@ -429,6 +433,30 @@ public interface COS extends COSDirectSpi {
     public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest)
             throws CosClientException, CosServiceException;
 
+    /**
+     * <p>
+     * Gets the metadata of a batch of objects of the same bucket, sending up to
+     * <code>concurrency</code> HEAD requests at once over the connection pool of the client. The
+     * requests are sent by threads owned by the client, at most
+     * {@link ClientConfig#getMaxConnectionsCount()} across all the batches in progress, which are
+     * created on demand and released when idle or when the client is shut down.
+     * </p>
+     * <p>
+     * The failure of one key does not fail the batch: a missing object (404) is reported as
+     * absent, and any other error, such as a 403, is reported with its exception. The
+     * {@link com.qcloud.cos.cache.ObjectMetadataCache} of the client is used if set.
+     * </p>
+     *
+     * @param bucketName The name of the bucket containing the objects.
+     * @param keys The keys of the objects, duplicates are only requested once.
+     * @param concurrency The max number of requests in flight, 1 at least.
+     * @return The result of each distinct key, in the iteration order of keys.
+     * @throws CosClientException If the calling thread is interrupted while waiting.
+     * @see COS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public Map<String, HeadObjectResult> headObjects(String bucketName, Collection<String> keys,
+            int concurrency) throws CosClientException;
+
 
 
     /**
@@ -2166,6 +2194,49 @@ public interface COS extends COSDirectSpi {
     public URL generatePresignedUrl(GeneratePresignedUrlRequest generatePresignedUrlRequest)
             throws CosClientException;
 
+    /**
+     * <p>
+     * Returns pre-signed URLs for a batch of keys of the same bucket, all sharing the same
+     * expiration time and HTTP method. The result is the same as calling
+     * {@link #generatePresignedUrl(String, String, Date, HttpMethodName)} for every key, but the
+     * host and the sign key are only computed once for the whole batch.
+     * </p>
+     *
+     * @param bucketName The name of the bucket containing the objects.
+     * @param keys The keys to generate the pre-signed URLs for.
+     * @param expiration The time at which the returned pre-signed URLs will expire, the expired
+     *        time of ClientConfig is used if null.
+     * @param method The HTTP method verb to use for the URLs.
+     * @return The pre-signed URLs, in the iteration order of keys.
+     * @throws CosClientException If any errors are encountered in the client while generating the
+     *         URLs.
+     * @see COS#generatePresignedUrl(String, String, Date, HttpMethodName)
+     */
+    public List<URL> generatePresignedUrls(String bucketName, Collection<String> keys,
+            Date expiration, HttpMethodName method) throws CosClientException;
+
+    /**
+     * <p>
+     * Same as {@link #generatePresignedUrls(String, Collection, Date, HttpMethodName)}, the keys
+     * are split in chunks signed in parallel by the given executor. The calling thread waits for
+     * all the chunks. The executor is not shut down.
+     * </p>
+     *
+     * @param bucketName The name of the bucket containing the objects.
+     * @param keys The keys to generate the pre-signed URLs for.
+     * @param expiration The time at which the returned pre-signed URLs will expire, the expired
+     *        time of ClientConfig is used if null.
+     * @param method The HTTP method verb to use for the URLs.
+     * @param executor The executor signing the chunks, the keys are signed by the calling thread
+     *        if null.
+     * @return The pre-signed URLs, in the iteration order of keys.
+     * @throws CosClientException If any errors are encountered in the client while generating the
+     *         URLs, or if the calling thread is interrupted while waiting.
+     */
+    public List<URL> generatePresignedUrls(String bucketName, Collection<String> keys,
+            Date expiration, HttpMethodName method, ExecutorService executor)
+            throws CosClientException;
+
     /**
      * Restore an object, which was transitioned to CAS from COS when it was expired, into COS
      * again. This copy is by nature temporary and is always stored as temporary copy in COS. The
@@ -0,0 +1,118 @@
+package com.qcloud.cos;
+
+import java.util.concurrent.Future;
+
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.GetObjectMetadataRequest;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+
+/**
+ * Asynchronous sibling of {@link COS}. Every method returns immediately with a {@link Future};
+ * the request is driven by a non-blocking http engine so that a few io threads can serve a large
+ * number of concurrent requests. When the request fails, {@link Future#get()} throws an
+ * {@link java.util.concurrent.ExecutionException} whose cause is the same
+ * {@link com.qcloud.cos.exception.CosClientException} or
+ * {@link com.qcloud.cos.exception.CosServiceException} the blocking method would have thrown.
+ */
+public interface COSAsync extends COS {
+
+    /**
+     * Asynchronously uploads a new object to the specified bucket.
+     *
+     * @param putObjectRequest The request object containing all the parameters to upload a new
+     *        object to COS.
+     * @return A future holding the {@link PutObjectResult}.
+     * @see COS#putObject(PutObjectRequest)
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest);
+
+    /**
+     * Asynchronously uploads a new object to the specified bucket.
+     *
+     * @param putObjectRequest The request object containing all the parameters to upload a new
+     *        object to COS.
+     * @param asyncHandler Callback notified when the request completes, may be null.
+     * @return A future holding the {@link PutObjectResult}.
+     * @see COS#putObject(PutObjectRequest)
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest,
+            CosAsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler);
+
+    /**
+     * Asynchronously gets the object stored in COS under the specified bucket and key. The object
+     * content is already buffered in memory when the future completes, use a range for large
+     * objects. If the request constraints are not met the future holds <code>null</code>.
+     *
+     * @param getObjectRequest The request object containing all the options on how to download
+     *        the object.
+     * @return A future holding the {@link COSObject}.
+     * @see COS#getObject(GetObjectRequest)
+     */
+    public Future<COSObject> getObjectAsync(GetObjectRequest getObjectRequest);
+
+    /**
+     * Asynchronously gets the object stored in COS under the specified bucket and key.
+     *
+     * @param getObjectRequest The request object containing all the options on how to download
+     *        the object.
+     * @param asyncHandler Callback notified when the request completes, may be null.
+     * @return A future holding the {@link COSObject}.
+     * @see COSAsync#getObjectAsync(GetObjectRequest)
+     */
+    public Future<COSObject> getObjectAsync(GetObjectRequest getObjectRequest,
+            CosAsyncHandler<GetObjectRequest, COSObject> asyncHandler);
+
+    /**
+     * Asynchronously gets the metadata for the specified COS object without actually fetching the
+     * object itself (a HEAD request).
+     *
+     * @param getObjectMetadataRequest The request object specifying the bucket, key and optional
+     *        version ID of the object whose metadata is being retrieved.
+     * @return A future holding the {@link ObjectMetadata}.
+     * @see COS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(
+            GetObjectMetadataRequest getObjectMetadataRequest);
+
+    /**
+     * Asynchronously gets the metadata for the specified COS object.
+     *
+     * @param getObjectMetadataRequest The request object specifying the bucket, key and optional
+     *        version ID of the object whose metadata is being retrieved.
+     * @param asyncHandler Callback notified when the request completes, may be null.
+     * @return A future holding the {@link ObjectMetadata}.
+     * @see COS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(
+            GetObjectMetadataRequest getObjectMetadataRequest,
+            CosAsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler);
+
+    /**
+     * Asynchronously returns a list of summary information about the objects in the specified
+     * bucket.
+     *
+     * @param listObjectsRequest The request object containing all options for listing the objects
+     *        in a specified bucket.
+     * @return A future holding the {@link ObjectListing}.
+     * @see COS#listObjects(ListObjectsRequest)
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest);
+
+    /**
+     * Asynchronously returns a list of summary information about the objects in the specified
+     * bucket.
+     *
+     * @param listObjectsRequest The request object containing all options for listing the objects
+     *        in a specified bucket.
+     * @param asyncHandler Callback notified when the request completes, may be null.
+     * @return A future holding the {@link ObjectListing}.
+     * @see COS#listObjects(ListObjectsRequest)
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest,
+            CosAsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler);
+}
@@ -0,0 +1,242 @@
+package com.qcloud.cos;
+
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+
+import com.qcloud.cos.auth.COSCredentials;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.exception.Throwables;
+import com.qcloud.cos.http.CosAsyncHttpClient;
+import com.qcloud.cos.http.CosHttpRequest;
+import com.qcloud.cos.http.DefaultCosAsyncHttpClient;
+import com.qcloud.cos.http.HttpResponseHandler;
+import com.qcloud.cos.internal.COSObjectResponseHandler;
+import com.qcloud.cos.internal.COSXmlResponseHandler;
+import com.qcloud.cos.internal.CosMetadataResponseHandler;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.internal.CosServiceResponse;
+import com.qcloud.cos.internal.Unmarshallers;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.GetObjectMetadataRequest;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+
+/**
+ * {@link COSAsync} implementation. Requests are built, signed and their responses unmarshalled
+ * exactly like {@link COSClient} does, only the transport is replaced by a
+ * {@link CosAsyncHttpClient}. All the blocking methods of {@link COS} remain available.
+ */
+public class COSAsyncClient extends COSClient implements COSAsync {
+
+    private CosAsyncHttpClient cosAsyncHttpClient;
+
+    public COSAsyncClient(COSCredentials cred, ClientConfig clientConfig) {
+        super(cred, clientConfig);
+        this.cosAsyncHttpClient = new DefaultCosAsyncHttpClient(clientConfig);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        this.cosAsyncHttpClient.shutdown();
+    }
+
+    @Override
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest) {
+        return putObjectAsync(putObjectRequest, null);
+    }
+
+    @Override
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest,
+            CosAsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler) {
+        final PutObjectContext context = preparePutObject(putObjectRequest);
+        final CosMetadataResponseHandler responseHandler = new CosMetadataResponseHandler();
+        return invokeAsync(context.request, responseHandler,
+                new ResultConverter<ObjectMetadata, PutObjectResult>() {
+                    @Override
+                    PutObjectResult convert(ObjectMetadata returnedMetadata) {
+                        PutObjectResult result = completePutObject(context, returnedMetadata);
+                        result.setRetriesAttempted(
+                                responseHandler.getResponseMetadata().getRetriesAttempted());
+                        return result;
+                    }
+
+                    @Override
+                    void release() {
+                        cleanupPutObject(context);
+                    }
+                }, asyncHandler);
+    }
+
+    @Override
+    public Future<COSObject> getObjectAsync(GetObjectRequest getObjectRequest) {
+        return getObjectAsync(getObjectRequest, null);
+    }
+
+    @Override
+    public Future<COSObject> getObjectAsync(final GetObjectRequest getObjectRequest,
+            CosAsyncHandler<GetObjectRequest, COSObject> asyncHandler) {
+        return invokeAsync(buildGetObjectRequest(getObjectRequest),
+                new COSObjectResponseHandler(), new ResultConverter<COSObject, COSObject>() {
+                    @Override
+                    COSObject convert(COSObject cosObject) {
+                        return decorateObjectContent(getObjectRequest, cosObject);
+                    }
+
+                    @Override
+                    COSObject convertError(Exception e) throws Exception {
+                        // same as the blocking getObject, unmet constraints are not an error
+                        if (e instanceof CosServiceException
+                                && isConstraintNotMet((CosServiceException) e)) {
+                            return null;
+                        }
+                        throw e;
+                    }
+                }, asyncHandler);
+    }
+
+    @Override
+    public Future<ObjectMetadata> getObjectMetadataAsync(
+            GetObjectMetadataRequest getObjectMetadataRequest) {
+        return getObjectMetadataAsync(getObjectMetadataRequest, null);
+    }
+
+    @Override
+    public Future<ObjectMetadata> getObjectMetadataAsync(
+            GetObjectMetadataRequest getObjectMetadataRequest,
+            CosAsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler) {
+        return invokeAsync(buildGetObjectMetadataRequest(getObjectMetadataRequest),
+                new CosMetadataResponseHandler(),
+                new ResultConverter<ObjectMetadata, ObjectMetadata>(), asyncHandler);
+    }
+
+    @Override
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest) {
+        return listObjectsAsync(listObjectsRequest, null);
+    }
+
+    @Override
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest,
+            CosAsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler) {
+        CosHttpRequest<ListObjectsRequest> request = buildListObjectsRequest(listObjectsRequest);
+        return invokeAsync(request,
+                new COSXmlResponseHandler<ObjectListing>(new Unmarshallers.ListObjectsUnmarshaller(
+                        listObjectsRequest.getEncodingType() == null)),
+                new ResultConverter<ObjectListing, ObjectListing>(), asyncHandler);
+    }
+
+    private <X, R, Y extends CosServiceRequest> Future<R> invokeAsync(
+            final CosHttpRequest<Y> request,
+            HttpResponseHandler<CosServiceResponse<X>> responseHandler,
+            final ResultConverter<X, R> converter, final CosAsyncHandler<Y, R> asyncHandler) {
+        FutureCallback<R> userCallback = null;
+        if (asyncHandler != null) {
+            userCallback = new FutureCallback<R>() {
+                @Override
+                public void completed(R result) {
+                    asyncHandler.onSuccess(request.getOriginalRequest(), result);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    asyncHandler.onError(ex);
+                }
+
+                @Override
+                public void cancelled() {}
+            };
+        }
+        final DelegatingFuture<R> resultFuture = new DelegatingFuture<R>(userCallback);
+        FutureCallback<X> httpCallback = new FutureCallback<X>() {
+            @Override
+            public void completed(X result) {
+                try {
+                    resultFuture.completed(converter.convert(result));
+                } catch (Exception e) {
+                    resultFuture.failed(e);
+                } finally {
+                    converter.release();
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                try {
+                    resultFuture.completed(converter.convertError(ex));
+                } catch (Exception e) {
+                    resultFuture.failed(e);
+                } finally {
+                    converter.release();
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                converter.release();
+                resultFuture.cancel(true);
+            }
+        };
+        try {
+            signRequest(request);
+            resultFuture.setDelegate(
+                    cosAsyncHttpClient.exeuteAsync(request, responseHandler, httpCallback));
+        } catch (Throwable t) {
+            converter.release();
+            throw Throwables.failure(t);
+        }
+        return resultFuture;
+    }
+
+    /**
+     * Turns the unmarshalled response into the result handed to the caller, the identity by
+     * default. Runs on the io thread of the async http engine.
+     */
+    private static class ResultConverter<X, R> {
+        @SuppressWarnings("unchecked")
+        R convert(X result) throws CosClientException {
+            return (R) result;
+        }
+
+        R convertError(Exception e) throws Exception {
+            throw e;
+        }
+
+        // release the resources held by the request once it is finished
+        void release() {}
+    }
+
+    /**
+     * Future returned to the caller, cancelling it cancels the underlying http request.
+     */
+    private static class DelegatingFuture<R> extends BasicFuture<R> {
+        private volatile Future<?> delegate;
+
+        DelegatingFuture(FutureCallback<R> callback) {
+            super(callback);
+        }
+
+        void setDelegate(Future<?> delegate) {
+            this.delegate = delegate;
+            if (isCancelled()) {
+                delegate.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> current = delegate;
+            if (cancelled && current != null) {
+                current.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+}
@@ -11,14 +11,27 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.codec.DecoderException;
@@ -28,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import com.qcloud.cos.auth.COSCredentials;
 import com.qcloud.cos.auth.COSSigner;
+import com.qcloud.cos.cache.ObjectMetadataCache;
 import com.qcloud.cos.exception.CosClientException;
 import com.qcloud.cos.exception.CosServiceException;
 import com.qcloud.cos.exception.CosServiceException.ErrorType;
@@ -47,7 +61,10 @@ import com.qcloud.cos.internal.CosMetadataResponseHandler;
 import com.qcloud.cos.internal.CosServiceRequest;
 import com.qcloud.cos.internal.CosServiceResponse;
 import com.qcloud.cos.internal.DeleteObjectsResponse;
+import com.qcloud.cos.internal.CRC64CalculatingInputStream;
+import com.qcloud.cos.internal.CRC64ValidationInputStream;
 import com.qcloud.cos.internal.DigestValidationInputStream;
+import com.qcloud.cos.internal.FilePartInputStream;
 import com.qcloud.cos.internal.InputSubstream;
 import com.qcloud.cos.internal.LengthCheckInputStream;
 import com.qcloud.cos.internal.MD5DigestCalculatingInputStream;
@@ -66,6 +83,8 @@ import com.qcloud.cos.internal.VIDResultHandler;
 import com.qcloud.cos.internal.VoidCosResponseHandler;
 import com.qcloud.cos.internal.XmlResponsesSaxParser.CompleteMultipartUploadHandler;
 import com.qcloud.cos.internal.XmlResponsesSaxParser.CopyObjectResultHandler;
+import com.qcloud.cos.metrics.RequestMetricCollector;
+import com.qcloud.cos.metrics.RequestMetrics;
 import com.qcloud.cos.model.AbortMultipartUploadRequest;
 import com.qcloud.cos.model.AccessControlList;
 import com.qcloud.cos.model.AclXmlFactory;
@@ -92,6 +111,7 @@ import com.qcloud.cos.model.DeleteBucketReplicationConfigurationRequest;
 import com.qcloud.cos.model.DeleteBucketRequest;
 import com.qcloud.cos.model.DeleteObjectRequest;
 import com.qcloud.cos.model.DeleteObjectsRequest;
+import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
 import com.qcloud.cos.model.DeleteObjectsResult;
 import com.qcloud.cos.model.DeleteVersionRequest;
 import com.qcloud.cos.model.GeneratePresignedUrlRequest;
@@ -105,6 +125,7 @@ import com.qcloud.cos.model.GetBucketVersioningConfigurationRequest;
 import com.qcloud.cos.model.GetObjectAclRequest;
 import com.qcloud.cos.model.GetObjectMetadataRequest;
 import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.HeadObjectResult;
 import com.qcloud.cos.model.Grant;
 import com.qcloud.cos.model.Grantee;
 import com.qcloud.cos.model.HeadBucketRequest;
@@ -143,6 +164,7 @@ import com.qcloud.cos.region.Region;
 import com.qcloud.cos.utils.Base64;
 import com.qcloud.cos.utils.BinaryUtils;
 import com.qcloud.cos.utils.DateUtils;
+import com.qcloud.cos.utils.CRC64;
 import com.qcloud.cos.utils.Md5Utils;
 import com.qcloud.cos.utils.ServiceUtils;
 import com.qcloud.cos.utils.StringUtils;
@@ -155,12 +177,21 @@ public class COSClient implements COS {
     private final SkipMd5CheckStrategy skipMd5CheckStrategy = SkipMd5CheckStrategy.INSTANCE;
     private final VoidCosResponseHandler voidCosResponseHandler = new VoidCosResponseHandler();
 
+    // 批量生成预签名URL时, 每个并发任务处理的key数量
+    private static final int PRESIGNED_URL_BATCH_SIZE = 1024;
+
     private COSCredentials cred;
 
     protected ClientConfig clientConfig;
 
     private CosHttpClient cosHttpClient;
 
+    // 签名器在请求间共享, 复用缓存的SignKey
+    private final COSSigner cosSigner = new COSSigner();
+
+    // 批量HEAD等批量请求使用的线程, 数量不超过连接池大小, 按需创建, 空闲60秒后回收
+    private volatile ExecutorService batchExecutor = null;
+
     public COSClient(COSCredentials cred, ClientConfig clientConfig) {
         super();
         this.cred = cred;
@@ -170,6 +201,41 @@ public class COSClient implements COS {
 
     public void shutdown() {
         this.cosHttpClient.shutdown();
+        ExecutorService executor = batchExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService getBatchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchExecutor;
+                if (executor == null) {
+                    // 线程数超过连接数也只会等待连接, 多出的worker排队.
+                    // worker之间互不等待, 排队的worker总能在其他worker结束后执行
+                    int poolSize = Math.max(1, clientConfig.getMaxConnectionsCount());
+                    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize,
+                            poolSize, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                                private final AtomicInteger threadCount = new AtomicInteger();
+
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r,
+                                            "cos-batch-" + threadCount.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                    threadPool.allowCoreThreadTimeOut(true);
+                    executor = threadPool;
+                    batchExecutor = executor;
+                }
+            }
+        }
+        return executor;
     }
 
     @Override
@@ -480,12 +546,34 @@ public class COSClient implements COS {
     private <X, Y extends CosServiceRequest> X invoke(CosHttpRequest<Y> request,
             HttpResponseHandler<CosServiceResponse<X>> responseHandler)
                     throws CosClientException, CosServiceException {
+        RequestMetricCollector metricCollector = clientConfig.getRequestMetricCollector();
+        if (metricCollector == null) {
+            signRequest(request);
+            return this.cosHttpClient.exeute(request, responseHandler);
+        }
+        RequestMetrics metrics = new RequestMetrics();
+        request.setRequestMetrics(metrics);
+        try {
+            long signStartNanos = System.nanoTime();
+            signRequest(request);
+            metrics.addPhaseNanos(RequestMetrics.Phase.SIGN, System.nanoTime() - signStartNanos);
+            return this.cosHttpClient.exeute(request, responseHandler);
+        } catch (RuntimeException e) {
+            metrics.setException(e);
+            throw e;
+        } finally {
+            metrics.markEnd();
+            try {
+                metricCollector.collectMetrics(request, metrics);
+            } catch (Exception e) {
+                log.warn("collect request metrics failed", e);
+            }
+        }
+    }
 
-        COSSigner cosSigner = new COSSigner();
+    <Y extends CosServiceRequest> void signRequest(CosHttpRequest<Y> request) {
         cosSigner.setSignExpiredTime(clientConfig.getSignExpired());
         cosSigner.sign(request, cred);
-        return this.cosHttpClient.exeute(request, responseHandler);
-
     }
 
     private static PutObjectResult createPutObjectResult(ObjectMetadata metadata) {
@@ -674,6 +762,47 @@ public class COSClient implements COS {
     @Override
     public PutObjectResult putObject(PutObjectRequest putObjectRequest)
             throws CosClientException, CosServiceException {
+        PutObjectContext context = preparePutObject(putObjectRequest);
+        CosMetadataResponseHandler responseHandler = new CosMetadataResponseHandler();
+        final ObjectMetadata returnedMetadata;
+        try {
+            returnedMetadata = invoke(context.request, responseHandler);
+        } catch (Throwable t) {
+            throw Throwables.failure(t);
+        } finally {
+            cleanupPutObject(context);
+        }
+        PutObjectResult result = completePutObject(context, returnedMetadata);
+        result.setRetriesAttempted(responseHandler.getResponseMetadata().getRetriesAttempted());
+        return result;
+    }
+
+    /**
+     * State carried from {@link #preparePutObject(PutObjectRequest)} to
+     * {@link #completePutObject(PutObjectContext, ObjectMetadata)}, so that the blocking and the
+     * asynchronous put share the same request building and integrity check.
+     */
+    static final class PutObjectContext {
+        private final PutObjectRequest putObjectRequest;
+        private final File file;
+        private final InputStream isOrig;
+        private final ObjectMetadata metadata;
+        private InputStream input;
+        private MD5DigestCalculatingInputStream md5DigestStream;
+        private CRC64CalculatingInputStream crc64Stream;
+        CosHttpRequest<PutObjectRequest> request;
+
+        private PutObjectContext(PutObjectRequest putObjectRequest, File file, InputStream isOrig,
+                ObjectMetadata metadata) {
+            this.putObjectRequest = putObjectRequest;
+            this.file = file;
+            this.isOrig = isOrig;
+            this.metadata = metadata;
+        }
+    }
+
+    PutObjectContext preparePutObject(PutObjectRequest putObjectRequest)
+            throws CosClientException {
         rejectNull(putObjectRequest,
                 "The PutObjectRequest parameter must be specified when uploading an object");
         final File file = putObjectRequest.getFile();
@@ -719,8 +848,10 @@ public class COSClient implements COS {
                     "Unable to find file to upload");
         }
 
-        final ObjectMetadata returnedMetadata;
+        final PutObjectContext context =
+                new PutObjectContext(putObjectRequest, file, isOrig, metadata);
         MD5DigestCalculatingInputStream md5DigestStream = null;
+        boolean prepared = false;
         try {
             CosHttpRequest<PutObjectRequest> request =
                     createRequest(bucketName, key, putObjectRequest, HttpMethodName.PUT);
@@ -796,18 +927,40 @@ public class COSClient implements COS {
                  */
                 input = md5DigestStream = new MD5DigestCalculatingInputStream(input);
             }
+            CRC64CalculatingInputStream crc64Stream = null;
+            if (clientConfig.isCrc64CheckEnabled() && input != null) {
+                input = crc64Stream = new CRC64CalculatingInputStream(input);
+            }
 
             populateRequestMetadata(request, metadata);
             request.setContent(input);
-            try {
-                returnedMetadata = invoke(request, new CosMetadataResponseHandler());
-            } catch (Throwable t) {
-                throw Throwables.failure(t);
-            }
+            context.request = request;
+            context.input = input;
+            context.md5DigestStream = md5DigestStream;
+            context.crc64Stream = crc64Stream;
+            prepared = true;
+            return context;
         } finally {
-            CosDataSource.Utils.cleanupDataSource(putObjectRequest, file, isOrig, input, log);
+            if (!prepared) {
+                CosDataSource.Utils.cleanupDataSource(putObjectRequest, file, isOrig, input, log);
+            }
         }
+    }
 
+    // 请求结束后调用, 无论成功与否. 对象可能已被修改, 同时使缓存的元数据失效
+    void cleanupPutObject(PutObjectContext context) {
+        CosDataSource.Utils.cleanupDataSource(context.putObjectRequest, context.file,
+                context.isOrig, context.input, log);
+        invalidateObjectMetadata(context.putObjectRequest.getBucketName(),
+                context.putObjectRequest.getKey());
+    }
+
+    PutObjectResult completePutObject(PutObjectContext context, ObjectMetadata returnedMetadata)
+            throws CosClientException {
+        final ObjectMetadata metadata = context.metadata;
+        final String bucketName = context.putObjectRequest.getBucketName();
+        final String key = context.putObjectRequest.getKey();
+        final MD5DigestCalculatingInputStream md5DigestStream = context.md5DigestStream;
         String contentMd5 = metadata.getContentMD5();
         if (md5DigestStream != null) {
             contentMd5 = Base64.encodeAsString(md5DigestStream.getMd5Digest());
@@ -840,11 +993,38 @@ public class COSClient implements COS {
                         + ")");
             }
         }
+        if (context.crc64Stream != null) {
+            checkUploadCRC64(context.crc64Stream.getCRC64(), returnedMetadata.getCrc64Ecma(),
+                    "bucketName: " + bucketName + ", key: " + key);
+        }
         PutObjectResult result = createPutObjectResult(returnedMetadata);
         result.setContentMd5(contentMd5);
         return result;
     }
 
+    /**
+     * Compares the CRC64 checksum of the uploaded data with the one returned by COS, if any.
+     */
+    static void checkUploadCRC64(long clientSideCRC64, String serverSideCRC64, String info) {
+        if (serverSideCRC64 == null) {
+            return;
+        }
+        boolean matched;
+        try {
+            matched = CRC64.fromString(serverSideCRC64) == clientSideCRC64;
+        } catch (NumberFormatException e) {
+            log.warn("Unable to parse the CRC64 returned by COS: " + serverSideCRC64, e);
+            return;
+        }
+        if (!matched) {
+            throw new CosClientException("Unable to verify integrity of data upload.  "
+                    + "Client calculated CRC64 (" + CRC64.toString(clientSideCRC64)
+                    + ") didn't match CRC64 (" + serverSideCRC64 + ") calculated by Qcloud COS.  "
+                    + "You may need to delete the data stored in Qcloud COS. (" + info + ")");
+        }
+    }
+
+
     @Override
     public PutObjectResult putObject(String bucketName, String key, File file)
             throws CosClientException, CosServiceException {
@@ -867,6 +1047,29 @@ public class COSClient implements COS {
     @Override
     public COSObject getObject(GetObjectRequest getObjectRequest)
             throws CosClientException, CosServiceException {
+        CosHttpRequest<GetObjectRequest> request = buildGetObjectRequest(getObjectRequest);
+        try {
+            return decorateObjectContent(getObjectRequest,
+                    invoke(request, new COSObjectResponseHandler()));
+        } catch (CosServiceException cse) {
+            /*
+             * If the request failed because one of the specified constraints was not met (ex:
+             * matching ETag, modified since date, etc.), then return null, so that users don't have
+             * to wrap their code in try/catch blocks and check for this status code if they want to
+             * use constraints.
+             */
+            if (isConstraintNotMet(cse)) {
+                return null;
+            }
+            throw cse;
+        }
+    }
+
+    static boolean isConstraintNotMet(CosServiceException cse) {
+        return cse.getStatusCode() == 412 || cse.getStatusCode() == 304;
+    }
+
+    CosHttpRequest<GetObjectRequest> buildGetObjectRequest(GetObjectRequest getObjectRequest) {
         rejectNull(getObjectRequest,
                 "The GetObjectRequest parameter must be specified when requesting an object");
         rejectNull(getObjectRequest.getBucketName(),
@@ -897,60 +1100,63 @@ public class COSClient implements COS {
 
         // Populate the SSE-C parameters to the request header
         populateSSE_C(request, getObjectRequest.getSSECustomerKey());
+        return request;
+    }
 
-        try {
-            COSObject cosObject = invoke(request, new COSObjectResponseHandler());
-            cosObject.setBucketName(getObjectRequest.getBucketName());
-            cosObject.setKey(getObjectRequest.getKey());
-            InputStream is = cosObject.getObjectContent();
-            HttpRequestBase httpRequest = cosObject.getObjectContent().getHttpRequest();
-
-            is = new ServiceClientHolderInputStream(is, this);
-
-            // The Etag header contains a server-side MD5 of the object. If
-            // we're downloading the whole object, by default we wrap the
-            // stream in a validator that calculates an MD5 of the downloaded
-            // bytes and complains if what we received doesn't match the Etag.
-            if (!skipMd5CheckStrategy.skipClientSideValidation(getObjectRequest,
-                    cosObject.getObjectMetadata())) {
-                try {
-                    byte[] serverSideHash =
-                            BinaryUtils.fromHex(cosObject.getObjectMetadata().getETag());
-                    // No content length check is performed when the
-                    // MD5 check is enabled, since a correct MD5 check would
-                    // imply a correct content length.
-                    MessageDigest digest = MessageDigest.getInstance("MD5");
-                    is = new DigestValidationInputStream(is, digest, serverSideHash);
-                } catch (NoSuchAlgorithmException e) {
-                    log.warn("No MD5 digest algorithm available.  Unable to calculate "
-                            + "checksum and verify data integrity.", e);
-                } catch (DecoderException e) {
-                    log.warn("BinaryUtils.fromHex error. Unable to calculate "
-                            + "checksum and verify data integrity. etag:"
-                            + cosObject.getObjectMetadata().getETag(), e);
-                }
-            } else {
-                // Ensures the data received from COS has the same length as the
-                // expected content-length
-                is = new LengthCheckInputStream(is,
-                        cosObject.getObjectMetadata().getContentLength(), // expected length
-                        INCLUDE_SKIPPED_BYTES); // bytes received from cos are all included even if
-                                                // skipped
+    COSObject decorateObjectContent(GetObjectRequest getObjectRequest, COSObject cosObject) {
+        cosObject.setBucketName(getObjectRequest.getBucketName());
+        cosObject.setKey(getObjectRequest.getKey());
+        InputStream is = cosObject.getObjectContent();
+        HttpRequestBase httpRequest = cosObject.getObjectContent().getHttpRequest();
+
+        is = new ServiceClientHolderInputStream(is, this);
+
+        // 下载整个对象时优先用COS返回的CRC64校验, 比MD5计算更快, 且分块上传的对象也可以校验
+        Long serverSideCRC64 = null;
+        String crc64Header = cosObject.getObjectMetadata().getCrc64Ecma();
+        if (clientConfig.isCrc64CheckEnabled() && crc64Header != null
+                && getObjectRequest.getRange() == null) {
+            try {
+                serverSideCRC64 = CRC64.fromString(crc64Header);
+            } catch (NumberFormatException e) {
+                log.warn("Unable to parse the CRC64 returned by COS: " + crc64Header, e);
             }
-            cosObject.setObjectContent(new COSObjectInputStream(is, httpRequest));
-            return cosObject;
-        } catch (CosServiceException cse) {
-            /*
-             * If the request failed because one of the specified constraints was not met (ex:
-             * matching ETag, modified since date, etc.), then return null, so that users don't have
-             * to wrap their code in try/catch blocks and check for this status code if they want to
-             * use constraints.
-             */
-            if (cse.getStatusCode() == 412 || cse.getStatusCode() == 304) {
-                return null;
+        }
+
+        // The Etag header contains a server-side MD5 of the object. If
+        // we're downloading the whole object, by default we wrap the
+        // stream in a validator that calculates an MD5 of the downloaded
+        // bytes and complains if what we received doesn't match the Etag.
+        if (serverSideCRC64 != null) {
+            is = new CRC64ValidationInputStream(is, serverSideCRC64);
+        } else if (!skipMd5CheckStrategy.skipClientSideValidation(getObjectRequest,
+                cosObject.getObjectMetadata())) {
+            try {
+                byte[] serverSideHash =
+                        BinaryUtils.fromHex(cosObject.getObjectMetadata().getETag());
+                // No content length check is performed when the
+                // MD5 check is enabled, since a correct MD5 check would
+                // imply a correct content length.
+                MessageDigest digest = MessageDigest.getInstance("MD5");
+                is = new DigestValidationInputStream(is, digest, serverSideHash);
+            } catch (NoSuchAlgorithmException e) {
+                log.warn("No MD5 digest algorithm available.  Unable to calculate "
+                        + "checksum and verify data integrity.", e);
+            } catch (DecoderException e) {
+                log.warn("BinaryUtils.fromHex error. Unable to calculate "
+                        + "checksum and verify data integrity. etag:"
+                        + cosObject.getObjectMetadata().getETag(), e);
             }
-            throw cse;
+        } else {
+            // Ensures the data received from COS has the same length as the
+            // expected content-length
+            is = new LengthCheckInputStream(is,
+                    cosObject.getObjectMetadata().getContentLength(), // expected length
+                    INCLUDE_SKIPPED_BYTES); // bytes received from cos are all included even if
+                                            // skipped
         }
+        cosObject.setObjectContent(new COSObjectInputStream(is, httpRequest));
+        return cosObject;
     }
 
     @Override
@@ -1002,6 +1208,121 @@ public class COSClient implements COS {
     @Override
     public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest)
             throws CosClientException, CosServiceException {
+        CosHttpRequest<GetObjectMetadataRequest> request =
+                buildGetObjectMetadataRequest(getObjectMetadataRequest);
+        ObjectMetadataCache cache = clientConfig.getObjectMetadataCache();
+        // 使用SSE-C的对象需要校验密钥, 不缓存
+        if (cache == null || getObjectMetadataRequest.getSSECustomerKey() != null) {
+            return invoke(request, new CosMetadataResponseHandler());
+        }
+        String bucketName = getObjectMetadataRequest.getBucketName();
+        String key = getObjectMetadataRequest.getKey();
+        String versionId = getObjectMetadataRequest.getVersionId();
+        ObjectMetadata cachedMetadata = cache.get(bucketName, key, versionId);
+        if (cachedMetadata != null) {
+            return cachedMetadata;
+        }
+        long requestStartNanos = System.nanoTime();
+        ObjectMetadata metadata;
+        try {
+            metadata = invoke(request, new CosMetadataResponseHandler());
+        } catch (CosServiceException cse) {
+            if (cse.getStatusCode() == 404) {
+                cache.putNotFound(bucketName, key, versionId, cse, requestStartNanos);
+            }
+            throw cse;
+        }
+        cache.put(bucketName, key, versionId, metadata, requestStartNanos);
+        return metadata;
+    }
+
+    @Override
+    public Map<String, HeadObjectResult> headObjects(final String bucketName,
+            Collection<String> keys, int concurrency) throws CosClientException {
+        rejectNull(bucketName,
+                "The bucket name parameter must be specified when requesting objects' metadata");
+        rejectNull(keys, "The keys parameter must be specified when requesting objects' metadata");
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(
+                    "concurrency must be greater than 0, got " + concurrency);
+        }
+        final String[] keyArray = new LinkedHashSet<String>(keys).toArray(new String[0]);
+        for (String key : keyArray) {
+            rejectNull(key, "The keys must not be null when requesting objects' metadata");
+        }
+        final HeadObjectResult[] results = new HeadObjectResult[keyArray.length];
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        // 每个worker依次领取下一个key, 同时在途的请求数即worker数
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                while (!cancelled.get()) {
+                    int index = nextIndex.getAndIncrement();
+                    if (index >= keyArray.length) {
+                        return;
+                    }
+                    results[index] = headObject(bucketName, keyArray[index]);
+                }
+            }
+        };
+        int workerCount = Math.min(Math.min(concurrency, clientConfig.getMaxConnectionsCount()),
+                keyArray.length);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int i = 1; i < workerCount; ++i) {
+                futures.add(getBatchExecutor().submit(worker));
+            }
+            // 调用线程也作为一个worker
+            worker.run();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosClientException("head objects has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw Throwables.failure(e.getCause());
+        } finally {
+            cancelled.set(true);
+        }
+
+        Map<String, HeadObjectResult> resultMap =
+                new LinkedHashMap<String, HeadObjectResult>(keyArray.length * 4 / 3 + 1);
+        for (int i = 0; i < keyArray.length; ++i) {
+            resultMap.put(keyArray[i], results[i]);
+        }
+        return resultMap;
+    }
+
+    // 单个key的HEAD结果, 404表示不存在, 其他错误记录在结果中而不抛出
+    private HeadObjectResult headObject(String bucketName, String key) {
+        try {
+            return new HeadObjectResult(key,
+                    getObjectMetadata(new GetObjectMetadataRequest(bucketName, key)), null);
+        } catch (CosServiceException cse) {
+            if (cse.getStatusCode() == 404) {
+                return new HeadObjectResult(key, null, null);
+            }
+            return new HeadObjectResult(key, null, cse);
+        } catch (CosClientException cce) {
+            return new HeadObjectResult(key, null, cce);
+        }
+    }
+
+    /**
+     * Invalidates the cached metadata of an object after a request which may have changed it,
+     * whether the request succeeded or not.
+     */
+    void invalidateObjectMetadata(String bucketName, String key) {
+        ObjectMetadataCache cache = clientConfig.getObjectMetadataCache();
+        if (cache != null) {
+            cache.invalidate(bucketName, key);
+        }
+    }
+
+    CosHttpRequest<GetObjectMetadataRequest> buildGetObjectMetadataRequest(
+            GetObjectMetadataRequest getObjectMetadataRequest) {
         rejectNull(getObjectMetadataRequest,
                 "The GetObjectMetadataRequest parameter must be specified when requesting an object's metadata");
 
@@ -1017,7 +1338,7 @@ public class COSClient implements COS {
         addParameterIfNotNull(request, "versionId", getObjectMetadataRequest.getVersionId());
         // Populate the SSE-C parameters to the request header
         populateSSE_C(request, getObjectMetadataRequest.getSSECustomerKey());
-        return invoke(request, new CosMetadataResponseHandler());
+        return request;
     }
 
     @Override
@@ -1040,7 +1361,12 @@ public class COSClient implements COS {
         CosHttpRequest<DeleteObjectRequest> request =
                 createRequest(deleteObjectRequest.getBucketName(), deleteObjectRequest.getKey(),
                         deleteObjectRequest, HttpMethodName.DELETE);
-        invoke(request, voidCosResponseHandler);
+        try {
+            invoke(request, voidCosResponseHandler);
+        } finally {
+            invalidateObjectMetadata(deleteObjectRequest.getBucketName(),
+                    deleteObjectRequest.getKey());
+        }
     }
 
     @Override
@@ -1069,7 +1395,15 @@ public class COSClient implements COS {
                 new ResponseHeaderHandlerChain<DeleteObjectsResponse>(
                         new Unmarshallers.DeleteObjectsResultUnmarshaller());
 
-        DeleteObjectsResponse response = invoke(request, responseHandler);
+        DeleteObjectsResponse response;
+        try {
+            response = invoke(request, responseHandler);
+        } finally {
+            for (KeyVersion keyVersion : deleteObjectsRequest.getKeys()) {
+                invalidateObjectMetadata(deleteObjectsRequest.getBucketName(),
+                        keyVersion.getKey());
+            }
+        }
 
         /*
          * If the result was only partially successful, throw an exception
@@ -1114,7 +1448,11 @@ public class COSClient implements COS {
                 createRequest(bucketName, key, deleteVersionRequest, HttpMethodName.DELETE);
         request.addParameter("versionId", versionId);
 
-        invoke(request, voidCosResponseHandler);
+        try {
+            invoke(request, voidCosResponseHandler);
+        } finally {
+            invalidateObjectMetadata(bucketName, key);
+        }
     }
 
     @Override
@@ -1339,13 +1677,17 @@ public class COSClient implements COS {
                 }
             } else {
                 try {
-                    isCurr = new ResettableInputStream(fileOrig);
+                    // 同一文件并发上传的分块共享一个文件通道, 按位置读取而不是各自打开文件后跳过
+                    isCurr = new FilePartInputStream(fileOrig, uploadPartRequest.getFileOffset(),
+                            partSize);
                 } catch (IOException e) {
                     throw new IllegalArgumentException("Failed to open file " + fileOrig, e);
                 }
             }
-            isCurr = new InputSubstream(isCurr, uploadPartRequest.getFileOffset(), partSize,
-                    uploadPartRequest.isLastPart());
+            if (fileOrig == null) {
+                isCurr = new InputSubstream(isCurr, uploadPartRequest.getFileOffset(), partSize,
+                        uploadPartRequest.isLastPart());
+            }
             MD5DigestCalculatingInputStream md5DigestStream = null;
             if (uploadPartRequest.getMd5Digest() == null && !skipMd5CheckStrategy
                     .skipClientSideValidationPerRequest(uploadPartRequest)) {
@@ -1356,8 +1698,12 @@ public class COSClient implements COS {
                  */
                 isCurr = md5DigestStream = new MD5DigestCalculatingInputStream(isCurr);
             }
+            CRC64CalculatingInputStream crc64Stream = null;
+            if (clientConfig.isCrc64CheckEnabled()) {
+                isCurr = crc64Stream = new CRC64CalculatingInputStream(isCurr);
+            }
             return doUploadPart(bucketName, key, uploadId, partNumber, partSize, request, isCurr,
-                    md5DigestStream);
+                    md5DigestStream, crc64Stream);
         } finally {
             CosDataSource.Utils.cleanupDataSource(uploadPartRequest, fileOrig, isOrig, isCurr, log);
         }
@@ -1366,10 +1712,12 @@ public class COSClient implements COS {
     private UploadPartResult doUploadPart(final String bucketName, final String key,
             final String uploadId, final int partNumber, final long partSize,
             CosHttpRequest<UploadPartRequest> request, InputStream inputStream,
-            MD5DigestCalculatingInputStream md5DigestStream) {
+            MD5DigestCalculatingInputStream md5DigestStream,
+            CRC64CalculatingInputStream crc64Stream) {
         try {
             request.setContent(inputStream);
-            ObjectMetadata metadata = invoke(request, new CosMetadataResponseHandler());
+            CosMetadataResponseHandler responseHandler = new CosMetadataResponseHandler();
+            ObjectMetadata metadata = invoke(request, responseHandler);
             final String etag = metadata.getETag();
 
 
@@ -1392,9 +1740,19 @@ public class COSClient implements COS {
                 }
             }
 
+            if (crc64Stream != null) {
+                checkUploadCRC64(crc64Stream.getCRC64(), metadata.getCrc64Ecma(),
+                        "bucketName: " + bucketName + ", key: " + key + ", uploadId: " + uploadId
+                                + ", partNumber: " + partNumber + ", partSize: " + partSize);
+            }
+
             UploadPartResult result = new UploadPartResult();
             result.setETag(etag);
             result.setPartNumber(partNumber);
+            result.setPartSize(partSize);
+            result.setCrc64Ecma(metadata.getCrc64Ecma());
+            result.setRetriesAttempted(
+                    responseHandler.getResponseMetadata().getRetriesAttempted());
             result.setSSEAlgorithm(metadata.getSSEAlgorithm());
             result.setSSECustomerAlgorithm(metadata.getSSECustomerAlgorithm());
             result.setSSECustomerKeyMd5(metadata.getSSECustomerKeyMd5());
@@ -1499,10 +1857,16 @@ public class COSClient implements COS {
                             new ServerSideEncryptionHeaderHandler<CompleteMultipartUploadHandler>(),
                             new ObjectExpirationHeaderHandler<CompleteMultipartUploadHandler>(),
                             new VIDResultHandler<CompleteMultipartUploadHandler>());
-            handler = invoke(request, responseHandler);
+            try {
+                handler = invoke(request, responseHandler);
+            } finally {
+                invalidateObjectMetadata(bucketName, key);
+            }
             if (handler.getCompleteMultipartUploadResult() != null) {
                 String versionId = responseHandler.getResponseHeaders().get(Headers.COS_VERSION_ID);
                 handler.getCompleteMultipartUploadResult().setVersionId(versionId);
+                handler.getCompleteMultipartUploadResult().setCrc64Ecma(
+                        responseHandler.getResponseHeaders().get(Headers.COS_HASH_CRC64_ECMA));
                 return handler.getCompleteMultipartUploadResult();
             }
         } while (shouldRetryCompleteMultipartUpload(completeMultipartUploadRequest,
@@ -1559,6 +1923,13 @@ public class COSClient implements COS {
     @Override
     public ObjectListing listObjects(ListObjectsRequest listObjectsRequest)
             throws CosClientException, CosServiceException {
+        return invoke(buildListObjectsRequest(listObjectsRequest),
+                new Unmarshallers.ListObjectsUnmarshaller(
+                        listObjectsRequest.getEncodingType() == null));
+    }
+
+    CosHttpRequest<ListObjectsRequest> buildListObjectsRequest(
+            ListObjectsRequest listObjectsRequest) {
         rejectNull(listObjectsRequest.getBucketName(),
                 "The bucket name parameter must be specified when listing objects in a bucket");
 
@@ -1577,8 +1948,7 @@ public class COSClient implements COS {
         if (listObjectsRequest.getMaxKeys() != null
                 && listObjectsRequest.getMaxKeys().intValue() >= 0)
             request.addParameter("max-keys", listObjectsRequest.getMaxKeys().toString());
-
-        return invoke(request, new Unmarshallers.ListObjectsUnmarshaller(shouldSDKDecodeResponse));
+        return request;
     }
 
     @Override
@@ -1743,6 +2113,8 @@ public class COSClient implements COS {
             }
 
             throw cse;
+        } finally {
+            invalidateObjectMetadata(destinationBucketName, destinationKey);
         }
 
         /*
@@ -2484,24 +2856,11 @@ public class COSClient implements COS {
 
         addResponseHeaderParameters(request, req.getResponseHeaders());
 
-        COSSigner cosSigner = new COSSigner();
         String authStr =
                 cosSigner.buildAuthorizationStr(request.getHttpMethod(), request.getResourcePath(),
                         request.getHeaders(), request.getParameters(), cred, req.getExpiration());
         StringBuilder strBuilder = new StringBuilder();
-        strBuilder.append("http://").append(formatBucket(bucketName, cred.getCOSAppId()));
-
-        String endpointSuffix = clientConfig.getEndPointSuffix();
-
-        if (endpointSuffix == null) {
-            endpointSuffix = String.format(".%s.myqcloud.com",
-                    formatRegion(clientConfig.getRegion().getRegionName()));
-        }
-        if (!endpointSuffix.startsWith(".")) {
-            endpointSuffix = "." + endpointSuffix;
-        }
-
-        strBuilder.append(endpointSuffix)
+        strBuilder.append(buildPresignedUrlPrefix(bucketName))
                 .append(UrlEncoderUtils.encodeEscapeDelimiter(formatKey(key)));
 
         boolean hasAppendFirstParameter = false;
@@ -2533,6 +2892,103 @@ public class COSClient implements COS {
         }
     }
 
+    @Override
+    public List<URL> generatePresignedUrls(String bucketName, Collection<String> keys,
+            Date expiration, HttpMethodName method) throws CosClientException {
+        return generatePresignedUrls(bucketName, keys, expiration, method, null);
+    }
+
+    @Override
+    public List<URL> generatePresignedUrls(String bucketName, Collection<String> keys,
+            Date expiration, final HttpMethodName method, ExecutorService executor)
+            throws CosClientException {
+        rejectNull(bucketName,
+                "The bucket name parameter must be specified when generating pre-signed URLs");
+        rejectNull(keys, "The keys parameter must be specified when generating pre-signed URLs");
+        rejectNull(method,
+                "The method parameter must be specified when generating pre-signed URLs");
+
+        final Date expiredTime = expiration != null ? expiration
+                : new Date(System.currentTimeMillis() + this.clientConfig.getSignExpired() * 1000);
+        // host只需计算一次, SignKey由签名器在整批URL之间复用
+        final String urlPrefix = buildPresignedUrlPrefix(bucketName);
+        final String[] keyArray = keys.toArray(new String[keys.size()]);
+        final URL[] urls = new URL[keyArray.length];
+
+        if (executor == null || keyArray.length <= PRESIGNED_URL_BATCH_SIZE) {
+            buildPresignedUrls(urlPrefix, keyArray, 0, keyArray.length, expiredTime, method, urls);
+            return Arrays.asList(urls);
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int start = 0; start < keyArray.length; start += PRESIGNED_URL_BATCH_SIZE) {
+                final int from = start;
+                final int to = Math.min(start + PRESIGNED_URL_BATCH_SIZE, keyArray.length);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        buildPresignedUrls(urlPrefix, keyArray, from, to, expiredTime, method,
+                                urls);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosClientException("generate pre-signed URLs has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw Throwables.failure(e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return Arrays.asList(urls);
+    }
+
+    private String buildPresignedUrlPrefix(String bucketName) {
+        StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("http://").append(formatBucket(bucketName, cred.getCOSAppId()));
+
+        String endpointSuffix = clientConfig.getEndPointSuffix();
+
+        if (endpointSuffix == null) {
+            endpointSuffix = String.format(".%s.myqcloud.com",
+                    formatRegion(clientConfig.getRegion().getRegionName()));
+        }
+        if (!endpointSuffix.startsWith(".")) {
+            endpointSuffix = "." + endpointSuffix;
+        }
+        return strBuilder.append(endpointSuffix).toString();
+    }
+
+    // 签名keys[from, to)并将URL写入urls的对应位置. 与单个URL的生成结果一致: 不带参数时没有需要签名的头部
+    private void buildPresignedUrls(String urlPrefix, String[] keys, int from, int to,
+            Date expiration, HttpMethodName method, URL[] urls) {
+        Map<String, String> emptyMap = Collections.emptyMap();
+        for (int i = from; i < to; ++i) {
+            rejectNull(keys[i], "The key must not be null when generating pre-signed URLs");
+            String resourcePath = formatKey(keys[i]);
+            String authStr = cosSigner.buildAuthorizationStr(method, resourcePath, emptyMap,
+                    emptyMap, cred, expiration);
+            StringBuilder strBuilder =
+                    new StringBuilder(urlPrefix.length() + resourcePath.length() * 3 + 512);
+            strBuilder.append(urlPrefix)
+                    .append(UrlEncoderUtils.encodeEscapeDelimiter(resourcePath));
+            if (authStr != null) {
+                strBuilder.append("?sign=").append(UrlEncoderUtils.encode(authStr));
+            }
+            try {
+                urls[i] = new URL(strBuilder.toString());
+            } catch (MalformedURLException e) {
+                throw new CosClientException(e.toString());
+            }
+        }
+    }
+
     @Override
     public void restoreObject(String bucketName, String key, int expirationInDays)
             throws CosClientException, CosServiceException {
@@ -1,7 +1,11 @@
 package com.qcloud.cos;
 
+import com.qcloud.cos.cache.ObjectMetadataCache;
 import com.qcloud.cos.http.HttpProtocol;
+import com.qcloud.cos.metrics.RequestMetricCollector;
 import com.qcloud.cos.region.Region;
+import com.qcloud.cos.retry.PredefinedRetryPolicies;
+import com.qcloud.cos.retry.RetryPolicy;
 
 public class ClientConfig {
     // 默认的获取连接的超时时间, 单位ms
@@ -18,6 +22,11 @@ public class ClientConfig {
     private static final String DEFAULT_USER_AGENT = "cos-java-sdk-v5.4.3";
     // Read Limit
     private static final int DEFAULT_READ_LIMIT = (2 << 17) + 1;
+    // 异步客户端默认的IO线程数, 与CPU核数一致
+    private static final int DEFAULT_ASYNC_IO_THREAD_COUNT =
+            Runtime.getRuntime().availableProcessors();
+    // 默认的重试预算容量, 每次重试消耗5个, 请求成功时归还
+    private static final int DEFAULT_RETRY_BUDGET_CAPACITY = 500;
     
     private Region region;
     private HttpProtocol httpProtocol = HttpProtocol.http;
@@ -33,6 +42,14 @@ public class ClientConfig {
     private int maxConnectionsCount = DEFAULT_MAX_CONNECTIONS_COUNT;
     private String userAgent = DEFAULT_USER_AGENT;
     private int readLimit = DEFAULT_READ_LIMIT;
+    private int asyncIoThreadCount = DEFAULT_ASYNC_IO_THREAD_COUNT;
+    private RetryPolicy retryPolicy = PredefinedRetryPolicies.DEFAULT;
+    private int retryBudgetCapacity = DEFAULT_RETRY_BUDGET_CAPACITY;
+    // 请求耗时统计, 默认不统计
+    private RequestMetricCollector requestMetricCollector = null;
+    // 对象元数据缓存, 默认不缓存
+    private ObjectMetadataCache objectMetadataCache = null;
+    private boolean crc64CheckEnabled = true;
 
     public ClientConfig(Region region) {
         super();
@@ -135,4 +152,57 @@ public class ClientConfig {
         this.readLimit = readLimit;
     }
 
+    public int getAsyncIoThreadCount() {
+        return asyncIoThreadCount;
+    }
+
+    public void setAsyncIoThreadCount(int asyncIoThreadCount) {
+        this.asyncIoThreadCount = asyncIoThreadCount;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public int getRetryBudgetCapacity() {
+        return retryBudgetCapacity;
+    }
+
+    // 设置客户端级别的重试预算, 小于等于0表示不限制
+    public void setRetryBudgetCapacity(int retryBudgetCapacity) {
+        this.retryBudgetCapacity = retryBudgetCapacity;
+    }
+
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    // 设置请求各阶段耗时的收集器, 为null时不统计
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
+
+    public ObjectMetadataCache getObjectMetadataCache() {
+        return objectMetadataCache;
+    }
+
+    // 设置getObjectMetadata与doesObjectExist使用的元数据缓存, 为null时每次都发送HEAD请求
+    public void setObjectMetadataCache(ObjectMetadataCache objectMetadataCache) {
+        this.objectMetadataCache = objectMetadataCache;
+    }
+
+    public boolean isCrc64CheckEnabled() {
+        return crc64CheckEnabled;
+    }
+
+    // 设置是否计算上传和下载数据的CRC64并与COS返回的x-cos-hash-crc64ecma校验, 默认开启.
+    // CRC64校验与Content-MD5校验相互独立, 开启后上传文件仍会发送Content-MD5
+    public void setCrc64CheckEnabled(boolean crc64CheckEnabled) {
+        this.crc64CheckEnabled = crc64CheckEnabled;
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.qcloud.cos;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.internal.CosServiceRequest;
+
+/**
+ * Callback interface for notification on the completion of an asynchronous request issued
+ * through {@link COSAsync}. Callbacks run on the io thread of the asynchronous http engine, so
+ * implementations should return quickly and hand heavy work over to their own executor.
+ *
+ * @param <REQUEST> the type of the original request.
+ * @param <RESULT> the type of the request result.
+ */
+public interface CosAsyncHandler<REQUEST extends CosServiceRequest, RESULT> {
+    /**
+     * Invoked if the request failed. The exception is the same {@link CosClientException} or
+     * {@link CosServiceException} that the blocking call would have thrown.
+     *
+     * @param exception the exception that caused the request to fail.
+     */
+    public void onError(Exception exception);
+
+    /**
+     * Invoked after the request has completed successfully.
+     *
+     * @param request the original request.
+     * @param result the successful result of the request.
+     */
+    public void onSuccess(REQUEST request, RESULT result);
+}
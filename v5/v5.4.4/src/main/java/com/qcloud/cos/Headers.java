@@ -43,6 +43,9 @@ public interface Headers {
     /** COS's version ID header */
     public static final String COS_VERSION_ID = "x-cos-version-id";
 
+    /** COS response header for the CRC64 (ECMA-182) checksum of an object or a part */
+    public static final String COS_HASH_CRC64_ECMA = "x-cos-hash-crc64ecma";
+
     /** COS's Multi-Factor Authentication header */
     public static final String COS_AUTHORIZATION = "Authorization";
 
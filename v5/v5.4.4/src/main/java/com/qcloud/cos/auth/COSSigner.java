@@ -11,24 +11,65 @@ import static com.qcloud.cos.auth.COSSignerConstants.Q_SIGN_TIME;
 import static com.qcloud.cos.auth.COSSignerConstants.Q_URL_PARAM_LIST;
 import static com.qcloud.cos.auth.COSSignerConstants.SIGN_EXPIRED_TIME;
 
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.codec.digest.HmacUtils;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
 
 import com.qcloud.cos.Headers;
+import com.qcloud.cos.exception.CosClientException;
 import com.qcloud.cos.http.CosHttpRequest;
 import com.qcloud.cos.http.HttpMethodName;
 import com.qcloud.cos.internal.CosServiceRequest;
 import com.qcloud.cos.utils.UrlEncoderUtils;
 
+/**
+ * Computes the COS request signature. A signer is thread safe and meant to be shared by all the
+ * requests of a client: the sign key derived from the secret key is cached, and the HMAC-SHA1 /
+ * SHA-1 engines are reused per thread.
+ * <p>
+ * The q-key-time of a signature is its q-sign-time, so a signature never outlives the expiration
+ * asked for. The cached sign key is only reused by the signatures of the same window, such as the
+ * requests signed within the same second with the same expiration.
+ */
 public class COSSigner {
 
-    private long signExpiredTime = SIGN_EXPIRED_TIME;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String HMAC_SHA1 = "HmacSHA1";
+
+    private static final ThreadLocal<HmacSha1> threadLocalHmac = new ThreadLocal<HmacSha1>() {
+        @Override
+        protected HmacSha1 initialValue() {
+            return new HmacSha1();
+        }
+    };
+
+    private static final ThreadLocal<MessageDigest> threadLocalSha1 =
+            new ThreadLocal<MessageDigest>() {
+                @Override
+                protected MessageDigest initialValue() {
+                    try {
+                        return MessageDigest.getInstance("SHA-1");
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new CosClientException("SHA-1 is not supported", e);
+                    }
+                }
+            };
+
+    private volatile long signExpiredTime = SIGN_EXPIRED_TIME;
+
+    // 最近一次派生的SignKey, 密钥或签名时间窗口变化时重新计算
+    private volatile SignKey cachedSignKey;
 
     // 获取签名有效期
     public long getSignExpiredTime() {
@@ -76,45 +117,64 @@ public class COSSigner {
             return null;
         }
 
-        Map<String, String> signHeaders = buildSignHeaders(headerMap);
-        // 签名中的参数和http 头部 都要进行字符串排序
-        TreeMap<String, String> sortedSignHeaders = new TreeMap<>();
-        TreeMap<String, String> sortedParams = new TreeMap<>();
+        long startTime = System.currentTimeMillis() / 1000;
+        long endTime = expiredTime.getTime() / 1000;
+        SignKey signKey = getSignKey(cred.getCOSSecretKey(), startTime, endTime);
+        String qSignTimeStr = signKey.keyTime;
 
-        sortedSignHeaders.putAll(signHeaders);
-        sortedParams.putAll(paramMap);
+        // 签名中的参数和http 头部 都要进行字符串排序
+        TreeMap<String, String> sortedSignHeaders = buildSignHeaders(headerMap);
+        TreeMap<String, String> sortedParams = new TreeMap<>(paramMap);
 
-        String qHeaderListStr = buildSignMemberStr(sortedSignHeaders);
-        String qUrlParamListStr = buildSignMemberStr(sortedParams);
-        String qKeyTimeStr, qSignTimeStr;
-        qKeyTimeStr = qSignTimeStr = buildTimeStr(expiredTime);
-        String signKey = HmacUtils.hmacSha1Hex(cred.getCOSSecretKey(), qKeyTimeStr);
         String formatMethod = methodName.toString().toLowerCase();
-        String formatUri = resouce_path;
-        String formatParameters = formatMapToStr(sortedParams);
-        String formatHeaders = formatMapToStr(sortedSignHeaders);
-
-        String formatStr = new StringBuilder().append(formatMethod).append(LINE_SEPARATOR)
-                .append(formatUri).append(LINE_SEPARATOR).append(formatParameters)
-                .append(LINE_SEPARATOR).append(formatHeaders).append(LINE_SEPARATOR).toString();
-        String hashFormatStr = DigestUtils.sha1Hex(formatStr);
-        String stringToSign = new StringBuilder().append(Q_SIGN_ALGORITHM_VALUE)
-                .append(LINE_SEPARATOR).append(qSignTimeStr).append(LINE_SEPARATOR)
-                .append(hashFormatStr).append(LINE_SEPARATOR).toString();
-        String signature = HmacUtils.hmacSha1Hex(signKey, stringToSign);
-
-        String authoriationStr = new StringBuilder().append(Q_SIGN_ALGORITHM_KEY).append("=")
+        StringBuilder formatStr = new StringBuilder(128 + resouce_path.length()
+                + 64 * (sortedParams.size() + sortedSignHeaders.size()));
+        formatStr.append(formatMethod).append(LINE_SEPARATOR).append(resouce_path)
+                .append(LINE_SEPARATOR);
+        String qUrlParamListStr = appendFormatMapStr(formatStr, sortedParams);
+        formatStr.append(LINE_SEPARATOR);
+        String qHeaderListStr = appendFormatMapStr(formatStr, sortedSignHeaders);
+        formatStr.append(LINE_SEPARATOR);
+
+        MessageDigest sha1 = threadLocalSha1.get();
+        String hashFormatStr =
+                Hex.encodeHexString(sha1.digest(formatStr.toString().getBytes(UTF8)));
+        String stringToSign = new StringBuilder(64 + qSignTimeStr.length())
+                .append(Q_SIGN_ALGORITHM_VALUE).append(LINE_SEPARATOR).append(qSignTimeStr)
+                .append(LINE_SEPARATOR).append(hashFormatStr).append(LINE_SEPARATOR).toString();
+        String signature = threadLocalHmac.get().hmacHex(signKey.signKey, stringToSign);
+
+        String authoriationStr = new StringBuilder(256 + qUrlParamListStr.length()
+                + qHeaderListStr.length()).append(Q_SIGN_ALGORITHM_KEY).append("=")
                 .append(Q_SIGN_ALGORITHM_VALUE).append("&").append(Q_AK).append("=")
                 .append(cred.getCOSAccessKeyId()).append("&").append(Q_SIGN_TIME).append("=")
-                .append(qSignTimeStr).append("&").append(Q_KEY_TIME).append("=").append(qKeyTimeStr)
-                .append("&").append(Q_HEADER_LIST).append("=").append(qHeaderListStr).append("&")
-                .append(Q_URL_PARAM_LIST).append("=").append(qUrlParamListStr).append("&")
-                .append(Q_SIGNATURE).append("=").append(signature).toString();
+                .append(qSignTimeStr).append("&").append(Q_KEY_TIME).append("=")
+                .append(signKey.keyTime).append("&").append(Q_HEADER_LIST).append("=")
+                .append(qHeaderListStr).append("&").append(Q_URL_PARAM_LIST).append("=")
+                .append(qUrlParamListStr).append("&").append(Q_SIGNATURE).append("=")
+                .append(signature).toString();
         return authoriationStr;
     }
 
-    private Map<String, String> buildSignHeaders(Map<String, String> originHeaders) {
-        Map<String, String> signHeaders = new HashMap<>();
+    /**
+     * Returns the sign key for a signature valid from startTime to endTime. The key time is
+     * exactly the sign time: the cached key is only reused for the same window.
+     */
+    private SignKey getSignKey(String secretKey, long startTime, long endTime) {
+        SignKey signKey = cachedSignKey;
+        if (signKey != null && signKey.keyStartTime == startTime
+                && signKey.keyEndTime == endTime && signKey.secretKey.equals(secretKey)) {
+            return signKey;
+        }
+        String keyTime = buildTimeStr(startTime, endTime);
+        signKey = new SignKey(secretKey, startTime, endTime, keyTime,
+                threadLocalHmac.get().hmacHex(secretKey, keyTime));
+        cachedSignKey = signKey;
+        return signKey;
+    }
+
+    private TreeMap<String, String> buildSignHeaders(Map<String, String> originHeaders) {
+        TreeMap<String, String> signHeaders = new TreeMap<>();
         for (Entry<String, String> headerEntry : originHeaders.entrySet()) {
             String key = headerEntry.getKey();
             if (key.equalsIgnoreCase("content-type") || key.equalsIgnoreCase("content-md5")
@@ -128,48 +188,80 @@ public class COSSigner {
         return signHeaders;
     }
 
-    private String buildSignMemberStr(Map<String, String> signHeaders) {
-        StringBuilder strBuilder = new StringBuilder();
-        boolean seenOne = false;
-        for (String key : signHeaders.keySet()) {
-            if (!seenOne) {
-                seenOne = true;
-            } else {
-                strBuilder.append(";");
-            }
-            strBuilder.append(key.toLowerCase());
+    /**
+     * Appends the url encoded key=value pairs of the map to formatStr, and returns the list of
+     * the lower case keys joined by ';'.
+     */
+    private String appendFormatMapStr(StringBuilder formatStr, Map<String, String> kVMap) {
+        if (kVMap.isEmpty()) {
+            return "";
         }
-        return strBuilder.toString();
-    }
-
-    private String formatMapToStr(Map<String, String> kVMap) {
-        StringBuilder strBuilder = new StringBuilder();
+        StringBuilder memberStr = new StringBuilder(16 * kVMap.size());
         boolean seeOne = false;
         for (Entry<String, String> entry : kVMap.entrySet()) {
-            String key = entry.getKey();
+            String lowerKey = entry.getKey().toLowerCase();
             String value = entry.getValue();
-            String lowerKey = key.toLowerCase();
-            String encodeKey = UrlEncoderUtils.encode(lowerKey);
-            String encodedValue = "";
-            if (value != null) {
-                encodedValue = UrlEncoderUtils.encode(value);
-            }
             if (!seeOne) {
                 seeOne = true;
             } else {
-                strBuilder.append("&");
+                formatStr.append("&");
+                memberStr.append(";");
+            }
+            memberStr.append(lowerKey);
+            formatStr.append(UrlEncoderUtils.encode(lowerKey)).append("=");
+            if (value != null) {
+                formatStr.append(UrlEncoderUtils.encode(value));
             }
-            strBuilder.append(encodeKey).append("=").append(encodedValue);
         }
-        return strBuilder.toString();
+        return memberStr.toString();
     }
 
-    private String buildTimeStr(Date expiredTime) {
-        StringBuilder strBuilder = new StringBuilder();
-        long startTime = System.currentTimeMillis() / 1000;
-        long endTime = expiredTime.getTime() / 1000;
-        strBuilder.append(startTime).append(";").append(endTime);
-        return strBuilder.toString();
+    private String buildTimeStr(long startTime, long endTime) {
+        return new StringBuilder(24).append(startTime).append(";").append(endTime).toString();
+    }
+
+    private static final class SignKey {
+        private final String secretKey;
+        private final long keyStartTime;
+        private final long keyEndTime;
+        private final String keyTime;
+        private final String signKey;
+
+        SignKey(String secretKey, long keyStartTime, long keyEndTime, String keyTime,
+                String signKey) {
+            this.secretKey = secretKey;
+            this.keyStartTime = keyStartTime;
+            this.keyEndTime = keyEndTime;
+            this.keyTime = keyTime;
+            this.signKey = signKey;
+        }
     }
 
+    /**
+     * Per thread HMAC-SHA1 engine, only re-initialized when the key changes.
+     */
+    private static final class HmacSha1 {
+        private final Mac mac;
+        private String currentKey;
+
+        HmacSha1() {
+            try {
+                this.mac = Mac.getInstance(HMAC_SHA1);
+            } catch (NoSuchAlgorithmException e) {
+                throw new CosClientException("HmacSHA1 is not supported", e);
+            }
+        }
+
+        String hmacHex(String key, String data) {
+            if (!key.equals(currentKey)) {
+                try {
+                    mac.init(new SecretKeySpec(key.getBytes(UTF8), HMAC_SHA1));
+                } catch (InvalidKeyException e) {
+                    throw new CosClientException("init HmacSHA1 failed", e);
+                }
+                currentKey = key;
+            }
+            return Hex.encodeHexString(mac.doFinal(data.getBytes(UTF8)));
+        }
+    }
 }
@@ -0,0 +1,340 @@
+package com.qcloud.cos.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.ObjectMetadata;
+
+/**
+ * Client side cache of the object metadata returned by HEAD requests, set with
+ * {@link com.qcloud.cos.ClientConfig#setObjectMetadataCache(ObjectMetadataCache)}.
+ * <p>
+ * {@link com.qcloud.cos.COSClient#getObjectMetadata(com.qcloud.cos.model.GetObjectMetadataRequest)}
+ * and {@link com.qcloud.cos.COSClient#doesObjectExist(String, String)} are then answered from the
+ * cache for up to the TTL, per bucket, key and version id. A 404 is cached too, for the negative
+ * TTL. The entries of a key are invalidated when a client using this cache puts, copies to,
+ * deletes or completes a multipart upload on that key; changes made by other clients are only
+ * seen once the entries expire. Requests with SSE-C keys are never cached, neither are the
+ * asynchronous HEAD requests of {@link com.qcloud.cos.COSAsyncClient}.
+ * <p>
+ * The cache holds at most {@code maxEntries} keys, evicting the least recently used ones. It is
+ * split into segments locked independently, so that the eviction order is only approximately
+ * LRU across the whole cache. An invalidated key keeps its slot until evicted, remembering when
+ * it was invalidated so that a HEAD response sent before is not cached; invalidating a key does
+ * not affect the responses cached for the other keys.
+ */
+public class ObjectMetadataCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Segment[] segments;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong negativeHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * @param maxEntries the max number of keys cached, 1 at least.
+     * @param ttlMillis how long the metadata of an object is cached, 0 to disable caching it.
+     * @param negativeTtlMillis how long a 404 is cached, 0 to disable negative caching.
+     */
+    public ObjectMetadataCache(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException(
+                    "maxEntries must be greater than 0, got " + maxEntries);
+        }
+        if (ttlMillis < 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("ttlMillis and negativeTtlMillis must not be "
+                    + "negative, got " + ttlMillis + " and " + negativeTtlMillis);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        int segmentCount = Math.min(SEGMENT_COUNT, maxEntries);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            // 各段容量之和等于maxEntries
+            int capacity = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Same as {@link #ObjectMetadataCache(int, long, long)} with a negative TTL equal to the TTL.
+     */
+    public ObjectMetadataCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, ttlMillis);
+    }
+
+    /**
+     * Returns a copy of the cached metadata of the object, or null if it is not cached or
+     * expired.
+     *
+     * @throws CosServiceException with the status code of the cached response if a 404 is
+     *         cached for the object.
+     */
+    public ObjectMetadata get(String bucketName, String key, String versionId)
+            throws CosServiceException {
+        String cacheKey = cacheKeyOf(bucketName, key);
+        CachedResponse cached = segmentOf(cacheKey).get(cacheKey, versionKeyOf(versionId),
+                System.nanoTime());
+        if (cached == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        if (cached.metadata == null) {
+            negativeHitCount.incrementAndGet();
+            throw cached.newNotFoundException();
+        }
+        return cached.metadata.clone();
+    }
+
+    /**
+     * Caches the metadata returned by a HEAD request sent at {@code requestStartNanos}, as given
+     * by {@link System#nanoTime()}. Nothing is cached if the key was invalidated since the
+     * request was sent, as the response may predate the change.
+     */
+    public void put(String bucketName, String key, String versionId, ObjectMetadata metadata,
+            long requestStartNanos) {
+        if (ttlNanos > 0) {
+            putResponse(bucketName, key, versionId,
+                    new CachedResponse(metadata.clone(), null, requestStartNanos + ttlNanos),
+                    requestStartNanos);
+        }
+    }
+
+    /**
+     * Caches the 404 returned by a HEAD request sent at {@code requestStartNanos}, see
+     * {@link #put(String, String, String, ObjectMetadata, long)}.
+     */
+    public void putNotFound(String bucketName, String key, String versionId,
+            CosServiceException notFound, long requestStartNanos) {
+        if (negativeTtlNanos > 0) {
+            putResponse(bucketName, key, versionId,
+                    new CachedResponse(null, notFound, requestStartNanos + negativeTtlNanos),
+                    requestStartNanos);
+        }
+    }
+
+    private void putResponse(String bucketName, String key, String versionId,
+            CachedResponse cached, long requestStartNanos) {
+        String cacheKey = cacheKeyOf(bucketName, key);
+        segmentOf(cacheKey).put(cacheKey, versionKeyOf(versionId), cached, requestStartNanos);
+    }
+
+    /**
+     * Removes the cached metadata of all the versions of the object.
+     */
+    public void invalidate(String bucketName, String key) {
+        String cacheKey = cacheKeyOf(bucketName, key);
+        segmentOf(cacheKey).invalidate(cacheKey);
+        invalidationCount.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of keys cached, expired entries included.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache, cached 404s included.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups answered with a cached 404.
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount.get();
+    }
+
+    /**
+     * @return the number of lookups which found no entry, or an expired one.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of keys evicted to keep the cache within its max number of entries.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of invalidations, each write made through the client counting once.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{size: %d, hits: %d, negativeHits: %d, misses: %d, evictions: %d, "
+                + "invalidations: %d}", size(), getHitCount(), getNegativeHitCount(),
+                getMissCount(), getEvictionCount(), getInvalidationCount());
+    }
+
+    private static String cacheKeyOf(String bucketName, String key) {
+        return bucketName + '\n' + key;
+    }
+
+    private static String versionKeyOf(String versionId) {
+        return versionId == null ? "" : versionId;
+    }
+
+    private Segment segmentOf(String cacheKey) {
+        int hash = cacheKey.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static final class CachedResponse {
+        // 为null时表示缓存的是404
+        private final ObjectMetadata metadata;
+        private final CosServiceException notFound;
+        private final long expireNanos;
+
+        CachedResponse(ObjectMetadata metadata, CosServiceException notFound, long expireNanos) {
+            this.metadata = metadata;
+            this.notFound = notFound;
+            this.expireNanos = expireNanos;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return nowNanos - expireNanos >= 0;
+        }
+
+        // 每次命中都抛出新的异常, 避免多个线程共享同一个异常对象
+        CosServiceException newNotFoundException() {
+            CosServiceException cse = new CosServiceException(notFound.getErrorMessage());
+            cse.setStatusCode(notFound.getStatusCode());
+            cse.setErrorCode(notFound.getErrorCode());
+            cse.setErrorType(notFound.getErrorType());
+            cse.setRequestId(notFound.getRequestId());
+            return cse;
+        }
+    }
+
+    // 一个key的缓存项, 同一个key的各个版本存在一起以便一并失效
+    private static final class KeyEntry {
+        private final Map<String, CachedResponse> versions =
+                new HashMap<String, CachedResponse>(2);
+        // 这个key最近一次失效的时间, 早于它发出的HEAD请求的结果不再缓存.
+        // 失效后即使没有版本也保留这一项作为墓碑, 直至被淘汰
+        private long invalidationNanos;
+
+        KeyEntry(long invalidationNanos) {
+            this.invalidationNanos = invalidationNanos;
+        }
+    }
+
+    // 一段LRU缓存, 以bucket与key为单位淘汰
+    private final class Segment {
+        private final LinkedHashMap<String, KeyEntry> entries;
+        // 被淘汰的墓碑中最近的失效时间, 用作新缓存项的失效时间,
+        // 避免淘汰墓碑后早于失效发出的HEAD请求的结果又被缓存
+        private long evictedInvalidationNanos;
+
+        Segment(final int capacity) {
+            this.entries = new LinkedHashMap<String, KeyEntry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, KeyEntry> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    KeyEntry evicted = eldest.getValue();
+                    if (evicted.invalidationNanos - evictedInvalidationNanos > 0) {
+                        evictedInvalidationNanos = evicted.invalidationNanos;
+                    }
+                    if (!evicted.versions.isEmpty()) {
+                        evictionCount.incrementAndGet();
+                    }
+                    return true;
+                }
+            };
+            this.evictedInvalidationNanos = System.nanoTime();
+        }
+
+        synchronized CachedResponse get(String cacheKey, String versionKey, long nowNanos) {
+            KeyEntry entry = entries.get(cacheKey);
+            if (entry == null) {
+                return null;
+            }
+            CachedResponse cached = entry.versions.get(versionKey);
+            if (cached != null && cached.isExpired(nowNanos)) {
+                // 保留空的缓存项以记住这个key的失效时间
+                entry.versions.remove(versionKey);
+                return null;
+            }
+            return cached;
+        }
+
+        synchronized void put(String cacheKey, String versionKey, CachedResponse cached,
+                long requestStartNanos) {
+            KeyEntry entry = entries.get(cacheKey);
+            long invalidationNanos =
+                    entry == null ? evictedInvalidationNanos : entry.invalidationNanos;
+            if (requestStartNanos - invalidationNanos <= 0) {
+                return;
+            }
+            if (entry == null) {
+                entry = new KeyEntry(invalidationNanos);
+                entries.put(cacheKey, entry);
+            }
+            entry.versions.put(versionKey, cached);
+        }
+
+        synchronized void invalidate(String cacheKey) {
+            long nowNanos = System.nanoTime();
+            KeyEntry entry = entries.get(cacheKey);
+            if (entry == null) {
+                entries.put(cacheKey, new KeyEntry(nowNanos));
+            } else {
+                entry.versions.clear();
+                entry.invalidationNanos = nowNanos;
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            evictedInvalidationNanos = System.nanoTime();
+        }
+
+        synchronized int size() {
+            int size = 0;
+            for (KeyEntry entry : entries.values()) {
+                if (!entry.versions.isEmpty()) {
+                    ++size;
+                }
+            }
+            return size;
+        }
+    }
+}
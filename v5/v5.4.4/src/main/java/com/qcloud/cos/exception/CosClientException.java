@@ -26,6 +26,11 @@ package com.qcloud.cos.exception;
 public class CosClientException extends RuntimeException {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The number of retries the client attempted before giving up with this exception.
+     */
+    private int retriesAttempted = 0;
+
     /**
      * Creates a new CosClientException with the specified message, and root
      * cause.
@@ -60,4 +65,16 @@ public class CosClientException extends RuntimeException {
     public boolean isRetryable() {
         return true;
     }
+
+    /**
+     * Returns the number of retries the client attempted before this exception was thrown, 0 if
+     * the request failed at the first attempt.
+     */
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
+    public void setRetriesAttempted(int retriesAttempted) {
+        this.retriesAttempted = retriesAttempted;
+    }
 }
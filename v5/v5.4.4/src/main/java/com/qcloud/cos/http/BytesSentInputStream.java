@@ -0,0 +1,39 @@
+package com.qcloud.cos.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.qcloud.cos.internal.SdkFilterInputStream;
+import com.qcloud.cos.metrics.RequestMetrics;
+
+/**
+ * Counts the bytes of the request content read by the http client as they are sent, so that a
+ * chunked content, an attempt cut short or a content sent again by a retry is counted as sent
+ * rather than as its Content-Length.
+ */
+class BytesSentInputStream extends SdkFilterInputStream {
+    private final RequestMetrics metrics;
+
+    BytesSentInputStream(InputStream in, RequestMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int data = super.read();
+        if (data >= 0) {
+            metrics.addBytesSent(1);
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int readLen = super.read(b, off, len);
+        if (readLen > 0) {
+            metrics.addBytesSent(readLen);
+        }
+        return readLen;
+    }
+}
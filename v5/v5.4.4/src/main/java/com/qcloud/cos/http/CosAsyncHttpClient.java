@@ -0,0 +1,31 @@
+package com.qcloud.cos.http;
+
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.FutureCallback;
+
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.internal.CosServiceResponse;
+
+/**
+ * Non-blocking variant of {@link CosHttpClient}. The request is handed to an event driven
+ * http engine and the calling thread returns immediately. The result (or the
+ * {@link com.qcloud.cos.exception.CosClientException} /
+ * {@link com.qcloud.cos.exception.CosServiceException} that the blocking client would have thrown)
+ * is delivered through the returned future and the optional callback.
+ */
+public interface CosAsyncHttpClient {
+    /**
+     * Sends the already signed request asynchronously.
+     *
+     * @param request the signed request to send.
+     * @param responseHandler the handler used to convert a successful response, the same one used
+     *        by the blocking {@link CosHttpClient}.
+     * @param callback optional callback notified on completion, may be null.
+     * @return a future holding the handled result.
+     */
+    public <X, Y extends CosServiceRequest> Future<X> exeuteAsync(CosHttpRequest<Y> request,
+            HttpResponseHandler<CosServiceResponse<X>> responseHandler, FutureCallback<X> callback);
+
+    public void shutdown();
+}
@@ -6,6 +6,7 @@ import java.util.Map;
 
 import com.qcloud.cos.event.ProgressListener;
 import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.metrics.RequestMetrics;
 
 public class CosHttpRequest<T extends CosServiceRequest> {
 
@@ -32,6 +33,9 @@ public class CosHttpRequest<T extends CosServiceRequest> {
     
     private ProgressListener progressListener;
 
+    /** Timing record of this request, null when no metric collector is configured. */
+    private RequestMetrics requestMetrics;
+
     public CosHttpRequest(T originRequest) {
         this.originRequest = originRequest;
     }
@@ -119,6 +123,14 @@ public class CosHttpRequest<T extends CosServiceRequest> {
         this.progressListener = progressListener;
     }
 
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    public void setRequestMetrics(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
     @Override
     public String toString() {
         StringBuilder strBuilder = new StringBuilder();
@@ -16,6 +16,7 @@ public class CosHttpResponse {
     private int statusCode;
     private InputStream content;
     private Map<String, String> headers = new HashMap<String, String>();
+    private int retriesAttempted;
 
     public CosHttpResponse(CosHttpRequest<?> request, HttpRequestBase httpRequest) {
         super();
@@ -67,4 +68,16 @@ public class CosHttpResponse {
         return httpRequest;
     }
 
+    /**
+     * Returns the number of retries the client attempted before this response was received, 0 if
+     * it is the response to the first attempt.
+     */
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
+    public void setRetriesAttempted(int retriesAttempted) {
+        this.retriesAttempted = retriesAttempted;
+    }
+
 }
@@ -0,0 +1,309 @@
+package com.qcloud.cos.http;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.event.ProgressListener;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.internal.CosErrorResponseHandler;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.internal.CosServiceResponse;
+
+/**
+ * {@link CosAsyncHttpClient} backed by the Apache HttpAsyncClient NIO engine. A handful of io
+ * reactor threads (see {@link ClientConfig#getAsyncIoThreadCount()}) drive all in-flight requests,
+ * so no thread is parked per request.
+ * <p>
+ * The response body is buffered by the engine before the response handler runs, so the content
+ * of a {@link com.qcloud.cos.model.COSObject} returned by this client is already in memory. Use
+ * ranged gets or the blocking client for very large objects.
+ */
+public class DefaultCosAsyncHttpClient implements CosAsyncHttpClient {
+
+    private static final int MONITOR_INTERVAL_MS = 2000;
+    private static final int IDLE_ALIVE_MS = 5000;
+
+    private ClientConfig clientConfig;
+    private RequestConfig requestConfig;
+    private CloseableHttpAsyncClient httpAsyncClient;
+    private PoolingNHttpClientConnectionManager connectionManager;
+    // 用于重试的退避等待以及空闲连接的清理, 不占用io线程
+    private ScheduledExecutorService scheduler;
+
+    private CosErrorResponseHandler errorResponseHandler;
+    private RetryHandler retryHandler;
+    private static final Logger log = LoggerFactory.getLogger(DefaultCosAsyncHttpClient.class);
+
+    public DefaultCosAsyncHttpClient(ClientConfig clientConfig) {
+        super();
+        this.errorResponseHandler = new CosErrorResponseHandler();
+        this.clientConfig = clientConfig;
+        this.retryHandler = new RetryHandler(clientConfig);
+        initHttpClient();
+    }
+
+    private void initHttpClient() {
+        IOReactorConfig ioReactorConfig =
+                IOReactorConfig.custom().setIoThreadCount(this.clientConfig.getAsyncIoThreadCount())
+                        .setConnectTimeout(this.clientConfig.getConnectionTimeout())
+                        .setSoTimeout(this.clientConfig.getSocketTimeout()).build();
+        ConnectingIOReactor ioReactor = null;
+        try {
+            ioReactor = new DefaultConnectingIOReactor(ioReactorConfig);
+        } catch (IOReactorException e) {
+            throw new CosClientException("create async io reactor failed", e);
+        }
+        this.connectionManager = new PoolingNHttpClientConnectionManager(ioReactor);
+        this.connectionManager.setMaxTotal(this.clientConfig.getMaxConnectionsCount());
+        this.connectionManager.setDefaultMaxPerRoute(this.clientConfig.getMaxConnectionsCount());
+        HttpAsyncClientBuilder httpClientBuilder =
+                HttpAsyncClients.custom().setConnectionManager(connectionManager);
+        if (this.clientConfig.getHttpProxyIp() != null
+                && this.clientConfig.getHttpProxyPort() != 0) {
+            HttpHost proxy = new HttpHost(this.clientConfig.getHttpProxyIp(),
+                    this.clientConfig.getHttpProxyPort());
+            httpClientBuilder.setProxy(proxy);
+        }
+        this.httpAsyncClient = httpClientBuilder.build();
+        this.requestConfig =
+                RequestConfig.custom()
+                        .setConnectionRequestTimeout(
+                                this.clientConfig.getConnectionRequestTimeout())
+                        .setConnectTimeout(this.clientConfig.getConnectionTimeout())
+                        .setSocketTimeout(this.clientConfig.getSocketTimeout()).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cos-async-http-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // 关闭无效的连接以及空闲时间超过IDLE_ALIVE_MS的连接
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(IDLE_ALIVE_MS, TimeUnit.MILLISECONDS);
+            }
+        }, MONITOR_INTERVAL_MS, MONITOR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        this.httpAsyncClient.start();
+    }
+
+    @Override
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+        try {
+            this.httpAsyncClient.close();
+        } catch (IOException e) {
+            log.warn("close async http client failed", e);
+        }
+    }
+
+    @Override
+    public <X, Y extends CosServiceRequest> Future<X> exeuteAsync(CosHttpRequest<Y> request,
+            HttpResponseHandler<CosServiceResponse<X>> responseHandler,
+            FutureCallback<X> callback) {
+        DefaultCosHttpClient.bufferAndResetAbleContent(request);
+
+        // Always mark the input stream before execution.
+        ProgressListener progressListener = request.getProgressListener();
+        final InputStream originalContent = request.getContent();
+        if (originalContent != null) {
+            request.setContent(
+                    DefaultCosHttpClient.monitorStreamProgress(progressListener, originalContent));
+        }
+        if (originalContent != null && originalContent.markSupported()
+                && !(originalContent instanceof BufferedInputStream)) {
+            final int readLimit = clientConfig.getReadLimit();
+            originalContent.mark(readLimit);
+        }
+
+        CosAsyncFuture<X> resultFuture = new CosAsyncFuture<X>(callback);
+        new AsyncExecution<X, Y>(request, originalContent, responseHandler, resultFuture)
+                .execute();
+        return resultFuture;
+    }
+
+    /**
+     * One logical request, possibly spanning several attempts. Every attempt is started either by
+     * the caller thread or by the scheduler after a backoff, and finished on an io reactor thread.
+     */
+    private class AsyncExecution<X, Y extends CosServiceRequest>
+            implements FutureCallback<HttpResponse>, Runnable {
+        private final CosHttpRequest<Y> request;
+        private final InputStream originalContent;
+        private final HttpResponseHandler<CosServiceResponse<X>> responseHandler;
+        private final CosAsyncFuture<X> resultFuture;
+        private int retryIndex = 0;
+        private HttpRequestBase httpRequest;
+        // 上一次请求的失败, 重试时无法恢复流则报告这个失败
+        private CosClientException lastException;
+
+        AsyncExecution(CosHttpRequest<Y> request, InputStream originalContent,
+                HttpResponseHandler<CosServiceResponse<X>> responseHandler,
+                CosAsyncFuture<X> resultFuture) {
+            this.request = request;
+            this.originalContent = originalContent;
+            this.responseHandler = responseHandler;
+            this.resultFuture = resultFuture;
+        }
+
+        void execute() {
+            if (resultFuture.isCancelled()) {
+                return;
+            }
+            try {
+                if (originalContent instanceof BufferedInputStream
+                        && originalContent.markSupported()) {
+                    // Mark everytime for BufferedInputStream, since the marker could have been
+                    // invalidated
+                    final int readLimit = clientConfig.getReadLimit();
+                    originalContent.mark(readLimit);
+                }
+                // 如果是重试的则恢复流
+                if (retryIndex != 0 && originalContent != null) {
+                    DefaultCosHttpClient.resetContent(originalContent, retryIndex,
+                            lastException);
+                }
+                httpRequest = DefaultCosHttpClient.buildHttpRequest(request, requestConfig);
+            } catch (CosClientException cce) {
+                resultFuture.failed(cce);
+                return;
+            }
+            resultFuture.setHttpFuture(
+                    httpAsyncClient.execute(httpRequest, HttpClientContext.create(), this));
+        }
+
+        @Override
+        public void run() {
+            execute();
+        }
+
+        @Override
+        public void completed(HttpResponse httpResponse) {
+            if (!DefaultCosHttpClient.isRequestSuccessful(httpResponse)) {
+                CosClientException exception = null;
+                try {
+                    exception = DefaultCosHttpClient.handlerErrorMessage(errorResponseHandler,
+                            request, httpRequest, httpResponse);
+                } catch (IOException ioe) {
+                    log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+                    exception = new CosServiceException(
+                            "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+                    exception.setRetriesAttempted(retryIndex);
+                    resultFuture.failed(exception);
+                    return;
+                } catch (CosClientException cce) {
+                    exception = cce;
+                }
+                retryOrFail(exception);
+                return;
+            }
+            retryHandler.onSuccess(retryIndex);
+            try {
+                CosHttpResponse cosHttpResponse =
+                        DefaultCosHttpClient.createResponse(httpRequest, request, httpResponse);
+                cosHttpResponse.setRetriesAttempted(retryIndex);
+                resultFuture.completed(responseHandler.handle(cosHttpResponse).getResult());
+            } catch (Exception e) {
+                log.info("Unable to execute Response handle: " + e.getMessage(), e);
+                resultFuture.failed(new CosClientException(
+                        "Unable to execute Response handle: " + e.getMessage(), e));
+            }
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            String errMsg = String.format(
+                    "httpAsyncClient execute occur a excepiton. httpRequest: %s, excep: %s",
+                    request.toString(), ex);
+            retryOrFail(new CosClientException(errMsg, ex));
+        }
+
+        private void retryOrFail(CosClientException exception) {
+            if (!retryHandler.shouldRetry(request, originalContent, exception, retryIndex)) {
+                if (!(exception instanceof CosServiceException)) {
+                    log.error(exception.getMessage());
+                }
+                exception.setRetriesAttempted(retryIndex);
+                resultFuture.failed(exception);
+                return;
+            }
+            long delayMs = retryHandler.delayBeforeNextRetry(request, exception, retryIndex);
+            lastException = exception;
+            ++retryIndex;
+            String warnMsg = String.format(
+                    "httpAsyncClient execute failed, ready to retry[%d/%d] after %d ms. httpRequest: %s, excep: %s",
+                    retryIndex, retryHandler.getMaxErrorRetry(), delayMs, request.toString(),
+                    exception);
+            log.warn(warnMsg);
+            // 按照退避策略延迟重发, 由调度线程执行而不阻塞io线程
+            try {
+                scheduler.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ree) {
+                resultFuture.failed(new CosClientException("async http client has been shutdown"));
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            resultFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Future handed back to the caller. Cancelling it also cancels the in-flight http exchange.
+     */
+    private static class CosAsyncFuture<X> extends BasicFuture<X> {
+        private volatile Future<HttpResponse> httpFuture;
+
+        CosAsyncFuture(FutureCallback<X> callback) {
+            super(callback);
+        }
+
+        void setHttpFuture(Future<HttpResponse> httpFuture) {
+            this.httpFuture = httpFuture;
+            if (isCancelled()) {
+                httpFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<HttpResponse> current = httpFuture;
+            if (cancelled && current != null) {
+                current.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+}
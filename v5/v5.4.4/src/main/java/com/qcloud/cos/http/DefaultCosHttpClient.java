@@ -10,7 +10,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
@@ -48,6 +47,8 @@ import com.qcloud.cos.internal.CosServiceResponse;
 import com.qcloud.cos.internal.ReleasableInputStream;
 import com.qcloud.cos.internal.ResettableInputStream;
 import com.qcloud.cos.internal.SdkBufferedInputStream;
+import com.qcloud.cos.metrics.RequestMetrics;
+import com.qcloud.cos.metrics.RequestMetrics.Phase;
 import com.qcloud.cos.utils.UrlEncoderUtils;
 
 public class DefaultCosHttpClient implements CosHttpClient {
@@ -59,13 +60,15 @@ public class DefaultCosHttpClient implements CosHttpClient {
     private IdleConnectionMonitorThread idleConnectionMonitor;
 
     private CosErrorResponseHandler errorResponseHandler;
+    private RetryHandler retryHandler;
     private static final Logger log = LoggerFactory.getLogger(DefaultCosHttpClient.class);
 
     public DefaultCosHttpClient(ClientConfig clientConfig) {
         super();
         this.errorResponseHandler = new CosErrorResponseHandler();
         this.clientConfig = clientConfig;
-        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.retryHandler = new RetryHandler(clientConfig);
+        this.connectionManager = new MetricsConnectionManager();
         initHttpClient();
     }
 
@@ -74,7 +77,8 @@ public class DefaultCosHttpClient implements CosHttpClient {
         this.connectionManager.setDefaultMaxPerRoute(this.clientConfig.getMaxConnectionsCount());
         this.connectionManager.setValidateAfterInactivity(1);
         HttpClientBuilder httpClientBuilder =
-                HttpClients.custom().setConnectionManager(connectionManager);
+                HttpClients.custom().setConnectionManager(connectionManager)
+                        .setRequestExecutor(new MetricsHttpRequestExecutor());
         if (this.clientConfig.getHttpProxyIp() != null
                 && this.clientConfig.getHttpProxyPort() != 0) {
             HttpHost proxy = new HttpHost(this.clientConfig.getHttpProxyIp(),
@@ -99,7 +103,7 @@ public class DefaultCosHttpClient implements CosHttpClient {
     }
 
     // 因为Apache HTTP库自带的URL Encode对一些特殊字符如*等不进行转换, 和COS HTTP服务的URL Encode标准不一致
-    private <X extends CosServiceRequest> URI buildUri(CosHttpRequest<X> request) {
+    static <X extends CosServiceRequest> URI buildUri(CosHttpRequest<X> request) {
         StringBuffer urlBuffer = new StringBuffer();
         urlBuffer.append(request.getProtocol().toString()).append("://")
                 .append(request.getEndpoint());
@@ -157,8 +161,8 @@ public class DefaultCosHttpClient implements CosHttpClient {
         }
     }
 
-    private <X extends CosServiceRequest> HttpRequestBase buildHttpRequest(
-            CosHttpRequest<X> request) throws CosClientException {
+    static <X extends CosServiceRequest> HttpRequestBase buildHttpRequest(
+            CosHttpRequest<X> request, RequestConfig requestConfig) throws CosClientException {
         HttpRequestBase httpRequestBase = null;
         HttpMethodName httpMethodName = request.getHttpMethod();
         if (httpMethodName.equals(HttpMethodName.PUT)) {
@@ -215,11 +219,11 @@ public class DefaultCosHttpClient implements CosHttpClient {
                 entityRequestBase.setEntity(reqEntity);
             }
         }
-        httpRequestBase.setConfig(this.requestConfig);
+        httpRequestBase.setConfig(requestConfig);
         return httpRequestBase;
     }
 
-    private boolean isRequestSuccessful(HttpResponse httpResponse) {
+    static boolean isRequestSuccessful(HttpResponse httpResponse) {
         StatusLine statusLine = httpResponse.getStatusLine();
         int statusCode = -1;
         if (statusLine != null) {
@@ -228,7 +232,7 @@ public class DefaultCosHttpClient implements CosHttpClient {
         return statusCode / 100 == HttpStatus.SC_OK / 100;
     }
 
-    private <X extends CosServiceRequest> CosHttpResponse createResponse(
+    static <X extends CosServiceRequest> CosHttpResponse createResponse(
             HttpRequestBase httpRequestBase, CosHttpRequest<X> request,
             org.apache.http.HttpResponse apacheHttpResponse) throws IOException {
         ProgressListener progressListener = request.getProgressListener();
@@ -252,8 +256,9 @@ public class DefaultCosHttpClient implements CosHttpClient {
         return httpResponse;
     }
 
-    private <X extends CosServiceRequest> CosServiceException handlerErrorMessage(
-            CosHttpRequest<X> request, HttpRequestBase httpRequestBase,
+    static <X extends CosServiceRequest> CosServiceException handlerErrorMessage(
+            CosErrorResponseHandler errorResponseHandler, CosHttpRequest<X> request,
+            HttpRequestBase httpRequestBase,
             final org.apache.http.HttpResponse apacheHttpResponse) throws IOException {
         final StatusLine statusLine = apacheHttpResponse.getStatusLine();
         final int statusCode;
@@ -296,7 +301,7 @@ public class DefaultCosHttpClient implements CosHttpClient {
         return exception;
     }
 
-    private <X extends CosServiceRequest> void bufferAndResetAbleContent(
+    static <X extends CosServiceRequest> void bufferAndResetAbleContent(
             CosHttpRequest<X> request) {
         final InputStream origContent = request.getContent();
         if (origContent != null) {
@@ -315,7 +320,7 @@ public class DefaultCosHttpClient implements CosHttpClient {
      * @param content Input stream to monitor progress for
      * @return Wrapped input stream with progress monitoring capabilities.
      */
-    private InputStream monitorStreamProgress(ProgressListener listener, InputStream content) {
+    static InputStream monitorStreamProgress(ProgressListener listener, InputStream content) {
         return ProgressInputStream.inputStreamForRequest(content, listener);
     }
 
@@ -327,7 +332,8 @@ public class DefaultCosHttpClient implements CosHttpClient {
         HttpResponse httpResponse = null;
         HttpRequestBase httpRequest = null;
         int retryIndex = 0;
-        int kMaxRetryCnt = 5;
+        // 未设置耗时统计时为null, 不产生任何额外开销
+        final RequestMetrics metrics = request.getRequestMetrics();
         bufferAndResetAbleContent(request);
 
         // Always mark the input stream before execution.
@@ -335,6 +341,10 @@ public class DefaultCosHttpClient implements CosHttpClient {
         final InputStream originalContent = request.getContent();
         if (originalContent != null) {
             request.setContent(monitorStreamProgress(progressListener, originalContent));
+            if (metrics != null) {
+                // 统计实际发送的字节数, 包括重试时再次发送的内容
+                request.setContent(new BytesSentInputStream(request.getContent(), metrics));
+            }
         }
         if (originalContent != null && originalContent.markSupported() && !(originalContent instanceof BufferedInputStream)) {
             final int readLimit = clientConfig.getReadLimit();
@@ -342,7 +352,10 @@ public class DefaultCosHttpClient implements CosHttpClient {
         }
 
 
-        while (retryIndex < kMaxRetryCnt) {
+        // 上一次请求的失败, 重试时无法恢复流则报告这个失败
+        CosClientException lastException = null;
+        while (true) {
+            CosClientException exception = null;
             try {
                 checkInterrupted();
                 if (originalContent instanceof BufferedInputStream && originalContent.markSupported()) {
@@ -352,50 +365,94 @@ public class DefaultCosHttpClient implements CosHttpClient {
                 }
                 // 如果是重试的则恢复流
                 if (retryIndex != 0 && originalContent != null) {
-                    originalContent.reset();
+                    try {
+                        resetContent(originalContent, retryIndex, lastException);
+                    } catch (CosClientException cce) {
+                        if (metrics != null) {
+                            metrics.setRetriesAttempted(retryIndex - 1);
+                        }
+                        throw cce;
+                    }
                 }
                 HttpContext context = HttpClientContext.create();
-                httpRequest = buildHttpRequest(request);
+                httpRequest = buildHttpRequest(request, this.requestConfig);
+                if (metrics != null) {
+                    MetricsHttpRequestExecutor.startAttempt(context, metrics);
+                }
                 httpResponse = httpClient.execute(httpRequest, context);
-                break;
+                if (metrics != null) {
+                    recordResponseHead(metrics, httpResponse);
+                }
             } catch (IOException e) {
                 httpRequest.abort();
-                ++retryIndex;
-                if (retryIndex >= kMaxRetryCnt) {
-                    String errMsg = String.format(
-                            "httpClient execute occur a IOexcepiton. httpRequest: %s, excep: %s",
-                            request.toString(), e);
-                    log.error(errMsg);
-                    throw new CosClientException(errMsg);
-                } else {
-                    String warnMsg = String.format(
-                            "httpClient execute occur a IOexcepiton, ready to retry[%d/%d]. httpRequest: %s, excep: %s",
-                            retryIndex, kMaxRetryCnt, request.toString(), e);
-                    log.warn(warnMsg);
-                    // 加入sleep 避免雪崩
-                    int threadSleepMs = ThreadLocalRandom.current().nextInt(10, 100);
-                    try {
-                        Thread.sleep(threadSleepMs);
-                    } catch (InterruptedException e1) {
-                        throw new CosClientException("operation has been interrupted!");
+                String errMsg = String.format(
+                        "httpClient execute occur a IOexcepiton. httpRequest: %s, excep: %s",
+                        request.toString(), e);
+                exception = new CosClientException(errMsg, e);
+            }
+            if (exception == null) {
+                if (isRequestSuccessful(httpResponse)) {
+                    retryHandler.onSuccess(retryIndex);
+                    if (metrics != null) {
+                        metrics.setRetriesAttempted(retryIndex);
+                    }
+                    break;
+                }
+                try {
+                    exception = handlerErrorMessage(errorResponseHandler, request, httpRequest,
+                            httpResponse);
+                } catch (IOException ioe) {
+                    log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+                    CosServiceException cse = new CosServiceException(
+                            "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+                    cse.setRetriesAttempted(retryIndex);
+                    if (metrics != null) {
+                        metrics.setRetriesAttempted(retryIndex);
                     }
+                    throw cse;
+                } finally {
+                    httpRequest.abort();
                 }
             }
-        }
-        if (!isRequestSuccessful(httpResponse)) {
+            if (!retryHandler.shouldRetry(request, originalContent, exception, retryIndex)) {
+                if (!(exception instanceof CosServiceException)) {
+                    log.error(exception.getMessage());
+                }
+                exception.setRetriesAttempted(retryIndex);
+                if (metrics != null) {
+                    metrics.setRetriesAttempted(retryIndex);
+                }
+                throw exception;
+            }
+            // 按照退避策略sleep, 避免雪崩
+            long delayMs = retryHandler.delayBeforeNextRetry(request, exception, retryIndex);
+            lastException = exception;
+            ++retryIndex;
+            String warnMsg = String.format(
+                    "httpClient execute failed, ready to retry[%d/%d] after %d ms. httpRequest: %s, excep: %s",
+                    retryIndex, retryHandler.getMaxErrorRetry(), delayMs, request.toString(),
+                    exception);
+            log.warn(warnMsg);
             try {
-                throw handlerErrorMessage(request, httpRequest, httpResponse);
-            } catch (IOException ioe) {
-                log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                CosServiceException cse = new CosServiceException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                throw cse;
-            } finally {
-                httpRequest.abort();
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e1) {
+                throw new CosClientException("operation has been interrupted!");
             }
         }
+        MetricsInputStream metricsContent = null;
+        long handleStartNanos = 0;
         try {
             CosHttpResponse cosHttpResponse = createResponse(httpRequest, request, httpResponse);
+            cosHttpResponse.setRetriesAttempted(retryIndex);
+            if (metrics != null) {
+                handleStartNanos = System.nanoTime();
+                // 流式返回给调用方的内容(如getObject)不在此处读取, 无需统计
+                if (cosHttpResponse.getContent() != null
+                        && !responseHandler.needsConnectionLeftOpen()) {
+                    metricsContent = new MetricsInputStream(cosHttpResponse.getContent());
+                    cosHttpResponse.setContent(metricsContent);
+                }
+            }
             return responseHandler.handle(cosHttpResponse).getResult();
         } catch (Exception e) {
             log.info("Unable to execute Response handle: " + e.getMessage(), e);
@@ -403,19 +460,43 @@ public class DefaultCosHttpClient implements CosHttpClient {
                     "Unable to execute Response handle: " + e.getMessage(), e);
             throw cce;
         } finally {
+            if (metrics != null) {
+                recordResponseHandling(metrics, metricsContent,
+                        System.nanoTime() - handleStartNanos);
+            }
             if (!responseHandler.needsConnectionLeftOpen()) {
                 httpRequest.releaseConnection();
             }
         }
     }
 
+    private static void recordResponseHead(RequestMetrics metrics, HttpResponse httpResponse) {
+        metrics.setStatusCode(httpResponse.getStatusLine().getStatusCode());
+        Header requestIdHeader = httpResponse.getFirstHeader(Headers.REQUEST_ID);
+        if (requestIdHeader != null) {
+            metrics.setRequestId(requestIdHeader.getValue());
+        }
+    }
+
+    // 响应处理的耗时中, 读取body的部分计为接收耗时, 其余计为解析耗时
+    private static void recordResponseHandling(RequestMetrics metrics,
+            MetricsInputStream metricsContent, long handleNanos) {
+        long receiveNanos = 0;
+        if (metricsContent != null) {
+            receiveNanos = metricsContent.getReadNanos();
+            metrics.addBytesReceived(metricsContent.getBytesRead());
+        }
+        metrics.addPhaseNanos(Phase.RECEIVE, receiveNanos);
+        metrics.addPhaseNanos(Phase.UNMARSHAL, Math.max(0, handleNanos - receiveNanos));
+    }
+
     /**
      * Make input stream resettable if possible.
      *
      * @param content Input stream to make resettable
      * @return ResettableInputStream if possible otherwise original input stream.
      */
-    private InputStream makeResettable(InputStream content) {
+    private static InputStream makeResettable(InputStream content) {
         if (!content.markSupported()) {
             // try to wrap the content input stream to become
             // mark-and-resettable for signing and retry purposes.
@@ -440,13 +521,33 @@ public class DefaultCosHttpClient implements CosHttpClient {
      * @param content Input stream to buffer
      * @return SdkBufferedInputStream if possible, otherwise original input stream.
      */
-    private InputStream buffer(InputStream content) {
+    private static InputStream buffer(InputStream content) {
         if (!content.markSupported()) {
             content = new SdkBufferedInputStream(content);
         }
         return content;
     }
 
+    /**
+     * Reset the request content before a retry. A content which can't be reset, such as a stream
+     * read past its read limit, can't be retried, so the failure which caused the retry is
+     * reported as is, with the reset error added as suppressed.
+     *
+     * @param lastException the failure of the previous attempt.
+     */
+    static void resetContent(InputStream originalContent, int retryIndex,
+            CosClientException lastException) {
+        try {
+            originalContent.reset();
+        } catch (IOException e) {
+            log.warn("Unable to reset the request content for the retry, give up retrying: "
+                    + e.getMessage());
+            lastException.addSuppressed(e);
+            lastException.setRetriesAttempted(retryIndex - 1);
+            throw lastException;
+        }
+    }
+
     // check interrupted
     private void checkInterrupted() throws CosClientException {
         if (Thread.interrupted()) {
@@ -0,0 +1,37 @@
+package com.qcloud.cos.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Pooling connection manager reporting the time spent opening new connections (tcp connect,
+ * tls handshake) to the {@link com.qcloud.cos.metrics.RequestMetrics} bound to the context.
+ */
+class MetricsConnectionManager extends PoolingHttpClientConnectionManager {
+
+    @Override
+    public void connect(HttpClientConnection managedConn, HttpRoute route, int connectTimeout,
+            HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.connect(managedConn, route, connectTimeout, context);
+        } finally {
+            MetricsHttpRequestExecutor.addConnectNanos(context, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void upgrade(HttpClientConnection managedConn, HttpRoute route, HttpContext context)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.upgrade(managedConn, route, context);
+        } finally {
+            MetricsHttpRequestExecutor.addConnectNanos(context, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.qcloud.cos.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import com.qcloud.cos.metrics.RequestMetrics;
+import com.qcloud.cos.metrics.RequestMetrics.Phase;
+
+/**
+ * Request executor timing the send and time-to-first-byte phases of the requests whose context
+ * carries a {@link RequestMetrics}. The requests without one go straight to the default
+ * implementation.
+ */
+class MetricsHttpRequestExecutor extends HttpRequestExecutor {
+
+    private static final String METRICS_ATTRIBUTE = "cos.request.metrics";
+    private static final String ATTEMPT_START_ATTRIBUTE = "cos.request.attempt-start";
+    private static final String CONNECT_NANOS_ATTRIBUTE = "cos.request.connect-nanos";
+
+    /**
+     * Binds the metrics to the context of one attempt, must be called right before the attempt
+     * is handed to the http client.
+     */
+    static void startAttempt(HttpContext context, RequestMetrics metrics) {
+        context.setAttribute(METRICS_ATTRIBUTE, metrics);
+        context.setAttribute(ATTEMPT_START_ATTRIBUTE, System.nanoTime());
+    }
+
+    static RequestMetrics getMetrics(HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        return (RequestMetrics) context.getAttribute(METRICS_ATTRIBUTE);
+    }
+
+    static void addConnectNanos(HttpContext context, long nanos) {
+        RequestMetrics metrics = getMetrics(context);
+        if (metrics == null) {
+            return;
+        }
+        metrics.addPhaseNanos(Phase.CONNECT, nanos);
+        Long connectNanos = (Long) context.getAttribute(CONNECT_NANOS_ATTRIBUTE);
+        context.setAttribute(CONNECT_NANOS_ATTRIBUTE,
+                connectNanos == null ? nanos : connectNanos + nanos);
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection conn,
+            HttpContext context) throws IOException, HttpException {
+        RequestMetrics metrics = getMetrics(context);
+        if (metrics != null) {
+            // 从开始执行到连接就绪的时间, 扣除建连耗时即为从连接池获取连接的耗时
+            Long attemptStart = (Long) context.getAttribute(ATTEMPT_START_ATTRIBUTE);
+            Long connectNanos = (Long) context.getAttribute(CONNECT_NANOS_ATTRIBUTE);
+            long leaseNanos = System.nanoTime() - attemptStart
+                    - (connectNanos == null ? 0 : connectNanos);
+            metrics.addPhaseNanos(Phase.CONNECTION_LEASE, Math.max(0, leaseNanos));
+        }
+        return super.execute(request, conn, context);
+    }
+
+    @Override
+    protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn,
+            HttpContext context) throws IOException, HttpException {
+        RequestMetrics metrics = getMetrics(context);
+        if (metrics == null) {
+            return super.doSendRequest(request, conn, context);
+        }
+        long start = System.nanoTime();
+        try {
+            return super.doSendRequest(request, conn, context);
+        } finally {
+            metrics.addPhaseNanos(Phase.SEND, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn,
+            HttpContext context) throws HttpException, IOException {
+        RequestMetrics metrics = getMetrics(context);
+        if (metrics == null) {
+            return super.doReceiveResponse(request, conn, context);
+        }
+        long start = System.nanoTime();
+        try {
+            return super.doReceiveResponse(request, conn, context);
+        } finally {
+            metrics.addPhaseNanos(Phase.TIME_TO_FIRST_BYTE, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.qcloud.cos.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.qcloud.cos.internal.SdkFilterInputStream;
+
+/**
+ * Counts the bytes read from the response content and the time spent reading them, so that the
+ * time spent in the response handler can be split between receiving and unmarshalling.
+ */
+class MetricsInputStream extends SdkFilterInputStream {
+    private long readNanos;
+    private long bytesRead;
+
+    MetricsInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int data = super.read();
+        readNanos += System.nanoTime() - start;
+        if (data >= 0) {
+            ++bytesRead;
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int readLen = super.read(b, off, len);
+        readNanos += System.nanoTime() - start;
+        if (readLen > 0) {
+            bytesRead += readLen;
+        }
+        return readLen;
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+}
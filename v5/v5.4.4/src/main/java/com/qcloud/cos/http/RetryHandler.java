@@ -0,0 +1,68 @@
+package com.qcloud.cos.http;
+
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.retry.RetryBudget;
+import com.qcloud.cos.retry.RetryPolicy;
+
+/**
+ * Applies the {@link RetryPolicy} of the client config and the client wide {@link RetryBudget}
+ * for an http client.
+ */
+class RetryHandler {
+    private static final Logger log = LoggerFactory.getLogger(RetryHandler.class);
+
+    private final ClientConfig clientConfig;
+    private final RetryBudget retryBudget;
+
+    RetryHandler(ClientConfig clientConfig) {
+        this.clientConfig = clientConfig;
+        this.retryBudget = new RetryBudget(clientConfig.getRetryBudgetCapacity());
+    }
+
+    private RetryPolicy getRetryPolicy() {
+        return clientConfig.getRetryPolicy();
+    }
+
+    <X extends CosServiceRequest> boolean shouldRetry(CosHttpRequest<X> request,
+            InputStream originalContent, CosClientException exception, int retriesAttempted) {
+        RetryPolicy retryPolicy = getRetryPolicy();
+        if (retryPolicy == null || retriesAttempted >= retryPolicy.getMaxErrorRetry()) {
+            return false;
+        }
+        // 请求体无法恢复时不能重试
+        if (originalContent != null && !originalContent.markSupported()) {
+            return false;
+        }
+        if (!retryPolicy.getRetryCondition().shouldRetry(request.getOriginalRequest(), exception,
+                retriesAttempted)) {
+            return false;
+        }
+        if (!retryBudget.acquireRetry()) {
+            log.warn("retry budget exhausted, give up retrying. httpRequest: {}", request);
+            return false;
+        }
+        return true;
+    }
+
+    <X extends CosServiceRequest> long delayBeforeNextRetry(CosHttpRequest<X> request,
+            CosClientException exception, int retriesAttempted) {
+        return Math.max(0, getRetryPolicy().getBackoffStrategy()
+                .delayBeforeNextRetry(request.getOriginalRequest(), exception, retriesAttempted));
+    }
+
+    int getMaxErrorRetry() {
+        RetryPolicy retryPolicy = getRetryPolicy();
+        return retryPolicy == null ? 0 : retryPolicy.getMaxErrorRetry();
+    }
+
+    void onSuccess(int retriesAttempted) {
+        retryBudget.onSuccess(retriesAttempted);
+    }
+}
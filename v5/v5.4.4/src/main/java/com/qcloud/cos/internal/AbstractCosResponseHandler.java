@@ -58,7 +58,8 @@ public abstract class AbstractCosResponseHandler<T>
         Map<String, String> metadataMap = new HashMap<String, String>();
         metadataMap.put(Headers.REQUEST_ID, cosRequestId);
         metadataMap.put(Headers.TRACE_ID, cosTraceId);
-        cosResponse.setResponseMetadata(new ResponseMetadata(metadataMap));
+        cosResponse.setResponseMetadata(
+                new ResponseMetadata(metadataMap, response.getRetriesAttempted()));
 
         return cosResponse;
     }
@@ -1,6 +1,6 @@
 package com.qcloud.cos.internal;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
@@ -8,11 +8,15 @@ import org.xml.sax.helpers.DefaultHandler;
 /**
  * Package private abstract base for all handlers here; adds tracking of the
  * current context so each handler doesn't have to manage it on its own.
+ * <p>
+ * The context is kept as an array of element names indexed by depth, and the fixed arity
+ * {@code in} overloads compare the depth first, so matching the current path allocates nothing.
  */
 abstract class AbstractHandler extends DefaultHandler {
 
     private final StringBuilder text = new StringBuilder();
-    private final LinkedList<String> context = new LinkedList<String>();
+    private String[] context = new String[8];
+    private int depth = 0;
 
     @Override
     public final void startElement(
@@ -23,7 +27,10 @@ abstract class AbstractHandler extends DefaultHandler {
 
         text.setLength(0);
         doStartElement(uri, name, qName, attrs);
-        context.add(name);
+        if (depth == context.length) {
+            context = Arrays.copyOf(context, depth * 2);
+        }
+        context[depth++] = name;
     }
 
     protected abstract void doStartElement(
@@ -34,7 +41,7 @@ abstract class AbstractHandler extends DefaultHandler {
 
     @Override
     public final void endElement(String uri, String name, String qName) {
-        context.removeLast();
+        context[--depth] = null;
         doEndElement(uri, name, qName);
     }
 
@@ -53,7 +60,24 @@ abstract class AbstractHandler extends DefaultHandler {
     }
 
     protected final boolean atTopLevel() {
-        return context.isEmpty();
+        return depth == 0;
+    }
+
+    protected final boolean in(String path0) {
+        return depth == 1 && matches(path0, 0);
+    }
+
+    protected final boolean in(String path0, String path1) {
+        return depth == 2 && matches(path1, 1) && matches(path0, 0);
+    }
+
+    protected final boolean in(String path0, String path1, String path2) {
+        return depth == 3 && matches(path2, 2) && matches(path1, 1) && matches(path0, 0);
+    }
+
+    protected final boolean in(String path0, String path1, String path2, String path3) {
+        return depth == 4 && matches(path3, 3) && matches(path2, 2) && matches(path1, 1)
+                && matches(path0, 0);
     }
 
     /**
@@ -62,20 +86,23 @@ abstract class AbstractHandler extends DefaultHandler {
      * @return True if the path provided is the same as the current context. False otherwise
      */
     protected final boolean in(String... path) {
-        if (path.length != context.size()) {
+        if (path.length != depth) {
             return false;
         }
 
-        int i = 0;
-        for (String element : context) {
-            String pattern = path[i];
-            if (!(pattern.equals("*") || pattern.equals(element))) {
+        for (int i = depth - 1; i >= 0; --i) {
+            if (!matches(path[i], i)) {
                 return false;
             }
-            i += 1;
         }
 
         return true;
     }
 
+    // 元素名来自解析器的符号表, 相同名字通常是同一个String实例, 先比较引用
+    private boolean matches(String pattern, int index) {
+        String element = context[index];
+        return pattern == element || pattern.equals(element) || pattern.equals("*");
+    }
+
 }
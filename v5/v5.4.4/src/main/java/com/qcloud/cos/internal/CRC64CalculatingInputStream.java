@@ -0,0 +1,68 @@
+package com.qcloud.cos.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.qcloud.cos.utils.CRC64;
+
+/**
+ * Simple InputStream wrapper that examines the wrapped stream's contents as they are read and
+ * calculates their CRC64 checksum, to be compared with the one calculated by COS.
+ */
+public class CRC64CalculatingInputStream extends SdkFilterInputStream {
+    /** The checksum being calculated by this input stream */
+    private CRC64 crc64 = new CRC64();
+    /** The checksum as at the time when the last {@link #mark(int)} operation was called */
+    private long crc64LastMarked;
+
+    public CRC64CalculatingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns the checksum of the data read so far.
+     */
+    public long getCRC64() {
+        return crc64.getValue();
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        if (markSupported()) {
+            super.mark(readlimit);
+            crc64LastMarked = crc64.getValue();
+        }
+    }
+
+    /**
+     * Resets the wrapped input stream and the in progress checksum.
+     */
+    @Override
+    public void reset() throws IOException {
+        if (markSupported()) {
+            super.reset();
+            // 没有mark时crc64LastMarked为0, 即从头开始计算
+            crc64 = new CRC64(crc64LastMarked);
+        } else {
+            throw new IOException("mark/reset not supported");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int ch = super.read();
+        if (ch != -1) {
+            crc64.update(ch);
+        }
+        return ch;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = super.read(b, off, len);
+        if (result != -1) {
+            crc64.update(b, off, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package com.qcloud.cos.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.utils.CRC64;
+
+/**
+ * Input stream calculating the CRC64 checksum of its contents, which validates, when you finish
+ * reading the stream, that the checksum equals the one calculated by COS.
+ */
+public class CRC64ValidationInputStream extends CRC64CalculatingInputStream {
+
+    private final long expectedCRC64;
+
+    // 到达流末尾后可能被多次读取, 只校验一次
+    private boolean crc64Validated = false;
+
+    public CRC64ValidationInputStream(InputStream in, long serverSideCRC64) {
+        super(in);
+        this.expectedCRC64 = serverSideCRC64;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int ch = super.read();
+        if (ch == -1) {
+            validateCRC64();
+        }
+        return ch;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = super.read(b, off, len);
+        if (result == -1) {
+            validateCRC64();
+        }
+        return result;
+    }
+
+    private void validateCRC64() {
+        if (!crc64Validated) {
+            crc64Validated = true;
+            if (getCRC64() != expectedCRC64) {
+                throw new CosClientException("Unable to verify integrity of data download.  "
+                        + "Client calculated CRC64 (" + CRC64.toString(getCRC64())
+                        + ") didn't match CRC64 (" + CRC64.toString(expectedCRC64)
+                        + ") calculated by Qcloud COS.  The data may be corrupt.");
+            }
+        }
+    }
+}
@@ -18,6 +18,9 @@ public class Constants {
 
     /** The maximum allowed parts in a multipart upload. */
     public static final int MAXIMUM_UPLOAD_PARTS = 10000;
+
+    /** The maximum size of a part in a multipart upload. */
+    public static final long MAXIMUM_UPLOAD_PART_SIZE = 5 * GB;
     
     public static final int NO_SUCH_BUCKET_STATUS_CODE = 404;
 
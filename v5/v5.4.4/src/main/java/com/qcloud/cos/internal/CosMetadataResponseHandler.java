@@ -5,6 +5,16 @@ import com.qcloud.cos.model.ObjectMetadata;
 
 public class CosMetadataResponseHandler extends AbstractCosResponseHandler<ObjectMetadata>{
 
+    private volatile ResponseMetadata responseMetadata;
+
+    /**
+     * Returns the response metadata of the last response handled, such as the number of retries
+     * attempted, null if no response was handled yet.
+     */
+    public ResponseMetadata getResponseMetadata() {
+        return responseMetadata;
+    }
+
     @Override
     public CosServiceResponse<ObjectMetadata> handle(CosHttpResponse response) throws Exception {
         ObjectMetadata metadata = new ObjectMetadata();
@@ -12,6 +22,7 @@ public class CosMetadataResponseHandler extends AbstractCosResponseHandler<Objec
 
         CosServiceResponse<ObjectMetadata> cosResponse = parseResponseMetadata(response);
         cosResponse.setResult(metadata);
+        responseMetadata = cosResponse.getResponseMetadata();
         return cosResponse;
     }
 
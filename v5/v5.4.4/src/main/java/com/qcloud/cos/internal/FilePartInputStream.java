@@ -0,0 +1,159 @@
+package com.qcloud.cos.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * A mark-and-resettable input stream over a range of a file, typically a part of a multipart
+ * upload. The concurrent parts of a file share a single {@link java.nio.channels.FileChannel}
+ * read at explicit positions, instead of each opening the file and skipping to its offset, and
+ * marking or resetting the stream simply records or restores the position.
+ * <p>
+ * As the HTTP client closes the content of a request after each attempt to send it, closing this
+ * stream has no effect so that it can still be reset for a retry: the creator of the stream must
+ * call {@link #release()} in a finally block to release the file.
+ */
+public class FilePartInputStream extends SdkInputStream {
+    private final File file;
+    private final long end;
+    private SharedFileChannel shared;
+    private long position;
+    private long markedPosition;
+    private boolean closed;
+
+    /**
+     * @param file the file to read
+     * @param offset the position of the first byte to read
+     * @param length the number of bytes to read, the stream ending earlier at the end of the file
+     * @throws IOException if the file can't be opened
+     */
+    public FilePartInputStream(File file, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid file range: offset " + offset + ", length " + length);
+        }
+        this.file = file;
+        this.position = offset;
+        this.markedPosition = offset;
+        this.end = offset + length;
+        this.shared = SharedFileChannel.acquire(file);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int count = read(b, 0, 1);
+        return count < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        checkOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+        int count;
+        try {
+            count = shared.getChannel().read(buffer, position);
+        } catch (ClosedByInterruptException e) {
+            throw e;
+        } catch (ClosedChannelException e) {
+            // 共享的通道被另一个线程的中断关闭, 重新打开文件后重试
+            reopen();
+            count = shared.getChannel().read(buffer, position);
+        }
+        if (count > 0) {
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        abortIfNeeded();
+        checkOpen();
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        abortIfNeeded();
+        checkOpen();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Marks the current position, the read limit being ignored as the file can always be read
+     * again.
+     */
+    @Override
+    public void mark(int readlimit) {
+        abortIfNeeded();
+        markedPosition = position;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        abortIfNeeded();
+        checkOpen();
+        position = markedPosition;
+    }
+
+    /**
+     * Has no effect, see {@link #release()}.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Releases the file, after which the stream can no longer be read.
+     */
+    @Override
+    public void release() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        shared.release();
+    }
+
+    @Override
+    protected InputStream getWrappedInputStream() {
+        return null;
+    }
+
+    SharedFileChannel getSharedChannel() {
+        return shared;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void reopen() throws IOException {
+        SharedFileChannel closedChannel = shared;
+        shared = SharedFileChannel.acquire(file);
+        closedChannel.release();
+    }
+}
@@ -6,13 +6,19 @@ import com.qcloud.cos.Headers;
 
 public class ResponseMetadata {
     protected final Map<String, String> metadata;
+    private final int retriesAttempted;
 
     public ResponseMetadata(Map<String, String> metadata) {
+        this(metadata, 0);
+    }
+
+    public ResponseMetadata(Map<String, String> metadata, int retriesAttempted) {
         this.metadata = metadata;
+        this.retriesAttempted = retriesAttempted;
     }
 
     public ResponseMetadata(ResponseMetadata originalResponseMetadata) {
-        this(originalResponseMetadata.metadata);
+        this(originalResponseMetadata.metadata, originalResponseMetadata.retriesAttempted);
     }
 
     public String getRequestId() {
@@ -23,6 +29,14 @@ public class ResponseMetadata {
         return metadata.get(Headers.TRACE_ID);
     }
 
+    /**
+     * Returns the number of retries the client attempted before the response was received, 0 if
+     * the request succeeded at the first attempt.
+     */
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
     @Override
     public String toString() {
         if (metadata == null)
@@ -0,0 +1,83 @@
+package com.qcloud.cos.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.utils.IOUtils;
+
+/**
+ * A read only channel of a file, opened once for all the streams reading parts of the file at the
+ * same time and closed when the last of them releases it. The channel is only read at explicit
+ * positions, so it can be shared by any number of threads.
+ */
+final class SharedFileChannel {
+    private static final Logger log = LoggerFactory.getLogger(SharedFileChannel.class);
+    private static final Map<File, SharedFileChannel> openChannels =
+            new HashMap<File, SharedFileChannel>();
+
+    private final File file;
+    private final FileInputStream fis;
+    private final FileChannel channel;
+    // 引用计数, 由openChannels保护
+    private int references = 1;
+
+    private SharedFileChannel(File file) throws IOException {
+        this.file = file;
+        this.fis = new FileInputStream(file);
+        this.channel = fis.getChannel();
+    }
+
+    /**
+     * Returns the shared channel of the given file, opening it if needed. Each call must be
+     * paired with a call to {@link #release()}.
+     */
+    static SharedFileChannel acquire(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        synchronized (openChannels) {
+            SharedFileChannel shared = openChannels.get(key);
+            // 被中断的读取会关闭通道, 此时重新打开文件
+            if (shared == null || !shared.channel.isOpen()) {
+                shared = new SharedFileChannel(key);
+                openChannels.put(key, shared);
+            } else {
+                ++shared.references;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Returns the number of files opened at the moment, for testing purposes.
+     */
+    static int openChannelCount() {
+        synchronized (openChannels) {
+            return openChannels.size();
+        }
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gives back the channel, closing it if this was the last reference.
+     */
+    void release() {
+        synchronized (openChannels) {
+            if (--references > 0) {
+                return;
+            }
+            if (openChannels.get(file) == this) {
+                openChannels.remove(file);
+            }
+        }
+        IOUtils.closeQuietly(fis, log);
+    }
+}
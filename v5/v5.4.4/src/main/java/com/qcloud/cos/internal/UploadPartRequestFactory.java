@@ -59,7 +59,15 @@ public class UploadPartRequestFactory {
     }
 
     public synchronized UploadPartRequest getNextUploadPartRequest() {
-        long partSize = Math.min(optimalPartSize, remainingBytes);
+        return getNextUploadPartRequest(optimalPartSize);
+    }
+
+    /**
+     * Returns the request of the next part, of the given size rather than the
+     * optimal part size, for uploads whose part size changes along the way.
+     */
+    public synchronized UploadPartRequest getNextUploadPartRequest(long size) {
+        long partSize = Math.min(size, remainingBytes);
         boolean isLastPart = (remainingBytes - partSize <= 0);
 
         UploadPartRequest req = null;
@@ -96,6 +104,14 @@ public class UploadPartRequestFactory {
         return req;
     }
 
+    public synchronized long getRemainingBytes() {
+        return remainingBytes;
+    }
+
+    public synchronized int getNextPartNumber() {
+        return partNumber;
+    }
+
     public int getTotalNumberOfParts() {
         return totalNumberOfParts;
     }
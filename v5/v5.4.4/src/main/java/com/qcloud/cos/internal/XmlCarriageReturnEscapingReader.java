@@ -0,0 +1,82 @@
+package com.qcloud.cos.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader replacing every carriage return (\r) of the underlying reader with the explicit XML
+ * character entity "&amp;#013;", so that the SAX parser doesn't normalize the 0x0D characters of
+ * object keys into 0x0A. The document is filtered on the fly through a fixed size buffer instead
+ * of being loaded in memory.
+ */
+class XmlCarriageReturnEscapingReader extends Reader {
+    private static final char[] ESCAPED_CARRIAGE_RETURN = "&#013;".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    // 正在输出的转义序列的下标, 等于序列长度时表示没有待输出的转义字符
+    private int escapePosition = ESCAPED_CARRIAGE_RETURN.length;
+
+    XmlCarriageReturnEscapingReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int readLen = 0;
+        while (readLen < len) {
+            if (escapePosition < ESCAPED_CARRIAGE_RETURN.length) {
+                cbuf[off + readLen++] = ESCAPED_CARRIAGE_RETURN[escapePosition++];
+                continue;
+            }
+            if (position == limit) {
+                // 已经有数据可返回时不再阻塞读取
+                if (readLen > 0 || !fillBuffer()) {
+                    break;
+                }
+            }
+            int end = Math.min(limit, position + len - readLen);
+            int runEnd = position;
+            while (runEnd < end && buffer[runEnd] != '\r') {
+                ++runEnd;
+            }
+            int runLen = runEnd - position;
+            System.arraycopy(buffer, position, cbuf, off + readLen, runLen);
+            readLen += runLen;
+            position = runEnd;
+            if (runEnd < end) {
+                // skip the carriage return and emit its escape sequence instead
+                ++position;
+                escapePosition = 0;
+            }
+        }
+        return readLen == 0 ? -1 : readLen;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int readLen;
+        do {
+            readLen = in.read(buffer, 0, BUFFER_SIZE);
+        } while (readLen == 0);
+        if (readLen < 0) {
+            return false;
+        }
+        position = 0;
+        limit = readLen;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
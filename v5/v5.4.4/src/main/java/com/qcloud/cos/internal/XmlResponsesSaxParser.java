@@ -1,10 +1,10 @@
 package com.qcloud.cos.internal;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
@@ -70,25 +70,44 @@ import com.qcloud.cos.utils.UrlEncoderUtils;
 public class XmlResponsesSaxParser {
     private static final Logger log = LoggerFactory.getLogger(XmlResponsesSaxParser.class);
 
-    private XMLReader xr = null;
+    // 每个线程缓存一个XMLReader, 避免每次解析响应都通过XMLReaderFactory查找并构造SAX解析器.
+    // 解析过程中reader从缓存中取出, 只有正常解析结束后才放回, 因此嵌套解析或解析失败都不会复用同一个reader
+    private static final ThreadLocal<XMLReader> cachedXmlReader = new ThreadLocal<XMLReader>();
+
+    // 解析结束后替换掉业务handler, 避免缓存的reader持有上一次的解析结果
+    private static final DefaultHandler NO_OP_HANDLER = new DefaultHandler();
 
     private boolean sanitizeXmlDocument = true;
 
     /**
-     * Constructs the XML SAX parser.
+     * Constructs the XML SAX parser. The underlying XMLReader is borrowed from a per-thread cache
+     * when a document is parsed, so constructing a parser is cheap.
      *
      * @throws CosClientException
      */
     public XmlResponsesSaxParser() throws CosClientException {
-        // Ensure we can load the XML Reader.
+    }
+
+    private static XMLReader acquireXmlReader() throws CosClientException {
+        XMLReader xmlReader = cachedXmlReader.get();
+        if (xmlReader != null) {
+            cachedXmlReader.remove();
+            return xmlReader;
+        }
         try {
-            xr = XMLReaderFactory.createXMLReader();
+            return XMLReaderFactory.createXMLReader();
         } catch (SAXException e) {
             throw new CosClientException("Couldn't initialize a SAX driver to create an XMLReader",
                     e);
         }
     }
 
+    private static void releaseXmlReader(XMLReader xmlReader) {
+        xmlReader.setContentHandler(NO_OP_HANDLER);
+        xmlReader.setErrorHandler(NO_OP_HANDLER);
+        cachedXmlReader.set(xmlReader);
+    }
+
     /**
      * Parses an XML document from an input stream using a document handler.
      *
@@ -100,24 +119,39 @@ public class XmlResponsesSaxParser {
      */
     protected void parseXmlInputStream(DefaultHandler handler, InputStream inputStream)
             throws IOException {
+        parseXmlInputStream(handler,
+                new BufferedReader(new InputStreamReader(inputStream, StringUtils.UTF8)));
+    }
+
+    /**
+     * Parses an XML document from a reader using a document handler.
+     *
+     * @param handler the handler for the XML document
+     * @param reader a reader containing the XML document to parse
+     *
+     * @throws IOException on error reading from the input stream (ie connection reset)
+     * @throws CosClientException on error with malformed XML, etc
+     */
+    protected void parseXmlInputStream(DefaultHandler handler, Reader reader)
+            throws IOException {
+        XMLReader xmlReader = acquireXmlReader();
         try {
 
             if (log.isDebugEnabled()) {
                 log.debug("Parsing XML response document with handler: " + handler.getClass());
             }
 
-            BufferedReader breader =
-                    new BufferedReader(new InputStreamReader(inputStream, StringUtils.UTF8));
-            xr.setContentHandler(handler);
-            xr.setErrorHandler(handler);
-            xr.parse(new InputSource(breader));
+            xmlReader.setContentHandler(handler);
+            xmlReader.setErrorHandler(handler);
+            xmlReader.parse(new InputSource(reader));
+            releaseXmlReader(xmlReader);
 
         } catch (IOException e) {
             throw e;
 
         } catch (Throwable t) {
             try {
-                inputStream.close();
+                reader.close();
             } catch (IOException e) {
                 if (log.isErrorEnabled()) {
                     log.error("Unable to close response InputStream up after XML parse failure", e);
@@ -128,65 +162,24 @@ public class XmlResponsesSaxParser {
         }
     }
 
-    protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
+    /**
+     * Returns a reader over the XML document in which the carriage return (\r) characters are
+     * replaced with explicit XML character entities, to prevent the SAX parser from
+     * misinterpreting 0x0D characters as 0x0A and being unable to parse the XML. The replacement
+     * is done while the parser reads the document, so parsing overlaps with the network receive
+     * and the document is never held in memory.
+     */
+    protected Reader sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
-
+        Reader reader = new InputStreamReader(inputStream, StringUtils.UTF8);
         if (!sanitizeXmlDocument) {
-            // No sanitizing will be performed, return the original input stream unchanged.
-            return inputStream;
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("Sanitizing XML document destined for handler " + handler.getClass());
-            }
-
-            InputStream sanitizedInputStream = null;
-
-            try {
-
-                /*
-                 * Read object listing XML document from input stream provided into a string buffer,
-                 * so we can replace troublesome characters before sending the document to the XML
-                 * parser.
-                 */
-                StringBuilder listingDocBuffer = new StringBuilder();
-                BufferedReader br =
-                        new BufferedReader(new InputStreamReader(inputStream, StringUtils.UTF8));
-
-                char[] buf = new char[8192];
-                int read = -1;
-                while ((read = br.read(buf)) != -1) {
-                    listingDocBuffer.append(buf, 0, read);
-                }
-                br.close();
-
-                /*
-                 * Replace any carriage return (\r) characters with explicit XML character entities,
-                 * to prevent the SAX parser from misinterpreting 0x0D characters as 0x0A and being
-                 * unable to parse the XML.
-                 */
-                String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
-
-                sanitizedInputStream =
-                        new ByteArrayInputStream(listingDoc.getBytes(StringUtils.UTF8));
-
-            } catch (IOException e) {
-                throw e;
-
-            } catch (Throwable t) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error(
-                                "Unable to close response InputStream after failure sanitizing XML document",
-                                e);
-                    }
-                }
-                throw new CosClientException("Failed to sanitize XML document destined for handler "
-                        + handler.getClass(), t);
-            }
-            return sanitizedInputStream;
+            // No sanitizing will be performed, return the original document unchanged.
+            return new BufferedReader(reader);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Sanitizing XML document destined for handler " + handler.getClass());
         }
+        return new XmlCarriageReturnEscapingReader(reader);
     }
 
     /**
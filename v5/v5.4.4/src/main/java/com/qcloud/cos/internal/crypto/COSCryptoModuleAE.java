@@ -17,6 +17,7 @@ import com.qcloud.cos.model.COSObject;
 import com.qcloud.cos.model.COSObjectId;
 import com.qcloud.cos.model.COSObjectInputStream;
 import com.qcloud.cos.model.EncryptedGetObjectRequest;
+import com.qcloud.cos.model.EncryptedInitiateMultipartUploadRequest;
 import com.qcloud.cos.model.GetObjectRequest;
 import com.qcloud.cos.model.InitiateMultipartUploadRequest;
 import com.qcloud.cos.model.ObjectMetadata;
@@ -283,6 +284,14 @@ public class COSCryptoModuleAE extends COSCryptoModuleBase {
     @Override
     final MultipartUploadCryptoContext newUploadContext(InitiateMultipartUploadRequest req,
             ContentCryptoMaterial cekMaterial) {
+        if (req instanceof EncryptedInitiateMultipartUploadRequest) {
+            // 分块大小已知时, 各分块可以独立加密, 并发上传
+            long partSize = ((EncryptedInitiateMultipartUploadRequest) req).getPartSize();
+            if (partSize > 0) {
+                return new MultipartUploadGcmContext(req.getBucketName(), req.getKey(),
+                        cekMaterial, partSize);
+            }
+        }
         return new MultipartUploadCryptoContext(req.getBucketName(), req.getKey(), cekMaterial);
     }
 
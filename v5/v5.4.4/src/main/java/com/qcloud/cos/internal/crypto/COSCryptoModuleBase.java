@@ -22,6 +22,7 @@ import com.qcloud.cos.exception.CosClientException;
 import com.qcloud.cos.exception.CosServiceException;
 import com.qcloud.cos.internal.COSDirect;
 import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.internal.FilePartInputStream;
 import com.qcloud.cos.internal.InputSubstream;
 import com.qcloud.cos.internal.LengthCheckInputStream;
 import com.qcloud.cos.internal.ReleasableInputStream;
@@ -230,7 +231,10 @@ public abstract class COSCryptoModuleBase extends COSCryptoModule {
      * <b>NOTE:</b> Because the encryption process requires context from previous blocks, parts
      * uploaded with the COSEncryptionClient (as opposed to the normal COSClient) must be
      * uploaded serially, and in order. Otherwise, the previous encryption context isn't available
-     * to use when encrypting the current part.
+     * to use when encrypting the current part. The exception is an upload initiated with an
+     * {@link com.qcloud.cos.model.EncryptedInitiateMultipartUploadRequest} giving its part size:
+     * its parts can then be uploaded concurrently and in any order, as long as the last part is
+     * uploaded after all the others.
      */
     @Override
     public UploadPartResult uploadPartSecurely(UploadPartRequest req) {
@@ -250,6 +254,9 @@ public abstract class COSCryptoModuleBase extends COSCryptoModule {
             throw new CosClientException(
                     "No client-side information available on upload ID " + uploadId);
         }
+        if (uploadContext instanceof MultipartUploadGcmContext) {
+            return uploadPartConcurrently(req, (MultipartUploadGcmContext) uploadContext);
+        }
         final UploadPartResult result;
         // Checks the parts are uploaded in series
         uploadContext.beginPartUpload(req.getPartNumber());
@@ -290,6 +297,51 @@ public abstract class COSCryptoModuleBase extends COSCryptoModule {
         return result;
     }
 
+    /**
+     * Uploads a part encrypted independently of the others, which may thus be uploaded at the
+     * same time.
+     */
+    private UploadPartResult uploadPartConcurrently(UploadPartRequest req,
+            MultipartUploadGcmContext uploadContext) {
+        final boolean isLastPart = req.isLastPart();
+        final int partNumber = req.getPartNumber();
+        if (!isLastPart && req.getPartSize() != uploadContext.getPartSize()) {
+            throw new CosClientException("Invalid part size: all the parts but the last must be of "
+                    + "the part size given when initiating the upload ("
+                    + uploadContext.getPartSize() + "), part " + partNumber + " has "
+                    + req.getPartSize() + " bytes");
+        }
+        if (isLastPart && uploadContext.hasFinalPartBeenSeen()) {
+            throw new CosClientException("This part was specified as the last part in a "
+                    + "multipart upload, but a previous part was already marked as the last part.  "
+                    + "Only the last part of the upload should be marked as the last part.");
+        }
+        final UploadPartResult result;
+        CipherLite cipherLite = uploadContext.newPartCipherLite(partNumber);
+        final File fileOrig = req.getFile();
+        final InputStream isOrig = req.getInputStream();
+        SdkFilterInputStream isCurr = null;
+        try {
+            isCurr = newMultipartCOSCipherInputStream(req, cipherLite);
+            // 计算密文的hash, 最后一个分块附加整个对象的认证标签
+            isCurr = new GHashInputStream(isCurr, uploadContext, partNumber, isLastPart);
+            req.setInputStream(isCurr);
+            req.setFile(null);
+            req.setFileOffset(0);
+            if (isLastPart) {
+                long lastPartSize = computeLastPartSize(req);
+                if (lastPartSize > -1)
+                    req.setPartSize(lastPartSize);
+            }
+            result = cos.uploadPart(req);
+        } finally {
+            cleanupDataSource(req, fileOrig, isOrig, isCurr, log);
+        }
+        if (isLastPart)
+            uploadContext.setHasFinalPartBeenSeen(true);
+        return result;
+    }
+
     protected final CipherLiteInputStream newMultipartCOSCipherInputStream(UploadPartRequest req,
             CipherLite cipherLite) {
         final File fileOrig = req.getFile();
@@ -301,12 +353,12 @@ public abstract class COSCryptoModuleBase extends COSCryptoModule {
                     throw new IllegalArgumentException(
                             "A File or InputStream must be specified when uploading part");
                 }
-                isCurr = isOrig;
+                isCurr = new InputSubstream(isOrig, req.getFileOffset(), req.getPartSize(),
+                        req.isLastPart());
             } else {
-                isCurr = new ResettableInputStream(fileOrig);
+                isCurr = new FilePartInputStream(fileOrig, req.getFileOffset(),
+                        req.getPartSize());
             }
-            isCurr = new InputSubstream(isCurr, req.getFileOffset(), req.getPartSize(),
-                    req.isLastPart());
             return cipherLite.markSupported()
                     ? new CipherLiteInputStream(isCurr, cipherLite, DEFAULT_BUFFER_SIZE,
                             IS_MULTI_PART, req.isLastPart())
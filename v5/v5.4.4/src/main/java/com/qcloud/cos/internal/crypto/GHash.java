@@ -0,0 +1,143 @@
+package com.qcloud.cos.internal.crypto;
+
+/**
+ * The GHASH function of AES/GCM (NIST SP 800-38D), over the ciphertext only as no additional
+ * authenticated data is used. A 128 bit block is held in two longs, the most significant one
+ * first, in the bit order of GCM.
+ * <p>
+ * GHASH is linear: the hash of the concatenation of two sequences of blocks A and B is
+ * {@code hash(A) * H^blocks(B) + hash(B)}, which is what lets the parts of a multipart upload be
+ * hashed independently and combined afterwards.
+ */
+final class GHash {
+    // 乘以x^4时移出的4位对应的约简值, 见multiplyH
+    private static final long[] LAST4 = {0x0000, 0x1c20, 0x3840, 0x2460, 0x7080, 0x6ca0,
+            0x48c0, 0x54e0, 0xe100, 0xfd20, 0xd940, 0xc560, 0x9180, 0x8da0, 0xa9c0, 0xb5e0};
+    private static final long R = 0xe100000000000000L;
+
+    private final long[] h;
+    // i * H, i为4位的多项式
+    private final long[] tableHigh = new long[16];
+    private final long[] tableLow = new long[16];
+
+    /**
+     * @param hashKey the hash subkey H, the encryption of the zero block.
+     */
+    GHash(byte[] hashKey) {
+        this.h = toBlock(hashKey, 0);
+        long vh = h[0];
+        long vl = h[1];
+        tableHigh[8] = vh;
+        tableLow[8] = vl;
+        for (int i = 4; i > 0; i >>= 1) {
+            long reduce = (vl & 1) != 0 ? R : 0;
+            vl = (vh << 63) | (vl >>> 1);
+            vh = (vh >>> 1) ^ reduce;
+            tableHigh[i] = vh;
+            tableLow[i] = vl;
+        }
+        for (int i = 2; i <= 8; i *= 2) {
+            for (int j = 1; j < i; ++j) {
+                tableHigh[i + j] = tableHigh[i] ^ tableHigh[j];
+                tableLow[i + j] = tableLow[i] ^ tableLow[j];
+            }
+        }
+    }
+
+    /**
+     * Hashes a block into the state: {@code y = (y + block) * H}.
+     */
+    void update(long[] y, byte[] block, int offset) {
+        y[0] ^= readLong(block, offset);
+        y[1] ^= readLong(block, offset + 8);
+        multiplyH(y);
+    }
+
+    /**
+     * Hashes the final length block of a ciphertext of the given length into the state.
+     */
+    void updateLength(long[] y, long ciphertextBytes) {
+        // 附加认证数据的长度为0
+        y[1] ^= ciphertextBytes * 8;
+        multiplyH(y);
+    }
+
+    /**
+     * Multiplies the state by H in place, four bits at a time from the least significant ones.
+     */
+    void multiplyH(long[] y) {
+        long zh = 0;
+        long zl = 0;
+        for (int i = 15; i >= 0; --i) {
+            int b = (int) ((i < 8 ? y[0] >>> (56 - 8 * i) : y[1] >>> (120 - 8 * i)) & 0xff);
+            for (int shift = 0; shift <= 4; shift += 4) {
+                int nibble = (b >>> shift) & 0xf;
+                if (i != 15 || shift != 0) {
+                    int rem = (int) (zl & 0xf);
+                    zl = (zh << 60) | (zl >>> 4);
+                    zh = (zh >>> 4) ^ (LAST4[rem] << 48);
+                }
+                zh ^= tableHigh[nibble];
+                zl ^= tableLow[nibble];
+            }
+        }
+        y[0] = zh;
+        y[1] = zl;
+    }
+
+    /**
+     * @return H to the given power, 1 for 0.
+     */
+    long[] powerOfH(long exponent) {
+        long[] result = {Long.MIN_VALUE, 0}; // 多项式1的最高位在前
+        long[] square = {h[0], h[1]};
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = multiply(result, square);
+            }
+            square = multiply(square, square);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return the product of two blocks in GF(2^128), computed bit by bit.
+     */
+    static long[] multiply(long[] x, long[] y) {
+        long zh = 0;
+        long zl = 0;
+        long vh = y[0];
+        long vl = y[1];
+        for (int i = 0; i < 128; ++i) {
+            long word = i < 64 ? x[0] : x[1];
+            if (((word << (i & 63)) & Long.MIN_VALUE) != 0) {
+                zh ^= vh;
+                zl ^= vl;
+            }
+            long reduce = (vl & 1) != 0 ? R : 0;
+            vl = (vh << 63) | (vl >>> 1);
+            vh = (vh >>> 1) ^ reduce;
+        }
+        return new long[] {zh, zl};
+    }
+
+    static long[] toBlock(byte[] bytes, int offset) {
+        return new long[] {readLong(bytes, offset), readLong(bytes, offset + 8)};
+    }
+
+    static void writeBlock(long[] block, byte[] bytes, int offset) {
+        for (int i = 0; i < 8; ++i) {
+            bytes[offset + i] = (byte) (block[0] >>> (56 - 8 * i));
+            bytes[offset + 8 + i] = (byte) (block[1] >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; ++i) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
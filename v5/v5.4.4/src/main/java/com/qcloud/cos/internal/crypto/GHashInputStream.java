@@ -0,0 +1,182 @@
+package com.qcloud.cos.internal.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.SdkFilterInputStream;
+
+/**
+ * Computes the GHASH of the ciphertext of a part of a {@link MultipartUploadGcmContext} upload
+ * as it is read. At the end of a part but the last, its hash is recorded in the context; at the
+ * end of the last part, the authentication tag of the whole object is appended.
+ * <p>
+ * Mark and reset are supported if the underlying stream supports them, the hash being rewound
+ * along with the stream.
+ */
+final class GHashInputStream extends SdkFilterInputStream {
+    private static final int BLOCK_SIZE = 16;
+
+    private final MultipartUploadGcmContext uploadContext;
+    private final GHash ghash;
+    private final int partNumber;
+    private final boolean lastPart;
+
+    // 以下为可以被mark和reset的状态
+    private long[] hash;
+    private byte[] pending = new byte[BLOCK_SIZE];
+    private int pendingLength = 0;
+    private long length = 0;
+    private byte[] tag = null;
+    private int tagPosition = 0;
+
+    private long[] markedHash;
+    private byte[] markedPending;
+    private int markedPendingLength;
+    private long markedLength;
+    private byte[] markedTag;
+    private int markedTagPosition;
+
+    /**
+     * @throws CosClientException if this is the last part and the other parts are not all
+     *         uploaded yet.
+     */
+    GHashInputStream(InputStream in, MultipartUploadGcmContext uploadContext, int partNumber,
+            boolean lastPart) {
+        super(in);
+        this.uploadContext = uploadContext;
+        this.ghash = uploadContext.getGHash();
+        this.partNumber = partNumber;
+        this.lastPart = lastPart;
+        // 最后一个分块从之前所有分块的hash继续计算, 其他分块从0开始
+        this.hash = lastPart ? uploadContext.getHashBefore(partNumber) : new long[] {0, 0};
+        mark(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int count;
+        do {
+            count = read(b, 0, 1);
+        } while (count == 0);
+        return count < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        if (tag == null) {
+            int count = in.read(b, off, len);
+            if (count >= 0) {
+                update(b, off, count);
+                return count;
+            }
+            if (!finish()) {
+                return -1;
+            }
+        }
+        if (tagPosition == tag.length) {
+            return -1;
+        }
+        int count = Math.min(len, tag.length - tagPosition);
+        System.arraycopy(tag, tagPosition, b, off, count);
+        tagPosition += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的数据也要计算hash
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 4096)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        abortIfNeeded();
+        return tag == null ? in.available() : tag.length - tagPosition;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        abortIfNeeded();
+        if (in.markSupported()) {
+            in.mark(readlimit);
+        }
+        markedHash = hash.clone();
+        markedPending = pending.clone();
+        markedPendingLength = pendingLength;
+        markedLength = length;
+        markedTag = tag;
+        markedTagPosition = tagPosition;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        abortIfNeeded();
+        in.reset();
+        hash = markedHash.clone();
+        pending = markedPending.clone();
+        pendingLength = markedPendingLength;
+        length = markedLength;
+        tag = markedTag;
+        tagPosition = markedTagPosition;
+    }
+
+    private void update(byte[] b, int off, int len) {
+        length += len;
+        int end = off + len;
+        if (pendingLength > 0) {
+            int count = Math.min(len, BLOCK_SIZE - pendingLength);
+            System.arraycopy(b, off, pending, pendingLength, count);
+            pendingLength += count;
+            off += count;
+            if (pendingLength < BLOCK_SIZE) {
+                return;
+            }
+            ghash.update(hash, pending, 0);
+            pendingLength = 0;
+        }
+        for (; off + BLOCK_SIZE <= end; off += BLOCK_SIZE) {
+            ghash.update(hash, b, off);
+        }
+        pendingLength = end - off;
+        System.arraycopy(b, off, pending, 0, pendingLength);
+    }
+
+    /**
+     * Called at the end of the ciphertext, returns true if the tag is to be appended.
+     */
+    private boolean finish() {
+        if (!lastPart) {
+            if (length != uploadContext.getPartSize()) {
+                throw new CosClientException("Invalid part size: part " + partNumber + " has "
+                        + length + " bytes instead of " + uploadContext.getPartSize());
+            }
+            uploadContext.setPartHash(partNumber, hash);
+            tag = new byte[0];
+            return false;
+        }
+        long[] finalHash = hash.clone();
+        if (pendingLength > 0) {
+            byte[] block = new byte[BLOCK_SIZE];
+            System.arraycopy(pending, 0, block, 0, pendingLength);
+            ghash.update(finalHash, block, 0);
+        }
+        tag = uploadContext.computeTag(finalHash,
+                (partNumber - 1) * uploadContext.getPartSize() + length);
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.qcloud.cos.internal.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import com.qcloud.cos.annotation.GuardedBy;
+import com.qcloud.cos.exception.CosClientException;
+
+/**
+ * Contextual information for an in-flight multipart upload whose parts are encrypted
+ * independently, so that they can be uploaded concurrently and in any order.
+ * <p>
+ * The object is encrypted with AES/GCM exactly as if it was encrypted at once: the ciphertext of
+ * each part is the AES/CTR encryption of the part starting at the counter of its offset, which
+ * is known as all the parts but the last have the same size, and the GHASH of each part is
+ * computed while it is uploaded. The last part, which ends with the authentication tag of the
+ * whole object, is uploaded once the hashes of all the other parts are known.
+ */
+public class MultipartUploadGcmContext extends MultipartUploadCryptoContext {
+    private static final int BLOCK_SIZE = 16;
+
+    private final long partSize;
+    private final SecretKey cek;
+    private final byte[] iv;
+    private final Provider securityProvider;
+    private final GHash ghash;
+    // H^(每个分块的数据块数), 用于合并各分块的hash
+    private final long[] hashKeyPowerOfPart;
+    // E(K, J0), 与最终的hash异或得到认证标签
+    private final byte[] tagMask;
+
+    @GuardedBy("this")
+    private final Map<Integer, long[]> partHashes = new HashMap<Integer, long[]>();
+
+    MultipartUploadGcmContext(String bucketName, String key, ContentCryptoMaterial cekMaterial,
+            long partSize) {
+        super(bucketName, key, cekMaterial);
+        if (partSize <= 0 || partSize % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException(
+                    "partSize must be a positive multiple of " + BLOCK_SIZE + ", got " + partSize);
+        }
+        CipherLite cipherLite = cekMaterial.getCipherLite();
+        this.partSize = partSize;
+        this.cek = cipherLite.getSecretKey();
+        this.iv = cipherLite.getIV();
+        this.securityProvider = cipherLite.getCipherProvider();
+        if (iv == null || iv.length != ContentCryptoScheme.AES_GCM.getIVLengthInBytes()) {
+            throw new CosClientException(
+                    "Concurrent part uploads require a " + ContentCryptoScheme.AES_GCM
+                            .getIVLengthInBytes() + " bytes IV for AES/GCM");
+        }
+        try {
+            Cipher aes = Cipher.getInstance("AES/ECB/NoPadding");
+            aes.init(Cipher.ENCRYPT_MODE, cek);
+            this.ghash = new GHash(aes.doFinal(new byte[BLOCK_SIZE]));
+            byte[] j0 = new byte[BLOCK_SIZE];
+            System.arraycopy(iv, 0, j0, 0, iv.length);
+            j0[BLOCK_SIZE - 1] = 1;
+            this.tagMask = aes.doFinal(j0);
+        } catch (GeneralSecurityException e) {
+            throw new CosClientException("Unable to derive the GCM hash key: " + e.getMessage(),
+                    e);
+        }
+        this.hashKeyPowerOfPart = ghash.powerOfH(partSize / BLOCK_SIZE);
+    }
+
+    /**
+     * Returns the size of all the parts but the last.
+     */
+    public final long getPartSize() {
+        return partSize;
+    }
+
+    GHash getGHash() {
+        return ghash;
+    }
+
+    /**
+     * Returns the AES/CTR cipher encrypting the given part, starting at the counter of its offset
+     * in the AES/GCM encryption of the whole object.
+     */
+    CipherLite newPartCipherLite(int partNumber) {
+        byte[] counter = ContentCryptoScheme.AES_CTR.adjustIV(iv, (partNumber - 1) * partSize);
+        return ContentCryptoScheme.AES_CTR.createCipherLite(cek, counter, Cipher.ENCRYPT_MODE,
+                securityProvider);
+    }
+
+    /**
+     * Records the GHASH of the ciphertext of a part but the last, starting from the zero state.
+     */
+    synchronized void setPartHash(int partNumber, long[] hash) {
+        partHashes.put(partNumber, new long[] {hash[0], hash[1]});
+    }
+
+    /**
+     * Returns the GHASH state after the ciphertext of all the parts before the given one.
+     *
+     * @throws CosClientException if the hash of one of these parts is not known yet.
+     */
+    synchronized long[] getHashBefore(int partNumber) {
+        long[] hash = {0, 0};
+        for (int i = 1; i < partNumber; ++i) {
+            long[] partHash = partHashes.get(i);
+            if (partHash == null) {
+                throw new CosClientException("The last part of an encrypted multipart upload "
+                        + "must be uploaded after all the other parts, part " + i
+                        + " has not been uploaded");
+            }
+            hash = GHash.multiply(hash, hashKeyPowerOfPart);
+            hash[0] ^= partHash[0];
+            hash[1] ^= partHash[1];
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the authentication tag of the object from the GHASH state after its ciphertext.
+     */
+    byte[] computeTag(long[] hash, long ciphertextLength) {
+        long[] y = {hash[0], hash[1]};
+        ghash.updateLength(y, ciphertextLength);
+        byte[] tag = new byte[BLOCK_SIZE];
+        GHash.writeBlock(y, tag, 0);
+        for (int i = 0; i < BLOCK_SIZE; ++i) {
+            tag[i] ^= tagMask[i];
+        }
+        return tag;
+    }
+}
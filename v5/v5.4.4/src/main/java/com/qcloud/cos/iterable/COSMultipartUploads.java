@@ -0,0 +1,150 @@
+package com.qcloud.cos.iterable;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.model.ListMultipartUploadsRequest;
+import com.qcloud.cos.model.MultipartUpload;
+import com.qcloud.cos.model.MultipartUploadListing;
+
+/**
+ * Lazily paginated iteration over the in-progress multipart uploads of a bucket.
+ * <p>
+ * While the caller consumes a page, the following pages are fetched in the background, see
+ * {@link #withPrefetchPages(int)}. The pages are requested by the default executor on daemon
+ * threads unless {@link #withExecutor(Executor)} is set. Each call to {@link #iterator()}
+ * starts a new listing.
+ */
+public class COSMultipartUploads implements Iterable<MultipartUpload> {
+
+    // 默认最多预取的页数
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private final COS cos;
+    private final String bucketName;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private Executor executor = PrefetchingPageIterator.DAEMON_THREAD_EXECUTOR;
+    private String userAgent = null;
+
+    private COSMultipartUploads(COS cos, String bucketName) {
+        this.cos = cos;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Iterates over all the in-progress multipart uploads of the bucket.
+     */
+    public static COSMultipartUploads inBucket(COS cos, String bucketName) {
+        return new COSMultipartUploads(cos, bucketName);
+    }
+
+    /**
+     * Iterates over the in-progress multipart uploads of the bucket whose key starts with the
+     * prefix.
+     */
+    public static COSMultipartUploads withPrefix(COS cos, String bucketName, String prefix) {
+        COSMultipartUploads uploads = new COSMultipartUploads(cos, bucketName);
+        uploads.prefix = prefix;
+        return uploads;
+    }
+
+    /**
+     * Sets the max number of uploads requested per page, the service default is used if not set.
+     */
+    public COSMultipartUploads withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the max number of pages fetched ahead of the one being consumed, 1 at least.
+     */
+    public COSMultipartUploads withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must be greater than 0, got " + prefetchPages);
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    /**
+     * Sets the executor sending the listing requests in the background.
+     */
+    public COSMultipartUploads withExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Appends a user agent to the listing requests, such as the marker of the tool sending them,
+     * see {@link com.qcloud.cos.internal.RequestClientOptions#appendUserAgent(String)}.
+     */
+    public COSMultipartUploads withUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+        return this;
+    }
+
+    public COS getCOSClient() {
+        return cos;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    private ListMultipartUploadsRequest newRequest() {
+        ListMultipartUploadsRequest request =
+                new ListMultipartUploadsRequest(bucketName).withPrefix(prefix);
+        request.setMaxUploads(batchSize);
+        if (userAgent != null) {
+            request.getRequestClientOptions().appendUserAgent(userAgent);
+        }
+        return request;
+    }
+
+    @Override
+    public Iterator<MultipartUpload> iterator() {
+        return new PrefetchingPageIterator<MultipartUploadListing, MultipartUpload>(executor, prefetchPages) {
+            @Override
+            protected MultipartUploadListing fetchFirstPage() {
+                return cos.listMultipartUploads(newRequest());
+            }
+
+            @Override
+            protected MultipartUploadListing fetchNextPage(MultipartUploadListing previousPage) {
+                return cos.listMultipartUploads(
+                        newRequest().withKeyMarker(previousPage.getNextKeyMarker())
+                                .withUploadIdMarker(previousPage.getNextUploadIdMarker()));
+            }
+
+            @Override
+            protected boolean isTruncated(MultipartUploadListing page) {
+                return page.isTruncated();
+            }
+
+            @Override
+            protected Iterator<MultipartUpload> itemsOf(MultipartUploadListing page) {
+                return page.getMultipartUploads().iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.qcloud.cos.iterable;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+
+/**
+ * Lazily paginated iteration over the object summaries of a bucket.
+ * <p>
+ * While the caller consumes a page, the following pages are fetched in the background, see
+ * {@link #withPrefetchPages(int)}. The pages are requested by the default executor on daemon
+ * threads unless {@link #withExecutor(Executor)} is set. Each call to {@link #iterator()}
+ * starts a new listing.
+ */
+public class COSObjects implements Iterable<COSObjectSummary> {
+
+    // 默认最多预取的页数
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private final COS cos;
+    private final String bucketName;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private Executor executor = PrefetchingPageIterator.DAEMON_THREAD_EXECUTOR;
+
+    private COSObjects(COS cos, String bucketName) {
+        this.cos = cos;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Iterates over all the objects of the bucket.
+     */
+    public static COSObjects inBucket(COS cos, String bucketName) {
+        return new COSObjects(cos, bucketName);
+    }
+
+    /**
+     * Iterates over the objects of the bucket whose key starts with the prefix.
+     */
+    public static COSObjects withPrefix(COS cos, String bucketName, String prefix) {
+        COSObjects objects = new COSObjects(cos, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the max number of keys requested per page, the service default is used if not set.
+     */
+    public COSObjects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the max number of pages fetched ahead of the one being consumed, 1 at least.
+     */
+    public COSObjects withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must be greater than 0, got " + prefetchPages);
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    /**
+     * Sets the executor sending the listing requests in the background.
+     */
+    public COSObjects withExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    public COS getCOSClient() {
+        return cos;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    @Override
+    public Iterator<COSObjectSummary> iterator() {
+        return new PrefetchingPageIterator<ObjectListing, COSObjectSummary>(executor, prefetchPages) {
+            @Override
+            protected ObjectListing fetchFirstPage() {
+                return cos.listObjects(
+                        new ListObjectsRequest(bucketName, prefix, null, null, batchSize));
+            }
+
+            @Override
+            protected ObjectListing fetchNextPage(ObjectListing previousPage) {
+                return cos.listNextBatchOfObjects(previousPage);
+            }
+
+            @Override
+            protected boolean isTruncated(ObjectListing page) {
+                return page.isTruncated();
+            }
+
+            @Override
+            protected Iterator<COSObjectSummary> itemsOf(ObjectListing page) {
+                return page.getObjectSummaries().iterator();
+            }
+        };
+    }
+}
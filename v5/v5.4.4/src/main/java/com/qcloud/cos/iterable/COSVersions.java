@@ -0,0 +1,128 @@
+package com.qcloud.cos.iterable;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.model.COSVersionSummary;
+import com.qcloud.cos.model.ListVersionsRequest;
+import com.qcloud.cos.model.VersionListing;
+
+/**
+ * Lazily paginated iteration over the object versions of a bucket.
+ * <p>
+ * While the caller consumes a page, the following pages are fetched in the background, see
+ * {@link #withPrefetchPages(int)}. The pages are requested by the default executor on daemon
+ * threads unless {@link #withExecutor(Executor)} is set. Each call to {@link #iterator()}
+ * starts a new listing.
+ */
+public class COSVersions implements Iterable<COSVersionSummary> {
+
+    // 默认最多预取的页数
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private final COS cos;
+    private final String bucketName;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private Executor executor = PrefetchingPageIterator.DAEMON_THREAD_EXECUTOR;
+
+    private COSVersions(COS cos, String bucketName) {
+        this.cos = cos;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Iterates over all the versions of all the objects of the bucket.
+     */
+    public static COSVersions inBucket(COS cos, String bucketName) {
+        return new COSVersions(cos, bucketName);
+    }
+
+    /**
+     * Iterates over the versions of the objects of the bucket whose key starts with the prefix.
+     */
+    public static COSVersions withPrefix(COS cos, String bucketName, String prefix) {
+        COSVersions versions = new COSVersions(cos, bucketName);
+        versions.prefix = prefix;
+        return versions;
+    }
+
+    /**
+     * Sets the max number of versions requested per page, the service default is used if not set.
+     */
+    public COSVersions withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the max number of pages fetched ahead of the one being consumed, 1 at least.
+     */
+    public COSVersions withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must be greater than 0, got " + prefetchPages);
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    /**
+     * Sets the executor sending the listing requests in the background.
+     */
+    public COSVersions withExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    public COS getCOSClient() {
+        return cos;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    @Override
+    public Iterator<COSVersionSummary> iterator() {
+        return new PrefetchingPageIterator<VersionListing, COSVersionSummary>(executor, prefetchPages) {
+            @Override
+            protected VersionListing fetchFirstPage() {
+                return cos.listVersions(
+                        new ListVersionsRequest(bucketName, prefix, null, null, null, batchSize));
+            }
+
+            @Override
+            protected VersionListing fetchNextPage(VersionListing previousPage) {
+                return cos.listNextBatchOfVersions(previousPage);
+            }
+
+            @Override
+            protected boolean isTruncated(VersionListing page) {
+                return page.isTruncated();
+            }
+
+            @Override
+            protected Iterator<COSVersionSummary> itemsOf(VersionListing page) {
+                return page.getVersionSummaries().iterator();
+            }
+        };
+    }
+}
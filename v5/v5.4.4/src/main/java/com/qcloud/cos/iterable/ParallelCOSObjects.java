@@ -0,0 +1,167 @@
+package com.qcloud.cos.iterable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.model.COSObjectSummary;
+
+/**
+ * Iteration over the object summaries of a bucket, listed by several requests at once.
+ * <p>
+ * The listing is sharded on the common prefixes found with the delimiter ("/" by default): every
+ * virtual directory discovered is listed on its own, with at most {@link #withConcurrency(int)}
+ * requests in flight. A flat prefix can also be split in key ranges listed in parallel, see
+ * {@link #withSplitPoints(Collection)}. The summaries are returned as they arrive, so their order
+ * is not defined unless {@link #withOrdered(boolean)} is set.
+ * <p>
+ * The requests are sent by the default executor on daemon threads unless
+ * {@link #withExecutor(Executor)} is set. Each call to {@link #iterator()} starts a new listing.
+ */
+public class ParallelCOSObjects implements Iterable<COSObjectSummary> {
+
+    // 默认最多同时发送的list请求数
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final String DEFAULT_DELIMITER = "/";
+    // 未指定batchSize时按服务端默认的每页1000个估算缓存上限
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final COS cos;
+    private final String bucketName;
+    private String prefix = "";
+    private String delimiter = DEFAULT_DELIMITER;
+    private Integer batchSize = null;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private List<String> splitPoints = Collections.emptyList();
+    private boolean ordered = false;
+    private Executor executor = PrefetchingPageIterator.DAEMON_THREAD_EXECUTOR;
+
+    private ParallelCOSObjects(COS cos, String bucketName) {
+        this.cos = cos;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Iterates over all the objects of the bucket.
+     */
+    public static ParallelCOSObjects inBucket(COS cos, String bucketName) {
+        return new ParallelCOSObjects(cos, bucketName);
+    }
+
+    /**
+     * Iterates over the objects of the bucket whose key starts with the prefix.
+     */
+    public static ParallelCOSObjects withPrefix(COS cos, String bucketName, String prefix) {
+        ParallelCOSObjects objects = new ParallelCOSObjects(cos, bucketName);
+        objects.prefix = prefix == null ? "" : prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the delimiter whose common prefixes are listed in parallel, null to list the prefix
+     * flat (only the split points are then listed in parallel).
+     */
+    public ParallelCOSObjects withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the max number of keys requested per page, the service default is used if not set.
+     */
+    public ParallelCOSObjects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the max number of listing requests in flight, 1 at least.
+     */
+    public ParallelCOSObjects withConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(
+                    "concurrency must be greater than 0, got " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Splits the listing in the key ranges (null, k1], (k1, k2], ..., (kn, null) listed in
+     * parallel. Useful when the keys are known to be spread, ie hashed key prefixes, since a range
+     * holding no common prefix is otherwise listed by a single request at a time.
+     */
+    public ParallelCOSObjects withSplitPoints(Collection<String> splitPoints) {
+        if (splitPoints == null) {
+            throw new IllegalArgumentException("splitPoints must not be null");
+        }
+        this.splitPoints = Collections.unmodifiableList(new ArrayList<String>(
+                new TreeSet<String>(splitPoints)));
+        return this;
+    }
+
+    /**
+     * Whether the summaries are returned in key order, like a sequential listing. The shards
+     * listed ahead of the one being consumed are then buffered until the caller reaches them.
+     */
+    public ParallelCOSObjects withOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Sets the executor sending the listing requests in the background.
+     */
+    public ParallelCOSObjects withExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    public COS getCOSClient() {
+        return cos;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public List<String> getSplitPoints() {
+        return splitPoints;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    @Override
+    public Iterator<COSObjectSummary> iterator() {
+        // 每个worker最多领先调用者两页
+        int pageSize = batchSize != null ? batchSize : DEFAULT_PAGE_SIZE;
+        return new ParallelListingIterator(cos, bucketName, prefix, delimiter, batchSize,
+                splitPoints, ordered, executor, concurrency, 2 * concurrency * pageSize);
+    }
+}
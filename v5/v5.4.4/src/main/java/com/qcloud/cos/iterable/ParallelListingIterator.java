@@ -0,0 +1,399 @@
+package com.qcloud.cos.iterable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+
+/**
+ * Iterates over the objects of a bucket by listing many shards at once, see
+ * {@link ParallelCOSObjects}.
+ * <p>
+ * A shard is a prefix, optionally bounded by a key range, listed page by page with the delimiter.
+ * Every common prefix of a page becomes a new shard with the key range of its parent, so the
+ * shards never overlap. The pages to request are kept in a queue sorted by key and sent by at
+ * most {@code concurrency} workers. A worker stops once {@code maxBufferedObjects} summaries are
+ * waiting to be consumed, unless the caller is waiting, and workers are started again when the
+ * caller takes summaries, so no thread is left blocked if the caller stops iterating early.
+ * <p>
+ * In ordered mode the summaries of every shard are kept in a tree in key order, and the caller
+ * walks the tree depth first, waiting for the shard it is positioned on. Shards located after
+ * this position may then be buffered beyond {@code maxBufferedObjects}.
+ * <p>
+ * This class is not thread safe, an iterator must be consumed by a single thread.
+ */
+final class ParallelListingIterator implements Iterator<COSObjectSummary> {
+
+    // 有序模式下一次最多交给调用者的对象数
+    private static final int MAX_ORDERED_BATCH = 1000;
+
+    private final COS cos;
+    private final String bucketName;
+    private final String delimiter;
+    private final Integer batchSize;
+    private final boolean ordered;
+    private final Executor executor;
+    private final int concurrency;
+    private final int maxBufferedObjects;
+
+    // 以下状态由lock保护, 在调用线程与后台worker之间共享
+    private final Object lock = new Object();
+    private final PriorityQueue<ShardTask> pendingTasks = new PriorityQueue<ShardTask>();
+    private boolean started = false;
+    // 等待发送或正在发送请求的shard数
+    private int unfinishedShards = 0;
+    private int runningWorkers = 0;
+    private int bufferedObjects = 0;
+    private boolean callerWaiting = false;
+    private RuntimeException listFailure;
+    // 无序模式: 按到达顺序排列的各页对象
+    private final Deque<List<COSObjectSummary>> fetchedObjects =
+            new ArrayDeque<List<COSObjectSummary>>();
+    // 有序模式: 输出树上的游标
+    private final Deque<CursorFrame> cursor = new ArrayDeque<CursorFrame>();
+
+    private Iterator<COSObjectSummary> currentItems =
+            Collections.<COSObjectSummary>emptyIterator();
+
+    private final Runnable worker = new Runnable() {
+        @Override
+        public void run() {
+            listPages();
+        }
+    };
+
+    /**
+     * @param splitPoints sorted keys splitting the prefix into the key ranges (null, k1],
+     *        (k1, k2], ..., (kn, null) listed independently.
+     */
+    ParallelListingIterator(COS cos, String bucketName, String prefix, String delimiter,
+            Integer batchSize, List<String> splitPoints, boolean ordered, Executor executor,
+            int concurrency, int maxBufferedObjects) {
+        this.cos = cos;
+        this.bucketName = bucketName;
+        this.delimiter = delimiter;
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.maxBufferedObjects = maxBufferedObjects;
+
+        ShardNode root = ordered ? new ShardNode() : null;
+        String lowerBound = null;
+        for (int i = 0; i <= splitPoints.size(); ++i) {
+            String upperBound = i < splitPoints.size() ? splitPoints.get(i) : null;
+            addShard(prefix, lowerBound, upperBound, root);
+            lowerBound = upperBound;
+        }
+        if (ordered) {
+            root.complete = true;
+            cursor.push(new CursorFrame(root));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentItems.hasNext()) {
+            List<COSObjectSummary> batch = nextBatch();
+            if (batch == null) {
+                return false;
+            }
+            currentItems = batch.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public COSObjectSummary next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentItems.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove is not supported by listing iterators");
+    }
+
+    /**
+     * Waits for the next summaries, null once all the shards are listed and consumed.
+     */
+    private List<COSObjectSummary> nextBatch() {
+        synchronized (lock) {
+            if (!started) {
+                started = true;
+                startWorkers();
+            }
+            while (true) {
+                if (listFailure != null) {
+                    throw listFailure;
+                }
+                List<COSObjectSummary> batch =
+                        ordered ? takeOrderedBatch() : fetchedObjects.pollFirst();
+                if (batch != null) {
+                    bufferedObjects -= batch.size();
+                    startWorkers();
+                    return batch;
+                }
+                if (ordered ? cursor.isEmpty() : unfinishedShards == 0) {
+                    return null;
+                }
+                callerWaiting = true;
+                startWorkers();
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CosClientException("listing has been interrupted", e);
+                } finally {
+                    callerWaiting = false;
+                }
+            }
+        }
+    }
+
+    // must hold lock. 沿游标深度优先遍历输出树, 返回已就绪的对象, 遇到未完成的shard时停止
+    @SuppressWarnings("unchecked")
+    private List<COSObjectSummary> takeOrderedBatch() {
+        List<COSObjectSummary> batch = null;
+        while (!cursor.isEmpty()) {
+            CursorFrame frame = cursor.peek();
+            List<Object> entries = frame.node.entries;
+            if (frame.index == entries.size()) {
+                if (!frame.node.complete) {
+                    break;
+                }
+                cursor.pop();
+                continue;
+            }
+            Object entry = entries.get(frame.index);
+            entries.set(frame.index++, null);
+            if (entry instanceof ShardNode) {
+                cursor.push(new CursorFrame((ShardNode) entry));
+            } else if (batch == null) {
+                batch = (List<COSObjectSummary>) entry;
+            } else {
+                batch.addAll((List<COSObjectSummary>) entry);
+            }
+            if (batch != null && batch.size() >= MAX_ORDERED_BATCH) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    // must hold lock
+    private void startWorkers() {
+        while (runningWorkers < concurrency && canListMore()) {
+            ++runningWorkers;
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                --runningWorkers;
+                if (runningWorkers == 0) {
+                    listFailure =
+                            new CosClientException("unable to schedule the listing request", e);
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    // must hold lock
+    private boolean canListMore() {
+        return listFailure == null && !pendingTasks.isEmpty()
+                && (bufferedObjects < maxBufferedObjects || callerWaiting);
+    }
+
+    private void listPages() {
+        while (true) {
+            ShardTask task;
+            synchronized (lock) {
+                if (!canListMore()) {
+                    --runningWorkers;
+                    return;
+                }
+                task = pendingTasks.poll();
+            }
+            ObjectListing page;
+            try {
+                page = task.lastPage == null ? cos.listObjects(task.firstPageRequest())
+                        : cos.listNextBatchOfObjects(task.lastPage);
+            } catch (Throwable t) {
+                synchronized (lock) {
+                    if (listFailure == null) {
+                        listFailure = t instanceof RuntimeException ? (RuntimeException) t
+                                : new CosClientException(t.getMessage(), t);
+                    }
+                    --runningWorkers;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                addPage(task, page);
+                startWorkers();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // must hold lock. 按key顺序合并对象与公共前缀, 公共前缀作为新的shard加入队列
+    private void addPage(ShardTask task, ObjectListing page) {
+        List<COSObjectSummary> objects = page.getObjectSummaries();
+        List<String> commonPrefixes =
+                delimiter == null ? Collections.<String>emptyList() : page.getCommonPrefixes();
+        List<COSObjectSummary> run = new ArrayList<COSObjectSummary>();
+        boolean reachedUpperBound = false;
+        int objectIndex = 0;
+        int prefixIndex = 0;
+        while (objectIndex < objects.size() || prefixIndex < commonPrefixes.size()) {
+            boolean isObject = prefixIndex == commonPrefixes.size()
+                    || (objectIndex < objects.size() && objects.get(objectIndex).getKey()
+                            .compareTo(commonPrefixes.get(prefixIndex)) < 0);
+            String key = isObject ? objects.get(objectIndex).getKey()
+                    : commonPrefixes.get(prefixIndex);
+            if (task.upperBound != null && key.compareTo(task.upperBound) > 0) {
+                reachedUpperBound = true;
+                break;
+            }
+            if (isObject) {
+                run.add(objects.get(objectIndex++));
+                continue;
+            }
+            ++prefixIndex;
+            if (key.equals(task.lowerBoundPrefix)) {
+                continue;
+            }
+            if (ordered) {
+                run = flushRun(task, run);
+            }
+            addShard(key, task.lowerBound, task.upperBound, task.node);
+        }
+        flushRun(task, run);
+
+        if (page.isTruncated() && !reachedUpperBound) {
+            task.lastPage = page;
+            pendingTasks.add(task);
+        } else {
+            --unfinishedShards;
+            if (ordered) {
+                task.node.complete = true;
+            }
+        }
+    }
+
+    /**
+     * Queues the listing of a prefix within (lowerBound, upperBound]. When the lower bound lies
+     * within a common prefix of this listing, ie prefix "a/" and lower bound "a/b/c", the service
+     * may or may not return this common prefix depending on whether it equals the marker, so its
+     * shard ("a/b/") is created right away and the common prefix is ignored in the pages.
+     * Must hold lock, or be called from the constructor.
+     */
+    private void addShard(String prefix, String lowerBound, String upperBound, ShardNode parent) {
+        ShardNode node = null;
+        if (ordered) {
+            node = new ShardNode();
+            parent.entries.add(node);
+        }
+        ShardTask task = new ShardTask(prefix, lowerBound, upperBound, node);
+        pendingTasks.add(task);
+        ++unfinishedShards;
+        if (delimiter != null && lowerBound != null && lowerBound.startsWith(prefix)) {
+            int index = lowerBound.indexOf(delimiter, prefix.length());
+            if (index >= 0) {
+                task.lowerBoundPrefix = lowerBound.substring(0, index + delimiter.length());
+                // 下界所在的公共前缀排在该shard所有其他内容之前
+                addShard(task.lowerBoundPrefix, lowerBound, upperBound, node);
+            }
+        }
+    }
+
+    // must hold lock
+    private List<COSObjectSummary> flushRun(ShardTask task, List<COSObjectSummary> run) {
+        if (run.isEmpty()) {
+            return run;
+        }
+        bufferedObjects += run.size();
+        if (ordered) {
+            task.node.entries.add(run);
+        } else {
+            fetchedObjects.addLast(run);
+        }
+        return new ArrayList<COSObjectSummary>();
+    }
+
+    /**
+     * The pages of a prefix within the key range (lowerBound, upperBound].
+     */
+    private final class ShardTask implements Comparable<ShardTask> {
+        private final String prefix;
+        private final String lowerBound;
+        private final String upperBound;
+        private final ShardNode node;
+        // 下界所在的公共前缀, 已单独列出
+        private String lowerBoundPrefix;
+        private ObjectListing lastPage;
+
+        private ShardTask(String prefix, String lowerBound, String upperBound, ShardNode node) {
+            this.prefix = prefix;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.node = node;
+        }
+
+        // 前缀之前的下界不影响结果
+        private String marker() {
+            return lowerBound != null && lowerBound.compareTo(prefix) >= 0 ? lowerBound : null;
+        }
+
+        private ListObjectsRequest firstPageRequest() {
+            return new ListObjectsRequest(bucketName, prefix, marker(), delimiter, batchSize);
+        }
+
+        // 下一页的起始key, 队列按此排序使靠前的shard先被列出
+        private String position() {
+            if (lastPage != null && lastPage.getNextMarker() != null) {
+                return lastPage.getNextMarker();
+            }
+            String marker = marker();
+            return marker != null ? marker : prefix;
+        }
+
+        @Override
+        public int compareTo(ShardTask other) {
+            return position().compareTo(other.position());
+        }
+    }
+
+    /**
+     * Output of a shard in ordered mode: runs of summaries and child shards, in key order.
+     */
+    private static final class ShardNode {
+        private final List<Object> entries = new ArrayList<Object>();
+        private boolean complete = false;
+    }
+
+    private static final class CursorFrame {
+        private final ShardNode node;
+        private int index = 0;
+
+        private CursorFrame(ShardNode node) {
+            this.node = node;
+        }
+    }
+}
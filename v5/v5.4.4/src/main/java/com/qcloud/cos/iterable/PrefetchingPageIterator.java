@@ -0,0 +1,189 @@
+package com.qcloud.cos.iterable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.qcloud.cos.exception.CosClientException;
+
+/**
+ * Iterates over the items of a paginated listing, fetching the next pages in the background while
+ * the caller consumes the current one.
+ * <p>
+ * A page can only be requested once the previous one is parsed (its markers are needed), so the
+ * pages are fetched one after the other by a background task. The task stops once
+ * {@code maxPrefetchPages} pages are waiting to be consumed and is resumed when the caller takes
+ * a page, so at most {@code maxPrefetchPages} + 1 pages are held in memory and no thread is left
+ * blocked if the caller stops iterating early.
+ * <p>
+ * This class is not thread safe, an iterator must be consumed by a single thread.
+ *
+ * @param <P> the page type, ie ObjectListing.
+ * @param <T> the item type, ie COSObjectSummary.
+ */
+abstract class PrefetchingPageIterator<P, T> implements Iterator<T> {
+
+    private final Executor executor;
+    private final int maxPrefetchPages;
+
+    // 以下状态由lock保护, 在调用线程与后台拉取任务之间共享
+    private final Object lock = new Object();
+    private final Deque<P> fetchedPages = new ArrayDeque<P>();
+    private P lastFetchedPage;
+    private boolean fetching = false;
+    private boolean allPagesFetched = false;
+    private RuntimeException fetchFailure;
+
+    private Iterator<T> currentItems = Collections.<T>emptyIterator();
+
+    private final Runnable fetchTask = new Runnable() {
+        @Override
+        public void run() {
+            fetchPages();
+        }
+    };
+
+    protected PrefetchingPageIterator(Executor executor, int maxPrefetchPages) {
+        if (maxPrefetchPages < 1) {
+            throw new IllegalArgumentException(
+                    "maxPrefetchPages must be greater than 0, got " + maxPrefetchPages);
+        }
+        this.executor = executor;
+        this.maxPrefetchPages = maxPrefetchPages;
+    }
+
+    /**
+     * Sends the request of the first page.
+     */
+    protected abstract P fetchFirstPage();
+
+    /**
+     * Sends the request of the page following the given one, only called for truncated pages.
+     */
+    protected abstract P fetchNextPage(P previousPage);
+
+    protected abstract boolean isTruncated(P page);
+
+    protected abstract Iterator<T> itemsOf(P page);
+
+    @Override
+    public boolean hasNext() {
+        while (!currentItems.hasNext()) {
+            P page = nextPage();
+            if (page == null) {
+                return false;
+            }
+            currentItems = itemsOf(page);
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentItems.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove is not supported by listing iterators");
+    }
+
+    /**
+     * Waits for the next page, null once all the pages are consumed. Taking a page resumes the
+     * background fetching if it stopped because the buffer was full.
+     */
+    private P nextPage() {
+        synchronized (lock) {
+            while (fetchedPages.isEmpty()) {
+                if (fetchFailure != null) {
+                    throw fetchFailure;
+                }
+                if (allPagesFetched) {
+                    return null;
+                }
+                if (!fetching) {
+                    startFetching();
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CosClientException("listing has been interrupted", e);
+                }
+            }
+            P page = fetchedPages.removeFirst();
+            if (!fetching && !allPagesFetched && fetchFailure == null) {
+                startFetching();
+            }
+            return page;
+        }
+    }
+
+    // must hold lock
+    private void startFetching() {
+        fetching = true;
+        try {
+            executor.execute(fetchTask);
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            fetchFailure = new CosClientException("unable to schedule the listing request", e);
+        }
+    }
+
+    private void fetchPages() {
+        while (true) {
+            P previousPage;
+            synchronized (lock) {
+                if (fetchedPages.size() >= maxPrefetchPages) {
+                    fetching = false;
+                    return;
+                }
+                previousPage = lastFetchedPage;
+            }
+            P page;
+            try {
+                page = previousPage == null ? fetchFirstPage() : fetchNextPage(previousPage);
+            } catch (Throwable t) {
+                synchronized (lock) {
+                    fetchFailure = t instanceof RuntimeException ? (RuntimeException) t
+                            : new CosClientException(t.getMessage(), t);
+                    fetching = false;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                fetchedPages.addLast(page);
+                lastFetchedPage = page;
+                if (!isTruncated(page)) {
+                    allPagesFetched = true;
+                    fetching = false;
+                }
+                lock.notifyAll();
+                if (allPagesFetched) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Default executor: runs every fetching round on a new daemon thread. A round lasts until the
+     * prefetch buffer is full, so the thread never waits for the caller.
+     */
+    static final Executor DAEMON_THREAD_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command, "cos-listing-prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    };
+}
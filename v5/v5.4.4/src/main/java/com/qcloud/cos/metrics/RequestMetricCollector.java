@@ -0,0 +1,20 @@
+package com.qcloud.cos.metrics;
+
+import com.qcloud.cos.http.CosHttpRequest;
+
+/**
+ * Listener notified once per request sent by the blocking client, see
+ * {@link com.qcloud.cos.ClientConfig#setRequestMetricCollector(RequestMetricCollector)}. It is
+ * called on the thread which sent the request, after the last attempt and before the result is
+ * returned to the caller, so implementations should be fast and must not throw.
+ * <p>
+ * When no collector is configured no timing record is created at all.
+ */
+public interface RequestMetricCollector {
+    /**
+     * @param request the request, the original request is available through
+     *        {@link CosHttpRequest#getOriginalRequest()}.
+     * @param metrics the timing record of the request.
+     */
+    public void collectMetrics(CosHttpRequest<?> request, RequestMetrics metrics);
+}
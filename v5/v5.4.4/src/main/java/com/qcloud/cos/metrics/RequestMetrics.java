@@ -0,0 +1,140 @@
+package com.qcloud.cos.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing record of one request sent by the blocking client. The time spent in each
+ * {@link Phase} is accumulated over all the attempts of the request, so a retried request reports
+ * the whole time it cost to the caller. Likewise the sent bytes count the content read by the http
+ * client in every attempt, whether it was sent in full, in chunks or cut short.
+ * <p>
+ * For responses whose content is handed to the caller as a stream (getObject), the receive phase
+ * and the received bytes only cover what was read before the stream was returned.
+ */
+public class RequestMetrics {
+
+    public enum Phase {
+        /** computing the authorization of the request */
+        SIGN,
+        /** waiting for a connection of the pool, see ClientConfig#getConnectionRequestTimeout */
+        CONNECTION_LEASE,
+        /** tcp connect and tls handshake, only for requests that could not reuse a connection */
+        CONNECT,
+        /** writing the request line, the headers and the body */
+        SEND,
+        /** waiting for the response head once the request is sent */
+        TIME_TO_FIRST_BYTE,
+        /** reading the response body */
+        RECEIVE,
+        /** parsing the response, excluding the time spent reading the body */
+        UNMARSHAL
+    }
+
+    private final long startNanos;
+    private long endNanos;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private int retriesAttempted;
+    private long bytesSent;
+    private long bytesReceived;
+    private int statusCode;
+    private String requestId;
+    private Exception exception;
+
+    public RequestMetrics() {
+        this.startNanos = System.nanoTime();
+    }
+
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getPhaseMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase));
+    }
+
+    public void markEnd() {
+        this.endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the time elapsed from the creation of this record to {@link #markEnd()}.
+     */
+    public long getTotalNanos() {
+        return endNanos - startNanos;
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getTotalNanos());
+    }
+
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
+    public void setRetriesAttempted(int retriesAttempted) {
+        this.retriesAttempted = retriesAttempted;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public void addBytesSent(long bytes) {
+        this.bytesSent += bytes;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public void addBytesReceived(long bytes) {
+        this.bytesReceived += bytes;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return the exception thrown to the caller, null if the request succeeded.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{requestId: ").append(requestId).append(", statusCode: ")
+                .append(statusCode).append(", totalMs: ").append(getTotalMillis());
+        for (Phase phase : Phase.values()) {
+            strBuilder.append(", ").append(phase).append("Ms: ").append(getPhaseMillis(phase));
+        }
+        strBuilder.append(", retries: ").append(retriesAttempted).append(", bytesSent: ")
+                .append(bytesSent).append(", bytesReceived: ").append(bytesReceived);
+        if (exception != null) {
+            strBuilder.append(", exception: ").append(exception);
+        }
+        return strBuilder.append("}").toString();
+    }
+}
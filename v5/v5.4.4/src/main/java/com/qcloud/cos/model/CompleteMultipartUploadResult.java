@@ -35,6 +35,9 @@ public class CompleteMultipartUploadResult extends SSEResultBase
      */
     private String versionId;
 
+    /** The CRC64 checksum of the new object */
+    private String crc64Ecma;
+
     /** The time this object expires, or null if it has no expiration */
     private Date expirationTime;
 
@@ -203,4 +206,20 @@ public class CompleteMultipartUploadResult extends SSEResultBase
         this.expirationTimeRuleId = expirationTimeRuleId;
     }
 
+    /**
+     * Returns the CRC64 (ECMA-182) checksum of the new object as calculated by Qcloud COS, as an
+     * unsigned decimal number, or null if it is not known.
+     */
+    public String getCrc64Ecma() {
+        return crc64Ecma;
+    }
+
+    /**
+     * Sets the CRC64 (ECMA-182) checksum of the new object as calculated by Qcloud COS.
+     *
+     * @param crc64Ecma the checksum as an unsigned decimal number.
+     */
+    public void setCrc64Ecma(String crc64Ecma) {
+        this.crc64Ecma = crc64Ecma;
+    }
 }
@@ -34,6 +34,10 @@ public class EncryptedInitiateMultipartUploadRequest extends
      * otherwise. Default is true.
      */
     private boolean createEncryptionMaterial = true;
+    /**
+     * Size of all the parts of the upload but the last, or 0 if unknown.
+     */
+    private long partSize;
 
     public EncryptedInitiateMultipartUploadRequest(String bucketName, String key) {
         super(bucketName, key);
@@ -95,4 +99,36 @@ public class EncryptedInitiateMultipartUploadRequest extends
         this.createEncryptionMaterial = createEncryptionMaterial;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the size of all the parts of the upload but the last, or 0 if it is unknown.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Sets the size of all the parts of the upload but the last. When it is known in advance,
+     * these parts are encrypted independently of each other and can be uploaded concurrently and
+     * in any order; the last part must then be uploaded after all the others. When it is 0, the
+     * default, the parts must be uploaded serially and in order.
+     *
+     * @param partSize
+     *            the part size, a multiple of the cipher block size (16 bytes), or 0.
+     */
+    public void setPartSize(long partSize) {
+        if (partSize < 0 || partSize % 16 != 0) {
+            throw new IllegalArgumentException(
+                    "partSize must be a non negative multiple of 16, got " + partSize);
+        }
+        this.partSize = partSize;
+    }
+
+    /**
+     * @see #setPartSize(long)
+     */
+    public EncryptedInitiateMultipartUploadRequest withPartSize(long partSize) {
+        setPartSize(partSize);
+        return this;
+    }
+}
@@ -0,0 +1,54 @@
+package com.qcloud.cos.model;
+
+import com.qcloud.cos.exception.CosClientException;
+
+/**
+ * Outcome of the HEAD request of one key of
+ * {@link com.qcloud.cos.COS#headObjects(String, java.util.Collection, int)}: the metadata of the
+ * object, its absence, or the error of the request.
+ */
+public class HeadObjectResult {
+
+    private final String key;
+    private final ObjectMetadata metadata;
+    private final CosClientException exception;
+
+    public HeadObjectResult(String key, ObjectMetadata metadata, CosClientException exception) {
+        this.key = key;
+        this.metadata = metadata;
+        this.exception = exception;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the metadata of the object, or null if it does not exist or the request failed.
+     */
+    public ObjectMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the exception of the request, or null if it succeeded or the object does not
+     *         exist (404).
+     */
+    public CosClientException getException() {
+        return exception;
+    }
+
+    /**
+     * @return true if the object exists, false if it does not or the request failed.
+     */
+    public boolean exists() {
+        return metadata != null;
+    }
+
+    /**
+     * @return true if the request succeeded, or returned 404 for a missing object.
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+}
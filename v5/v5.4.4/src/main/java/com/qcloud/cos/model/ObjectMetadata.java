@@ -559,6 +559,16 @@ public class ObjectMetadata implements ServerSideEncryptionResult, ObjectExpirat
         return (String) metadata.get(Headers.COS_VERSION_ID);
     }
 
+    /**
+     * Returns the CRC64 (ECMA-182) checksum of the content of the associated object as
+     * calculated by Qcloud COS, as an unsigned decimal number, or null if it is not known.
+     *
+     * @see com.qcloud.cos.utils.CRC64#fromString(String)
+     */
+    public String getCrc64Ecma() {
+        return (String) metadata.get(Headers.COS_HASH_CRC64_ECMA);
+    }
+
     /**
      * Returns the server-side encryption algorithm for the object, or null if none was used.
      */
@@ -12,6 +12,10 @@ public class PartETag implements Serializable {
     /** The entity tag generated from the content of the associated part. */
     private String eTag;
 
+    private String crc64Ecma;
+
+    private long partSize = -1;
+
 
     /**
      * Constructs an instance of PartETag and sets the part number and ETag.
@@ -87,4 +91,27 @@ public class PartETag implements Serializable {
         return this;
     }
 
+    /**
+     * Returns the CRC64 (ECMA-182) checksum of the part as calculated by Qcloud COS, as an
+     * unsigned decimal number, or null if it is not known. It is not sent when completing the
+     * upload, but lets the checksum of the whole object be verified.
+     */
+    public String getCrc64Ecma() {
+        return crc64Ecma;
+    }
+
+    public void setCrc64Ecma(String crc64Ecma) {
+        this.crc64Ecma = crc64Ecma;
+    }
+
+    /**
+     * Returns the size in bytes of the part, or -1 if it is not known.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
 }
@@ -39,6 +39,8 @@ public class PutObjectResult extends SSEResultBase implements ObjectExpirationRe
     /** The metadata returned as a result of PutObject operation. */
     private ObjectMetadata metadata;
 
+    /** The number of retries attempted before the object was uploaded */
+    private int retriesAttempted;
 
     /**
      * get requestid for this upload
@@ -189,4 +191,20 @@ public class PutObjectResult extends SSEResultBase implements ObjectExpirationRe
     public void setMetadata(ObjectMetadata metadata) {
         this.metadata = metadata;
     }
+
+    /**
+     * Returns the number of retries the client attempted before the upload succeeded, 0 if it
+     * succeeded at the first attempt. A high count hints at throttling or at an unreliable
+     * network.
+     */
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
+    /**
+     * Sets the number of retries the client attempted before the upload succeeded.
+     */
+    public void setRetriesAttempted(int retriesAttempted) {
+        this.retriesAttempted = retriesAttempted;
+    }
 }
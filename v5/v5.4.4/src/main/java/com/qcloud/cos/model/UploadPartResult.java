@@ -11,6 +11,15 @@ public class UploadPartResult extends SSEResultBase implements Serializable {
     /** The entity tag generated from the content of the upload part */
     private String eTag;
 
+    /** The CRC64 checksum of the content of the upload part */
+    private String crc64Ecma;
+
+    /** The size of the upload part */
+    private long partSize = -1;
+
+    /** The number of retries attempted before the part was uploaded */
+    private int retriesAttempted;
+
     /**
      * Returns the part number of the newly uploaded part.
      *
@@ -59,6 +68,56 @@ public class UploadPartResult extends SSEResultBase implements Serializable {
      *         and the entity tag computed from the part's data.
      */
     public PartETag getPartETag() {
-        return new PartETag(partNumber, eTag);
+        PartETag partETag = new PartETag(partNumber, eTag);
+        partETag.setCrc64Ecma(crc64Ecma);
+        partETag.setPartSize(partSize);
+        return partETag;
+    }
+
+    /**
+     * Returns the CRC64 (ECMA-182) checksum of the newly uploaded part as calculated by Qcloud
+     * COS, as an unsigned decimal number, or null if it is not known.
+     */
+    public String getCrc64Ecma() {
+        return crc64Ecma;
+    }
+
+    /**
+     * Sets the CRC64 (ECMA-182) checksum of the newly uploaded part as calculated by Qcloud COS.
+     *
+     * @param crc64Ecma the checksum as an unsigned decimal number.
+     */
+    public void setCrc64Ecma(String crc64Ecma) {
+        this.crc64Ecma = crc64Ecma;
+    }
+
+    /**
+     * Returns the size in bytes of the newly uploaded part, or -1 if it is not known.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Sets the size in bytes of the newly uploaded part.
+     */
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    /**
+     * Returns the number of retries the client attempted before the upload of the part
+     * succeeded, 0 if it succeeded at the first attempt. A high count hints at throttling or at
+     * an unreliable network.
+     */
+    public int getRetriesAttempted() {
+        return retriesAttempted;
+    }
+
+    /**
+     * Sets the number of retries the client attempted before the upload of the part succeeded.
+     */
+    public void setRetriesAttempted(int retriesAttempted) {
+        this.retriesAttempted = retriesAttempted;
     }
 }
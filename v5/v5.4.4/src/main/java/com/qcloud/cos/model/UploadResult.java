@@ -33,6 +33,9 @@ public class UploadResult {
      */
     private String versionId;
 
+    /** The CRC64 checksum of the new object */
+    private String crc64Ecma;
+
     /**
      * get requestid for this upload
      * 
@@ -143,4 +146,21 @@ public class UploadResult {
     public void setVersionId(String versionId) {
         this.versionId = versionId;
     }
+
+    /**
+     * Returns the CRC64 (ECMA-182) checksum of the new object as calculated by Qcloud COS, as an
+     * unsigned decimal number, or null if it is not known.
+     */
+    public String getCrc64Ecma() {
+        return crc64Ecma;
+    }
+
+    /**
+     * Sets the CRC64 (ECMA-182) checksum of the new object as calculated by Qcloud COS.
+     *
+     * @param crc64Ecma the checksum as an unsigned decimal number.
+     */
+    public void setCrc64Ecma(String crc64Ecma) {
+        this.crc64Ecma = crc64Ecma;
+    }
 }
@@ -0,0 +1,46 @@
+package com.qcloud.cos.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.retry.RetryPolicy.BackoffStrategy;
+
+/**
+ * Capped exponential backoff with full jitter: the delay before the n-th retry is picked
+ * uniformly in [0, min(maxBackoff, baseDelay * 2^n)]. Spreading the retries of concurrent clients
+ * over the whole window avoids them hitting the service again in lockstep.
+ */
+public class FullJitterBackoffStrategy implements BackoffStrategy {
+
+    // 避免指数过大导致溢出
+    private static final int MAX_RETRIES_SHIFT = 30;
+
+    private final long baseDelayMs;
+    private final long maxBackoffMs;
+
+    public FullJitterBackoffStrategy(long baseDelayMs, long maxBackoffMs) {
+        if (baseDelayMs <= 0 || maxBackoffMs < baseDelayMs) {
+            throw new IllegalArgumentException("illegal backoff, baseDelayMs: " + baseDelayMs
+                    + ", maxBackoffMs: " + maxBackoffMs);
+        }
+        this.baseDelayMs = baseDelayMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Override
+    public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+            CosClientException exception, int retriesAttempted) {
+        int shift = Math.min(Math.max(retriesAttempted, 0), MAX_RETRIES_SHIFT);
+        long ceil = Math.min(maxBackoffMs, baseDelayMs << shift);
+        return ThreadLocalRandom.current().nextLong(ceil + 1);
+    }
+
+    public long getBaseDelayMs() {
+        return baseDelayMs;
+    }
+
+    public long getMaxBackoffMs() {
+        return maxBackoffMs;
+    }
+}
@@ -0,0 +1,103 @@
+package com.qcloud.cos.retry;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.retry.RetryPolicy.BackoffStrategy;
+import com.qcloud.cos.retry.RetryPolicy.RetryCondition;
+
+/**
+ * This class includes a set of pre-defined retry policies, including default policies used by
+ * the SDK.
+ */
+public class PredefinedRetryPolicies {
+
+    /** Default max retry count, i.e. at most 5 attempts for one request. */
+    public static final int DEFAULT_MAX_ERROR_RETRY = 4;
+
+    /** Base delay of the exponential backoff for ordinary errors, in milliseconds. */
+    private static final long BASE_DELAY_MS = 100;
+
+    /** Base delay for throttled requests, the service asked us to slow down. */
+    private static final long THROTTLED_BASE_DELAY_MS = 500;
+
+    /** Upper bound of the delay between two attempts, in milliseconds. */
+    private static final long MAX_BACKOFF_MS = 20 * 1000;
+
+    /** No retry condition */
+    public static final RetryCondition NO_RETRY_CONDITION = new RetryCondition() {
+        @Override
+        public boolean shouldRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted) {
+            return false;
+        }
+    };
+
+    /** No back-off strategy, retry at once */
+    public static final BackoffStrategy NO_BACKOFF_STRATEGY = new BackoffStrategy() {
+        @Override
+        public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted) {
+            return 0;
+        }
+    };
+
+    /**
+     * The default retry condition: IO errors, 5xx service errors and throttling errors (503
+     * SlowDown, 429) are retried, the other client errors are not.
+     */
+    public static final RetryCondition DEFAULT_RETRY_CONDITION = new RetryCondition() {
+        @Override
+        public boolean shouldRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted) {
+            if (!exception.isRetryable()) {
+                return false;
+            }
+            return RetryUtils.isIOException(exception)
+                    || RetryUtils.isRetryableServiceException(exception);
+        }
+    };
+
+    /**
+     * The default back-off strategy: capped full-jitter exponential backoff, with a larger base
+     * delay when the service is throttling.
+     */
+    public static final BackoffStrategy DEFAULT_BACKOFF_STRATEGY = new BackoffStrategy() {
+        private final BackoffStrategy normalBackoff =
+                new FullJitterBackoffStrategy(BASE_DELAY_MS, MAX_BACKOFF_MS);
+        private final BackoffStrategy throttledBackoff =
+                new FullJitterBackoffStrategy(THROTTLED_BASE_DELAY_MS, MAX_BACKOFF_MS);
+
+        @Override
+        public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted) {
+            if (RetryUtils.isThrottlingException(exception)) {
+                return throttledBackoff.delayBeforeNextRetry(originalRequest, exception,
+                        retriesAttempted);
+            }
+            return normalBackoff.delayBeforeNextRetry(originalRequest, exception,
+                    retriesAttempted);
+        }
+    };
+
+    /** Retry policy that never retries. */
+    public static final RetryPolicy NO_RETRY_POLICY =
+            new RetryPolicy(NO_RETRY_CONDITION, NO_BACKOFF_STRATEGY, 0);
+
+    /** SDK default retry policy. */
+    public static final RetryPolicy DEFAULT = getDefaultRetryPolicy();
+
+    /**
+     * Returns the SDK default retry policy.
+     */
+    public static RetryPolicy getDefaultRetryPolicy() {
+        return new RetryPolicy(DEFAULT_RETRY_CONDITION, DEFAULT_BACKOFF_STRATEGY,
+                DEFAULT_MAX_ERROR_RETRY);
+    }
+
+    /**
+     * Returns the SDK default retry policy with the specified max retry count.
+     */
+    public static RetryPolicy getDefaultRetryPolicyWithCustomMaxRetries(int maxErrorRetry) {
+        return new RetryPolicy(DEFAULT_RETRY_CONDITION, DEFAULT_BACKOFF_STRATEGY, maxErrorRetry);
+    }
+}
@@ -0,0 +1,81 @@
+package com.qcloud.cos.retry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client wide token bucket limiting the number of retries. Every retry takes
+ * {@link #RETRY_COST} tokens from the bucket; a request that succeeds refills it, by
+ * {@link #NO_RETRY_INCREMENT} when it succeeded at once or by {@link #RETRY_COST} when it
+ * succeeded after retrying. When the service keeps failing the bucket drains and requests fail
+ * fast instead of multiplying the load on the service.
+ */
+public class RetryBudget {
+
+    /** Tokens taken by one retry. */
+    public static final int RETRY_COST = 5;
+
+    /** Tokens given back by a request succeeding at the first attempt. */
+    public static final int NO_RETRY_INCREMENT = 1;
+
+    private final int capacity;
+    private final AtomicInteger availableCapacity;
+
+    /**
+     * @param capacity the max number of tokens in the bucket, a non-positive value means no
+     *        limit.
+     */
+    public RetryBudget(int capacity) {
+        this.capacity = capacity;
+        this.availableCapacity = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Tries to take the cost of one retry from the bucket.
+     *
+     * @return true if the retry is allowed.
+     */
+    public boolean acquireRetry() {
+        if (capacity <= 0) {
+            return true;
+        }
+        while (true) {
+            int available = availableCapacity.get();
+            if (available < RETRY_COST) {
+                return false;
+            }
+            if (availableCapacity.compareAndSet(available, available - RETRY_COST)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Refills the bucket after a successful request.
+     *
+     * @param retriesAttempted the number of retries the successful request needed.
+     */
+    public void onSuccess(int retriesAttempted) {
+        if (capacity <= 0) {
+            return;
+        }
+        int increment = retriesAttempted == 0 ? NO_RETRY_INCREMENT : RETRY_COST;
+        while (true) {
+            int available = availableCapacity.get();
+            if (available >= capacity) {
+                return;
+            }
+            if (availableCapacity.compareAndSet(available,
+                    Math.min(capacity, available + increment))) {
+                return;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getAvailableCapacity() {
+        return availableCapacity.get();
+    }
+}
@@ -0,0 +1,103 @@
+package com.qcloud.cos.retry;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.CosServiceRequest;
+
+/**
+ * Retry policy that can be configured on a specific client through
+ * {@link com.qcloud.cos.ClientConfig#setRetryPolicy(RetryPolicy)}. A retry policy is made of a
+ * {@link RetryCondition} deciding whether a failed request should be retried, a
+ * {@link BackoffStrategy} deciding how long to wait before the next attempt, and the maximum
+ * number of retries.
+ *
+ * @see PredefinedRetryPolicies
+ */
+public class RetryPolicy {
+
+    private final RetryCondition retryCondition;
+
+    private final BackoffStrategy backoffStrategy;
+
+    private final int maxErrorRetry;
+
+    /**
+     * Constructs a new retry policy.
+     *
+     * @param retryCondition The retry condition on whether a specific request and exception
+     *        should be retried. If null, {@link PredefinedRetryPolicies#NO_RETRY_CONDITION} will be
+     *        used.
+     * @param backoffStrategy The back-off strategy for controlling how long the next retry should
+     *        wait. If null, {@link PredefinedRetryPolicies#NO_BACKOFF_STRATEGY} will be used.
+     * @param maxErrorRetry The maximum number of retries after the first attempt, must not be
+     *        negative.
+     */
+    public RetryPolicy(RetryCondition retryCondition, BackoffStrategy backoffStrategy,
+            int maxErrorRetry) {
+        if (maxErrorRetry < 0) {
+            throw new IllegalArgumentException(
+                    "maxErrorRetry should be non-negative, but is " + maxErrorRetry);
+        }
+        this.retryCondition = retryCondition == null ? PredefinedRetryPolicies.NO_RETRY_CONDITION
+                : retryCondition;
+        this.backoffStrategy = backoffStrategy == null
+                ? PredefinedRetryPolicies.NO_BACKOFF_STRATEGY : backoffStrategy;
+        this.maxErrorRetry = maxErrorRetry;
+    }
+
+    public RetryCondition getRetryCondition() {
+        return retryCondition;
+    }
+
+    public BackoffStrategy getBackoffStrategy() {
+        return backoffStrategy;
+    }
+
+    public int getMaxErrorRetry() {
+        return maxErrorRetry;
+    }
+
+    /**
+     * The hook for providing custom condition on whether a failed request should be retried.
+     */
+    public static interface RetryCondition {
+        /**
+         * Returns whether a failed request should be retried according to the given request
+         * context. In the following circumstances, the request will fail directly without
+         * consulting this method:
+         * <ul>
+         * <li>if it has already reached the max retry limit,
+         * <li>if the request contains non-repeatable content,
+         * <li>if the client wide retry budget is exhausted.
+         * </ul>
+         *
+         * @param originalRequest The original request object being executed. For immutable
+         *        requests, it should not be modified in the method.
+         * @param exception The exception from the failed request, represented as a
+         *        CosClientException object. It is a {@link com.qcloud.cos.exception.CosServiceException}
+         *        when the service returned an error response.
+         * @param retriesAttempted The number of times the current request has been retried.
+         *
+         * @return True if the failed request should be retried.
+         */
+        public boolean shouldRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted);
+    }
+
+    /**
+     * The hook for providing custom back-off strategy to control the sleep time between retries.
+     */
+    public static interface BackoffStrategy {
+        /**
+         * Returns the delay (in milliseconds) before next retry attempt.
+         *
+         * @param originalRequest The original request object being executed.
+         * @param exception The exception from the failed request.
+         * @param retriesAttempted The number of times the current request has been retried, 0 for
+         *        the first retry.
+         *
+         * @return The delay (in milliseconds) before next retry attempt.
+         */
+        public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+                CosClientException exception, int retriesAttempted);
+    }
+}
@@ -0,0 +1,55 @@
+package com.qcloud.cos.retry;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+
+public class RetryUtils {
+
+    // 服务端过载或限频时返回的错误码
+    private static final Set<String> THROTTLING_ERROR_CODES = new HashSet<String>(Arrays.asList(
+            "SlowDown", "Throttling", "ThrottlingException", "RequestLimitExceeded",
+            "TooManyRequests", "RequestThrottled"));
+
+    // 服务端临时性错误, 重试后可能成功
+    private static final Set<String> RETRYABLE_ERROR_CODES = new HashSet<String>(
+            Arrays.asList("InternalError", "ServiceUnavailable", "RequestTimeout"));
+
+    /**
+     * Returns true if the specified exception is a throttling error: the service asks the client
+     * to slow down (503 SlowDown, 429, ...).
+     */
+    public static boolean isThrottlingException(CosClientException exception) {
+        if (!(exception instanceof CosServiceException)) {
+            return false;
+        }
+        CosServiceException cse = (CosServiceException) exception;
+        return cse.getStatusCode() == 429 || THROTTLING_ERROR_CODES.contains(cse.getErrorCode());
+    }
+
+    /**
+     * Returns true if the specified exception is a service error that may succeed when retried:
+     * 5xx responses and the transient error codes such as RequestTimeout.
+     */
+    public static boolean isRetryableServiceException(CosClientException exception) {
+        if (!(exception instanceof CosServiceException)) {
+            return false;
+        }
+        CosServiceException cse = (CosServiceException) exception;
+        return cse.getStatusCode() >= 500 || RETRYABLE_ERROR_CODES.contains(cse.getErrorCode())
+                || isThrottlingException(cse);
+    }
+
+    /**
+     * Returns true if the specified exception is a client side failure caused by an IO error,
+     * such as a connect timeout or a connection reset.
+     */
+    public static boolean isIOException(CosClientException exception) {
+        return !(exception instanceof CosServiceException)
+                && exception.getCause() instanceof IOException;
+    }
+}
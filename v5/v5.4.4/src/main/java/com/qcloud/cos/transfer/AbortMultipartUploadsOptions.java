@@ -0,0 +1,105 @@
+package com.qcloud.cos.transfer;
+
+import java.util.Date;
+
+/**
+ * Options of {@link TransferManager#abortMultipartUploads(String, Date,
+ * AbortMultipartUploadsOptions)}.
+ */
+public class AbortMultipartUploadsOptions {
+
+    /** Default number of uploads aborted at once. */
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private String prefix = null;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean dryRun = false;
+    private boolean countParts = true;
+
+    /**
+     * @return the prefix of the keys of the uploads to abort, null for all the uploads.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Only aborts the uploads whose key starts with the prefix, null for all the uploads.
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public AbortMultipartUploadsOptions withPrefix(String prefix) {
+        setPrefix(prefix);
+        return this;
+    }
+
+    /**
+     * @return the max number of uploads processed at once.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the max number of uploads whose parts are listed and which are aborted at once, 1 at
+     * least. The next pages of uploads are listed meanwhile. The uploads share the thread pool of
+     * the <code>TransferManager</code> fairly with the transfers in progress, so fewer uploads
+     * may be processed at once, see
+     * {@link TransferManagerConfiguration#setMaxConcurrentPartRequests(int)}.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(
+                    "concurrency must be greater than 0, got " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public AbortMultipartUploadsOptions withConcurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    /**
+     * @return whether the uploads are only counted, not aborted.
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * Sets whether the uploads which would be aborted, and their parts when
+     * {@link #isCountParts()}, are only counted.
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public AbortMultipartUploadsOptions withDryRun(boolean dryRun) {
+        setDryRun(dryRun);
+        return this;
+    }
+
+    /**
+     * @return whether the parts of each upload are listed before it is aborted.
+     */
+    public boolean isCountParts() {
+        return countParts;
+    }
+
+    /**
+     * Sets whether the parts of each upload are listed before it is aborted, true by default, to
+     * report the number and bytes of parts reclaimed. Costs at least one ListParts request per
+     * upload.
+     */
+    public void setCountParts(boolean countParts) {
+        this.countParts = countParts;
+    }
+
+    public AbortMultipartUploadsOptions withCountParts(boolean countParts) {
+        setCountParts(countParts);
+        return this;
+    }
+}
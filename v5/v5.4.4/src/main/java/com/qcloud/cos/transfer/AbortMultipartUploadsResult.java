@@ -0,0 +1,97 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.MultipartUpload;
+
+/**
+ * Totals of the abort of the multipart uploads initiated before a date. In a dry run, the uploads
+ * and parts reported aborted are the ones which would have been.
+ */
+public class AbortMultipartUploadsResult {
+
+    private final boolean dryRun;
+    private final long abortedUploads;
+    private final long failedUploads;
+    private final long reclaimedParts;
+    private final long reclaimedBytes;
+    private final long elapsedNanos;
+    private final List<MultipartUpload> failures;
+    private final List<CosClientException> errors;
+
+    AbortMultipartUploadsResult(boolean dryRun, long abortedUploads, long failedUploads,
+            long reclaimedParts, long reclaimedBytes, long elapsedNanos,
+            List<MultipartUpload> failures, List<CosClientException> errors) {
+        this.dryRun = dryRun;
+        this.abortedUploads = abortedUploads;
+        this.failedUploads = failedUploads;
+        this.reclaimedParts = reclaimedParts;
+        this.reclaimedBytes = reclaimedBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableList(new ArrayList<MultipartUpload>(failures));
+        this.errors = Collections.unmodifiableList(new ArrayList<CosClientException>(errors));
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * @return the number of uploads aborted, or which would have been in a dry run.
+     */
+    public long getAbortedUploads() {
+        return abortedUploads;
+    }
+
+    /**
+     * @return the number of uploads which could not be aborted, or counted in a dry run.
+     */
+    public long getFailedUploads() {
+        return failedUploads;
+    }
+
+    /**
+     * @return the number of parts of the aborted uploads, 0 if the parts were not counted.
+     */
+    public long getReclaimedParts() {
+        return reclaimedParts;
+    }
+
+    /**
+     * @return the total size of the parts of the aborted uploads, 0 if the parts were not
+     *         counted.
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return the uploads which could not be aborted, in the order they failed.
+     */
+    public List<MultipartUpload> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the exception of each failed upload, in the same order as {@link #getFailures()}.
+     */
+    public List<CosClientException> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "{dryRun: %b, aborted: %d, failed: %d, parts: %d, bytes: %d, elapsedMs: %d}",
+                dryRun, abortedUploads, failedUploads, reclaimedParts, reclaimedBytes,
+                getElapsedMillis());
+    }
+}
@@ -0,0 +1,205 @@
+package com.qcloud.cos.transfer;
+
+import static com.qcloud.cos.internal.Constants.MB;
+
+/**
+ * Adapts the size of the next parts of a multipart upload and the number of its parts in flight
+ * to the throughput and latency measured for the parts uploaded so far.
+ * <p>
+ * A part is sized to take about {@link #TARGET_PART_SECONDS} to upload at the throughput of a
+ * connection measured so far, so that parts are large on fast links and retries cheap on slow
+ * ones. The size changes at most by a factor of two at a time, is halved when a part fails, and
+ * stays within the minimum and maximum part sizes, though it grows as needed for the remaining
+ * data to fit in the remaining part numbers.
+ * <p>
+ * The number of parts in flight is adjusted AIMD-style: it grows by one each time as many parts
+ * as are in flight succeed without a sign of congestion, and is halved when a part fails or
+ * takes more than {@link #LATENCY_TOLERANCE} times the time per byte of the fastest part of the
+ * same size. A part which only succeeded after retries, for instance because the requests were
+ * throttled, counts as a failure. Parts started before a decrease don't cause another one.
+ */
+class AdaptiveUploadController {
+    /** The time a part should take to upload, in seconds. */
+    static final double TARGET_PART_SECONDS = 4;
+    /** The ratio of the time per byte of a part to the fastest one considered congestion. */
+    static final double LATENCY_TOLERANCE = 2;
+    /** The number of parts in flight at the start of an upload. */
+    static final int INITIAL_PARTS_IN_FLIGHT = 2;
+    // 吞吐量的指数加权平均中新样本的权重
+    private static final double THROUGHPUT_WEIGHT = 0.25;
+
+    private final long minimumPartSize;
+    private final long maximumPartSize;
+    private final int maximumPartsInFlight;
+    private final TransferProgress transferProgress;
+
+    // 以下状态由this保护
+    private long partSize;
+    private int maxPartsInFlight;
+    private int partsInFlight = 0;
+    // 单个连接的吞吐量, 字节每秒, 小于0表示还没有样本
+    private double throughput = -1;
+    // 上次调整分块大小后是否有新的样本
+    private boolean sampled = false;
+    // 大小为baselinePartSize的分块中最快的每字节耗时
+    private long baselinePartSize = -1;
+    private double baselineNanosPerByte;
+    // 开始运行的分块的序号, 序号小于recoveryPoint的分块在上次减少之前开始, 不再触发减少
+    private long startedParts = 0;
+    private long recoveryPoint = 0;
+    // 上次调整后无拥塞地完成的分块数
+    private int successes = 0;
+
+    /**
+     * @param initialPartSize the size of the first parts, until a part is uploaded.
+     * @param minimumPartSize the minimum size of a part but the last.
+     * @param maximumPartSize the maximum size of a part, unless needed to fit in the parts.
+     * @param maximumPartsInFlight the max number of parts in flight at once.
+     * @param transferProgress the progress on which to expose the chosen values.
+     */
+    AdaptiveUploadController(long initialPartSize, long minimumPartSize, long maximumPartSize,
+            int maximumPartsInFlight, TransferProgress transferProgress) {
+        this.minimumPartSize = minimumPartSize;
+        this.maximumPartSize = Math.max(minimumPartSize, maximumPartSize);
+        this.maximumPartsInFlight = Math.max(1, maximumPartsInFlight);
+        this.transferProgress = transferProgress;
+        this.partSize = Math.max(minimumPartSize, Math.min(this.maximumPartSize, initialPartSize));
+        this.maxPartsInFlight = Math.min(INITIAL_PARTS_IN_FLIGHT, this.maximumPartsInFlight);
+        publish();
+    }
+
+    /**
+     * Returns the size of the next part.
+     *
+     * @param remainingBytes the number of bytes left to upload, in this part and the next ones.
+     * @param remainingParts the number of part numbers left, this one included.
+     */
+    synchronized long nextPartSize(long remainingBytes, int remainingParts) {
+        if (sampled) {
+            sampled = false;
+            long target = (long) (throughput * TARGET_PART_SECONDS);
+            target = Math.max(partSize / 2, Math.min(partSize * 2, target));
+            // 按MB对齐, 便于比较同样大小的分块的耗时
+            if (target >= MB) {
+                target = target / MB * MB;
+            }
+            partSize = Math.max(minimumPartSize, Math.min(maximumPartSize, target));
+            publish();
+        }
+        long size = partSize;
+        if (remainingParts > 0) {
+            size = Math.max(size, (remainingBytes + remainingParts - 1) / remainingParts);
+        }
+        return Math.min(size, remainingBytes);
+    }
+
+    /**
+     * Counts a new part in flight if there are fewer than the max number of parts in flight.
+     *
+     * @return true if the part can be submitted.
+     */
+    synchronized boolean tryStartPart() {
+        if (partsInFlight >= maxPartsInFlight) {
+            return false;
+        }
+        ++partsInFlight;
+        return true;
+    }
+
+    /**
+     * Counts a part out of flight, whether it was uploaded, failed or cancelled.
+     */
+    synchronized void partDone() {
+        --partsInFlight;
+    }
+
+    /**
+     * Called when a part starts being uploaded, returns the ticket of the part to report its
+     * outcome with.
+     */
+    synchronized long partStarted() {
+        return startedParts++;
+    }
+
+    /**
+     * Records the upload of a part.
+     *
+     * @param ticket the ticket returned by {@link #partStarted()}.
+     * @param bytes the size of the part.
+     * @param nanos the time the part took to upload, in nanoseconds.
+     */
+    synchronized void partSucceeded(long ticket, long bytes, long nanos) {
+        if (bytes <= 0) {
+            return;
+        }
+        nanos = Math.max(1, nanos);
+        double sample = bytes * 1e9 / nanos;
+        throughput = throughput < 0 ? sample
+                : (1 - THROUGHPUT_WEIGHT) * throughput + THROUGHPUT_WEIGHT * sample;
+        sampled = true;
+
+        double nanosPerByte = (double) nanos / bytes;
+        if (bytes != baselinePartSize) {
+            // 只比较同样大小的分块, 较小的分块每字节的请求开销较大
+            if (bytes != partSize) {
+                return;
+            }
+            baselinePartSize = bytes;
+            baselineNanosPerByte = nanosPerByte;
+        } else if (nanosPerByte < baselineNanosPerByte) {
+            baselineNanosPerByte = nanosPerByte;
+        } else if (nanosPerByte > LATENCY_TOLERANCE * baselineNanosPerByte) {
+            decrease(ticket);
+            return;
+        }
+        if (++successes >= maxPartsInFlight) {
+            successes = 0;
+            if (maxPartsInFlight < maximumPartsInFlight) {
+                ++maxPartsInFlight;
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Records the failure of a part, or its success after retries, which halves the part size
+     * and the number of parts in flight.
+     *
+     * @param ticket the ticket returned by {@link #partStarted()}.
+     */
+    synchronized void partFailed(long ticket) {
+        if (ticket < recoveryPoint) {
+            return;
+        }
+        partSize = Math.max(minimumPartSize, partSize / 2);
+        // 之前的样本不再代表当前的链路状况
+        sampled = false;
+        baselinePartSize = -1;
+        decrease(ticket);
+    }
+
+    // must hold this
+    private void decrease(long ticket) {
+        if (ticket < recoveryPoint) {
+            return;
+        }
+        recoveryPoint = startedParts;
+        successes = 0;
+        maxPartsInFlight = Math.max(1, maxPartsInFlight / 2);
+        publish();
+    }
+
+    // must hold this
+    private void publish() {
+        transferProgress.setPartSize(partSize);
+        transferProgress.setMaxPartsInFlight(maxPartsInFlight);
+    }
+
+    synchronized long getPartSize() {
+        return partSize;
+    }
+
+    synchronized int getMaxPartsInFlight() {
+        return maxPartsInFlight;
+    }
+}
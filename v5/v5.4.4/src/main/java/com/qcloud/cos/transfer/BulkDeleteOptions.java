@@ -0,0 +1,126 @@
+package com.qcloud.cos.transfer;
+
+/**
+ * Options of {@link TransferManager#deletePrefix(String, String, BulkDeleteOptions)} and
+ * {@link TransferManager#deleteAll(String, java.util.Iterator, BulkDeleteOptions)}.
+ */
+public class BulkDeleteOptions {
+
+    /** Max number of keys of a DeleteObjects request. */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    /** Default number of DeleteObjects requests in flight. */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private int batchSize = MAX_BATCH_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean allVersions = false;
+    private boolean quiet = true;
+    private BulkDeleteProgressListener progressListener;
+
+    /**
+     * @return the number of keys sent per DeleteObjects request.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of keys sent per DeleteObjects request, within [1, 1000].
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(
+                    "batchSize must be within [1, " + MAX_BATCH_SIZE + "], got " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public BulkDeleteOptions withBatchSize(int batchSize) {
+        setBatchSize(batchSize);
+        return this;
+    }
+
+    /**
+     * @return the max number of DeleteObjects requests in flight.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the max number of DeleteObjects requests in flight, 1 at least. The next batch is
+     * filled while these requests are sent. The requests share the thread pool of the
+     * <code>TransferManager</code> fairly with the transfers in progress, so fewer requests may
+     * be in flight, see {@link TransferManagerConfiguration#setMaxConcurrentPartRequests(int)}.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(
+                    "concurrency must be greater than 0, got " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public BulkDeleteOptions withConcurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    /**
+     * @return whether deletePrefix lists and deletes every version of the objects.
+     */
+    public boolean isAllVersions() {
+        return allVersions;
+    }
+
+    /**
+     * Sets whether deletePrefix lists the versions of the objects (ListVersions) and deletes each
+     * of them, delete markers included, instead of only the current objects. Needed to purge a
+     * versioned bucket, where deleting a key only adds a delete marker.
+     */
+    public void setAllVersions(boolean allVersions) {
+        this.allVersions = allVersions;
+    }
+
+    public BulkDeleteOptions withAllVersions(boolean allVersions) {
+        setAllVersions(allVersions);
+        return this;
+    }
+
+    /**
+     * @return whether the DeleteObjects responses only report the failed keys.
+     */
+    public boolean isQuiet() {
+        return quiet;
+    }
+
+    /**
+     * Sets whether the DeleteObjects responses only report the failed keys, true by default,
+     * which keeps the responses small.
+     */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    public BulkDeleteOptions withQuiet(boolean quiet) {
+        setQuiet(quiet);
+        return this;
+    }
+
+    public BulkDeleteProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Sets the listener notified after each batch, null for none.
+     */
+    public void setProgressListener(BulkDeleteProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public BulkDeleteOptions withProgressListener(BulkDeleteProgressListener progressListener) {
+        setProgressListener(progressListener);
+        return this;
+    }
+}
@@ -0,0 +1,16 @@
+package com.qcloud.cos.transfer;
+
+/**
+ * Listener notified of the progress of a bulk delete, see {@link BulkDeleteOptions}.
+ * <p>
+ * It is called once per DeleteObjects request, from the thread which sent it. Calls are
+ * serialized, so implementations do not need to be thread safe, but they should be fast since
+ * they delay the following batches.
+ */
+public interface BulkDeleteProgressListener {
+    /**
+     * @param progress snapshot of the totals after the batch, see
+     *        {@link BulkDeleteResult#getObjectsPerSecond()} for the throughput.
+     */
+    public void batchCompleted(BulkDeleteResult progress);
+}
@@ -0,0 +1,94 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.qcloud.cos.exception.MultiObjectDeleteException.DeleteError;
+import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
+
+/**
+ * Totals of a bulk delete. The keys which could not be deleted are reported with their error, and
+ * {@link #getFailedKeys()} can be passed back to
+ * {@link TransferManager#deleteAll(String, java.util.Iterator, BulkDeleteOptions)} to retry them.
+ */
+public class BulkDeleteResult {
+
+    private final long deletedObjects;
+    private final long failedObjects;
+    private final long batches;
+    private final long elapsedNanos;
+    private final List<KeyVersion> failedKeys;
+    private final List<DeleteError> errors;
+
+    BulkDeleteResult(long deletedObjects, long failedObjects, long batches, long elapsedNanos,
+            List<KeyVersion> failedKeys, List<DeleteError> errors) {
+        this.deletedObjects = deletedObjects;
+        this.failedObjects = failedObjects;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+        this.failedKeys = Collections.unmodifiableList(new ArrayList<KeyVersion>(failedKeys));
+        this.errors = Collections.unmodifiableList(new ArrayList<DeleteError>(errors));
+    }
+
+    /**
+     * @return the number of keys deleted, or reported deleted by the service.
+     */
+    public long getDeletedObjects() {
+        return deletedObjects;
+    }
+
+    /**
+     * @return the number of keys which could not be deleted.
+     */
+    public long getFailedObjects() {
+        return failedObjects;
+    }
+
+    /**
+     * @return the number of DeleteObjects requests completed.
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return the number of keys processed, deleted or failed, per second since the start.
+     */
+    public double getObjectsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return (deletedObjects + failedObjects) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the keys which could not be deleted, in the order the batches completed. Empty in
+     *         the progress snapshots passed to {@link BulkDeleteProgressListener}.
+     */
+    public List<KeyVersion> getFailedKeys() {
+        return failedKeys;
+    }
+
+    /**
+     * @return the error of each failed key, in the same order as {@link #getFailedKeys()}. When a
+     *         whole request failed, its keys share an error holding the code and message of the
+     *         exception. Empty in the progress snapshots passed to
+     *         {@link BulkDeleteProgressListener}.
+     */
+    public List<DeleteError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "{deleted: %d, failed: %d, batches: %d, elapsedMs: %d, objects/s: %.1f}",
+                deletedObjects, failedObjects, batches, getElapsedMillis(), getObjectsPerSecond());
+    }
+}
@@ -0,0 +1,188 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.exception.MultiObjectDeleteException;
+import com.qcloud.cos.exception.MultiObjectDeleteException.DeleteError;
+import com.qcloud.cos.model.DeleteObjectsRequest;
+import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
+
+/**
+ * Deletes the keys of an iterator with DeleteObjects requests, several requests being in flight
+ * while the caller thread fills the next batch. The requests are tasks of the executor of the
+ * deletion, which shares the thread pool of the transfer manager with the transfers. The keys
+ * which could not be deleted, either reported by a {@link MultiObjectDeleteException} or part of
+ * a request which failed, are collected instead of stopping the whole deletion.
+ */
+class BulkDeleter {
+    private static final Logger log = LoggerFactory.getLogger(BulkDeleter.class);
+
+    private final COS cos;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final BulkDeleteOptions options;
+    private final Semaphore inFlightBatches;
+    private final long startNanos = System.nanoTime();
+
+    // 以下状态由lock保护, 在各个发送删除请求的线程之间共享
+    private final Object lock = new Object();
+    private long deletedObjects = 0;
+    private long failedObjects = 0;
+    private long batches = 0;
+    private final List<KeyVersion> failedKeys = new ArrayList<KeyVersion>();
+    private final List<DeleteError> errors = new ArrayList<DeleteError>();
+
+    BulkDeleter(COS cos, ExecutorService executor, String bucketName,
+            BulkDeleteOptions options) {
+        this.cos = cos;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.options = options;
+        this.inFlightBatches = new Semaphore(options.getConcurrency());
+    }
+
+    /**
+     * Deletes all the keys and waits for the last request to complete. An exception thrown by the
+     * iterator, ie a listing failure, is rethrown once the requests in flight complete.
+     */
+    BulkDeleteResult deleteAll(Iterator<KeyVersion> keys) {
+        try {
+            List<KeyVersion> batch = new ArrayList<KeyVersion>(options.getBatchSize());
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+                if (batch.size() == options.getBatchSize()) {
+                    submit(batch);
+                    batch = new ArrayList<KeyVersion>(options.getBatchSize());
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch);
+            }
+        } finally {
+            // 等待所有在途的批次结束
+            inFlightBatches.acquireUninterruptibly(options.getConcurrency());
+            inFlightBatches.release(options.getConcurrency());
+        }
+        synchronized (lock) {
+            return snapshot(true);
+        }
+    }
+
+    private void submit(final List<KeyVersion> batch) {
+        try {
+            inFlightBatches.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosClientException("bulk delete has been interrupted", e);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        deleteBatch(batch);
+                    } finally {
+                        inFlightBatches.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.release();
+            throw new CosClientException("unable to schedule the delete request", e);
+        }
+    }
+
+    private void deleteBatch(List<KeyVersion> batch) {
+        List<KeyVersion> batchFailedKeys = Collections.emptyList();
+        List<DeleteError> batchErrors = Collections.emptyList();
+        try {
+            cos.deleteObjects(TransferManager.appendSingleObjectUserAgent(
+                    new DeleteObjectsRequest(bucketName).withKeys(batch)
+                            .withQuiet(options.isQuiet())));
+        } catch (MultiObjectDeleteException mode) {
+            batchErrors = mode.getErrors();
+            batchFailedKeys = failedKeysOf(batch, batchErrors);
+        } catch (RuntimeException e) {
+            // 包括请求校验等非CosClientException的错误, 整批记为失败而不是丢失
+            log.warn("failed to delete a batch of " + batch.size() + " keys from bucket "
+                    + bucketName, e);
+            batchFailedKeys = batch;
+            batchErrors = new ArrayList<DeleteError>(batch.size());
+            for (KeyVersion keyVersion : batch) {
+                batchErrors.add(errorOf(keyVersion, e));
+            }
+        }
+
+        synchronized (lock) {
+            ++batches;
+            deletedObjects += batch.size() - batchFailedKeys.size();
+            failedObjects += batchFailedKeys.size();
+            failedKeys.addAll(batchFailedKeys);
+            errors.addAll(batchErrors);
+            BulkDeleteProgressListener listener = options.getProgressListener();
+            if (listener != null) {
+                try {
+                    listener.batchCompleted(snapshot(false));
+                } catch (Exception e) {
+                    log.warn("bulk delete progress listener failed", e);
+                }
+            }
+        }
+    }
+
+    // 按错误中的key与version找到对应的KeyVersion, 以便原样重试
+    private static List<KeyVersion> failedKeysOf(List<KeyVersion> batch,
+            List<DeleteError> batchErrors) {
+        Map<String, KeyVersion> batchKeys = new HashMap<String, KeyVersion>(batch.size() * 2);
+        for (KeyVersion keyVersion : batch) {
+            batchKeys.put(keyVersion.getKey() + '\n' + keyVersion.getVersion(), keyVersion);
+        }
+        List<KeyVersion> batchFailedKeys = new ArrayList<KeyVersion>(batchErrors.size());
+        for (DeleteError error : batchErrors) {
+            KeyVersion keyVersion = batchKeys.get(error.getKey() + '\n' + error.getVersionId());
+            batchFailedKeys.add(keyVersion != null ? keyVersion
+                    : new KeyVersion(error.getKey(), error.getVersionId()));
+        }
+        return batchFailedKeys;
+    }
+
+    private static DeleteError errorOf(KeyVersion keyVersion, RuntimeException e) {
+        DeleteError error = new DeleteError();
+        error.setKey(keyVersion.getKey());
+        error.setVersionId(keyVersion.getVersion());
+        if (e instanceof CosServiceException) {
+            error.setCode(((CosServiceException) e).getErrorCode());
+            error.setMessage(((CosServiceException) e).getErrorMessage());
+        } else {
+            error.setCode(e.getClass().getSimpleName());
+            error.setMessage(e.getMessage());
+        }
+        return error;
+    }
+
+    // must hold lock
+    private BulkDeleteResult snapshot(boolean withFailures) {
+        List<KeyVersion> resultFailedKeys = Collections.emptyList();
+        List<DeleteError> resultErrors = Collections.emptyList();
+        if (withFailures) {
+            resultFailedKeys = failedKeys;
+            resultErrors = errors;
+        }
+        return new BulkDeleteResult(deletedObjects, failedObjects, batches,
+                System.nanoTime() - startNanos, resultFailedKeys, resultErrors);
+    }
+}
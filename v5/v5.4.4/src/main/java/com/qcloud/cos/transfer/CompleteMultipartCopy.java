@@ -86,8 +86,9 @@ public class CompleteMultipartCopy implements Callable<CopyResult> {
     }
 
     /**
-     * Collects the Part ETags for initiating the complete multi-part copy request. This is blocking
-     * as it waits until all the upload part threads complete.
+     * Collects the Part ETags for initiating the complete multi-part copy request. The copy part
+     * tasks have all completed when this task runs, so this doesn't block unless the monitor's
+     * thread pool is not the executor of a transfer.
      */
     private List<PartETag> collectPartETags() {
 
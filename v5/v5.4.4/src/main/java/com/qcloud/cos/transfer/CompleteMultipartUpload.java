@@ -65,12 +65,15 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
         CompleteMultipartUploadResult res;
 
         try {
+            List<PartETag> partETags = collectPartETags();
             CompleteMultipartUploadRequest req = new CompleteMultipartUploadRequest(
                     origReq.getBucketName(), origReq.getKey(), uploadId,
-                    collectPartETags())
+                    partETags)
                 .withGeneralProgressListener(origReq.getGeneralProgressListener())
                 ;
             res = cos.completeMultipartUpload(req);
+            // 由各分块的CRC64合并得到整个对象的CRC64, 无需再次读取数据
+            TransferManagerUtils.checkCompletedCrc64(partETags, res);
         } catch (Exception e) {
             monitor.uploadFailed();
             throw e;
@@ -84,6 +87,7 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
         uploadResult.setVersionId(res.getVersionId());
         uploadResult.setRequestId(res.getRequestId());
         uploadResult.setDateStr(res.getDateStr());
+        uploadResult.setCrc64Ecma(res.getCrc64Ecma());
 
         monitor.uploadComplete();
 
@@ -92,8 +96,9 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
 
     /**
      * Collects the Part ETags for initiating the complete multi-part upload
-     * request. This is blocking as it waits until all the upload part threads
-     * complete.
+     * request. The upload part tasks have all completed when this task runs, so
+     * this doesn't block unless the monitor's thread pool is not the executor of
+     * a transfer.
      */
     private List<PartETag> collectPartETags() {
 
@@ -8,6 +8,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -53,6 +54,11 @@ public class CopyCallable implements Callable<CopyResult> {
      * A list of future objects to be returned when multi-part copy is initiated.
      */
     private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    /**
+     * Set once a part failed, so that the parts not started yet are skipped and the failure is
+     * reported without copying the rest of the object.
+     */
+    private final AtomicBoolean partFailed = new AtomicBoolean();
 
     private final ProgressListenerChain listenerChain;
 
@@ -174,7 +180,7 @@ public class CopyCallable implements Callable<CopyResult> {
             if (threadPool.isShutdown())
                 throw new CancellationException("TransferManager has been shutdown");
             CopyPartRequest request = requestFactory.getNextCopyPartRequest();
-            futures.add(threadPool.submit(new CopyPartCallable(cos, request)));
+            futures.add(threadPool.submit(new CopyPartCallable(cos, request, partFailed)));
         }
     }
 
@@ -8,6 +8,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.qcloud.cos.COS;
@@ -111,9 +112,13 @@ public class CopyMonitor implements Callable<CopyResult>, TransferMonitor {
             CopyResult result = multipartCopyCallable.call();
 
             if (result == null) {
+                // 所有分块都结束后才完成复制, 不占用线程等待它们
                 futures.addAll(multipartCopyCallable.getFutures());
-                futureReference.set(threadPool.submit(new CompleteMultipartCopy(multipartCopyCallable.getMultipartUploadId(), cos, origReq,
-                        futures, listener, this)));
+                FutureTask<CopyResult> completion = new FutureTask<CopyResult>(
+                        new CompleteMultipartCopy(multipartCopyCallable.getMultipartUploadId(),
+                                cos, origReq, futures, listener, this));
+                futureReference.set(completion);
+                TransferScheduler.executeWhenIdle(threadPool, completion);
             } else {
                 copyComplete();
             }
@@ -1,6 +1,7 @@
 package com.qcloud.cos.transfer;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.qcloud.cos.COS;
 import com.qcloud.cos.model.CopyPartRequest;
@@ -18,14 +19,31 @@ public class CopyPartCallable implements Callable<PartETag> {
     private final COS cos;
     /** Copy part request to be initiated.*/
     private final CopyPartRequest request;
+    /** Shared by the parts of a copy, set once one of them failed.*/
+    private final AtomicBoolean failed;
 
     public CopyPartCallable(COS cos, CopyPartRequest request) {
+        this(cos, request, new AtomicBoolean());
+    }
+
+    CopyPartCallable(COS cos, CopyPartRequest request, AtomicBoolean failed) {
         this.cos = cos;
         this.request = request;
+        this.failed = failed;
     }
 
     public PartETag call() throws Exception {
-        CopyPartResult copyPartResult = cos.copyPart(request);
+        // 其他分块已经失败时不再复制, 整个复制会以那个分块的错误结束
+        if (failed.get()) {
+            return null;
+        }
+        CopyPartResult copyPartResult;
+        try {
+            copyPartResult = cos.copyPart(request);
+        } catch (Exception e) {
+            failed.set(true);
+            throw e;
+        }
         return copyPartResult == null ? null : copyPartResult.getPartETag();
     }
 }
\ No newline at end of file
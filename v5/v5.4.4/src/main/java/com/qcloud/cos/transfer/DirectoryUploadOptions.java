@@ -0,0 +1,205 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options of {@link TransferManager#uploadDirectory(String, String, java.io.File,
+ * DirectoryUploadOptions)}.
+ * <p>
+ * The include and exclude patterns are globs, see
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)}, matched against the path of a file
+ * relative to the uploaded directory: {@code *.log} matches the log files at the top of the
+ * directory, {@code **.log} those at any depth. A file is uploaded if it matches no exclude
+ * pattern and, when there are include patterns, one of them. A subdirectory matching an exclude
+ * pattern, such as {@code .git} or {@code **}{@code /node_modules}, is not walked at all.
+ */
+public class DirectoryUploadOptions {
+
+    /** Default max number of files found by the walk and waiting to be uploaded. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    /** Default min interval between two calls of the progress listener. */
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private boolean includeSubdirectories = true;
+    private int concurrency = 0;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private List<String> includes = Collections.emptyList();
+    private List<String> excludes = Collections.emptyList();
+    private ObjectMetadataProvider metadataProvider;
+    private DirectoryUploadProgressListener progressListener;
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MILLIS;
+
+    /**
+     * @return whether the files of the subdirectories are uploaded too.
+     */
+    public boolean isIncludeSubdirectories() {
+        return includeSubdirectories;
+    }
+
+    /**
+     * Sets whether the files of the subdirectories are uploaded too, true by default, their key
+     * being their path relative to the directory appended to the key prefix.
+     */
+    public void setIncludeSubdirectories(boolean includeSubdirectories) {
+        this.includeSubdirectories = includeSubdirectories;
+    }
+
+    public DirectoryUploadOptions withIncludeSubdirectories(boolean includeSubdirectories) {
+        setIncludeSubdirectories(includeSubdirectories);
+        return this;
+    }
+
+    /**
+     * @return the number of files uploaded at once, 0 for the max number of concurrent requests
+     *         of the transfer manager.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the number of files uploaded at once, 0 by default for the max number of concurrent
+     * requests of the transfer manager, see
+     * {@link TransferManagerConfiguration#setMaxConcurrentPartRequests(int)}.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 0) {
+            throw new IllegalArgumentException(
+                    "concurrency must not be negative, got " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public DirectoryUploadOptions withConcurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    /**
+     * @return the max number of files found by the walk and waiting to be uploaded.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the max number of files found by the walk of the directory and waiting to be uploaded,
+     * 1 at least. The walk pauses while the queue is full, which bounds the memory used whatever
+     * the number of files.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "queueCapacity must be greater than 0, got " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public DirectoryUploadOptions withQueueCapacity(int queueCapacity) {
+        setQueueCapacity(queueCapacity);
+        return this;
+    }
+
+    /**
+     * @return the glob patterns of the files to upload, all of them if empty.
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Sets the glob patterns of the files to upload, all the files not excluded if none.
+     */
+    public void setIncludes(List<String> includes) {
+        this.includes = includes == null ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<String>(includes));
+    }
+
+    public DirectoryUploadOptions withIncludes(String... includes) {
+        setIncludes(Arrays.asList(includes));
+        return this;
+    }
+
+    /**
+     * @return the glob patterns of the files and subdirectories not to upload.
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Sets the glob patterns of the files and subdirectories not to upload, which take precedence
+     * over the include patterns.
+     */
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes == null ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<String>(excludes));
+    }
+
+    public DirectoryUploadOptions withExcludes(String... excludes) {
+        setExcludes(Arrays.asList(excludes));
+        return this;
+    }
+
+    public ObjectMetadataProvider getMetadataProvider() {
+        return metadataProvider;
+    }
+
+    /**
+     * Sets the callback providing the metadata of each file uploaded, null for none. It is called
+     * concurrently from the threads uploading the files.
+     */
+    public void setMetadataProvider(ObjectMetadataProvider metadataProvider) {
+        this.metadataProvider = metadataProvider;
+    }
+
+    public DirectoryUploadOptions withMetadataProvider(ObjectMetadataProvider metadataProvider) {
+        setMetadataProvider(metadataProvider);
+        return this;
+    }
+
+    public DirectoryUploadProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Sets the listener notified of the progress of the upload, null for none.
+     */
+    public void setProgressListener(DirectoryUploadProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public DirectoryUploadOptions withProgressListener(
+            DirectoryUploadProgressListener progressListener) {
+        setProgressListener(progressListener);
+        return this;
+    }
+
+    /**
+     * @return the min interval between two calls of the progress listener, in milliseconds.
+     */
+    public long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /**
+     * Sets the min interval between two calls of the progress listener, in milliseconds, 0 to call
+     * it after every file.
+     */
+    public void setProgressIntervalMillis(long progressIntervalMillis) {
+        if (progressIntervalMillis < 0) {
+            throw new IllegalArgumentException(
+                    "progressIntervalMillis must not be negative, got " + progressIntervalMillis);
+        }
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    public DirectoryUploadOptions withProgressIntervalMillis(long progressIntervalMillis) {
+        setProgressIntervalMillis(progressIntervalMillis);
+        return this;
+    }
+}
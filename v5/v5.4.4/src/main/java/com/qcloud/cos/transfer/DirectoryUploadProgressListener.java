@@ -0,0 +1,19 @@
+package com.qcloud.cos.transfer;
+
+/**
+ * Listener notified of the progress of a directory upload, see {@link DirectoryUploadOptions}.
+ * <p>
+ * It is called when a file is uploaded or fails, at most once per
+ * {@link DirectoryUploadOptions#getProgressIntervalMillis()}, from the thread which uploaded the
+ * file or from another uploading thread. Calls are serialized and in order, so implementations do
+ * not need to be thread safe. A slow listener does not delay the uploads, the snapshots taken
+ * while it runs being passed to it once it returns.
+ */
+public interface DirectoryUploadProgressListener {
+    /**
+     * @param progress snapshot of the totals so far, see
+     *        {@link DirectoryUploadResult#getFilesPerSecond()} and
+     *        {@link DirectoryUploadResult#getBytesPerSecond()} for the throughput.
+     */
+    public void progressChanged(DirectoryUploadResult progress);
+}
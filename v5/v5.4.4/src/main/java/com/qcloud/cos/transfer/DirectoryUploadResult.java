@@ -0,0 +1,104 @@
+package com.qcloud.cos.transfer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.qcloud.cos.exception.CosClientException;
+
+/**
+ * Totals of a directory upload. The files which could not be uploaded, or read, are reported with
+ * their error instead of stopping the whole upload.
+ */
+public class DirectoryUploadResult {
+
+    private final long uploadedFiles;
+    private final long uploadedBytes;
+    private final long failedFiles;
+    private final long elapsedNanos;
+    private final List<File> failures;
+    private final List<CosClientException> errors;
+
+    DirectoryUploadResult(long uploadedFiles, long uploadedBytes, long failedFiles,
+            long elapsedNanos, List<File> failures, List<CosClientException> errors) {
+        this.uploadedFiles = uploadedFiles;
+        this.uploadedBytes = uploadedBytes;
+        this.failedFiles = failedFiles;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableList(new ArrayList<File>(failures));
+        this.errors = Collections.unmodifiableList(new ArrayList<CosClientException>(errors));
+    }
+
+    /**
+     * @return the number of files uploaded.
+     */
+    public long getUploadedFiles() {
+        return uploadedFiles;
+    }
+
+    /**
+     * @return the total size of the files uploaded.
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /**
+     * @return the number of files which could not be uploaded.
+     */
+    public long getFailedFiles() {
+        return failedFiles;
+    }
+
+    /**
+     * @return the time elapsed since the start of the upload, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return the number of files processed, uploaded or failed, per second since the start.
+     */
+    public double getFilesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return (uploadedFiles + failedFiles) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the number of bytes uploaded per second since the start.
+     */
+    public double getBytesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return uploadedBytes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the files which could not be uploaded, in the order they failed. Empty in the
+     *         progress snapshots passed to {@link DirectoryUploadProgressListener}.
+     */
+    public List<File> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the error of each failed file, in the same order as {@link #getFailures()}. Empty
+     *         in the progress snapshots passed to {@link DirectoryUploadProgressListener}.
+     */
+    public List<CosClientException> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{uploaded: %d, bytes: %d, failed: %d, elapsedMs: %d, files/s: %.1f,"
+                + " bytes/s: %.1f}", uploadedFiles, uploadedBytes, failedFiles,
+                getElapsedMillis(), getFilesPerSecond(), getBytesPerSecond());
+    }
+}
@@ -0,0 +1,471 @@
+package com.qcloud.cos.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectRequest;
+
+/**
+ * Uploads the files of a directory as they are found by a walk of the directory tree. The walk,
+ * run by the caller thread, feeds a bounded queue from which the files are uploaded with
+ * PutObject requests, so that neither the list of the files nor a transfer per file is ever held
+ * in memory. The files as large as the multipart upload threshold are uploaded as usual, in
+ * parts, and waited for once the walk ends.
+ * <p>
+ * Each file is uploaded by a short task of the executor of the directory upload, which submits
+ * the task of the next file queued when it ends, up to the concurrency of the upload. No thread
+ * is held between two files, so the {@link TransferScheduler} interleaves these tasks with those
+ * of the other transfers, including the parts of the large files. A task takes the buffer of its
+ * key from a pool holding at most one buffer per task of the concurrency.
+ * <p>
+ * The files which could not be read or uploaded are collected instead of stopping the whole
+ * upload, the totals being those of {@link DirectoryUploadResult}. The snapshots of these totals
+ * are queued under a lock but passed to the progress listener outside of it, in order and one at a
+ * time by whichever thread is not already notifying, so that a slow listener never blocks the
+ * counting.
+ */
+class DirectoryUploader {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryUploader.class);
+
+    // 队列满时检查上传是否已中止的间隔
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final TransferManager transferManager;
+    private final COS cos;
+    private final String bucketName;
+    private final String keyPrefix;
+    private final Path directory;
+    private final DirectoryUploadOptions options;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final long multipartUploadThreshold;
+    private final Queue<QueuedFile> queue = new ConcurrentLinkedQueue<QueuedFile>();
+    // 队列中等待上传的文件数上限, 开始上传时释放
+    private final Semaphore queueSlots;
+    private final ExecutorService executor;
+    private final int concurrency;
+    // 分块上传的大文件, 遍历结束后等待它们完成
+    private final Queue<LargeUpload> largeUploads = new ConcurrentLinkedQueue<LargeUpload>();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean aborted = false;
+    // 上传任务复用的key缓冲区, 最多与并发数相同
+    private final Queue<StringBuilder> keyBuilders = new ConcurrentLinkedQueue<StringBuilder>();
+
+    // 正在运行或等待运行的上传任务数, 由taskLock保护
+    private final Object taskLock = new Object();
+    private int activeTasks = 0;
+
+    // 以下状态由lock保护, 在各个上传任务之间共享
+    private final Object lock = new Object();
+    private long uploadedFiles = 0;
+    private long uploadedBytes = 0;
+    private long failedFiles = 0;
+    private long lastProgressNanos = startNanos;
+    private final List<File> failures = new ArrayList<File>();
+    private final List<CosClientException> errors = new ArrayList<CosClientException>();
+
+    // 等待通知的进度, 在lock中按顺序加入, 由notifying为true的线程在lock之外通知
+    private final Queue<DirectoryUploadResult> pendingProgress =
+            new ConcurrentLinkedQueue<DirectoryUploadResult>();
+    private final AtomicBoolean notifying = new AtomicBoolean(false);
+
+    /**
+     * @param keyPrefix the prefix of the keys, empty or ending with a slash.
+     */
+    DirectoryUploader(TransferManager transferManager, String bucketName, String keyPrefix,
+            File directory, DirectoryUploadOptions options) {
+        this.transferManager = transferManager;
+        this.cos = transferManager.getCOSClient();
+        this.bucketName = bucketName;
+        this.keyPrefix = keyPrefix;
+        this.directory = directory.toPath().toAbsolutePath();
+        this.options = options;
+        FileSystem fileSystem = this.directory.getFileSystem();
+        this.includes = matchers(fileSystem, options.getIncludes());
+        this.excludes = matchers(fileSystem, options.getExcludes());
+        this.multipartUploadThreshold =
+                transferManager.getConfiguration().getMultipartUploadThreshold();
+        this.queueSlots = new Semaphore(options.getQueueCapacity());
+        TransferScheduler scheduler = transferManager.getScheduler();
+        this.concurrency = options.getConcurrency() > 0 ? options.getConcurrency()
+                : scheduler.getMaxConcurrentTasks();
+        // 所有文件的上传作为一个传输调度, 每个文件一个任务, 与其他传输轮流使用线程池
+        this.executor = scheduler.newTransfer();
+    }
+
+    private static List<PathMatcher> matchers(FileSystem fileSystem, List<String> globs) {
+        if (globs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PathMatcher> matchers = new ArrayList<PathMatcher>(globs.size());
+        for (String glob : globs) {
+            matchers.add(fileSystem.getPathMatcher("glob:" + glob));
+        }
+        return matchers;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path relativePath) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the directory and uploads its files, then waits for the last upload to complete. An
+     * exception stopping the walk, such as an interruption of the caller, is rethrown once the
+     * uploads in flight complete.
+     */
+    DirectoryUploadResult uploadAll() {
+        CosClientException failure = null;
+        try {
+            walk();
+        } catch (RejectedExecutionException e) {
+            failure = new CosClientException("unable to schedule the directory upload", e);
+        } catch (CosClientException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            // 丢弃未上传的文件, 正在运行的任务结束后不再提交新的任务
+            aborted = true;
+            queue.clear();
+        }
+        try {
+            synchronized (taskLock) {
+                while (activeTasks > 0) {
+                    taskLock.wait();
+                }
+            }
+            for (LargeUpload largeUpload : largeUploads) {
+                if (failure != null && !largeUpload.upload.isDone()) {
+                    largeUpload.upload.abort();
+                }
+                CosClientException error = largeUpload.upload.waitForException();
+                if (error == null) {
+                    succeeded(largeUpload.size);
+                } else {
+                    failed(largeUpload.file, error);
+                }
+            }
+        } catch (InterruptedException e) {
+            aborted = true;
+            Thread.currentThread().interrupt();
+            throw new CosClientException("directory upload has been interrupted", e);
+        } catch (CancellationException e) {
+            if (failure == null) {
+                failure = new CosClientException("directory upload has been cancelled", e);
+            }
+        }
+        if (failure == null && aborted) {
+            // 线程池关闭后无法提交任务, 队列中的文件没有上传
+            failure = new CosClientException("directory upload has been aborted");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        synchronized (lock) {
+            return snapshot(true);
+        }
+    }
+
+    private void walk() {
+        int maxDepth = options.isIncludeSubdirectories() ? Integer.MAX_VALUE : 1;
+        try {
+            // 与File.listFiles一样跟随符号链接, 循环的链接作为失败的文件报告
+            Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir,
+                                BasicFileAttributes attrs) {
+                            if (!dir.equals(directory)
+                                    && matches(excludes, directory.relativize(dir))) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()) {
+                                Path relativePath = directory.relativize(file);
+                                if (!matches(excludes, relativePath) && (includes.isEmpty()
+                                        || matches(includes, relativePath))) {
+                                    enqueue(new QueuedFile(file, attrs.size()));
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                            failed(file.toFile(), new CosClientException(
+                                    "Unable to read " + file + ": " + exc.getMessage(), exc));
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                            if (exc != null) {
+                                failed(dir.toFile(), new CosClientException(
+                                        "Unable to list " + dir + ": " + exc.getMessage(), exc));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            throw new CosClientException("Unable to walk the directory " + directory, e);
+        }
+    }
+
+    // 队列满时等待, 但上传已中止时不再等待. 未达到并发数时提交一个上传任务
+    private void enqueue(QueuedFile file) {
+        try {
+            while (!queueSlots.tryAcquire(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (aborted) {
+                    throw new CosClientException("directory upload has been aborted");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosClientException("directory upload has been interrupted", e);
+        }
+        queue.add(file);
+        synchronized (taskLock) {
+            if (activeTasks >= concurrency) {
+                // 正在运行的任务结束时会检查队列
+                return;
+            }
+            ++activeTasks;
+        }
+        submitTask();
+    }
+
+    private void submitTask() {
+        try {
+            executor.execute(new UploadTask());
+        } catch (RejectedExecutionException e) {
+            taskEnded();
+            throw e;
+        }
+    }
+
+    // 任务结束后, 队列中还有文件时提交下一个任务, 而不是占用线程继续上传
+    private void nextTask() {
+        synchronized (taskLock) {
+            if (aborted || queue.isEmpty()) {
+                --activeTasks;
+                taskLock.notifyAll();
+                return;
+            }
+        }
+        try {
+            submitTask();
+        } catch (RejectedExecutionException e) {
+            log.warn("unable to schedule the upload of the next file, the directory upload is "
+                    + "aborted", e);
+            aborted = true;
+        }
+    }
+
+    private void taskEnded() {
+        synchronized (taskLock) {
+            --activeTasks;
+            taskLock.notifyAll();
+        }
+    }
+
+    private void succeeded(long size) {
+        synchronized (lock) {
+            ++uploadedFiles;
+            uploadedBytes += size;
+            progressChanged();
+        }
+        notifyProgress();
+    }
+
+    private void failed(File file, CosClientException error) {
+        log.warn("failed to upload " + file + " to bucket " + bucketName + ": "
+                + error.getMessage());
+        synchronized (lock) {
+            ++failedFiles;
+            failures.add(file);
+            errors.add(error);
+            progressChanged();
+        }
+        notifyProgress();
+    }
+
+    // must hold lock. 到达通知间隔时加入进度, 由notifyProgress在lock之外通知
+    private void progressChanged() {
+        if (options.getProgressListener() == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastProgressNanos
+                < TimeUnit.MILLISECONDS.toNanos(options.getProgressIntervalMillis())) {
+            return;
+        }
+        lastProgressNanos = now;
+        pendingProgress.add(snapshot(false));
+    }
+
+    /**
+     * Notifies the listener of the queued progress, unless another thread is already doing so,
+     * in which case that thread notifies it too. The calls are thus serialized and in order,
+     * without holding {@link #lock} nor blocking the other uploads.
+     */
+    private void notifyProgress() {
+        DirectoryUploadProgressListener listener = options.getProgressListener();
+        // 通知的线程退出前再次检查队列, 以免遗漏其间加入的进度
+        while (!pendingProgress.isEmpty() && notifying.compareAndSet(false, true)) {
+            try {
+                DirectoryUploadResult progress;
+                while ((progress = pendingProgress.poll()) != null) {
+                    try {
+                        listener.progressChanged(progress);
+                    } catch (Exception e) {
+                        log.warn("directory upload progress listener failed", e);
+                    }
+                }
+            } finally {
+                notifying.set(false);
+            }
+        }
+    }
+
+    // must hold lock
+    private DirectoryUploadResult snapshot(boolean withFailures) {
+        List<File> resultFailures = Collections.emptyList();
+        List<CosClientException> resultErrors = Collections.emptyList();
+        if (withFailures) {
+            resultFailures = failures;
+            resultErrors = errors;
+        }
+        return new DirectoryUploadResult(uploadedFiles, uploadedBytes, failedFiles,
+                System.nanoTime() - startNanos, resultFailures, resultErrors);
+    }
+
+    private static final class QueuedFile {
+        private final Path path;
+        private final long size;
+
+        QueuedFile(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private static final class LargeUpload {
+        private final File file;
+        private final long size;
+        private final Upload upload;
+
+        LargeUpload(File file, long size, Upload upload) {
+            this.file = file;
+            this.size = size;
+            this.upload = upload;
+        }
+    }
+
+    /**
+     * Uploads the next file of the queue. The task is done once the file is uploaded, or once
+     * the task is cancelled by the shutdown of the transfer manager, and then submits the task of
+     * the next file.
+     */
+    private final class UploadTask extends FutureTask<Object> {
+
+        UploadTask() {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    QueuedFile file = queue.poll();
+                    if (file != null) {
+                        queueSlots.release();
+                        if (!aborted) {
+                            upload(file);
+                        }
+                    }
+                }
+            }, null);
+        }
+
+        @Override
+        protected void done() {
+            nextTask();
+        }
+    }
+
+    private void upload(QueuedFile queuedFile) {
+        File file = queuedFile.path.toFile();
+        try {
+            ObjectMetadata metadata = new ObjectMetadata();
+            if (options.getMetadataProvider() != null) {
+                options.getMetadataProvider().provideObjectMetadata(file, metadata);
+            }
+            PutObjectRequest request =
+                    new PutObjectRequest(bucketName, keyOf(queuedFile.path), file)
+                            .withMetadata(metadata);
+            if (queuedFile.size >= multipartUploadThreshold) {
+                largeUploads.add(new LargeUpload(file, queuedFile.size,
+                        transferManager.upload(request)));
+                return;
+            }
+            cos.putObject(TransferManager.appendSingleObjectUserAgent(request));
+            succeeded(queuedFile.size);
+        } catch (CosClientException e) {
+            failed(file, e);
+        } catch (RuntimeException e) {
+            failed(file, new CosClientException(
+                    "Unable to upload " + file + ": " + e.getMessage(), e));
+        }
+    }
+
+    private String keyOf(Path path) {
+        Path relativePath = directory.relativize(path);
+        // 同时运行的任务不超过并发数, 池中的缓冲区也不会超过
+        StringBuilder key = keyBuilders.poll();
+        if (key == null) {
+            key = new StringBuilder();
+        }
+        key.setLength(0);
+        key.append(keyPrefix);
+        for (int i = 0; i < relativePath.getNameCount(); ++i) {
+            if (i > 0) {
+                key.append('/');
+            }
+            key.append(relativePath.getName(i).toString());
+        }
+        String result = key.toString();
+        keyBuilders.offer(key);
+        return result;
+    }
+}
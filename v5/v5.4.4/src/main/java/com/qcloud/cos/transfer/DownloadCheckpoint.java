@@ -0,0 +1,337 @@
+package com.qcloud.cos.transfer;
+
+import static com.qcloud.cos.utils.StringUtils.UTF8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.IOUtils;
+import com.qcloud.cos.utils.Md5Utils;
+
+/**
+ * The ranges of a multipart download already written to the destination file, kept next to it so
+ * that an interrupted download, paused or killed, can be resumed by downloading only the missing
+ * ranges.
+ * <p>
+ * The checkpoint starts with a header line
+ * {@code cos-download-checkpoint 1 <object> <contentLength> <eTag> <partSize> <crc32>}, where
+ * {@code <object>} is a hash of the bucket, key and version of the object and {@code <crc32>} is
+ * the CRC32 of the rest of the line. It is followed by a bitmap of the ranges written, one bit per
+ * range, and by the CRC64 of each range, 8 bytes each, all updated in place. The checkpoint is
+ * discarded and the download starts over if the object, its size or its ETag have changed since.
+ * <p>
+ * A range marked is not trusted as is: the data of the file may have been torn by a crash, cut
+ * or modified since. Before it is skipped, its CRC64 is computed again from the file, see
+ * {@link #isIntact(int)}, and the range is downloaded again if it differs from the one recorded.
+ * <p>
+ * A range is only marked once its data has been forced to the storage device, so that a crash of
+ * the system can't leave a marked range unwritten. To bound the cost of forcing a huge file, the
+ * ranges are marked in batches of {@link #SYNC_BATCH} ranges or every
+ * {@link #SYNC_INTERVAL_MILLIS}, and when the checkpoint is synced or closed: the last ranges
+ * downloaded before a crash are downloaded again.
+ */
+final class DownloadCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(DownloadCheckpoint.class);
+
+    private static final String MAGIC = "cos-download-checkpoint";
+    private static final int VERSION = 1;
+    /** The suffix of the checkpoint file appended to the name of the destination file. */
+    static final String SUFFIX = ".cos-checkpoint";
+    /** The max number of ranges downloaded between two syncs of the checkpoint. */
+    static final int SYNC_BATCH = 8;
+    /** The max time between the download of a range and the sync of the checkpoint. */
+    static final long SYNC_INTERVAL_MILLIS = 1000;
+    // 头部的最大长度, 超过时不是有效的checkpoint
+    private static final int MAX_HEADER_LENGTH = 1024;
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private final File file;
+    private final FileChannel data;
+    private final long contentLength;
+    private final long partSize;
+    private final int partCount;
+    private final boolean resumed;
+    private final long bitmapOffset;
+    private final long crc64Offset;
+    private final byte[] bitmap;
+    private final long[] crc64s;
+    // 以下状态由this保护
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private final List<Integer> unsyncedParts = new ArrayList<Integer>();
+    private long lastSyncMillis = System.currentTimeMillis();
+
+    private DownloadCheckpoint(File file, RandomAccessFile raf, FileChannel data,
+            long contentLength, long partSize, long headerLength, boolean resumed) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.data = data;
+        this.contentLength = contentLength;
+        this.partSize = partSize;
+        this.partCount = (int) ((contentLength + partSize - 1) / partSize);
+        this.resumed = resumed;
+        this.bitmapOffset = headerLength;
+        this.crc64Offset = headerLength + (partCount + 7) / 8;
+        this.bitmap = new byte[(partCount + 7) / 8];
+        this.crc64s = new long[partCount];
+    }
+
+    /**
+     * Returns the checkpoint file of a download to the given file.
+     */
+    static File checkpointFile(File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    /**
+     * Opens the checkpoint of a download, resuming it if it records a download of the same
+     * object, else creating a new one with no range downloaded.
+     *
+     * @param data the destination file, whose data is forced before ranges are marked and read
+     *        to verify the ranges marked.
+     * @param mayResume false if the destination file can't hold the ranges of a previous
+     *        download, such as when its length is not the length of the object.
+     * @param partSize the size of the ranges of a new download. A resumed download keeps the
+     *        size of its ranges, see {@link #getPartSize()}.
+     * @throws IOException if the checkpoint can't be created, or if the ETag of the object
+     *         can't be recorded.
+     */
+    static DownloadCheckpoint open(File file, FileChannel data, boolean mayResume,
+            String bucketName, String key, String versionId, long contentLength, String eTag,
+            long partSize) throws IOException {
+        if (eTag == null || eTag.isEmpty() || eTag.indexOf(' ') >= 0
+                || eTag.indexOf('\n') >= 0) {
+            throw new IOException("Unable to record the ETag " + eTag + " in a checkpoint");
+        }
+        String object =
+                Md5Utils.md5Hex((bucketName + "/" + key + "/" + versionId).getBytes(UTF8));
+        String identity =
+                MAGIC + " " + VERSION + " " + object + " " + contentLength + " " + eTag + " ";
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (mayResume && raf.length() > 0) {
+                DownloadCheckpoint checkpoint = resume(file, raf, data, identity, contentLength);
+                if (checkpoint != null) {
+                    return checkpoint;
+                }
+                log.info("Discarding the download checkpoint " + file
+                        + " of another version of the object");
+            }
+            return create(file, raf, data, identity, contentLength, partSize);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(raf, log);
+            throw e;
+        }
+    }
+
+    private static DownloadCheckpoint create(File file, RandomAccessFile raf, FileChannel data,
+            String identity, long contentLength, long partSize) throws IOException {
+        String record = identity + partSize;
+        byte[] header = (record + " " + checksum(record) + "\n").getBytes(UTF8);
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(file, raf, data, contentLength,
+                partSize, header.length, false);
+        raf.setLength(0);
+        raf.write(header);
+        // 位图和各分块的CRC64初始为0
+        raf.setLength(checkpoint.crc64Offset + 8L * checkpoint.partCount);
+        raf.getChannel().force(true);
+        return checkpoint;
+    }
+
+    private static DownloadCheckpoint resume(File file, RandomAccessFile raf, FileChannel data,
+            String identity, long contentLength) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(MAX_HEADER_LENGTH, raf.length())];
+        raf.seek(0);
+        raf.readFully(buffer);
+        int headerLength = 0;
+        while (headerLength < buffer.length && buffer[headerLength] != '\n') {
+            ++headerLength;
+        }
+        if (headerLength == buffer.length) {
+            return null;
+        }
+        String line = new String(buffer, 0, headerLength, UTF8);
+        int checksumStart = line.lastIndexOf(' ');
+        if (checksumStart < 0 || !line.startsWith(identity)) {
+            return null;
+        }
+        String record = line.substring(0, checksumStart);
+        if (!line.substring(checksumStart + 1).equals(checksum(record))) {
+            return null;
+        }
+        long partSize;
+        try {
+            partSize = Long.parseLong(record.substring(identity.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (partSize <= 0) {
+            return null;
+        }
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(file, raf, data, contentLength,
+                partSize, headerLength + 1, true);
+        if (raf.length() < checkpoint.crc64Offset + 8L * checkpoint.partCount) {
+            return null;
+        }
+        raf.seek(checkpoint.bitmapOffset);
+        raf.readFully(checkpoint.bitmap);
+        byte[] crc64s = new byte[8 * checkpoint.partCount];
+        raf.readFully(crc64s);
+        ByteBuffer.wrap(crc64s).asLongBuffer().get(checkpoint.crc64s);
+        return checkpoint;
+    }
+
+    private static String checksum(String record) {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = record.getBytes(UTF8);
+        crc32.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc32.getValue());
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return whether the checkpoint records a previous download of the object.
+     */
+    boolean isResumed() {
+        return resumed;
+    }
+
+    long getPartSize() {
+        return partSize;
+    }
+
+    int getPartCount() {
+        return partCount;
+    }
+
+    /**
+     * @return whether the range of the given index was downloaded before the checkpoint was
+     *         resumed. Ranges recorded since are not reported until the checkpoint is synced.
+     */
+    synchronized boolean isDownloaded(int part) {
+        return (bitmap[part / 8] & (1 << (part % 8))) != 0;
+    }
+
+    /**
+     * @return the CRC64 recorded for a range downloaded.
+     */
+    synchronized long getCrc64(int part) {
+        return crc64s[part];
+    }
+
+    /**
+     * Computes the CRC64 of a range from the data of the destination file, and compares it with
+     * the one recorded.
+     *
+     * @return whether the file holds the range recorded.
+     */
+    boolean isIntact(int part) throws IOException {
+        long position = part * partSize;
+        long end = Math.min(position + partSize, contentLength);
+        CRC64 crc64 = new CRC64();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, end - position));
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int bytesRead = data.read(buffer, position);
+            if (bytesRead < 0) {
+                // 文件被截断
+                return false;
+            }
+            crc64.update(buffer.array(), 0, bytesRead);
+            position += bytesRead;
+        }
+        return crc64.getValue() == getCrc64(part);
+    }
+
+    /**
+     * Unmarks a range whose data was found corrupt, so that it is downloaded again when the
+     * download is resumed.
+     */
+    synchronized void clear(int part) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        unsyncedParts.remove(Integer.valueOf(part));
+        bitmap[part / 8] &= ~(1 << (part % 8));
+        channel.write(ByteBuffer.wrap(bitmap, part / 8, 1), bitmapOffset + part / 8);
+        channel.force(false);
+    }
+
+    /**
+     * Records a range written to the destination file. It is marked in the checkpoint at the
+     * next sync. Has no effect once the checkpoint is closed.
+     */
+    synchronized void record(int part, long crc64) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        crc64s[part] = crc64;
+        unsyncedParts.add(part);
+        if (unsyncedParts.size() >= SYNC_BATCH
+                || System.currentTimeMillis() - lastSyncMillis >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the ranges recorded so far to the storage device, then marks them in the
+     * checkpoint.
+     */
+    synchronized void sync() throws IOException {
+        if (channel == null || unsyncedParts.isEmpty()) {
+            return;
+        }
+        data.force(false);
+        ByteBuffer crc64 = ByteBuffer.allocate(8);
+        for (int part : unsyncedParts) {
+            crc64.clear();
+            crc64.putLong(crc64s[part]).flip();
+            while (crc64.hasRemaining()) {
+                channel.write(crc64, crc64Offset + 8L * part + crc64.position());
+            }
+            bitmap[part / 8] |= 1 << (part % 8);
+            channel.write(ByteBuffer.wrap(bitmap, part / 8, 1), bitmapOffset + part / 8);
+        }
+        channel.force(false);
+        unsyncedParts.clear();
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Syncs and closes the checkpoint, keeping the file to resume the download, or deleting it
+     * once the download is completed or its data found corrupt.
+     */
+    synchronized void close(boolean delete) {
+        if (channel != null) {
+            if (!delete) {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    log.warn("Unable to sync the download checkpoint " + file + ": "
+                            + e.getMessage());
+                }
+            }
+            IOUtils.closeQuietly(raf, log);
+            channel = null;
+            raf = null;
+        }
+        if (delete && file.exists() && !file.delete()) {
+            log.warn("Unable to delete the download checkpoint " + file);
+        }
+    }
+}
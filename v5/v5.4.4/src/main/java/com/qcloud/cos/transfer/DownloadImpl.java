@@ -25,9 +25,22 @@ public class DownloadImpl extends AbstractTransfer implements Download {
             ProgressListenerChain progressListenerChain, COSObject cosObject,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, cosObject, listener,
+                getObjectRequest, file, true);
+    }
+
+    /**
+     * @param persistable false if the download can't be resumed, such as a multipart download
+     *        without checkpoint, which then can't be paused.
+     */
+    DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, COSObject cosObject,
+            TransferStateChangeListener listener, GetObjectRequest getObjectRequest, File file,
+            boolean persistable) {
         super(description, transferProgress, progressListenerChain, listener);
         this.cosObject = cosObject;
-        this.persistableDownload = captureDownloadState(getObjectRequest, file);
+        this.persistableDownload =
+                persistable ? captureDownloadState(getObjectRequest, file) : null;
         COSProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
     }
@@ -68,7 +81,8 @@ public class DownloadImpl extends AbstractTransfer implements Download {
 
         this.monitor.getFuture().cancel(true);
 
-        if ( cosObject != null ) {
+        // 分块下载的cosObject只有HEAD得到的元数据, 没有内容
+        if ( cosObject != null && cosObject.getObjectContent() != null ) {
               cosObject.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
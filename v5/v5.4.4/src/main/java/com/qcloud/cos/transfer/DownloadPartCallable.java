@@ -0,0 +1,224 @@
+package com.qcloud.cos.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.transfer.Transfer.TransferState;
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.IOUtils;
+
+/**
+ * Downloads one range of a multipart download and writes it at its offset in the destination
+ * file. The request is pinned to the ETag of the object, so a range of another version can't be
+ * written. A response cut short is requested again from the first byte not written.
+ * <p>
+ * Returns the CRC64 of the range if it is computed, else 0. The range is then recorded in the
+ * checkpoint of the download, if any, which needs its CRC64.
+ * <p>
+ * A range marked in the checkpoint when the download is resumed is first read back from the file:
+ * it is only downloaded again if its CRC64 differs from the one recorded.
+ */
+final class DownloadPartCallable implements Callable<Long> {
+    private static final Logger log = LoggerFactory.getLogger(DownloadPartCallable.class);
+
+    /** Max number of times a range is requested again after its response was cut short. */
+    static final int MAX_RANGE_RETRIES = 3;
+
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private final COS cos;
+    private final GetObjectRequest request;
+    private final DownloadImpl download;
+    private final FileChannel channel;
+    private final int part;
+    private final long firstByte;
+    private final long lastByte;
+    private final boolean computeCrc64;
+    private final DownloadCheckpoint checkpoint;
+    private final boolean resumed;
+    private final AtomicBoolean failed;
+
+    // 当前正在读取的对象, 取消下载时abort以中断阻塞的读取
+    private volatile COSObject cosObject;
+    private volatile boolean aborted;
+
+    DownloadPartCallable(COS cos, GetObjectRequest request, DownloadImpl download,
+            FileChannel channel, int part, long firstByte, long lastByte, boolean computeCrc64,
+            DownloadCheckpoint checkpoint, boolean resumed, AtomicBoolean failed) {
+        this.cos = cos;
+        this.request = request;
+        this.download = download;
+        this.channel = channel;
+        this.part = part;
+        this.firstByte = firstByte;
+        this.lastByte = lastByte;
+        this.computeCrc64 = computeCrc64;
+        this.checkpoint = checkpoint;
+        this.resumed = resumed;
+        this.failed = failed;
+    }
+
+    /**
+     * @return the index of the range in the object, from 0.
+     */
+    int getPart() {
+        return part;
+    }
+
+    long getPartSize() {
+        return lastByte - firstByte + 1;
+    }
+
+    @Override
+    public Long call() throws Exception {
+        // 其他分块已经失败时不再发送请求, 整个下载会以那个分块的错误结束
+        if (failed.get()) {
+            return null;
+        }
+        synchronized (download) {
+            if (download.getState() == TransferState.Waiting) {
+                download.setState(TransferState.InProgress);
+            }
+        }
+        if (resumed && isIntact()) {
+            download.getProgress().updateProgress(getPartSize());
+            return checkpoint.getCrc64(part);
+        }
+        Long crc64;
+        try {
+            crc64 = downloadRange();
+        } catch (Exception e) {
+            failed.set(true);
+            throw e;
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.record(part, crc64);
+            } catch (IOException e) {
+                // 未记录的分块在恢复时重新下载
+                log.warn("Unable to record the range " + firstByte + "-" + lastByte
+                        + " in the download checkpoint " + checkpoint.getFile() + ": "
+                        + e.getMessage());
+            }
+        }
+        return crc64;
+    }
+
+    /**
+     * @return whether the file holds the range recorded in the checkpoint.
+     */
+    private boolean isIntact() {
+        try {
+            if (checkpoint.isIntact(part)) {
+                return true;
+            }
+            log.info("The range " + firstByte + "-" + lastByte + " of file "
+                    + checkpoint.getFile() + " differs from the checkpoint, downloading it again");
+        } catch (IOException e) {
+            log.warn("Unable to read the range " + firstByte + "-" + lastByte
+                    + " recorded in the download checkpoint " + checkpoint.getFile()
+                    + ", downloading it again: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private Long downloadRange() throws IOException {
+        final long partSize = getPartSize();
+        CRC64 crc64 = computeCrc64 || checkpoint != null ? new CRC64() : null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        int retries = 0;
+        for (;;) {
+            checkAborted();
+            request.setRange(firstByte + written, lastByte);
+            COSObject object = cos.getObject(request);
+            if (object == null) {
+                throw new CosClientException("The object " + request.getKey() + " (bucket "
+                        + request.getBucketName() + ") was modified during the download, "
+                        + "its ETag no longer matches " + request.getMatchingETagConstraints());
+            }
+            cosObject = object;
+            boolean completed = false;
+            try {
+                InputStream in = object.getObjectContent();
+                int bytesRead;
+                while (written < partSize && (bytesRead = in.read(buffer, 0,
+                        (int) Math.min(buffer.length, partSize - written))) > -1) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+                    long position = firstByte + written;
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                    if (crc64 != null) {
+                        crc64.update(buffer, 0, bytesRead);
+                    }
+                    written += bytesRead;
+                }
+                if (written < partSize) {
+                    throw new IOException("Premature end of range " + firstByte + "-" + lastByte
+                            + ": " + written + " of " + partSize + " bytes received");
+                }
+                // 读到流的末尾, 关闭时释放连接以便复用, 而不是中断连接
+                in.read();
+                completed = true;
+                return crc64 == null ? Long.valueOf(0) : Long.valueOf(crc64.getValue());
+            } catch (ClosedChannelException e) {
+                // 下载被取消时文件已关闭, 或者线程被中断
+                throw e;
+            } catch (IOException e) {
+                if (aborted || ++retries > MAX_RANGE_RETRIES) {
+                    throw e;
+                }
+                log.info("Retry the range " + (firstByte + written) + "-" + lastByte
+                        + " of object " + request.getKey() + " (bucket "
+                        + request.getBucketName() + ")", e);
+            } catch (CosClientException e) {
+                // 读取时的长度或校验错误, 从已写入的位置重新请求
+                if (aborted || !e.isRetryable() || ++retries > MAX_RANGE_RETRIES) {
+                    throw e;
+                }
+                log.info("Retry the range " + (firstByte + written) + "-" + lastByte
+                        + " of object " + request.getKey() + " (bucket "
+                        + request.getBucketName() + ")", e);
+            } finally {
+                cosObject = null;
+                if (completed) {
+                    IOUtils.closeQuietly(object.getObjectContent(), log);
+                } else {
+                    object.getObjectContent().abort();
+                }
+            }
+        }
+    }
+
+    private void checkAborted() {
+        if (aborted || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The download of range " + firstByte + "-"
+                    + lastByte + " was canceled");
+        }
+    }
+
+    /**
+     * Aborts the request in progress, a blocked read doesn't respond to interrupts.
+     */
+    void abort() {
+        aborted = true;
+        COSObject object = cosObject;
+        if (object != null) {
+            object.getObjectContent().abort();
+        }
+    }
+}
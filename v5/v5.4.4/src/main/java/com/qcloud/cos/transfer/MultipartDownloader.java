@@ -0,0 +1,311 @@
+package com.qcloud.cos.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.FileLockException;
+import com.qcloud.cos.internal.FileLocks;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.transfer.Transfer.TransferState;
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.IOUtils;
+
+/**
+ * Downloads an object as concurrent ranges into a file created at the final length of the object,
+ * see {@link TransferManagerConfiguration#setMultipartDownloadEnabled(boolean)}.
+ * <p>
+ * The ranges are tasks of the executor of the transfer, writing at their offset through a single
+ * {@link FileChannel}. The completion runs once they are all done, checks the CRC64 of the object
+ * combined from those of the ranges and closes the file, so no thread waits for the ranges.
+ * <p>
+ * If {@link TransferManagerConfiguration#isDownloadCheckpointEnabled()}, the ranges written are
+ * recorded in a {@link DownloadCheckpoint} next to the file. When the download is started again,
+ * the ranges recorded whose data in the file still has the CRC64 recorded are skipped, and only
+ * the other ranges are downloaded.
+ */
+final class MultipartDownloader implements Callable<File> {
+    private static final Logger log = LoggerFactory.getLogger(MultipartDownloader.class);
+
+    private final GetObjectRequest origReq;
+    private final ObjectMetadata objectMetadata;
+    private final DownloadImpl download;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final boolean computeCrc64;
+    private final DownloadCheckpoint checkpoint;
+    private final long partSize;
+    private final int partCount;
+    // 恢复下载时checkpoint中已记录的分块数
+    private int resumedParts = 0;
+    private final List<DownloadPartCallable> parts = new ArrayList<DownloadPartCallable>();
+    private final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private MultipartDownloader(COS cos, GetObjectRequest origReq,
+            ObjectMetadata objectMetadata, DownloadImpl download, File file, RandomAccessFile raf,
+            boolean computeCrc64, DownloadCheckpoint checkpoint, long partSize) {
+        this.origReq = origReq;
+        this.objectMetadata = objectMetadata;
+        this.download = download;
+        this.file = file;
+        this.raf = raf;
+        this.computeCrc64 = computeCrc64;
+        this.checkpoint = checkpoint;
+        this.partSize = checkpoint != null ? checkpoint.getPartSize() : partSize;
+
+        AtomicBoolean failed = new AtomicBoolean();
+        long contentLength = objectMetadata.getContentLength();
+        int part = 0;
+        for (long offset = 0; offset < contentLength; offset += this.partSize, ++part) {
+            long lastByte = Math.min(offset + this.partSize, contentLength) - 1;
+            // 已记录的分块先校验文件中的数据, 不一致时才重新下载
+            boolean resumed = checkpoint != null && checkpoint.isDownloaded(part);
+            if (resumed) {
+                ++resumedParts;
+            }
+            parts.add(new DownloadPartCallable(cos,
+                    newRangeRequest(origReq, objectMetadata.getETag()), download,
+                    raf.getChannel(), part, offset, lastByte, computeCrc64, checkpoint, resumed,
+                    failed));
+        }
+        this.partCount = part;
+    }
+
+    /**
+     * Creates the file at the length of the object, and submits the download of its ranges and
+     * then their completion to the executor of the transfer.
+     *
+     * @return the future of the completion, which returns the file once all the ranges are
+     *         written, and cancels them when canceled.
+     */
+    static Future<File> start(COS cos, ExecutorService executor, GetObjectRequest origReq,
+            ObjectMetadata objectMetadata, DownloadImpl download, File file, long partSize,
+            boolean checkpointEnabled) {
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            throw new CosClientException(
+                    "Unable to create directory in the path " + parentDirectory.getAbsolutePath());
+        }
+        if (!FileLocks.lock(file)) {
+            throw new FileLockException("Fail to lock " + file + " for multipart download");
+        }
+        final long contentLength = objectMetadata.getContentLength();
+        final boolean computeCrc64 = cos.getClientConfig().isCrc64CheckEnabled()
+                && objectMetadata.getCrc64Ecma() != null;
+        RandomAccessFile raf = null;
+        DownloadCheckpoint checkpoint = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (checkpointEnabled) {
+                checkpoint = openCheckpoint(origReq, objectMetadata, file, raf, partSize);
+            }
+            // 预先分配文件, 各分块按偏移写入, 不依赖写入顺序
+            if (raf.length() != contentLength) {
+                raf.setLength(contentLength);
+            }
+        } catch (IOException e) {
+            if (checkpoint != null) {
+                checkpoint.close(false);
+            }
+            IOUtils.closeQuietly(raf, log);
+            FileLocks.unlock(file);
+            throw new CosClientException(
+                    "Unable to create the file " + file + ": " + e.getMessage(), e);
+        }
+
+        final MultipartDownloader downloader = new MultipartDownloader(cos, origReq,
+                objectMetadata, download, file, raf, computeCrc64, checkpoint, partSize);
+        if (downloader.resumedParts > 0) {
+            log.info("Resuming the download of " + origReq.getKey() + " (bucket "
+                    + origReq.getBucketName() + ") to " + file + ", "
+                    + downloader.resumedParts + " of " + downloader.partCount
+                    + " ranges recorded");
+        }
+        FutureTask<File> completion = new FutureTask<File>(downloader) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean canceled = super.cancel(mayInterruptIfRunning);
+                downloader.cancelParts();
+                return canceled;
+            }
+
+            @Override
+            protected void done() {
+                // 取消时完成任务可能不会运行, 在这里关闭文件, 保留checkpoint以便恢复
+                downloader.release(false);
+            }
+        };
+        try {
+            for (DownloadPartCallable part : downloader.parts) {
+                downloader.futures.add(executor.submit(part));
+            }
+            TransferScheduler.executeWhenIdle(executor, completion);
+        } catch (RuntimeException e) {
+            completion.cancel(true);
+            throw e;
+        }
+        return completion;
+    }
+
+    /**
+     * Opens the checkpoint next to the file, resumed if the file holds the ranges of a previous
+     * download of the same version of the object. The download goes on without a checkpoint if
+     * it can't be opened.
+     */
+    private static DownloadCheckpoint openCheckpoint(GetObjectRequest origReq,
+            ObjectMetadata objectMetadata, File file, RandomAccessFile raf, long partSize) {
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        try {
+            return DownloadCheckpoint.open(checkpointFile, raf.getChannel(),
+                    raf.length() == objectMetadata.getContentLength(), origReq.getBucketName(),
+                    origReq.getKey(), origReq.getVersionId(), objectMetadata.getContentLength(),
+                    objectMetadata.getETag(), partSize);
+        } catch (IOException e) {
+            log.warn("Unable to open the download checkpoint " + checkpointFile
+                    + ", the download can't be resumed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static GetObjectRequest newRangeRequest(GetObjectRequest origReq, String eTag) {
+        GetObjectRequest req = new GetObjectRequest(origReq.getBucketName(), origReq.getKey(),
+                origReq.getVersionId());
+        // 所有分块都以HEAD得到的ETag为条件, 对象在下载过程中被修改时请求失败
+        if (eTag != null) {
+            req.setMatchingETagConstraints(Collections.singletonList(eTag));
+        }
+        req.setSSECustomerKey(origReq.getSSECustomerKey());
+        req.setResponseHeaders(origReq.getResponseHeaders());
+        Map<String, String> customRequestHeaders = origReq.getCustomRequestHeaders();
+        if (customRequestHeaders != null) {
+            for (Map.Entry<String, String> header : customRequestHeaders.entrySet()) {
+                req.putCustomRequestHeader(header.getKey(), header.getValue());
+            }
+        }
+        req.setGeneralProgressListener(origReq.getGeneralProgressListener());
+        return TransferManager.appendMultipartUserAgent(req);
+    }
+
+    @Override
+    public File call() throws Exception {
+        boolean corrupt = false;
+        try {
+            long crc64 = 0;
+            Throwable failure = null;
+            long contentLength = objectMetadata.getContentLength();
+            for (int part = 0; part < partCount; ++part) {
+                Long partCrc64;
+                try {
+                    partCrc64 = futures.get(part).get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    continue;
+                }
+                if (partCrc64 != null && computeCrc64) {
+                    crc64 = CRC64.combine(crc64, partCrc64,
+                            Math.min(partSize, contentLength - part * partSize));
+                }
+            }
+            if (failure != null) {
+                throw failure instanceof CosClientException ? (CosClientException) failure
+                        : new CosClientException("Unable to download object " + origReq.getKey()
+                                + " (bucket " + origReq.getBucketName() + "): "
+                                + failure.getMessage(), failure);
+            }
+            if (computeCrc64 && !crc64Matches(crc64)) {
+                // 只丢弃文件中数据已损坏的分块, 无法定位时丢弃checkpoint, 下次重新下载整个对象
+                corrupt = checkpoint == null || clearCorruptParts() == 0;
+                throw new CosClientException("Unable to verify integrity of data download.  "
+                        + "Client calculated CRC64 (" + CRC64.toString(crc64)
+                        + ") didn't match CRC64 (" + objectMetadata.getCrc64Ecma()
+                        + ") calculated by Qcloud COS.  The data stored in '"
+                        + file.getAbsolutePath() + "' may be corrupt.");
+            }
+            release(true);
+            download.setState(TransferState.Completed);
+            return file;
+        } catch (Exception e) {
+            release(corrupt);
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks each range recorded against the data of the file, and unmarks those which differ so
+     * that only them are downloaded again.
+     *
+     * @return the number of ranges unmarked.
+     */
+    private int clearCorruptParts() {
+        int cleared = 0;
+        for (int part = 0; part < partCount; ++part) {
+            try {
+                if (!checkpoint.isIntact(part)) {
+                    checkpoint.clear(part);
+                    ++cleared;
+                }
+            } catch (IOException e) {
+                log.warn("Unable to check the range " + part + " of file " + file
+                        + " against the download checkpoint " + checkpoint.getFile() + ": "
+                        + e.getMessage());
+                return 0;
+            }
+        }
+        return cleared;
+    }
+
+    private boolean crc64Matches(long crc64) {
+        try {
+            return crc64 == CRC64.fromString(objectMetadata.getCrc64Ecma());
+        } catch (NumberFormatException e) {
+            log.warn("Unable to parse the CRC64 returned by COS: "
+                    + objectMetadata.getCrc64Ecma(), e);
+            return true;
+        }
+    }
+
+    private void cancelParts() {
+        for (DownloadPartCallable part : parts) {
+            part.abort();
+        }
+        // 不中断线程: 中断会关闭共享的FileChannel, 已写入的分块就无法记入checkpoint
+        for (Future<Long> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    private void release(boolean deleteCheckpoint) {
+        if (released.compareAndSet(false, true)) {
+            // 先同步checkpoint, 其中会先把已下载分块的数据写到存储设备
+            if (checkpoint != null) {
+                checkpoint.close(deleteCheckpoint);
+            }
+            IOUtils.closeQuietly(raf, log);
+            FileLocks.unlock(file);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.model.ListPartsRequest;
+import com.qcloud.cos.model.MultipartUpload;
+import com.qcloud.cos.model.PartListing;
+import com.qcloud.cos.model.PartSummary;
+
+/**
+ * Aborts the multipart uploads of an iterator initiated before a date, several uploads being
+ * processed while the caller thread keeps listing. The uploads are tasks of the executor of the
+ * cleanup, which shares the thread pool of the transfer manager with the transfers. The uploads
+ * which could not be aborted are collected instead of stopping the whole cleanup.
+ */
+class MultipartUploadAborter {
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploadAborter.class);
+
+    private final COS cos;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final Date date;
+    private final AbortMultipartUploadsOptions options;
+    private final Semaphore inFlightUploads;
+    private final long startNanos = System.nanoTime();
+
+    // 以下状态由lock保护, 在各个终止分块上传的线程之间共享
+    private final Object lock = new Object();
+    private long abortedUploads = 0;
+    private long failedUploads = 0;
+    private long reclaimedParts = 0;
+    private long reclaimedBytes = 0;
+    private final List<MultipartUpload> failures = new ArrayList<MultipartUpload>();
+    private final List<CosClientException> errors = new ArrayList<CosClientException>();
+
+    MultipartUploadAborter(COS cos, ExecutorService executor, String bucketName, Date date,
+            AbortMultipartUploadsOptions options) {
+        this.cos = cos;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.date = date;
+        this.options = options;
+        this.inFlightUploads = new Semaphore(options.getConcurrency());
+    }
+
+    /**
+     * Aborts the uploads initiated before the date and waits for the last one. An exception
+     * thrown by the iterator, ie a listing failure, is rethrown once the uploads in flight are
+     * processed.
+     */
+    AbortMultipartUploadsResult abortAll(Iterator<MultipartUpload> uploads) {
+        try {
+            while (uploads.hasNext()) {
+                MultipartUpload upload = uploads.next();
+                if (upload.getInitiated().compareTo(date) < 0) {
+                    submit(upload);
+                }
+            }
+        } finally {
+            // 等待所有在途的分块上传处理完
+            inFlightUploads.acquireUninterruptibly(options.getConcurrency());
+            inFlightUploads.release(options.getConcurrency());
+        }
+        synchronized (lock) {
+            return new AbortMultipartUploadsResult(options.isDryRun(), abortedUploads,
+                    failedUploads, reclaimedParts, reclaimedBytes,
+                    System.nanoTime() - startNanos, failures, errors);
+        }
+    }
+
+    private void submit(final MultipartUpload upload) {
+        try {
+            inFlightUploads.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosClientException("abort of multipart uploads has been interrupted", e);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        abort(upload);
+                    } finally {
+                        inFlightUploads.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightUploads.release();
+            throw new CosClientException("unable to schedule the abort of an upload", e);
+        }
+    }
+
+    private void abort(MultipartUpload upload) {
+        long parts = 0;
+        long bytes = 0;
+        try {
+            if (options.isCountParts()) {
+                ListPartsRequest request = TransferManager.appendSingleObjectUserAgent(
+                        new ListPartsRequest(bucketName, upload.getKey(), upload.getUploadId()));
+                PartListing partListing;
+                do {
+                    partListing = cos.listParts(request);
+                    for (PartSummary part : partListing.getParts()) {
+                        ++parts;
+                        bytes += part.getSize();
+                    }
+                    request.setPartNumberMarker(partListing.getNextPartNumberMarker());
+                } while (partListing.isTruncated());
+            }
+            if (!options.isDryRun()) {
+                cos.abortMultipartUpload(TransferManager.appendSingleObjectUserAgent(
+                        new AbortMultipartUploadRequest(bucketName, upload.getKey(),
+                                upload.getUploadId())));
+            }
+        } catch (CosClientException cce) {
+            if (isNoSuchUpload(cce)) {
+                // 已被其他进程完成或终止, 不计入回收也不算失败
+                return;
+            }
+            log.warn("failed to abort the multipart upload " + upload.getUploadId() + " of key "
+                    + upload.getKey() + " in bucket " + bucketName, cce);
+            synchronized (lock) {
+                ++failedUploads;
+                failures.add(upload);
+                errors.add(cce);
+            }
+            return;
+        }
+        synchronized (lock) {
+            ++abortedUploads;
+            reclaimedParts += parts;
+            reclaimedBytes += bytes;
+        }
+    }
+
+    private static boolean isNoSuchUpload(CosClientException cce) {
+        return cce instanceof CosServiceException
+                && "NoSuchUpload".equals(((CosServiceException) cce).getErrorCode());
+    }
+}
@@ -0,0 +1,52 @@
+package com.qcloud.cos.transfer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Fixed number of reusable buffers holding the parts of a stream upload, allocated on first use.
+ * The memory of an upload is thus capped by the number of buffers times the part size.
+ */
+class PartBufferPool {
+    private final int maxBuffers;
+    private final int bufferSize;
+    private final boolean direct;
+
+    // 以下状态由this保护
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<ByteBuffer>();
+    private int allocatedBuffers = 0;
+
+    PartBufferPool(int maxBuffers, int bufferSize, boolean direct) {
+        this.maxBuffers = maxBuffers;
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+    }
+
+    /**
+     * @return a cleared buffer, or null if all the buffers are in use.
+     */
+    synchronized ByteBuffer poll() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (allocatedBuffers >= maxBuffers) {
+                return null;
+            }
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize)
+                    : ByteBuffer.allocate(bufferSize);
+            ++allocatedBuffers;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer obtained from {@link #poll()}.
+     */
+    synchronized void release(ByteBuffer buffer) {
+        freeBuffers.add(buffer);
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
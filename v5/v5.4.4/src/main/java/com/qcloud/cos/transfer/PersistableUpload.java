@@ -32,21 +32,57 @@ public final class PersistableUpload extends PersistableTransfer {
     @JsonProperty
     private final long mutlipartUploadThreshold;
 
+    /** The journal of the uploaded parts, null if the parts have to be listed to resume. */
+    @JsonProperty
+    private final String checkpointFile;
+
+    /** The length of the file when the upload was started. */
+    @JsonProperty
+    private final long fileLength;
+
+    /** The last modification time of the file when the upload was started. */
+    @JsonProperty
+    private final long fileLastModified;
+
+    /** A sample of the content of the file when the upload was started, null if not known. */
+    @JsonProperty
+    private final String fileSample;
+
+    /** The base64 MD5 of the SSE-C key of the upload, null if the upload doesn't use SSE-C. */
+    @JsonProperty
+    private final String sseCustomerKeyMd5;
+
     public PersistableUpload() {
         this(null, null, null, null, -1, -1);
     }
 
+    public PersistableUpload(String bucketName, String key, String file,
+            String multipartUploadId, long partSize, long mutlipartUploadThreshold) {
+        this(bucketName, key, file, multipartUploadId, partSize, mutlipartUploadThreshold, null,
+                -1, -1, null, null);
+    }
+
     public PersistableUpload(@JsonProperty(value = "bucketName") String bucketName,
             @JsonProperty(value = "key") String key, @JsonProperty(value = "file") String file,
             @JsonProperty(value = "multipartUploadId") String multipartUploadId,
             @JsonProperty(value = "partSize") long partSize,
-            @JsonProperty(value = "mutlipartUploadThreshold") long mutlipartUploadThreshold) {
+            @JsonProperty(value = "mutlipartUploadThreshold") long mutlipartUploadThreshold,
+            @JsonProperty(value = "checkpointFile") String checkpointFile,
+            @JsonProperty(value = "fileLength") long fileLength,
+            @JsonProperty(value = "fileLastModified") long fileLastModified,
+            @JsonProperty(value = "fileSample") String fileSample,
+            @JsonProperty(value = "sseCustomerKeyMd5") String sseCustomerKeyMd5) {
         this.bucketName = bucketName;
         this.key = key;
         this.file = file;
         this.multipartUploadId = multipartUploadId;
         this.partSize = partSize;
         this.mutlipartUploadThreshold = mutlipartUploadThreshold;
+        this.checkpointFile = checkpointFile;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.fileSample = fileSample;
+        this.sseCustomerKeyMd5 = sseCustomerKeyMd5;
     }
 
     /**
@@ -91,6 +127,44 @@ public final class PersistableUpload extends PersistableTransfer {
         return file;
     }
 
+    /**
+     * Returns the journal of the parts uploaded so far, from which the upload is resumed without
+     * listing its parts, or null if there is none.
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Returns the length of the file when the upload was started.
+     */
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Returns the last modification time of the file when the upload was started.
+     */
+    public long getFileLastModified() {
+        return fileLastModified;
+    }
+
+    /**
+     * Returns a sample of the content of the file when the upload was started, with which the
+     * file is checked to be unchanged before resuming the upload, or null if not known.
+     */
+    public String getFileSample() {
+        return fileSample;
+    }
+
+    /**
+     * Returns the base64 encoded MD5 of the SSE-C key of the upload, to check the key given to
+     * resume the upload, or null if the upload doesn't use SSE-C.
+     */
+    public String getSseCustomerKeyMd5() {
+        return sseCustomerKeyMd5;
+    }
+
     public String getPauseType() {
         return pauseType;
     }
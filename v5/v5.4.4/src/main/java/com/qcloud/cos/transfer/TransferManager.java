@@ -4,12 +4,15 @@ import static com.qcloud.cos.utils.ServiceUtils.APPEND_MODE;
 import static com.qcloud.cos.utils.ServiceUtils.OVERWRITE_MODE;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -38,18 +41,22 @@ import com.qcloud.cos.exception.FileLockException;
 import com.qcloud.cos.internal.CopyImpl;
 import com.qcloud.cos.internal.CosServiceRequest;
 import com.qcloud.cos.internal.FileLocks;
-import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.iterable.COSMultipartUploads;
+import com.qcloud.cos.iterable.COSObjects;
+import com.qcloud.cos.iterable.COSVersions;
+import com.qcloud.cos.iterable.ParallelCOSObjects;
+import com.qcloud.cos.model.COSEncryption;
+import com.qcloud.cos.model.COSObject;
 import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.COSVersionSummary;
 import com.qcloud.cos.model.CopyObjectRequest;
+import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
 import com.qcloud.cos.model.GetObjectMetadataRequest;
 import com.qcloud.cos.model.GetObjectRequest;
-import com.qcloud.cos.model.ListMultipartUploadsRequest;
-import com.qcloud.cos.model.ListObjectsRequest;
 import com.qcloud.cos.model.MultipartUpload;
-import com.qcloud.cos.model.MultipartUploadListing;
-import com.qcloud.cos.model.ObjectListing;
 import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.SSECustomerKey;
 import com.qcloud.cos.transfer.Transfer.TransferState;
 import com.qcloud.cos.utils.VersionInfoUtils;
 
@@ -116,6 +123,8 @@ public class TransferManager {
     private TransferManagerConfiguration configuration;
     /** The thread pool in which transfers are uploaded or downloaded. */
     private final ExecutorService threadPool;
+    /** Shares the thread pool fairly between the transfers in progress. */
+    private final TransferScheduler scheduler;
 
     /** Thread used for periodicially checking transfers and updating thier state. */
     private final ScheduledExecutorService timedThreadPool =
@@ -138,7 +147,8 @@ public class TransferManager {
      * @param cos The client to use when making requests to Qcloud COS.
      */
     public TransferManager(COS cos) {
-        this(cos, TransferManagerUtils.createDefaultExecutorService());
+        this(cos, TransferManagerUtils.createDefaultExecutorService(
+                TransferManagerUtils.getDefaultConcurrency(cos.getClientConfig())));
     }
 
     /**
@@ -182,6 +192,7 @@ public class TransferManager {
         this.threadPool = threadPool;
         this.configuration = new TransferManagerConfiguration();
         this.shutDownThreadPools = shutDownThreadPools;
+        this.scheduler = new TransferScheduler(threadPool, this);
     }
 
 
@@ -215,18 +226,26 @@ public class TransferManager {
         return cos;
     }
 
+    /**
+     * Returns the scheduler sharing the thread pool between the transfers.
+     */
+    TransferScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * <p>
      * Schedules a new transfer to upload data to Qcloud COS. This method is non-blocking and
      * returns immediately (i.e. before the upload has finished).
      * </p>
      * <p>
-     * When uploading options from a stream, callers <b>must</b> supply the size of options in the
+     * When uploading options from a stream, callers should supply the size of options in the
      * stream through the content length field in the <code>ObjectMetadata</code> parameter. If no
-     * content length is specified for the input stream, then TransferManager will attempt to buffer
-     * all the stream contents in memory and upload the options as a traditional, single part
-     * upload. Because the entire stream contents must be buffered in memory, this can be very
-     * expensive, and should be avoided whenever possible.
+     * content length is specified for the input stream, then TransferManager reads the stream
+     * into a bounded number of part buffers uploaded concurrently, see
+     * {@link TransferManagerConfiguration#setStreamingUploadPartBuffers(int)}. If streaming uploads
+     * are disabled, TransferManager will attempt to buffer all the stream contents in memory and
+     * upload the options as a traditional, single part upload, which can be very expensive.
      * </p>
      * <p>
      * Use the returned <code>Upload</code> object to query the progress of the transfer, add
@@ -411,14 +430,14 @@ public class TransferManager {
         UploadImpl upload =
                 new UploadImpl(description, transferProgress, listenerChain, stateListener);
         /**
-         * Since we use the same thread pool for uploading individual parts and complete multi part
-         * upload, there is a possibility that the tasks for complete multi-part upload will be
-         * added to end of queue in case of multiple parallel uploads submitted. This may result in
-         * a delay for processing the complete multi part upload request.
+         * The parts and the complete multi part upload request share the executor of the upload,
+         * which runs its tasks in order, taking turns with the other transfers in the thread pool.
          */
-        UploadCallable uploadCallable = new UploadCallable(this, threadPool, upload,
-                putObjectRequest, listenerChain, multipartUploadId, transferProgress);
-        UploadMonitor watcher = UploadMonitor.create(this, upload, threadPool, uploadCallable,
+        ExecutorService transferExecutor = scheduler.newTransfer();
+        UploadCallable uploadCallable = new UploadCallable(this, transferExecutor, upload,
+                putObjectRequest, listenerChain, multipartUploadId, transferProgress,
+                persistableUpload);
+        UploadMonitor watcher = UploadMonitor.create(this, upload, transferExecutor, uploadCallable,
                 putObjectRequest, listenerChain);
         upload.setMonitor(watcher);
 
@@ -530,6 +549,7 @@ public class TransferManager {
 
         long startingByte = 0;
         long lastByte;
+        ObjectMetadata objectMetadata = null;
 
         long[] range = getObjectRequest.getRange();
         if (range != null && range.length == 2) {
@@ -542,10 +562,31 @@ public class TransferManager {
                 getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
             if (getObjectRequest.getVersionId() != null)
                 getObjectMetadataRequest.setVersionId(getObjectRequest.getVersionId());
-            final ObjectMetadata objectMetadata = cos.getObjectMetadata(getObjectMetadataRequest);
+            objectMetadata = cos.getObjectMetadata(getObjectMetadataRequest);
 
             lastByte = objectMetadata.getContentLength() - 1;
         }
+
+        // 有checkpoint时分块下载也可以暂停, 恢复时只下载缺少的分块
+        final boolean checkpointEnabled = configuration.isDownloadCheckpointEnabled();
+        if ((!resumeExistingDownload || checkpointEnabled) && objectMetadata != null
+                && isMultipartDownload(getObjectRequest, objectMetadata)) {
+            final DownloadImpl download = new DownloadImpl(description, transferProgress,
+                    listenerChain, null, stateListener, getObjectRequest, file,
+                    checkpointEnabled);
+            COSObject cosObject = new COSObject();
+            cosObject.setBucketName(getObjectRequest.getBucketName());
+            cosObject.setKey(getObjectRequest.getKey());
+            cosObject.setObjectMetadata(objectMetadata);
+            download.setCosObject(cosObject);
+            transferProgress.setTotalBytesToTransfer(objectMetadata.getContentLength());
+            Future<File> future = MultipartDownloader.start(cos, scheduler.newTransfer(),
+                    getObjectRequest, objectMetadata, download, file,
+                    configuration.getMultipartDownloadPartSize(), checkpointEnabled);
+            download.setMonitor(new DownloadMonitor(download, future));
+            return download;
+        }
+
         final long origStartingByte = startingByte;
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description, transferProgress, listenerChain,
@@ -584,13 +625,36 @@ public class TransferManager {
         }
 
         final CountDownLatch latch = new CountDownLatch(1);
-        Future<?> future = threadPool.submit(new DownloadCallable(cos, latch, getObjectRequest,
-                resumeExistingDownload, download, file, origStartingByte, fileLength));
+        Future<?> future = scheduler.newTransfer().submit(new DownloadCallable(cos, latch,
+                getObjectRequest, resumeExistingDownload, download, file, origStartingByte,
+                fileLength));
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
     }
 
+    /**
+     * Returns whether the whole object is downloaded as concurrent ranges. A request with
+     * constraints is downloaded as before, as it would otherwise be pinned to the ETag returned by
+     * the HEAD of the object instead, and encrypted objects are not decrypted by range.
+     */
+    private boolean isMultipartDownload(GetObjectRequest getObjectRequest,
+            ObjectMetadata objectMetadata) {
+        return configuration.isMultipartDownloadEnabled()
+                && objectMetadata.getContentLength() >= configuration
+                        .getMultipartDownloadThreshold()
+                && objectMetadata.getContentLength() > configuration.getMultipartDownloadPartSize()
+                && !(cos instanceof COSEncryption)
+                && isNullOrEmpty(getObjectRequest.getMatchingETagConstraints())
+                && isNullOrEmpty(getObjectRequest.getNonmatchingETagConstraints())
+                && getObjectRequest.getModifiedSinceConstraint() == null
+                && getObjectRequest.getUnmodifiedSinceConstraint() == null;
+    }
+
+    private static boolean isNullOrEmpty(List<String> list) {
+        return list == null || list.isEmpty();
+    }
+
     /**
      * Downloads all objects in the virtual directory designated by the keyPrefix given to the
      * destination directory given. All virtual subdirectories will be downloaded recursively.
@@ -605,43 +669,40 @@ public class TransferManager {
             File destinationDirectory) {
         if (keyPrefix == null)
             keyPrefix = "";
-        List<COSObjectSummary> objectSummaries = new LinkedList<COSObjectSummary>();
-        Stack<String> commonPrefixes = new Stack<String>();
-        commonPrefixes.add(keyPrefix);
-        long totalSize = 0;
-        // Recurse all virtual subdirectories to get a list of object summaries.
-        // This is a depth-first search.
-        do {
-            String prefix = commonPrefixes.pop();
-            ObjectListing listObjectsResponse = null;
-
-            do {
-                if (listObjectsResponse == null) {
-                    ListObjectsRequest listObjectsRequest =
-                            new ListObjectsRequest().withBucketName(bucketName)
-                                    .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
-                    listObjectsResponse = cos.listObjects(listObjectsRequest);
-                } else {
-                    listObjectsResponse = cos.listNextBatchOfObjects(listObjectsResponse);
-                }
-
-                for (COSObjectSummary s : listObjectsResponse.getObjectSummaries()) {
-                    // Skip any files that are also virtual directories, since
-                    // we can't save both a directory and a file of the same
-                    // name.
-                    if (!s.getKey().equals(prefix) && !listObjectsResponse.getCommonPrefixes()
-                            .contains(s.getKey() + DEFAULT_DELIMITER)) {
-                        objectSummaries.add(s);
-                        totalSize += s.getSize();
-                    } else {
-                        log.debug("Skipping download for object " + s.getKey()
-                                + " since it is also a virtual directory");
-                    }
-                }
+        List<COSObjectSummary> listedObjects = new ArrayList<COSObjectSummary>();
+        // Virtual subdirectories are listed in parallel on the thread pool. Every subdirectory
+        // holding objects is recorded, so that an object also named like a subdirectory can be
+        // told apart.
+        Set<String> directories = new HashSet<String>();
+        ParallelCOSObjects objects = ParallelCOSObjects.withPrefix(cos, bucketName, keyPrefix)
+                .withDelimiter(DEFAULT_DELIMITER)
+                .withConcurrency(configuration.getDirectoryListingConcurrency())
+                .withExecutor(threadPool);
+        for (COSObjectSummary s : objects) {
+            listedObjects.add(s);
+            String key = s.getKey();
+            for (int index = key.indexOf(DEFAULT_DELIMITER, keyPrefix.length()); index >= 0;
+                    index = key.indexOf(DEFAULT_DELIMITER, index + 1)) {
+                directories.add(key.substring(0, index + 1));
+            }
+        }
 
-                commonPrefixes.addAll(listObjectsResponse.getCommonPrefixes());
-            } while (listObjectsResponse.isTruncated());
-        } while (!commonPrefixes.isEmpty());
+        List<COSObjectSummary> objectSummaries = new ArrayList<COSObjectSummary>();
+        long totalSize = 0;
+        for (COSObjectSummary s : listedObjects) {
+            // Skip any files that are also virtual directories, since
+            // we can't save both a directory and a file of the same
+            // name.
+            String key = s.getKey();
+            if (!key.equals(keyPrefix) && !key.endsWith(DEFAULT_DELIMITER)
+                    && !directories.contains(key + DEFAULT_DELIMITER)) {
+                objectSummaries.add(s);
+                totalSize += s.getSize();
+            } else {
+                log.debug("Skipping download for object " + key
+                        + " since it is also a virtual directory");
+            }
+        }
 
         /* This is the hook for adding additional progress listeners */
         ProgressListenerChain additionalListeners = new ProgressListenerChain();
@@ -751,6 +812,48 @@ public class TransferManager {
                 metadataProvider);
     }
 
+    /**
+     * Uploads all files in the directory given to the bucket named as they are found by a walk of
+     * the directory, for directories of any number of files. Unlike
+     * {@link #uploadDirectory(String, String, File, boolean, ObjectMetadataProvider)}, the files
+     * are not listed first and no transfer is created per file: they are uploaded with PutObject
+     * requests from a bounded queue fed by the walk, each by a short task of the thread pool
+     * taking turns with the other transfers, and only the totals of the upload are tracked, see
+     * {@link DirectoryUploadOptions}. The files as large as the multipart upload threshold are
+     * uploaded in parts as usual.
+     * <p>
+     * COS will overwrite any existing objects that happen to have the same key, just as when
+     * uploading individual files, so use with caution. The files which could not be read or
+     * uploaded are reported in the result. This method blocks until the last upload completes.
+     * </p>
+     *
+     * @param bucketName The name of the bucket to upload objects to.
+     * @param virtualDirectoryKeyPrefix The key prefix of the virtual directory to upload to. Use
+     *        the null or empty string to upload files to the root of the bucket.
+     * @param directory The directory to upload.
+     * @param options The options of the upload, null for the default ones.
+     * @return The totals of the upload and the files which could not be uploaded.
+     * @throws CosClientException If the walk of the directory is interrupted, once the uploads in
+     *         flight completed.
+     */
+    public DirectoryUploadResult uploadDirectory(String bucketName,
+            String virtualDirectoryKeyPrefix, File directory, DirectoryUploadOptions options)
+            throws CosClientException {
+        if (directory == null || !directory.exists() || !directory.isDirectory()) {
+            throw new IllegalArgumentException("Must provide a directory to upload");
+        }
+        if (virtualDirectoryKeyPrefix == null || virtualDirectoryKeyPrefix.length() == 0) {
+            virtualDirectoryKeyPrefix = "";
+        } else if (!virtualDirectoryKeyPrefix.endsWith("/")) {
+            virtualDirectoryKeyPrefix = virtualDirectoryKeyPrefix + "/";
+        }
+        if (options == null) {
+            options = new DirectoryUploadOptions();
+        }
+        return new DirectoryUploader(this, bucketName, virtualDirectoryKeyPrefix, directory,
+                options).uploadAll();
+    }
+
     /**
      * Uploads all specified files to the bucket named, constructing relative keys depending on the
      * commonParentDirectory given.
@@ -901,28 +1004,144 @@ public class TransferManager {
      * <code>TransferManager</code> attempts to abort any failed uploads, but in some cases this may
      * not be possible, such as if network connectivity is completely lost.
      * </p>
+     * <p>
+     * The uploads are aborted by the thread pool of this <code>TransferManager</code>, shared
+     * fairly with the transfers in progress, see
+     * {@link #abortMultipartUploads(String, Date, AbortMultipartUploadsOptions)}. If some uploads
+     * could not be aborted, the exception of the first one is thrown once all the others were.
+     * </p>
      *
      * @param bucketName The name of the bucket containing the multipart uploads to abort.
      * @param date The date indicating which multipart uploads should be aborted.
      */
     public void abortMultipartUploads(String bucketName, Date date)
             throws CosServiceException, CosClientException {
-        MultipartUploadListing uploadListing = cos.listMultipartUploads(
-                appendSingleObjectUserAgent(new ListMultipartUploadsRequest(bucketName)));
-        do {
-            for (MultipartUpload upload : uploadListing.getMultipartUploads()) {
-                if (upload.getInitiated().compareTo(date) < 0) {
-                    cos.abortMultipartUpload(
-                            appendSingleObjectUserAgent(new AbortMultipartUploadRequest(bucketName,
-                                    upload.getKey(), upload.getUploadId())));
+        AbortMultipartUploadsResult result = abortMultipartUploads(bucketName, date,
+                new AbortMultipartUploadsOptions().withCountParts(false));
+        if (!result.getErrors().isEmpty()) {
+            throw result.getErrors().get(0);
+        }
+    }
+
+    /**
+     * Aborts the multipart uploads initiated before the specified date. The uploads are listed
+     * while the previous ones are aborted, several at once by the thread pool of this
+     * <code>TransferManager</code>, shared fairly with the transfers in progress, see
+     * {@link AbortMultipartUploadsOptions}. This method blocks
+     * until the last upload is processed.
+     * <p>
+     * The uploads which could not be aborted are reported in the result instead of stopping the
+     * cleanup. The uploads completed or aborted by someone else meanwhile are ignored.
+     *
+     * @param bucketName The name of the bucket containing the multipart uploads to abort.
+     * @param date The date indicating which multipart uploads should be aborted.
+     * @param options The options of the cleanup, null for the default ones.
+     * @return The number of uploads aborted and of parts reclaimed, and the failures.
+     * @throws CosClientException If listing the uploads fails, once the uploads in flight are
+     *         processed.
+     */
+    public AbortMultipartUploadsResult abortMultipartUploads(String bucketName, Date date,
+            AbortMultipartUploadsOptions options) throws CosServiceException, CosClientException {
+        if (options == null) {
+            options = new AbortMultipartUploadsOptions();
+        }
+        Iterator<MultipartUpload> uploads = COSMultipartUploads
+                .withPrefix(cos, bucketName, options.getPrefix()).withUserAgent(USER_AGENT)
+                .iterator();
+        return new MultipartUploadAborter(cos, scheduler.newTransfer(), bucketName, date,
+                options).abortAll(uploads);
+    }
+
+    /**
+     * Deletes all the objects whose key starts with the prefix. The keys are listed while they are
+     * deleted with DeleteObjects requests of up to 1000 keys, several requests being sent at once
+     * by the thread pool of this <code>TransferManager</code>, shared fairly with the transfers in
+     * progress, see {@link BulkDeleteOptions}.
+     * <p>
+     * The keys which could not be deleted are reported in the result, and can be passed again to
+     * {@link #deleteAll(String, Iterator, BulkDeleteOptions)}. This method blocks until the last
+     * request completes.
+     *
+     * @param bucketName The name of the bucket containing the objects to delete.
+     * @param prefix The prefix of the keys to delete, null or empty to empty the bucket.
+     * @param options The options of the deletion, null for the default ones.
+     * @return The totals of the deletion and the keys which could not be deleted.
+     * @throws CosClientException If listing the keys fails, once the requests in flight completed.
+     */
+    public BulkDeleteResult deletePrefix(String bucketName, String prefix,
+            BulkDeleteOptions options) throws CosServiceException, CosClientException {
+        if (options == null) {
+            options = new BulkDeleteOptions();
+        }
+        // 预取的页数与在途的批次数相当, 删除不必等待列举
+        int prefetchPages = options.getConcurrency();
+        Iterator<KeyVersion> keys;
+        if (options.isAllVersions()) {
+            final Iterator<COSVersionSummary> versions = COSVersions
+                    .withPrefix(cos, bucketName, prefix)
+                    .withBatchSize(BulkDeleteOptions.MAX_BATCH_SIZE)
+                    .withPrefetchPages(prefetchPages).iterator();
+            keys = new Iterator<KeyVersion>() {
+                @Override
+                public boolean hasNext() {
+                    return versions.hasNext();
                 }
-            }
 
-            ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(bucketName)
-                    .withUploadIdMarker(uploadListing.getNextUploadIdMarker())
-                    .withKeyMarker(uploadListing.getNextKeyMarker());
-            uploadListing = cos.listMultipartUploads(appendSingleObjectUserAgent(request));
-        } while (uploadListing.isTruncated());
+                @Override
+                public KeyVersion next() {
+                    COSVersionSummary versionSummary = versions.next();
+                    return new KeyVersion(versionSummary.getKey(), versionSummary.getVersionId());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        } else {
+            final Iterator<COSObjectSummary> objects = COSObjects
+                    .withPrefix(cos, bucketName, prefix)
+                    .withBatchSize(BulkDeleteOptions.MAX_BATCH_SIZE)
+                    .withPrefetchPages(prefetchPages).iterator();
+            keys = new Iterator<KeyVersion>() {
+                @Override
+                public boolean hasNext() {
+                    return objects.hasNext();
+                }
+
+                @Override
+                public KeyVersion next() {
+                    return new KeyVersion(objects.next().getKey());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        return deleteAll(bucketName, keys, options);
+    }
+
+    /**
+     * Deletes all the keys of the iterator with DeleteObjects requests of up to 1000 keys, several
+     * requests being sent at once by the thread pool of this <code>TransferManager</code>, shared
+     * fairly with the transfers in progress, while the next batch is filled, see
+     * {@link BulkDeleteOptions}. This method blocks until the last
+     * request completes.
+     *
+     * @param bucketName The name of the bucket containing the objects to delete.
+     * @param keys The keys, and optionally versions, to delete.
+     * @param options The options of the deletion, null for the default ones.
+     * @return The totals of the deletion and the keys which could not be deleted.
+     */
+    public BulkDeleteResult deleteAll(String bucketName, Iterator<KeyVersion> keys,
+            BulkDeleteOptions options) throws CosClientException {
+        if (options == null) {
+            options = new BulkDeleteOptions();
+        }
+        return new BulkDeleter(cos, scheduler.newTransfer(), bucketName, options)
+                .deleteAll(keys);
     }
 
     /**
@@ -952,7 +1171,8 @@ public class TransferManager {
      */
     public void shutdownNow(boolean shutDownCOSClient) {
         if (shutDownThreadPools) {
-            threadPool.shutdownNow();
+            // 被丢弃的任务不会再运行, 取消它们以便等待它们的传输结束
+            scheduler.cancelDroppedTasks(threadPool.shutdownNow());
             timedThreadPool.shutdownNow();
         }
 
@@ -1167,12 +1387,73 @@ public class TransferManager {
      *         request.
      */
     public Upload resumeUpload(PersistableUpload persistableUpload) {
+        return resumeUpload(persistableUpload, null);
+    }
+
+    /**
+     * Resumes an upload operation encrypted with a customer-provided key (SSE-C), which is not
+     * part of the persisted state of the upload. This upload operation uses the same
+     * configuration {@link TransferManagerConfiguration} as the original upload. Any data already
+     * uploaded will be skipped, and only the remaining will be uploaded to Qcloud COS.
+     * <p>
+     * If the parts of the upload were journaled, see
+     * {@link TransferManagerConfiguration#setUploadCheckpointDirectory(File)}, the parts already
+     * uploaded are read from the journal rather than listed in Qcloud COS, once the file to upload
+     * is checked not to have changed.
+     *
+     * @param persistableUpload the upload to resume.
+     * @param sseCustomerKey the key the upload was started with, null if it doesn't use SSE-C.
+     * @return A new <code>Upload</code> object to use to check the state of the upload, listen for
+     *         progress notifications, and otherwise manage the upload.
+     *
+     * @throws IllegalArgumentException If the key is not the one the upload was started with.
+     * @throws CosClientException If the file to upload has changed since the upload was started,
+     *         or any other error is encountered in the client while making the request or
+     *         handling the response.
+     * @throws CosServiceException If any errors occurred in Qcloud COS while processing the
+     *         request.
+     */
+    public Upload resumeUpload(PersistableUpload persistableUpload,
+            SSECustomerKey sseCustomerKey) {
         assertParameterNotNull(persistableUpload, "PauseUpload is mandatory to resume a upload.");
+        String sseCustomerKeyMd5 = sseCustomerKey == null ? null
+                : TransferManagerUtils.getSSECustomerKeyMd5(sseCustomerKey);
+        if (persistableUpload.getSseCustomerKeyMd5() == null ? sseCustomerKey != null
+                : !persistableUpload.getSseCustomerKeyMd5().equals(sseCustomerKeyMd5)) {
+            throw new IllegalArgumentException(
+                    "The SSE-C key is not the one the upload was started with.");
+        }
+        File file = new File(persistableUpload.getFile());
+        checkFileUnchanged(persistableUpload, file);
         configuration.setMinimumUploadPartSize(persistableUpload.getPartSize());
         configuration.setMultipartUploadThreshold(persistableUpload.getMutlipartUploadThreshold());
-        return doUpload(new PutObjectRequest(persistableUpload.getBucketName(),
-                persistableUpload.getKey(), new File(persistableUpload.getFile())), null, null,
-                persistableUpload);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(
+                persistableUpload.getBucketName(), persistableUpload.getKey(), file);
+        putObjectRequest.setSSECustomerKey(sseCustomerKey);
+        return doUpload(putObjectRequest, null, null, persistableUpload);
+    }
+
+    /**
+     * Checks that the length, modification time and sample of the content of the file to upload
+     * are still those captured when the upload was started, if they were.
+     */
+    private static void checkFileUnchanged(PersistableUpload persistableUpload, File file) {
+        if (persistableUpload.getFileSample() == null) {
+            return;
+        }
+        String fileSample;
+        try {
+            fileSample = file.isFile() ? UploadCheckpoint.sampleFile(file) : null;
+        } catch (IOException e) {
+            throw new CosClientException("Unable to read the file " + file
+                    + " to resume the upload: " + e.getMessage(), e);
+        }
+        if (file.length() != persistableUpload.getFileLength()
+                || file.lastModified() != persistableUpload.getFileLastModified()
+                || !persistableUpload.getFileSample().equals(fileSample)) {
+            throw new CosClientException("Unable to resume the upload, the file " + file
+                    + " has changed since the upload was started.");
+        }
     }
 
     /**
@@ -1401,9 +1682,10 @@ public class TransferManager {
                 new ProgressListenerChain(new TransferProgressUpdatingListener(transferProgress));
         CopyImpl copy =
                 new CopyImpl(description, transferProgress, listenerChain, stateChangeListener);
-        CopyCallable copyCallable = new CopyCallable(this, threadPool, copy, copyObjectRequest,
-                metadata, listenerChain);
-        CopyMonitor watcher = CopyMonitor.create(this, copy, threadPool, copyCallable,
+        ExecutorService transferExecutor = scheduler.newTransfer();
+        CopyCallable copyCallable = new CopyCallable(this, transferExecutor, copy,
+                copyObjectRequest, metadata, listenerChain);
+        CopyMonitor watcher = CopyMonitor.create(this, copy, transferExecutor, copyCallable,
                 copyObjectRequest, listenerChain);
         copy.setMonitor(watcher);
         return copy;
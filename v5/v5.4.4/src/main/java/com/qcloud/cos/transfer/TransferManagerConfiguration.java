@@ -1,8 +1,11 @@
 package com.qcloud.cos.transfer;
 
 import static com.qcloud.cos.internal.Constants.GB;
+import static com.qcloud.cos.internal.Constants.MAXIMUM_UPLOAD_PART_SIZE;
 import static com.qcloud.cos.internal.Constants.MB;
 
+import java.io.File;
+
 /**
  * Configuration options for how {@link TransferManager} processes requests.
  * <p>
@@ -23,6 +26,18 @@ public class TransferManagerConfiguration {
 
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
+
+    /** Default max number of list requests in flight when listing a directory to download. */
+    private static final int DEFAULT_DIRECTORY_LISTING_CONCURRENCY = 8;
+
+    /** Default number of part buffers of an upload from a stream of unknown length. */
+    private static final int DEFAULT_STREAMING_UPLOAD_PART_BUFFERS = 4;
+
+    /** Default size threshold for when to use multipart downloads, when they are enabled. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = 64 * MB;
+
+    /** Default size of the ranges of a multipart download. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_PART_SIZE = 16 * MB;
     
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size will cause multipart
@@ -57,6 +72,66 @@ public class TransferManagerConfiguration {
      * initiated.
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
+
+    /**
+     * The max number of list requests in flight when listing the objects of a directory to
+     * download, each virtual subdirectory being listed on its own.
+     */
+    private int directoryListingConcurrency = DEFAULT_DIRECTORY_LISTING_CONCURRENCY;
+
+    /**
+     * The max number of requests of all the transfers in flight at once, parts included. 0 lets
+     * the transfer manager derive it from the available processors, the max connections of the
+     * client and the size of its thread pool.
+     */
+    private int maxConcurrentPartRequests = 0;
+
+    /**
+     * The max number of transfers, ie files, in progress at once. 0 means as many as
+     * {@link #maxConcurrentPartRequests}.
+     */
+    private int maxConcurrentFiles = 0;
+
+    /**
+     * The max number of requests of a single transfer in flight at once. 0 means no limit other
+     * than {@link #maxConcurrentPartRequests}, the transfers taking turns anyway.
+     */
+    private int maxConcurrentPartsPerTransfer = 0;
+
+    /**
+     * The number of part buffers of an upload from an input stream whose content length is not
+     * set. Parts of {@link #minimumUploadPartSize} bytes are read into these buffers and uploaded
+     * concurrently, reading stops while all of them are being uploaded. 0 disables streaming
+     * uploads, the whole stream being then buffered in memory to be sent at once.
+     */
+    private int streamingUploadPartBuffers = DEFAULT_STREAMING_UPLOAD_PART_BUFFERS;
+
+    /** Whether the part buffers of streaming uploads are allocated outside of the heap. */
+    private boolean streamingUploadDirectBuffers = false;
+
+    /**
+     * Whether the part size and the number of parts in flight of multipart uploads of files are
+     * adapted to the throughput and latency measured during the upload.
+     */
+    private boolean adaptiveUploadEnabled = false;
+
+    /** The maximum part size for upload parts chosen by an adaptive upload. */
+    private long maximumUploadPartSize = MAXIMUM_UPLOAD_PART_SIZE;
+
+    /** The directory of the journals of the parts of resumable uploads, null for none. */
+    private File uploadCheckpointDirectory = null;
+
+    /** Whether large objects are downloaded as concurrent ranges. */
+    private boolean multipartDownloadEnabled = false;
+
+    /** The size threshold, in bytes, for when to download an object as concurrent ranges. */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
+    /** The size of the ranges of a multipart download, the last one being smaller. */
+    private long multipartDownloadPartSize = DEFAULT_MULTIPART_DOWNLOAD_PART_SIZE;
+
+    /** Whether multipart downloads record the ranges written in a checkpoint next to the file. */
+    private boolean downloadCheckpointEnabled = false;
     
     /**
      * Returns the minimum part size for upload parts. Decreasing the minimum part size causes
@@ -156,4 +231,343 @@ public class TransferManagerConfiguration {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
 
+    /**
+     * Returns the max number of list requests in flight when listing the objects of a directory to
+     * download.
+     *
+     * @return The max number of list requests in flight.
+     */
+    public int getDirectoryListingConcurrency() {
+        return directoryListingConcurrency;
+    }
+
+    /**
+     * Sets the max number of list requests in flight when listing the objects of a directory to
+     * download. The virtual subdirectories are listed in parallel, the requests being sent by the
+     * thread pool of the transfer manager.
+     *
+     * @param directoryListingConcurrency The max number of list requests in flight, 1 at least.
+     */
+    public void setDirectoryListingConcurrency(int directoryListingConcurrency) {
+        if (directoryListingConcurrency < 1) {
+            throw new IllegalArgumentException("directoryListingConcurrency must be greater than 0");
+        }
+        this.directoryListingConcurrency = directoryListingConcurrency;
+    }
+
+    /**
+     * Returns the max number of requests of all the transfers in flight at once, 0 if derived by
+     * the transfer manager.
+     *
+     * @return The max number of requests in flight, or 0.
+     */
+    public int getMaxConcurrentPartRequests() {
+        return maxConcurrentPartRequests;
+    }
+
+    /**
+     * Sets the max number of requests of all the transfers in flight at once, the parts of
+     * multipart uploads and copies included. The transfers in progress take turns to send their
+     * requests. The value is capped by the max size of the thread pool of the transfer manager.
+     * <p>
+     * By default, or if set to 0, the transfer manager uses four requests per available processor,
+     * between 8 and 64, within the max connections of the client.
+     *
+     * @param maxConcurrentPartRequests The max number of requests in flight, 0 for the default.
+     */
+    public void setMaxConcurrentPartRequests(int maxConcurrentPartRequests) {
+        if (maxConcurrentPartRequests < 0) {
+            throw new IllegalArgumentException("maxConcurrentPartRequests must not be negative");
+        }
+        this.maxConcurrentPartRequests = maxConcurrentPartRequests;
+    }
+
+    /**
+     * Returns the max number of transfers in progress at once, 0 if as many as the max number of
+     * requests in flight.
+     *
+     * @return The max number of transfers in progress, or 0.
+     */
+    public int getMaxConcurrentFiles() {
+        return maxConcurrentFiles;
+    }
+
+    /**
+     * Sets the max number of transfers, ie files, in progress at once. The other transfers, for
+     * instance the remaining files of a directory upload, are started in order as the previous
+     * ones complete.
+     *
+     * @param maxConcurrentFiles The max number of transfers in progress, 0 for as many as the max
+     *        number of requests in flight.
+     */
+    public void setMaxConcurrentFiles(int maxConcurrentFiles) {
+        if (maxConcurrentFiles < 0) {
+            throw new IllegalArgumentException("maxConcurrentFiles must not be negative");
+        }
+        this.maxConcurrentFiles = maxConcurrentFiles;
+    }
+
+    /**
+     * Returns the max number of requests of a single transfer in flight at once, 0 if not
+     * limited.
+     *
+     * @return The max number of requests of a transfer in flight, or 0.
+     */
+    public int getMaxConcurrentPartsPerTransfer() {
+        return maxConcurrentPartsPerTransfer;
+    }
+
+    /**
+     * Sets the max number of requests of a single transfer in flight at once, for instance to
+     * keep a huge upload from using all the connections while no other transfer is in progress.
+     *
+     * @param maxConcurrentPartsPerTransfer The max number of requests of a transfer in flight, 0
+     *        for no limit.
+     */
+    public void setMaxConcurrentPartsPerTransfer(int maxConcurrentPartsPerTransfer) {
+        if (maxConcurrentPartsPerTransfer < 0) {
+            throw new IllegalArgumentException(
+                    "maxConcurrentPartsPerTransfer must not be negative");
+        }
+        this.maxConcurrentPartsPerTransfer = maxConcurrentPartsPerTransfer;
+    }
+
+    /**
+     * Returns the number of part buffers of an upload from an input stream whose content length
+     * is not set, 0 if such uploads are not streamed.
+     *
+     * @return The number of part buffers of a streaming upload.
+     */
+    public int getStreamingUploadPartBuffers() {
+        return streamingUploadPartBuffers;
+    }
+
+    /**
+     * Sets the number of part buffers of an upload from an input stream whose content length is
+     * not set. Such a stream is read into buffers of {@link #getMinimumUploadPartSize()} bytes,
+     * which are uploaded concurrently as parts, reading pausing while all the buffers are being
+     * uploaded. An upload thus never holds more than this number of parts in memory. A stream
+     * ending within the first buffer is uploaded in a single request.
+     * <p>
+     * As an upload has at most 10000 parts, the minimum part size bounds the size of the object:
+     * about 48 GB with the default 5 MB. The upload fails and is aborted once the stream is read
+     * past this size.
+     *
+     * @param streamingUploadPartBuffers The number of part buffers, 0 to buffer the whole stream
+     *        in memory and upload it in a single request instead.
+     */
+    public void setStreamingUploadPartBuffers(int streamingUploadPartBuffers) {
+        if (streamingUploadPartBuffers < 0) {
+            throw new IllegalArgumentException("streamingUploadPartBuffers must not be negative");
+        }
+        this.streamingUploadPartBuffers = streamingUploadPartBuffers;
+    }
+
+    /**
+     * Returns whether the part buffers of streaming uploads are allocated outside of the heap.
+     *
+     * @return True if the part buffers are direct buffers.
+     */
+    public boolean isStreamingUploadDirectBuffers() {
+        return streamingUploadDirectBuffers;
+    }
+
+    /**
+     * Sets whether the part buffers of streaming uploads are allocated outside of the heap, see
+     * {@link java.nio.ByteBuffer#allocateDirect(int)}.
+     *
+     * @param streamingUploadDirectBuffers True to use direct buffers, false for heap buffers.
+     */
+    public void setStreamingUploadDirectBuffers(boolean streamingUploadDirectBuffers) {
+        this.streamingUploadDirectBuffers = streamingUploadDirectBuffers;
+    }
+
+    /**
+     * Returns whether the part size and the number of parts in flight of multipart uploads of
+     * files are adapted to the throughput and latency measured during the upload.
+     *
+     * @return True if uploads are adaptive.
+     */
+    public boolean isAdaptiveUploadEnabled() {
+        return adaptiveUploadEnabled;
+    }
+
+    /**
+     * Sets whether the part size and the number of parts in flight of multipart uploads of files
+     * are adapted to the throughput and latency measured during the upload.
+     * <p>
+     * An adaptive upload measures the time each part takes. The next parts are sized to take a
+     * few seconds each, between {@link #getMinimumUploadPartSize()} and
+     * {@link #getMaximumUploadPartSize()}: larger on fast links, smaller on congested ones where
+     * retries are expensive. The number of parts in flight starts low, grows by one for every
+     * round of parts uploaded without congestion and is halved when a part needs retries, for
+     * instance when throttled, or slows down markedly, within
+     * {@link #getMaxConcurrentPartsPerTransfer()} and the other limits of the transfer manager.
+     * The values chosen are exposed by {@link TransferProgress#getPartSize()} and
+     * {@link TransferProgress#getMaxPartsInFlight()}.
+     * <p>
+     * As their parts differ in size, adaptive uploads can't be paused and resumed. Uploads of
+     * streams and encrypted uploads keep a fixed part size.
+     *
+     * @param adaptiveUploadEnabled True to adapt uploads, false for a fixed part size.
+     */
+    public void setAdaptiveUploadEnabled(boolean adaptiveUploadEnabled) {
+        this.adaptiveUploadEnabled = adaptiveUploadEnabled;
+    }
+
+    /**
+     * Returns the maximum part size for upload parts chosen by an adaptive upload.
+     *
+     * @return The maximum part size for adaptive upload parts.
+     */
+    public long getMaximumUploadPartSize() {
+        return maximumUploadPartSize;
+    }
+
+    /**
+     * Sets the maximum part size for upload parts chosen by an adaptive upload, at most 5 GB. A
+     * larger part is only used when the object would not fit in 10000 parts otherwise.
+     *
+     * @param maximumUploadPartSize The maximum part size for adaptive upload parts.
+     */
+    public void setMaximumUploadPartSize(long maximumUploadPartSize) {
+        if (maximumUploadPartSize <= 0 || maximumUploadPartSize > MAXIMUM_UPLOAD_PART_SIZE) {
+            throw new IllegalArgumentException(
+                    "maximumUploadPartSize must be positive and at most 5 GB");
+        }
+        this.maximumUploadPartSize = maximumUploadPartSize;
+    }
+
+    /**
+     * Returns the directory in which resumable uploads journal their uploaded parts, or null if
+     * they don't.
+     *
+     * @return The directory of the upload checkpoints, or null.
+     */
+    public File getUploadCheckpointDirectory() {
+        return uploadCheckpointDirectory;
+    }
+
+    /**
+     * Sets the directory in which resumable uploads journal their uploaded parts. A multipart
+     * upload of a file that can be paused then records each part in a checkpoint file of the
+     * directory as soon as it is uploaded, along with its ETag, size and CRC64, and the
+     * {@link PersistableUpload} of the upload refers to the file. Resuming the upload reads the
+     * parts from the checkpoint instead of listing them in Qcloud COS, after checking that the
+     * length, modification time and a sample of the content of the file to upload have not
+     * changed. The checkpoint is deleted once the upload is completed or aborted.
+     * <p>
+     * The checkpoint is forced to the storage device in batches of parts, so a crash of the
+     * system, unlike one of the process, may lose the last parts recorded, which are then
+     * uploaded again.
+     *
+     * @param uploadCheckpointDirectory The directory of the upload checkpoints, null to list the
+     *        parts of an upload to resume it.
+     */
+    public void setUploadCheckpointDirectory(File uploadCheckpointDirectory) {
+        this.uploadCheckpointDirectory = uploadCheckpointDirectory;
+    }
+
+    /**
+     * Returns whether objects of at least {@link #getMultipartDownloadThreshold()} bytes are
+     * downloaded as concurrent ranges.
+     *
+     * @return True if multipart downloads are enabled.
+     */
+    public boolean isMultipartDownloadEnabled() {
+        return multipartDownloadEnabled;
+    }
+
+    /**
+     * Sets whether objects of at least {@link #getMultipartDownloadThreshold()} bytes are
+     * downloaded as concurrent ranges, false by default. The file is then created at its final
+     * length and each range of {@link #getMultipartDownloadPartSize()} bytes is written at its
+     * offset as soon as it is received. Every range request is conditioned on the ETag returned by
+     * the HEAD of the object, so that a download fails rather than mixing two versions of an
+     * object modified meanwhile. A range whose response is cut short is requested again from the
+     * last byte written, a few times at most. The CRC64 of the object, if any, is checked by
+     * combining the CRC64 of the ranges.
+     * <p>
+     * Downloads of a range of an object, with constraints, or by an encryption client use a
+     * single request as before. A multipart download can only be paused and resumed if
+     * {@link #setDownloadCheckpointEnabled(boolean)}.
+     *
+     * @param multipartDownloadEnabled True to download large objects as concurrent ranges.
+     */
+    public void setMultipartDownloadEnabled(boolean multipartDownloadEnabled) {
+        this.multipartDownloadEnabled = multipartDownloadEnabled;
+    }
+
+    /**
+     * Returns the size threshold, in bytes, for when to use a multipart download.
+     *
+     * @return The size threshold for multipart downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold, in bytes, for when to use a multipart download. Objects smaller
+     * than this threshold are downloaded with a single request even if multipart downloads are
+     * enabled.
+     *
+     * @param multipartDownloadThreshold The size threshold for multipart downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the size of the ranges of a multipart download, in bytes.
+     *
+     * @return The size of the ranges of multipart downloads.
+     */
+    public long getMultipartDownloadPartSize() {
+        return multipartDownloadPartSize;
+    }
+
+    /**
+     * Sets the size of the ranges of a multipart download, in bytes. Smaller ranges spread a
+     * download over more connections but cost one request each.
+     *
+     * @param multipartDownloadPartSize The size of the ranges of multipart downloads.
+     */
+    public void setMultipartDownloadPartSize(long multipartDownloadPartSize) {
+        if (multipartDownloadPartSize <= 0) {
+            throw new IllegalArgumentException("multipartDownloadPartSize must be positive");
+        }
+        this.multipartDownloadPartSize = multipartDownloadPartSize;
+    }
+
+    /**
+     * Returns whether multipart downloads record the ranges written in a checkpoint next to the
+     * destination file, so that they can be resumed.
+     *
+     * @return True if multipart downloads are checkpointed.
+     */
+    public boolean isDownloadCheckpointEnabled() {
+        return downloadCheckpointEnabled;
+    }
+
+    /**
+     * Sets whether multipart downloads record the ranges written in a checkpoint next to the
+     * destination file, named after it with the suffix {@code .cos-checkpoint}: a bitmap of the
+     * ranges written and their CRC64. A multipart download can then be paused, and a download to
+     * the same file, resumed from the {@link PersistableDownload} or simply started again after a
+     * crash, only requests the missing ranges, concurrently, along with the ranges recorded whose
+     * data in the file no longer matches their CRC64. The checkpoint is discarded and the
+     * download starts over if the size or the ETag of the object have changed. If the object
+     * downloaded doesn't match its CRC64, only the ranges of the file which differ from the
+     * checkpoint are downloaded again. It is deleted once the download is completed.
+     * <p>
+     * A range is recorded once its data has been forced to the storage device, in batches of
+     * ranges, so a crash may lose the last ranges downloaded, which are then downloaded again.
+     *
+     * @param downloadCheckpointEnabled True to checkpoint multipart downloads.
+     */
+    public void setDownloadCheckpointEnabled(boolean downloadCheckpointEnabled) {
+        this.downloadCheckpointEnabled = downloadCheckpointEnabled;
+    }
+
 }
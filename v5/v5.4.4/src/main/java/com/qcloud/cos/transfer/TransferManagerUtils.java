@@ -3,13 +3,27 @@ package com.qcloud.cos.transfer;
 import static com.qcloud.cos.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
 import java.io.File;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
 import com.qcloud.cos.model.CopyObjectRequest;
+import com.qcloud.cos.model.PartETag;
 import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.SSECustomerKey;
 import com.qcloud.cos.transfer.Transfer.TransferState;
+import com.qcloud.cos.utils.Base64;
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.Md5Utils;
 
 
 /**
@@ -17,22 +31,57 @@ import com.qcloud.cos.transfer.Transfer.TransferState;
  */
 public class TransferManagerUtils {
 
+    // 默认的并发请求数为每个CPU核4个, 介于8到64之间
+    private static final int DEFAULT_CONCURRENCY_PER_PROCESSOR = 4;
+    private static final int MIN_DEFAULT_CONCURRENCY = 8;
+    private static final int MAX_DEFAULT_CONCURRENCY = 64;
+
+    /**
+     * Returns the default max number of requests of all the transfers in flight at once: four per
+     * available processor, between 8 and 64, and within the max connections of the client.
+     *
+     * @param clientConfig The configuration of the client, null if unknown.
+     * @return The default max number of requests in flight.
+     */
+    public static int getDefaultConcurrency(ClientConfig clientConfig) {
+        int concurrency = Math.max(MIN_DEFAULT_CONCURRENCY, Math.min(MAX_DEFAULT_CONCURRENCY,
+                DEFAULT_CONCURRENCY_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()));
+        if (clientConfig != null && clientConfig.getMaxConnectionsCount() > 0) {
+            concurrency = Math.min(concurrency, clientConfig.getMaxConnectionsCount());
+        }
+        return concurrency;
+    }
+
     /**
      * Returns a new thread pool configured with the default settings.
      *
      * @return A new thread pool configured with the default settings.
      */
     public static ThreadPoolExecutor createDefaultExecutorService() {
+        return createDefaultExecutorService(getDefaultConcurrency(null));
+    }
+
+    /**
+     * Returns a new thread pool of at most the given number of threads, which are released when
+     * idle.
+     *
+     * @param threadCount The max number of threads.
+     * @return A new thread pool.
+     */
+    public static ThreadPoolExecutor createDefaultExecutorService(int threadCount) {
         ThreadFactory threadFactory = new ThreadFactory() {
-            private int threadCount = 1;
+            private final AtomicInteger threadCount = new AtomicInteger(1);
 
             public Thread newThread(Runnable r) {
                 Thread thread = new Thread(r);
-                thread.setName("cos-transfer-manager-worker-" + threadCount++);
+                thread.setName("cos-transfer-manager-worker-" + threadCount.getAndIncrement());
                 return thread;
             }
         };
-        return (ThreadPoolExecutor)Executors.newFixedThreadPool(1, threadFactory);
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threadCount, threadCount, 60L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
     }
 
     /**
@@ -48,14 +97,31 @@ public class TransferManagerUtils {
      *         uploads.
      */
     public static boolean isUploadParallelizable(final PutObjectRequest putObjectRequest, final boolean isUsingEncryption) {
-        // Each uploaded part in an encrypted upload depends on the encryption context
-        // from the previous upload, so we cannot parallelize encrypted upload parts.
-        if (isUsingEncryption) return false;
+        // The parts of an encrypted upload of a file all have the same size but the last, so they
+        // can be encrypted independently of each other at their offsets: only the last part, which
+        // ends with the authentication tag of the whole object, has to wait for the others.
 
-        // Otherwise, if there's a file, we can process the uploads concurrently.
+        // If there's a file, we can process the uploads concurrently.
         return (getRequestFile(putObjectRequest) != null);
     }
 
+    /**
+     * Returns true if the specified upload request is to be streamed: its data is an input stream
+     * of unknown length, read into a bounded number of part buffers uploaded concurrently.
+     *
+     * @param putObjectRequest The request to check.
+     * @param configuration The configuration of the transfer manager.
+     * @param isUsingEncryption True if the upload is encrypted on the client side.
+     *
+     * @return True if the request is to be uploaded by streaming its data.
+     */
+    public static boolean isStreamingUpload(final PutObjectRequest putObjectRequest,
+            final TransferManagerConfiguration configuration, final boolean isUsingEncryption) {
+        return !isUsingEncryption && configuration.getStreamingUploadPartBuffers() > 0
+                && putObjectRequest.getInputStream() != null
+                && getContentLength(putObjectRequest) < 0;
+    }
+
     /**
      * Returns the size of the data in this request, otherwise -1 if the content
      * length is unknown.
@@ -167,4 +233,59 @@ public class TransferManagerUtils {
         }
         return PauseStatus.NO_EFFECT;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the base64 encoded MD5 of an SSE-C key, to tell whether an upload is resumed with
+     * the key it was started with without persisting the key itself.
+     *
+     * @param sseCustomerKey The SSE-C key.
+     * @return The base64 encoded MD5 of the key.
+     */
+    public static String getSSECustomerKeyMd5(SSECustomerKey sseCustomerKey) {
+        return Md5Utils.md5AsBase64(Base64.decode(sseCustomerKey.getKey()));
+    }
+
+    /**
+     * Verifies the CRC64 of the object created by completing a multipart upload, as returned by
+     * COS, against the combination of the CRC64 of its parts. Nothing is checked unless the
+     * checksums and sizes of all the parts are known.
+     *
+     * @param partETags The parts of the upload, in any order.
+     * @param result The result of completing the upload.
+     * @throws CosClientException if the checksums don't match.
+     */
+    public static void checkCompletedCrc64(List<PartETag> partETags,
+            CompleteMultipartUploadResult result) {
+        if (result == null || result.getCrc64Ecma() == null || partETags.isEmpty()) {
+            return;
+        }
+        List<PartETag> sortedParts = new ArrayList<PartETag>(partETags);
+        Collections.sort(sortedParts, new Comparator<PartETag>() {
+            @Override
+            public int compare(PartETag part1, PartETag part2) {
+                return part1.getPartNumber() - part2.getPartNumber();
+            }
+        });
+        long crc64 = 0;
+        try {
+            for (PartETag part : sortedParts) {
+                if (part.getCrc64Ecma() == null || part.getPartSize() < 0) {
+                    return;
+                }
+                crc64 = CRC64.combine(crc64, CRC64.fromString(part.getCrc64Ecma()),
+                        part.getPartSize());
+            }
+            if (crc64 == CRC64.fromString(result.getCrc64Ecma())) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            return;
+        }
+        throw new CosClientException("Unable to verify integrity of the multipart upload.  "
+                + "CRC64 combined from the parts (" + CRC64.toString(crc64)
+                + ") didn't match CRC64 (" + result.getCrc64Ecma()
+                + ") calculated by Qcloud COS.  You may need to delete the data stored in "
+                + "Qcloud COS. (bucketName: " + result.getBucketName() + ", key: "
+                + result.getKey() + ")");
+    }
+}
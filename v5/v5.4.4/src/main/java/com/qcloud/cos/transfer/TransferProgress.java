@@ -11,6 +11,8 @@ public final class TransferProgress {
     private static final Logger log = LoggerFactory.getLogger(TransferProgress.class);
     private volatile long bytesTransferred = 0;
     private volatile long totalBytesToTransfer = -1;
+    private volatile long partSize = -1;
+    private volatile int maxPartsInFlight = 0;
 
     /**
      * @deprecated Replaced by {@link #getBytesTransferred()}
@@ -82,4 +84,33 @@ public final class TransferProgress {
     public void setTotalBytesToTransfer(long totalBytesToTransfer) {
         this.totalBytesToTransfer = totalBytesToTransfer;
     }
+
+    /**
+     * Returns the size in bytes of the next parts of a multipart upload, which may change during
+     * an adaptive upload, see {@link TransferManagerConfiguration#setAdaptiveUploadEnabled}.
+     *
+     * @return The size of the next parts, or -1 if the transfer is not a multipart upload.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    /**
+     * Returns the max number of parts of an adaptive upload in flight at once, as currently
+     * chosen from the measured throughput and latency, see
+     * {@link TransferManagerConfiguration#setAdaptiveUploadEnabled}.
+     *
+     * @return The max number of parts in flight, or 0 if the transfer is not adaptive.
+     */
+    public int getMaxPartsInFlight() {
+        return maxPartsInFlight;
+    }
+
+    void setMaxPartsInFlight(int maxPartsInFlight) {
+        this.maxPartsInFlight = maxPartsInFlight;
+    }
 }
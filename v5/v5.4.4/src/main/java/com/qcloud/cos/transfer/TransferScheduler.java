@@ -0,0 +1,276 @@
+package com.qcloud.cos.transfer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the thread pool of a {@link TransferManager} between its transfers.
+ * <p>
+ * Each transfer submits its tasks (the upload or download itself, its parts and their completion)
+ * to its own {@link TransferExecutor}. At most {@link #getMaxConcurrentTasks()} tasks of all the
+ * transfers run at once, and at most {@link TransferManagerConfiguration#getMaxConcurrentFiles()}
+ * transfers are started at once, the others waiting in the order they were submitted. The started
+ * transfers take turns: a task of the next transfer in round robin order is run whenever a task
+ * completes, so that the parts of a huge upload cannot starve small ones. A transfer may be
+ * further limited by {@link TransferManagerConfiguration#getMaxConcurrentPartsPerTransfer()}.
+ * <p>
+ * The tasks of a transfer run in the order they were submitted, and as every task run has a
+ * thread of the pool available, a task waiting for the previous tasks of its transfer cannot
+ * deadlock the pool. A task that depends on all the other tasks of its transfer, such as the
+ * completion of a multipart upload, is better submitted with
+ * {@link TransferExecutor#executeWhenIdle(FutureTask)}: it is only queued once they have all
+ * completed, so that no thread is parked waiting for them.
+ */
+class TransferScheduler {
+
+    private final ExecutorService threadPool;
+    private final TransferManager transferManager;
+    // 线程池的最大线程数, 同时运行的任务不能超过它, 否则等待其他任务的任务可能占满线程池
+    private final int poolSize;
+
+    // 以下状态由lock保护
+    private final Object lock = new Object();
+    // 已开始且有待运行任务的传输, 轮流运行
+    private final ArrayDeque<TransferExecutor> readyTransfers = new ArrayDeque<TransferExecutor>();
+    // 等待开始的传输
+    private final ArrayDeque<TransferExecutor> waitingTransfers =
+            new ArrayDeque<TransferExecutor>();
+    private int startedTransfers = 0;
+    private int runningTasks = 0;
+
+    TransferScheduler(ExecutorService threadPool, TransferManager transferManager) {
+        this.threadPool = threadPool;
+        this.transferManager = transferManager;
+        this.poolSize = threadPool instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) threadPool).getMaximumPoolSize() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return a new executor for the tasks of one transfer.
+     */
+    TransferExecutor newTransfer() {
+        return new TransferExecutor();
+    }
+
+    /**
+     * @return the max number of tasks of all the transfers running at once.
+     */
+    int getMaxConcurrentTasks() {
+        int maxConcurrentTasks =
+                transferManager.getConfiguration().getMaxConcurrentPartRequests();
+        if (maxConcurrentTasks <= 0) {
+            maxConcurrentTasks = TransferManagerUtils.getDefaultConcurrency(
+                    transferManager.getCOSClient().getClientConfig());
+        }
+        return Math.max(1, Math.min(maxConcurrentTasks, poolSize));
+    }
+
+    private int getMaxStartedTransfers() {
+        int maxConcurrentFiles = transferManager.getConfiguration().getMaxConcurrentFiles();
+        return maxConcurrentFiles > 0 ? maxConcurrentFiles : getMaxConcurrentTasks();
+    }
+
+    private int getMaxTasksPerTransfer() {
+        int maxTasksPerTransfer =
+                transferManager.getConfiguration().getMaxConcurrentPartsPerTransfer();
+        return maxTasksPerTransfer > 0 ? maxTasksPerTransfer : Integer.MAX_VALUE;
+    }
+
+    // must hold lock, 返回可以立即运行的任务
+    private List<TaskRunner> schedule() {
+        List<TaskRunner> runners = Collections.emptyList();
+        int maxStartedTransfers = getMaxStartedTransfers();
+        while (startedTransfers < maxStartedTransfers && !waitingTransfers.isEmpty()) {
+            TransferExecutor transfer = waitingTransfers.poll();
+            transfer.started = true;
+            ++startedTransfers;
+            readyTransfers.add(transfer);
+        }
+        int maxConcurrentTasks = getMaxConcurrentTasks();
+        int maxTasksPerTransfer = getMaxTasksPerTransfer();
+        // 每轮最多检查一遍所有就绪的传输, 都达到单个传输的上限时停止
+        int skipped = 0;
+        while (runningTasks < maxConcurrentTasks && skipped < readyTransfers.size()) {
+            TransferExecutor transfer = readyTransfers.poll();
+            if (transfer.runningTasks >= maxTasksPerTransfer) {
+                readyTransfers.add(transfer);
+                ++skipped;
+                continue;
+            }
+            skipped = 0;
+            FutureTask<?> task = transfer.pendingTasks.poll();
+            ++transfer.runningTasks;
+            ++runningTasks;
+            if (!transfer.pendingTasks.isEmpty()) {
+                readyTransfers.add(transfer);
+            }
+            if (runners.isEmpty()) {
+                runners = new ArrayList<TaskRunner>();
+            }
+            runners.add(new TaskRunner(transfer, task));
+        }
+        return runners;
+    }
+
+    private void execute(List<TaskRunner> runners) {
+        for (TaskRunner runner : runners) {
+            try {
+                threadPool.execute(runner);
+            } catch (RejectedExecutionException e) {
+                runner.task.cancel(false);
+                taskCompleted(runner.transfer);
+            }
+        }
+    }
+
+    private void taskCompleted(TransferExecutor transfer) {
+        List<TaskRunner> runners;
+        synchronized (lock) {
+            --runningTasks;
+            --transfer.runningTasks;
+            if (transfer.runningTasks == 0 && transfer.pendingTasks.isEmpty()) {
+                if (!transfer.idleTasks.isEmpty()) {
+                    // 其他任务都已结束, 运行等待它们的下一个任务, 传输继续占用位置
+                    transfer.pendingTasks.add(transfer.idleTasks.poll());
+                    readyTransfers.add(transfer);
+                } else {
+                    // 传输的所有任务都已结束, 让出位置给等待中的传输
+                    transfer.started = false;
+                    --startedTransfers;
+                }
+            }
+            runners = schedule();
+        }
+        execute(runners);
+    }
+
+    /**
+     * Cancels the tasks the thread pool dropped when shut down, so that the tasks waiting for
+     * them are cancelled as well rather than never run.
+     *
+     * @param droppedTasks the tasks returned by {@link ExecutorService#shutdownNow()}.
+     */
+    void cancelDroppedTasks(List<Runnable> droppedTasks) {
+        for (Runnable runnable : droppedTasks) {
+            if (runnable instanceof TaskRunner) {
+                TaskRunner runner = (TaskRunner) runnable;
+                runner.task.cancel(false);
+                taskCompleted(runner.transfer);
+            }
+        }
+    }
+
+    /**
+     * Executes a task once all the other tasks of a transfer have completed if the executor is
+     * the one of a transfer, at once otherwise.
+     */
+    static void executeWhenIdle(ExecutorService executor, FutureTask<?> task) {
+        if (executor instanceof TransferExecutor) {
+            ((TransferExecutor) executor).executeWhenIdle(task);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    private final class TaskRunner implements Runnable {
+        private final TransferExecutor transfer;
+        private final FutureTask<?> task;
+
+        TaskRunner(TransferExecutor transfer, FutureTask<?> task) {
+            this.transfer = transfer;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                taskCompleted(transfer);
+            }
+        }
+    }
+
+    /**
+     * Executor of the tasks of one transfer, running them on the thread pool of the transfer
+     * manager when the transfer gets its turn. Shutting it down has no effect, it is shut down
+     * with the thread pool.
+     */
+    final class TransferExecutor extends AbstractExecutorService {
+        // 以下状态由TransferScheduler.this.lock保护
+        private final ArrayDeque<FutureTask<?>> pendingTasks = new ArrayDeque<FutureTask<?>>();
+        // 等待其他任务都结束后才运行的任务, 每次一个
+        private final ArrayDeque<FutureTask<?>> idleTasks = new ArrayDeque<FutureTask<?>>();
+        private int runningTasks = 0;
+        private boolean started = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (threadPool.isShutdown()) {
+                throw new RejectedExecutionException("TransferManager has been shutdown");
+            }
+            FutureTask<?> task = command instanceof FutureTask ? (FutureTask<?>) command
+                    : new FutureTask<Object>(command, null);
+            List<TaskRunner> runners;
+            synchronized (lock) {
+                // 已在队列中的传输不必重复加入
+                if (pendingTasks.isEmpty()) {
+                    (started ? readyTransfers : waitingTransfers).add(this);
+                }
+                pendingTasks.add(task);
+                runners = schedule();
+            }
+            TransferScheduler.this.execute(runners);
+        }
+
+        /**
+         * Executes a task once all the tasks of the transfer have completed, including the task
+         * calling this method and those submitted after it, without a thread waiting for them.
+         * The tasks so executed run one at a time, in the order they were submitted.
+         */
+        void executeWhenIdle(FutureTask<?> task) {
+            if (threadPool.isShutdown()) {
+                throw new RejectedExecutionException("TransferManager has been shutdown");
+            }
+            synchronized (lock) {
+                if (runningTasks > 0 || !pendingTasks.isEmpty() || !idleTasks.isEmpty()) {
+                    idleTasks.add(task);
+                    return;
+                }
+            }
+            execute(task);
+        }
+
+        @Override
+        public void shutdown() {}
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return threadPool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return threadPool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return threadPool.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.qcloud.cos.transfer;
 
 import static com.qcloud.cos.event.SDKProgressPublisher.publishProgress;
+import static com.qcloud.cos.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +31,8 @@ import com.qcloud.cos.COSEncryptionClient;
 import com.qcloud.cos.event.COSProgressPublisher;
 import com.qcloud.cos.event.ProgressEventType;
 import com.qcloud.cos.event.ProgressListenerChain;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.ByteBufferInputStream;
 import com.qcloud.cos.internal.UploadPartRequestFactory;
 import com.qcloud.cos.model.AbortMultipartUploadRequest;
 import com.qcloud.cos.model.CompleteMultipartUploadRequest;
@@ -34,12 +47,14 @@ import com.qcloud.cos.model.PartSummary;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
 import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
 import com.qcloud.cos.model.UploadResult;
 import com.qcloud.cos.transfer.Transfer.TransferState;
 
 
 public class UploadCallable implements Callable<UploadResult> {
     private final COS cos;
+    private final TransferScheduler scheduler;
     private final ExecutorService threadPool;
     private final PutObjectRequest origReq;
     private String multipartUploadId;
@@ -47,7 +62,16 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private static final Logger log = LoggerFactory.getLogger(UploadCallable.class);
     private final TransferManagerConfiguration configuration;
-    private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    // 自适应上传的分块由其他分块的完成回调提交, 列表可能被多个线程修改
+    private final List<Future<PartETag>> futures =
+            Collections.synchronizedList(new ArrayList<Future<PartETag>>());
+    /** Set once the parts are cancelled, so that no more parts are added. Guarded by futures. */
+    private boolean partsCancelled = false;
+    /**
+     * Set once a part failed, so that the parts not started yet are skipped and the failure is
+     * reported without uploading the rest of the object.
+     */
+    private final AtomicBoolean partFailed = new AtomicBoolean();
     private final ProgressListenerChain listener;
     private final TransferProgress transferProgress;
 
@@ -59,12 +83,39 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private PersistableUpload persistableUpload;
 
+    /** Whether the data of the request is an input stream of unknown length read part by part. */
+    private final boolean streaming;
+
+    /** Whether a streaming upload turned out to be long enough for a multipart upload. */
+    private volatile boolean streamingMultipart = false;
+
+    /** The number of leading parts of a streaming upload known to be uploaded. */
+    private int uploadedStreamParts = 0;
+
+    /** The state of the paused upload being resumed, null for a new upload. */
+    private final PersistableUpload resumedUpload;
+
+    /** The journal of the uploaded parts, null if the upload is not journaled. */
+    private volatile UploadCheckpoint checkpoint;
+
+    /** Whether the parts already uploaded are read from the journal of the resumed upload. */
+    private boolean resumedFromCheckpoint = false;
+
     public UploadCallable(TransferManager transferManager, ExecutorService threadPool,
             UploadImpl upload, PutObjectRequest origReq,
             ProgressListenerChain progressListenerChain, String uploadId,
             TransferProgress transferProgress) {
+        this(transferManager, threadPool, upload, origReq, progressListenerChain, uploadId,
+                transferProgress, null);
+    }
+
+    public UploadCallable(TransferManager transferManager, ExecutorService threadPool,
+            UploadImpl upload, PutObjectRequest origReq,
+            ProgressListenerChain progressListenerChain, String uploadId,
+            TransferProgress transferProgress, PersistableUpload resumedUpload) {
         this.cos = transferManager.getCOSClient();
         this.configuration = transferManager.getConfiguration();
+        this.scheduler = transferManager.getScheduler();
 
         this.threadPool = threadPool;
         this.origReq = origReq;
@@ -72,12 +123,43 @@ public class UploadCallable implements Callable<UploadResult> {
         this.upload = upload;
         this.multipartUploadId = uploadId;
         this.transferProgress = transferProgress;
+        this.resumedUpload = resumedUpload;
+        this.streaming = multipartUploadId == null && TransferManagerUtils
+                .isStreamingUpload(origReq, configuration, cos instanceof COSEncryptionClient);
     }
 
     List<Future<PartETag>> getFutures() {
         return futures;
     }
 
+    /**
+     * Adds a part to the futures of the upload, unless the parts have been cancelled.
+     */
+    private boolean addPart(Future<PartETag> future) {
+        synchronized (futures) {
+            if (partsCancelled) {
+                return false;
+            }
+            futures.add(future);
+            return true;
+        }
+    }
+
+    /**
+     * Cancels the parts submitted so far and prevents more parts from being added.
+     */
+    void cancelParts() {
+        List<Future<PartETag>> parts;
+        synchronized (futures) {
+            partsCancelled = true;
+            parts = new ArrayList<Future<PartETag>>(futures);
+            futures.clear();
+        }
+        for (Future<PartETag> future : parts) {
+            future.cancel(true);
+        }
+    }
+
     /**
      * Returns the ETags retrieved from Qcloud COS for a multi-part upload id. These parts will be
      * skipped while resuming a paused upload.
@@ -96,12 +178,17 @@ public class UploadCallable implements Callable<UploadResult> {
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
+        if (streaming) {
+            return streamingMultipart;
+        }
         return TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
     }
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
-        if (isMultipartUpload()) {
+        if (streaming) {
+            return uploadStream();
+        } else if (isMultipartUpload()) {
             publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
             return uploadInParts();
         } else {
@@ -122,19 +209,78 @@ public class UploadCallable implements Callable<UploadResult> {
         uploadResult.setVersionId(putObjectResult.getVersionId());
         uploadResult.setRequestId(putObjectResult.getRequestId());
         uploadResult.setDateStr(putObjectResult.getDateStr());
+        if (putObjectResult.getMetadata() != null) {
+            uploadResult.setCrc64Ecma(putObjectResult.getMetadata().getCrc64Ecma());
+        }
         return uploadResult;
     }
 
     /**
-     * Captures the state of the upload.
+     * Captures the state of the upload, starting its journal if checkpoints are enabled. The key
+     * of an SSE-C upload is not captured, it has to be given again to resume the upload.
      */
     private void captureUploadStateIfPossible() {
-        if (origReq.getSSECustomerKey() == null) {
-            persistableUpload = new PersistableUpload(origReq.getBucketName(), origReq.getKey(),
-                    origReq.getFile().getAbsolutePath(), multipartUploadId,
-                    configuration.getMinimumUploadPartSize(),
-                    configuration.getMultipartUploadThreshold());
-            notifyPersistableTransferAvailability();
+        File file = origReq.getFile();
+        String checkpointFile = null;
+        long fileLength = -1;
+        long fileLastModified = -1;
+        String fileSample = null;
+        if (resumedFromCheckpoint) {
+            // 续传时沿用原来的日志, 源文件已在恢复前校验
+            checkpointFile = resumedUpload.getCheckpointFile();
+            fileLength = resumedUpload.getFileLength();
+            fileLastModified = resumedUpload.getFileLastModified();
+            fileSample = resumedUpload.getFileSample();
+        } else if (configuration.getUploadCheckpointDirectory() != null) {
+            File journal = UploadCheckpoint.checkpointFile(
+                    configuration.getUploadCheckpointDirectory(), origReq.getBucketName(),
+                    origReq.getKey(), multipartUploadId);
+            try {
+                fileLength = file.length();
+                fileLastModified = file.lastModified();
+                fileSample = UploadCheckpoint.sampleFile(file);
+                checkpoint = UploadCheckpoint.create(journal, multipartUploadId);
+                checkpointFile = journal.getAbsolutePath();
+            } catch (IOException e) {
+                log.warn("Unable to create the upload checkpoint " + journal
+                        + ", the parts will be listed to resume the upload: " + e.getMessage());
+            }
+        }
+        String sseCustomerKeyMd5 = origReq.getSSECustomerKey() == null ? null
+                : TransferManagerUtils.getSSECustomerKeyMd5(origReq.getSSECustomerKey());
+        persistableUpload = new PersistableUpload(origReq.getBucketName(), origReq.getKey(),
+                file.getAbsolutePath(), multipartUploadId,
+                configuration.getMinimumUploadPartSize(),
+                configuration.getMultipartUploadThreshold(), checkpointFile, fileLength,
+                fileLastModified, fileSample, sseCustomerKeyMd5);
+        notifyPersistableTransferAvailability();
+    }
+
+    /**
+     * Opens the journal of the upload being resumed, if any.
+     */
+    private void resumeCheckpointIfPossible() {
+        if (resumedUpload == null || resumedUpload.getCheckpointFile() == null) {
+            return;
+        }
+        try {
+            checkpoint = UploadCheckpoint.resume(new File(resumedUpload.getCheckpointFile()),
+                    multipartUploadId);
+            resumedFromCheckpoint = true;
+        } catch (IOException e) {
+            log.warn("Unable to read the upload checkpoint " + resumedUpload.getCheckpointFile()
+                    + ", listing the uploaded parts instead: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the journal of the upload if any, deleting it once the upload is completed or
+     * aborted, keeping it to resume the upload otherwise.
+     */
+    void closeCheckpoint(boolean delete) {
+        UploadCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint != null) {
+            checkpoint.close(delete);
         }
     }
 
@@ -156,17 +302,34 @@ public class UploadCallable implements Callable<UploadResult> {
     private UploadResult uploadInParts() throws Exception {
         boolean isUsingEncryption = cos instanceof COSEncryptionClient;
         long optimalPartSize = getOptimalPartSize(isUsingEncryption);
+        // 分块大小不固定的上传无法从持久化的状态恢复, 续传时使用固定的分块大小
+        // 自适应上传的分块由回调提交, 依赖传输的executor在所有任务结束后才完成上传
+        boolean adaptive = configuration.isAdaptiveUploadEnabled() && !isUsingEncryption
+                && multipartUploadId == null
+                && threadPool instanceof TransferScheduler.TransferExecutor;
+        // 新的上传没有已上传的分块, 不需要列出
+        String resumedUploadId = multipartUploadId;
         try {
             if (multipartUploadId == null) {
-                multipartUploadId = initiateMultipartUpload(origReq, isUsingEncryption);
+                multipartUploadId =
+                        initiateMultipartUpload(origReq, isUsingEncryption, optimalPartSize);
             }
 
             UploadPartRequestFactory requestFactory =
                     new UploadPartRequestFactory(origReq, multipartUploadId, optimalPartSize);
+            transferProgress.setPartSize(optimalPartSize);
 
             if (TransferManagerUtils.isUploadParallelizable(origReq, isUsingEncryption)) {
-                captureUploadStateIfPossible();
-                uploadPartsInParallel(requestFactory, multipartUploadId);
+                if (adaptive) {
+                    uploadPartsAdaptively(requestFactory, optimalPartSize);
+                    return null;
+                }
+                // 加密上传的上下文只在内存中, 无法从持久化的状态恢复
+                if (!isUsingEncryption) {
+                    resumeCheckpointIfPossible();
+                    captureUploadStateIfPossible();
+                }
+                uploadPartsInParallel(requestFactory, resumedUploadId, isUsingEncryption);
                 return null;
             } else {
                 return uploadPartsInSeries(requestFactory);
@@ -186,11 +349,183 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Uploads an input stream of unknown length. The stream is read into the buffers of a
+     * {@link PartBufferPool}: if it ends within the first buffer, it is uploaded in a single
+     * request, otherwise each buffer filled is submitted as a part to our thread pool, reading
+     * pausing while all the buffers are being uploaded. Returns null in the latter case, the parts
+     * being completed by the {@link UploadMonitor} as for the parallel upload of a file. The
+     * upload is aborted as soon as the stream is found to need more than
+     * {@link com.qcloud.cos.internal.Constants#MAXIMUM_UPLOAD_PARTS} parts.
+     */
+    private UploadResult uploadStream() throws Exception {
+        InputStream input = origReq.getInputStream();
+        long partSize = Math.min(configuration.getMinimumUploadPartSize(), Integer.MAX_VALUE);
+        PartBufferPool bufferPool =
+                new PartBufferPool(configuration.getStreamingUploadPartBuffers(), (int) partSize,
+                        configuration.isStreamingUploadDirectBuffers());
+        try {
+            ByteBuffer buffer = bufferPool.poll();
+            boolean endOfStream = fill(input, buffer);
+            buffer.flip();
+            if (endOfStream) {
+                origReq.setInputStream(new ByteBufferInputStream(buffer));
+                origReq.getMetadata().setContentLength(buffer.remaining());
+                return uploadInOneChunk();
+            }
+
+            streamingMultipart = true;
+            transferProgress.setPartSize(partSize);
+            publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            multipartUploadId = initiateMultipartUpload(origReq, false, partSize);
+            int partNumber = 1;
+            while (true) {
+                futures.add(threadPool.submit(
+                        newStreamPartCallable(bufferPool, buffer, partNumber++, endOfStream)));
+                if (endOfStream) {
+                    return null;
+                }
+                buffer = acquireBuffer(bufferPool);
+                endOfStream = fill(input, buffer);
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    // 流恰好在分块边界结束
+                    bufferPool.release(buffer);
+                    return null;
+                }
+                if (partNumber > MAXIMUM_UPLOAD_PARTS) {
+                    // 分块大小固定, 不等读完整个流就放弃上传
+                    bufferPool.release(buffer);
+                    throw new CosClientException("The stream is larger than " + MAXIMUM_UPLOAD_PARTS
+                            + " parts of " + partSize + " bytes, set a larger minimum upload part "
+                            + "size in the TransferManagerConfiguration to upload it");
+                }
+            }
+        } catch (Exception e) {
+            if (streamingMultipart) {
+                for (Future<PartETag> future : futures) {
+                    future.cancel(true);
+                }
+                publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                performAbortMultipartUpload();
+            }
+            throw e;
+        } finally {
+            try {
+                input.close();
+            } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns a free buffer of the pool. While all the buffers are being uploaded, waits for the
+     * oldest part to be uploaded, uploading it in this thread if it has not been started yet, so
+     * that reading the stream never waits for the thread pool. Throws the failure of a part as
+     * soon as it is seen, to stop reading the stream.
+     */
+    private ByteBuffer acquireBuffer(PartBufferPool bufferPool) throws Exception {
+        while (true) {
+            if (threadPool.isShutdown())
+                throw new CancellationException("TransferManager has been shutdown");
+            while (uploadedStreamParts < futures.size()
+                    && futures.get(uploadedStreamParts).isDone()) {
+                waitForPart(futures.get(uploadedStreamParts++));
+            }
+            ByteBuffer buffer = bufferPool.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+            if (uploadedStreamParts == futures.size()) {
+                // 所有分块都已结束, 缓冲区已归还
+                continue;
+            }
+            Future<PartETag> future = futures.get(uploadedStreamParts);
+            if (future instanceof RunnableFuture) {
+                // 已开始或已结束的任务不会再次运行
+                ((RunnableFuture<?>) future).run();
+            }
+            waitForPart(future);
+        }
+    }
+
+    private static void waitForPart(Future<PartETag> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the stream until the buffer is full, returns true if the end of the stream is reached
+     * before.
+     */
+    private static boolean fill(InputStream input, ByteBuffer buffer) throws IOException {
+        byte[] chunk = buffer.hasArray() ? null : new byte[Math.min(buffer.remaining(), 8192)];
+        while (buffer.hasRemaining()) {
+            int count;
+            if (chunk == null) {
+                count = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+                if (count > 0) {
+                    buffer.position(buffer.position() + count);
+                }
+            } else {
+                count = input.read(chunk, 0, Math.min(chunk.length, buffer.remaining()));
+                if (count > 0) {
+                    buffer.put(chunk, 0, count);
+                }
+            }
+            if (count < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the task uploading the data of the buffer as a part, giving the buffer back to the
+     * pool once the part is uploaded.
+     */
+    private Callable<PartETag> newStreamPartCallable(final PartBufferPool bufferPool,
+            final ByteBuffer buffer, int partNumber, boolean isLastPart) {
+        final UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(origReq.getBucketName())
+                .withKey(origReq.getKey())
+                .withUploadId(multipartUploadId)
+                .withInputStream(new ByteBufferInputStream(buffer))
+                .withPartNumber(partNumber)
+                .withPartSize(buffer.remaining())
+                .withLastPart(isLastPart);
+        TransferManager.appendMultipartUserAgent(request);
+        if (origReq.getSSECustomerKey() != null) {
+            request.setSSECustomerKey(origReq.getSSECustomerKey());
+        }
+        request.withGeneralProgressListener(origReq.getGeneralProgressListener());
+        request.getRequestClientOptions().setReadLimit(buffer.remaining() + 1);
+        return new UploadPartCallable(cos, request, partFailed) {
+            @Override
+            public PartETag call() throws Exception {
+                try {
+                    return super.call();
+                } finally {
+                    bufferPool.release(buffer);
+                }
+            }
+        };
+    }
+
     /**
      * Performs an {@link COS#abortMultipartUpload(AbortMultipartUploadRequest)} operation for the
      * given multi-part upload.
      */
     void performAbortMultipartUpload() {
+        closeCheckpoint(true);
         try {
             if (multipartUploadId != null)
                 cos.abortMultipartUpload(new AbortMultipartUploadRequest(origReq.getBucketName(),
@@ -246,6 +581,7 @@ public class UploadCallable implements Callable<UploadResult> {
                         multipartUploadId, partETags)
                                 .withGeneralProgressListener(origReq.getGeneralProgressListener());
         CompleteMultipartUploadResult res = cos.completeMultipartUpload(req);
+        TransferManagerUtils.checkCompletedCrc64(partETags, res);
 
         UploadResult uploadResult = new UploadResult();
         uploadResult.setBucketName(res.getBucketName());
@@ -254,6 +590,7 @@ public class UploadCallable implements Callable<UploadResult> {
         uploadResult.setVersionId(res.getVersionId());
         uploadResult.setRequestId(res.getRequestId());
         uploadResult.setDateStr(res.getDateStr());
+        uploadResult.setCrc64Ecma(res.getCrc64Ecma());
         return uploadResult;
     }
 
@@ -261,29 +598,291 @@ public class UploadCallable implements Callable<UploadResult> {
      * Submits a callable for each part to upload to our thread pool and records its corresponding
      * Future.
      */
-    private void uploadPartsInParallel(UploadPartRequestFactory requestFactory, String uploadId) {
+    private void uploadPartsInParallel(UploadPartRequestFactory requestFactory, String uploadId,
+            boolean isUsingEncryption) {
 
-        Map<Integer, PartSummary> partNumbers = identifyExistingPartsForResume(uploadId);
+        Map<Integer, PartETag> existingParts = identifyExistingPartsForResume(uploadId);
+        // 最后一个分块包含整个对象的认证标签, 在其他分块都结束后才提交
+        LastEncryptedPartTrigger lastPartTrigger =
+                isUsingEncryption ? new LastEncryptedPartTrigger(threadPool) : null;
 
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown())
                 throw new CancellationException("TransferManager has been shutdown");
             UploadPartRequest request = requestFactory.getNextUploadPartRequest();
-            if (partNumbers.containsKey(request.getPartNumber())) {
-                PartSummary summary = partNumbers.get(request.getPartNumber());
-                eTagsToSkip.add(new PartETag(request.getPartNumber(), summary.getETag()));
-                transferProgress.updateProgress(summary.getSize());
+            PartETag existingPart = existingParts.get(request.getPartNumber());
+            if (existingPart != null && existingPart.getPartSize() == request.getPartSize()) {
+                eTagsToSkip.add(existingPart);
+                transferProgress.updateProgress(existingPart.getPartSize());
+                if (!resumedFromCheckpoint) {
+                    appendToCheckpoint(checkpoint, existingPart);
+                }
                 continue;
             }
-            futures.add(threadPool.submit(new UploadPartCallable(cos, request)));
+            if (lastPartTrigger != null && request.isLastPart()) {
+                FutureTask<PartETag> lastPart = new FutureTask<PartETag>(
+                        new UploadPartCallable(cos, request, partFailed));
+                futures.add(lastPart);
+                lastPartTrigger.lastPartReady(lastPart);
+                continue;
+            }
+            Callable<PartETag> callable = checkpoint != null
+                    ? new CheckpointedUploadPartCallable(cos, request, partFailed, checkpoint)
+                    : new UploadPartCallable(cos, request, partFailed);
+            if (lastPartTrigger != null) {
+                FutureTask<PartETag> part = lastPartTrigger.newPart(callable);
+                futures.add(part);
+                threadPool.execute(part);
+            } else {
+                futures.add(threadPool.submit(callable));
+            }
+        }
+    }
+
+    /**
+     * Submits the first parts of an adaptive upload, the next ones being submitted by an
+     * {@link AdaptivePartSubmitter} as the parts in flight are done.
+     */
+    private void uploadPartsAdaptively(UploadPartRequestFactory requestFactory,
+            long initialPartSize) {
+        if (threadPool.isShutdown())
+            throw new CancellationException("TransferManager has been shutdown");
+        int maxPartsInFlight = configuration.getMaxConcurrentPartsPerTransfer();
+        if (maxPartsInFlight <= 0) {
+            maxPartsInFlight = scheduler.getMaxConcurrentTasks();
         }
+        AdaptiveUploadController controller = new AdaptiveUploadController(initialPartSize,
+                configuration.getMinimumUploadPartSize(),
+                configuration.getMaximumUploadPartSize(), maxPartsInFlight, transferProgress);
+        new AdaptivePartSubmitter(requestFactory, controller).submitParts();
     }
 
-    private Map<Integer, PartSummary> identifyExistingPartsForResume(String uploadId) {
-        Map<Integer, PartSummary> partNumbers = new HashMap<Integer, PartSummary>();
+    /**
+     * Submits the parts of an adaptive upload to our thread pool as its
+     * {@link AdaptiveUploadController} lets more of them be in flight, each part being sized when
+     * submitted from the throughput measured so far. The next parts are submitted when a part is
+     * done, so that no thread waits for the parts in flight. Once a part failed, no more parts
+     * are submitted and the upload is aborted when the parts in flight are done.
+     */
+    private class AdaptivePartSubmitter {
+        private final UploadPartRequestFactory requestFactory;
+        private final AdaptiveUploadController controller;
+        // 以下状态由this保护
+        private int partsInFlight = 0;
+        private boolean stopped = false;
+
+        AdaptivePartSubmitter(UploadPartRequestFactory requestFactory,
+                AdaptiveUploadController controller) {
+            this.requestFactory = requestFactory;
+            this.controller = controller;
+        }
+
+        synchronized void submitParts() {
+            while (!stopped && requestFactory.hasMoreRequests() && controller.tryStartPart()) {
+                long partSize = controller.nextPartSize(requestFactory.getRemainingBytes(),
+                        MAXIMUM_UPLOAD_PARTS - requestFactory.getNextPartNumber() + 1);
+                UploadPartRequest request = requestFactory.getNextUploadPartRequest(partSize);
+                AdaptivePartFuture future = new AdaptivePartFuture(this,
+                        new AdaptiveUploadPartCallable(cos, request, partFailed, controller));
+                ++partsInFlight;
+                if (!addPart(future)) {
+                    // 上传已被取消, 分块不再提交
+                    future.cancel(false);
+                    return;
+                }
+                try {
+                    threadPool.execute(future);
+                } catch (RejectedExecutionException e) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        void partDone(AdaptivePartFuture future) {
+            controller.partDone();
+            boolean abort;
+            synchronized (this) {
+                --partsInFlight;
+                if (future.isCancelled() || partFailed.get()) {
+                    stopped = true;
+                }
+                if (!stopped) {
+                    submitParts();
+                    return;
+                }
+                // 等在途的分块都结束后再终止上传, 以免它们因此失败而掩盖最初的错误.
+                // 被取消的上传由取消者终止
+                abort = partsInFlight == 0 && partFailed.get() && !partsCancelled;
+            }
+            if (abort) {
+                performAbortMultipartUpload();
+            }
+        }
+    }
+
+    /**
+     * Uploads a part of an adaptive upload, reporting its outcome and the time it took to the
+     * controller of the upload. A part which succeeded only after retries counts as a failure,
+     * the retries being a sign of congestion or throttling.
+     */
+    private static class AdaptiveUploadPartCallable extends UploadPartCallable {
+        private final AdaptiveUploadController controller;
+        private final long partSize;
+        private int retriesAttempted = 0;
+
+        AdaptiveUploadPartCallable(COS cos, UploadPartRequest request, AtomicBoolean failed,
+                AdaptiveUploadController controller) {
+            super(cos, request, failed);
+            this.controller = controller;
+            this.partSize = request.getPartSize();
+        }
+
+        @Override
+        void partUploaded(UploadPartResult result) {
+            retriesAttempted = result.getRetriesAttempted();
+        }
+
+        @Override
+        public PartETag call() throws Exception {
+            long ticket = controller.partStarted();
+            long startNanos = System.nanoTime();
+            PartETag partETag;
+            try {
+                partETag = super.call();
+            } catch (Exception e) {
+                controller.partFailed(ticket);
+                throw e;
+            }
+            if (partETag == null) {
+                // 跳过的分块不计入吞吐量
+                return null;
+            }
+            if (retriesAttempted > 0) {
+                // 耗时包含重试前的退避时间, 不作为吞吐量的样本
+                controller.partFailed(ticket);
+            } else {
+                controller.partSucceeded(ticket, partSize, System.nanoTime() - startNanos);
+            }
+            return partETag;
+        }
+    }
+
+    /**
+     * A part of an adaptive upload, out of flight once done, cancelled ones included.
+     */
+    private static class AdaptivePartFuture extends FutureTask<PartETag> {
+        private final AdaptivePartSubmitter submitter;
+
+        AdaptivePartFuture(AdaptivePartSubmitter submitter, Callable<PartETag> callable) {
+            super(callable);
+            this.submitter = submitter;
+        }
+
+        @Override
+        protected void done() {
+            submitter.partDone(this);
+        }
+    }
+
+    /**
+     * Records an uploaded part in the journal of the upload, if any. Failing to do so only means
+     * that the part will be uploaded again if the upload is resumed.
+     */
+    private static void appendToCheckpoint(UploadCheckpoint checkpoint, PartETag partETag) {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.append(partETag);
+        } catch (IOException e) {
+            log.warn("Unable to record part " + partETag.getPartNumber()
+                    + " in the upload checkpoint " + checkpoint.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads a part and records it in the journal of the upload.
+     */
+    private static class CheckpointedUploadPartCallable extends UploadPartCallable {
+        private final UploadCheckpoint checkpoint;
+
+        CheckpointedUploadPartCallable(COS cos, UploadPartRequest request, AtomicBoolean failed,
+                UploadCheckpoint checkpoint) {
+            super(cos, request, failed);
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public PartETag call() throws Exception {
+            PartETag partETag = super.call();
+            if (partETag != null) {
+                appendToCheckpoint(checkpoint, partETag);
+            }
+            return partETag;
+        }
+    }
+
+    /**
+     * Submits the last part of an encrypted upload to the thread pool once all the other parts
+     * are done, so that no thread waits for them. If one of them failed, the last part is skipped
+     * as the parts not started yet are.
+     */
+    static class LastEncryptedPartTrigger {
+        private final ExecutorService threadPool;
+        // 未结束的其他分块数, 最后一个分块就绪前多计1
+        private final AtomicInteger pendingParts = new AtomicInteger(1);
+        private volatile FutureTask<PartETag> lastPart;
+
+        LastEncryptedPartTrigger(ExecutorService threadPool) {
+            this.threadPool = threadPool;
+        }
+
+        /**
+         * Returns the task of a part other than the last one, counted until it is done.
+         */
+        FutureTask<PartETag> newPart(Callable<PartETag> callable) {
+            pendingParts.incrementAndGet();
+            return new FutureTask<PartETag>(callable) {
+                @Override
+                protected void done() {
+                    partDone();
+                }
+            };
+        }
+
+        void lastPartReady(FutureTask<PartETag> lastPart) {
+            this.lastPart = lastPart;
+            partDone();
+        }
+
+        private void partDone() {
+            if (pendingParts.decrementAndGet() > 0) {
+                return;
+            }
+            try {
+                threadPool.execute(lastPart);
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭, 取消最后一个分块, 等待它的任务随之结束
+                lastPart.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the parts already uploaded of the upload being resumed, read from its journal if
+     * any, listed in Qcloud COS otherwise.
+     */
+    private Map<Integer, PartETag> identifyExistingPartsForResume(String uploadId) {
+        Map<Integer, PartETag> partNumbers = new HashMap<Integer, PartETag>();
         if (uploadId == null) {
             return partNumbers;
         }
+        if (resumedFromCheckpoint) {
+            for (PartETag partETag : checkpoint.getParts()) {
+                partNumbers.put(partETag.getPartNumber(), partETag);
+            }
+            return partNumbers;
+        }
         int partNumber = 0;
 
         while (true) {
@@ -291,7 +890,10 @@ public class UploadCallable implements Callable<UploadResult> {
                     new ListPartsRequest(origReq.getBucketName(), origReq.getKey(), uploadId)
                             .withPartNumberMarker(partNumber));
             for (PartSummary partSummary : parts.getParts()) {
-                partNumbers.put(partSummary.getPartNumber(), partSummary);
+                PartETag partETag =
+                        new PartETag(partSummary.getPartNumber(), partSummary.getETag());
+                partETag.setPartSize(partSummary.getSize());
+                partNumbers.put(partSummary.getPartNumber(), partETag);
             }
             if (!parts.isTruncated()) {
                 return partNumbers;
@@ -304,16 +906,27 @@ public class UploadCallable implements Callable<UploadResult> {
      * Initiates a multipart upload and returns the upload id
      * 
      * @param isUsingEncryption
+     * @param partSize the size of the parts but the last
      */
-    private String initiateMultipartUpload(PutObjectRequest origReq, boolean isUsingEncryption) {
+    private String initiateMultipartUpload(PutObjectRequest origReq, boolean isUsingEncryption,
+            long partSize) {
 
         InitiateMultipartUploadRequest req = null;
-        if (isUsingEncryption && origReq instanceof EncryptedPutObjectRequest) {
-            req = new EncryptedInitiateMultipartUploadRequest(origReq.getBucketName(),
-                    origReq.getKey()).withCannedACL(origReq.getCannedAcl())
-                            .withObjectMetadata(origReq.getMetadata());
-            ((EncryptedInitiateMultipartUploadRequest) req).setMaterialsDescription(
-                    ((EncryptedPutObjectRequest) origReq).getMaterialsDescription());
+        if (isUsingEncryption) {
+            EncryptedInitiateMultipartUploadRequest encryptedReq =
+                    new EncryptedInitiateMultipartUploadRequest(origReq.getBucketName(),
+                            origReq.getKey());
+            encryptedReq.withCannedACL(origReq.getCannedAcl())
+                    .withObjectMetadata(origReq.getMetadata());
+            if (origReq instanceof EncryptedPutObjectRequest) {
+                encryptedReq.setMaterialsDescription(
+                        ((EncryptedPutObjectRequest) origReq).getMaterialsDescription());
+            }
+            if (TransferManagerUtils.isUploadParallelizable(origReq, isUsingEncryption)) {
+                // 分块大小已知, 各分块可以独立加密
+                encryptedReq.setPartSize(partSize);
+            }
+            req = encryptedReq;
         } else {
             req = new InitiateMultipartUploadRequest(origReq.getBucketName(), origReq.getKey())
                     .withCannedACL(origReq.getCannedAcl())
@@ -0,0 +1,271 @@
+package com.qcloud.cos.transfer;
+
+import static com.qcloud.cos.utils.StringUtils.UTF8;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.IOUtils;
+import com.qcloud.cos.utils.Md5Utils;
+
+/**
+ * An append-only journal of the parts of a multipart upload of a file, recorded as they are
+ * uploaded so that the upload can be resumed from the journal alone, without listing its parts.
+ * <p>
+ * The journal is a text file: a header line {@code cos-upload-checkpoint 1 <uploadId>}, then a
+ * line {@code <partNumber> <partSize> <eTag> <crc64> <crc32>} per uploaded part, the CRC64 of the
+ * part being {@code -} if not known and the last field being the CRC32 of the rest of the line.
+ * A line torn by a crash is ignored, and truncated away when the journal is resumed.
+ * <p>
+ * Writes are made to the file at once, so that the journal survives the process, but are only
+ * forced to the storage device every {@link #SYNC_BATCH} parts or {@link #SYNC_INTERVAL_MILLIS},
+ * and when the journal is synced or closed: a crash of the system may lose the last parts, which
+ * are then uploaded again.
+ */
+final class UploadCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(UploadCheckpoint.class);
+
+    private static final String MAGIC = "cos-upload-checkpoint";
+    private static final int VERSION = 1;
+    /** The max number of parts recorded between two syncs of the journal. */
+    static final int SYNC_BATCH = 32;
+    /** The max time between the recording of a part and the sync of the journal. */
+    static final long SYNC_INTERVAL_MILLIS = 1000;
+    // 校验源文件时采样的块数和块大小
+    private static final int SAMPLES = 16;
+    private static final int SAMPLE_SIZE = 4096;
+
+    private final File file;
+    private final List<PartETag> parts;
+    // 以下状态由this保护
+    private FileOutputStream out;
+    private FileChannel channel;
+    private int unsyncedParts = 0;
+    private long lastSyncMillis = System.currentTimeMillis();
+
+    private UploadCheckpoint(File file, FileOutputStream out, List<PartETag> parts) {
+        this.file = file;
+        this.out = out;
+        this.channel = out.getChannel();
+        this.parts = parts;
+    }
+
+    /**
+     * Returns the journal file of an upload in the given directory.
+     */
+    static File checkpointFile(File directory, String bucketName, String key, String uploadId) {
+        String name = Md5Utils.md5Hex((bucketName + "/" + key + "/" + uploadId).getBytes(UTF8));
+        return new File(directory, name + ".checkpoint");
+    }
+
+    /**
+     * Creates the journal of a new upload, replacing any existing file.
+     */
+    static UploadCheckpoint create(File file, String uploadId) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()
+                && !directory.isDirectory()) {
+            throw new IOException("Unable to create the directory " + directory);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write((MAGIC + " " + VERSION + " " + uploadId + "\n").getBytes(UTF8));
+            out.getChannel().force(true);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out, log);
+            throw e;
+        }
+        return new UploadCheckpoint(file, out, Collections.<PartETag>emptyList());
+    }
+
+    /**
+     * Opens the journal of an upload to resume, reading the parts recorded in it and dropping a
+     * line torn by a crash, if any.
+     *
+     * @throws IOException if the file can't be read or is not the journal of the upload.
+     */
+    static UploadCheckpoint resume(File file, String uploadId) throws IOException {
+        Map<Integer, PartETag> parts = new LinkedHashMap<Integer, PartETag>();
+        long validLength = 0;
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            String header = reader.readLine();
+            if (header == null || !header.equals(MAGIC + " " + VERSION + " " + uploadId)) {
+                throw new IOException("Not the checkpoint of the upload " + uploadId + ": " + file);
+            }
+            validLength = header.getBytes(UTF8).length + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                PartETag part = parseLine(line);
+                if (part == null) {
+                    break;
+                }
+                parts.put(part.getPartNumber(), part);
+                validLength += line.getBytes(UTF8).length + 1;
+            }
+        } finally {
+            IOUtils.closeQuietly(reader, log);
+        }
+        // 截掉崩溃时未写完的行, 新的记录从有效内容之后开始
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() > validLength) {
+                log.info("Dropping the torn end of the upload checkpoint " + file);
+                raf.getChannel().truncate(validLength);
+            } else if (raf.length() < validLength) {
+                // 最后一行完整但缺少换行符
+                raf.seek(raf.length());
+                raf.write('\n');
+            }
+        } finally {
+            raf.close();
+        }
+        return new UploadCheckpoint(file, new FileOutputStream(file, true),
+                new ArrayList<PartETag>(parts.values()));
+    }
+
+    private static PartETag parseLine(String line) {
+        int checksumStart = line.lastIndexOf(' ');
+        if (checksumStart < 0) {
+            return null;
+        }
+        String record = line.substring(0, checksumStart);
+        if (!line.substring(checksumStart + 1).equals(checksum(record))) {
+            return null;
+        }
+        String[] fields = record.split(" ");
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            PartETag part = new PartETag(Integer.parseInt(fields[0]), fields[2]);
+            part.setPartSize(Long.parseLong(fields[1]));
+            if (!fields[3].equals("-")) {
+                part.setCrc64Ecma(fields[3]);
+            }
+            return part;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String checksum(String record) {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = record.getBytes(UTF8);
+        crc32.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc32.getValue());
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the parts recorded in the journal when it was resumed, in the order recorded.
+     */
+    List<PartETag> getParts() {
+        return parts;
+    }
+
+    /**
+     * Records an uploaded part. Has no effect once the journal is closed.
+     */
+    synchronized void append(PartETag part) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        String eTag = part.getETag();
+        if (eTag == null || eTag.isEmpty() || eTag.indexOf(' ') >= 0 || eTag.indexOf('\n') >= 0) {
+            // 无法记录的分块在恢复时重新上传
+            return;
+        }
+        String record = part.getPartNumber() + " " + part.getPartSize() + " " + eTag + " "
+                + (part.getCrc64Ecma() == null ? "-" : part.getCrc64Ecma());
+        ByteBuffer line = ByteBuffer.wrap((record + " " + checksum(record) + "\n").getBytes(UTF8));
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+        ++unsyncedParts;
+        if (unsyncedParts >= SYNC_BATCH
+                || System.currentTimeMillis() - lastSyncMillis >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the parts recorded so far to the storage device.
+     */
+    synchronized void sync() throws IOException {
+        if (channel == null || unsyncedParts == 0) {
+            return;
+        }
+        channel.force(false);
+        unsyncedParts = 0;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Syncs and closes the journal, keeping the file to resume the upload, or deleting it once
+     * the upload is completed or aborted.
+     */
+    synchronized void close(boolean delete) {
+        if (channel != null) {
+            try {
+                sync();
+            } catch (IOException e) {
+                log.warn("Unable to sync the upload checkpoint " + file + ": " + e.getMessage());
+            }
+            IOUtils.closeQuietly(out, log);
+            channel = null;
+            out = null;
+        }
+        if (delete && file.exists() && !file.delete()) {
+            log.warn("Unable to delete the upload checkpoint " + file);
+        }
+    }
+
+    /**
+     * Returns a sample of the content of a file, cheap to compute even for a huge file: the CRC64
+     * of {@link #SAMPLES} blocks at evenly spaced offsets, the last one ending the file.
+     */
+    static String sampleFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            CRC64 crc64 = new CRC64();
+            byte[] block = new byte[SAMPLE_SIZE];
+            long blocks = (length + SAMPLE_SIZE - 1) / SAMPLE_SIZE;
+            int samples = (int) Math.min(SAMPLES, blocks);
+            for (int i = 0; i < samples; ++i) {
+                long offset = samples == 1 ? 0
+                        : (blocks - 1) * i / (samples - 1) * SAMPLE_SIZE;
+                int size = (int) Math.min(SAMPLE_SIZE, length - offset);
+                raf.seek(offset);
+                raf.readFully(block, 0, size);
+                crc64.update(block, 0, size);
+            }
+            return CRC64.toString(crc64.getValue());
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -2,19 +2,16 @@ package com.qcloud.cos.transfer;
 
 import static com.qcloud.cos.event.SDKProgressPublisher.publishProgress;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import com.qcloud.cos.COS;
 import com.qcloud.cos.event.ProgressEventType;
 import com.qcloud.cos.event.ProgressListenerChain;
 import com.qcloud.cos.exception.CosClientException;
-import com.qcloud.cos.model.PartETag;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.UploadResult;
 import com.qcloud.cos.transfer.Transfer.TransferState;
@@ -35,12 +32,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     private final UploadImpl transfer;
     private final ExecutorService threadPool;
 
-    /*
-     * Futures of threads that upload the parts.
-     */
-    private final List<Future<PartETag>> futures =
-            Collections.synchronizedList(new ArrayList<Future<PartETag>>());
-
     /*
      * State for clients wishing to poll for completion
      */
@@ -55,6 +46,13 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         this.future = future;
     }
 
+    // 完成分块上传的任务可能在submit返回之前就已设置, 不能被覆盖
+    private synchronized void setFutureIfAbsent(Future<UploadResult> future) {
+        if (this.future == null) {
+            this.future = future;
+        }
+    }
+
     private synchronized void cancelFuture() {
         future.cancel(true);
     }
@@ -84,7 +82,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
 
         UploadMonitor uploadMonitor = new UploadMonitor(manager, transfer, threadPool,
                 multipartUploadCallable, putObjectRequest, progressListenerChain);
-        uploadMonitor.setFuture(threadPool.submit(uploadMonitor));
+        uploadMonitor.setFutureIfAbsent(threadPool.submit(uploadMonitor));
         return uploadMonitor;
     }
 
@@ -106,14 +104,19 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
             UploadResult result = multipartUploadCallable.call();
 
             /**
-             * If the result is null, it is a mutli part parellel upload. So, an new task is
-             * submitted for initiating a complete multi part upload request.
+             * If the result is null, it is a mutli part parellel upload. So, a new task is
+             * submitted for initiating a complete multi part upload request, which runs once all
+             * the parts are done rather than parking a thread of the pool waiting for them.
              */
             if (result == null) {
-                futures.addAll(multipartUploadCallable.getFutures());
-                setFuture(threadPool.submit(new CompleteMultipartUpload(
-                        multipartUploadCallable.getMultipartUploadId(), cos, origReq, futures,
-                        multipartUploadCallable.getETags(), listener, this)));
+                // 自适应上传在返回后仍会提交分块, 完成请求在所有分块结束后才读取列表
+                FutureTask<UploadResult> completion =
+                        new FutureTask<UploadResult>(new CompleteMultipartUpload(
+                                multipartUploadCallable.getMultipartUploadId(), cos, origReq,
+                                multipartUploadCallable.getFutures(),
+                                multipartUploadCallable.getETags(), listener, this));
+                setFuture(completion);
+                TransferScheduler.executeWhenIdle(threadPool, completion);
                 /**
                  * if the logic get here. the upload part task has been summited. if it failed, we
                  * won't can abort, so you can call save the PersistableUpload.
@@ -139,6 +142,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     }
 
     void uploadComplete() {
+        multipartUploadCallable.closeCheckpoint(true);
         markAllDone();
         transfer.setState(TransferState.Completed);
 
@@ -150,6 +154,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     }
     
     void uploadFailed() {
+        multipartUploadCallable.closeCheckpoint(false);
         transfer.setState(TransferState.Failed);
         if (multipartUploadCallable.isMultipartUpload()) {
             publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
@@ -176,6 +181,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
             return new PauseResult<PersistableUpload>(pauseStatus);
         }
         cancelFutures();
+        multipartUploadCallable.closeCheckpoint(false);
         return new PauseResult<PersistableUpload>(PauseStatus.SUCCESS, persistableUpload);
     }
 
@@ -184,11 +190,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
      */
     private void cancelFutures() {
         cancelFuture();
-        for (Future<PartETag> f : futures) {
-            f.cancel(true);
-        }
-        multipartUploadCallable.getFutures().clear();
-        futures.clear();
+        multipartUploadCallable.cancelParts();
     }
 
     /**
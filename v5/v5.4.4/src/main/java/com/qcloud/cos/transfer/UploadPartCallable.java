@@ -1,22 +1,50 @@
 package com.qcloud.cos.transfer;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.qcloud.cos.COS;
 import com.qcloud.cos.model.PartETag;
 import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
 
 public class UploadPartCallable implements Callable<PartETag> {
     private final COS cos;
     private final UploadPartRequest request;
+    // 同一上传的分块共享, 有分块失败后未开始的分块不再上传
+    private final AtomicBoolean failed;
 
     public UploadPartCallable(COS cos, UploadPartRequest request) {
+        this(cos, request, new AtomicBoolean());
+    }
+
+    UploadPartCallable(COS cos, UploadPartRequest request, AtomicBoolean failed) {
         this.cos = cos;
         this.request = request;
+        this.failed = failed;
     }
 
+    /**
+     * @return the ETag of the part, null if the part was skipped because another part of the
+     *         upload failed.
+     */
     public PartETag call() throws Exception {
-        PartETag partETag = cos.uploadPart(request).getPartETag();
-        return partETag;
+        // 其他分块已经失败时不再上传, 整个上传会以那个分块的错误结束
+        if (failed.get()) {
+            return null;
+        }
+        try {
+            UploadPartResult result = cos.uploadPart(request);
+            partUploaded(result);
+            return result.getPartETag();
+        } catch (Exception e) {
+            failed.set(true);
+            throw e;
+        }
     }
+
+    /**
+     * Called with the result of the part once uploaded, before its ETag is returned.
+     */
+    void partUploaded(UploadPartResult result) {}
 }
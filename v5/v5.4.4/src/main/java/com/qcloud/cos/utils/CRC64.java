@@ -0,0 +1,173 @@
+package com.qcloud.cos.utils;
+
+import java.math.BigInteger;
+import java.util.zip.Checksum;
+
+/**
+ * The CRC64 checksum of ECMA-182 in its reflected form (also known as CRC-64/XZ), which COS
+ * computes for every object and returns in the {@code x-cos-hash-crc64ecma} header.
+ * <p>
+ * Data is processed eight bytes at a time (slicing-by-8), and the checksums of consecutive ranges
+ * computed independently, such as the parts of a multipart upload, can be combined into the
+ * checksum of their concatenation with {@link #combine(long, long, long)}.
+ */
+public class CRC64 implements Checksum {
+    private static final long POLY = 0xc96c5795d7870f42L;
+    // TABLE[k][b]为字节b后面跟着k个0字节的crc
+    private static final long[][] TABLE = new long[8][256];
+
+    static {
+        for (int n = 0; n < 256; ++n) {
+            long crc = n;
+            for (int k = 0; k < 8; ++k) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[0][n] = crc;
+        }
+        for (int n = 0; n < 256; ++n) {
+            for (int k = 1; k < 8; ++k) {
+                long crc = TABLE[k - 1][n];
+                TABLE[k][n] = (crc >>> 8) ^ TABLE[0][(int) (crc & 0xff)];
+            }
+        }
+    }
+
+    private long value;
+
+    public CRC64() {
+    }
+
+    /**
+     * @param value the checksum of the data already processed.
+     */
+    public CRC64(long value) {
+        this.value = value;
+    }
+
+    @Override
+    public void update(int b) {
+        long crc = ~value;
+        crc = TABLE[0][(int) ((crc ^ b) & 0xff)] ^ (crc >>> 8);
+        value = ~crc;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        long crc = ~value;
+        while (len >= 8) {
+            crc ^= (b[off] & 0xffL) | (b[off + 1] & 0xffL) << 8 | (b[off + 2] & 0xffL) << 16
+                    | (b[off + 3] & 0xffL) << 24 | (b[off + 4] & 0xffL) << 32
+                    | (b[off + 5] & 0xffL) << 40 | (b[off + 6] & 0xffL) << 48
+                    | (b[off + 7] & 0xffL) << 56;
+            crc = TABLE[7][(int) (crc & 0xff)] ^ TABLE[6][(int) ((crc >>> 8) & 0xff)]
+                    ^ TABLE[5][(int) ((crc >>> 16) & 0xff)]
+                    ^ TABLE[4][(int) ((crc >>> 24) & 0xff)]
+                    ^ TABLE[3][(int) ((crc >>> 32) & 0xff)]
+                    ^ TABLE[2][(int) ((crc >>> 40) & 0xff)]
+                    ^ TABLE[1][(int) ((crc >>> 48) & 0xff)] ^ TABLE[0][(int) (crc >>> 56)];
+            off += 8;
+            len -= 8;
+        }
+        while (len-- > 0) {
+            crc = TABLE[0][(int) ((crc ^ b[off++]) & 0xff)] ^ (crc >>> 8);
+        }
+        value = ~crc;
+    }
+
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    @Override
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        value = 0;
+    }
+
+    /**
+     * Returns the checksum of the concatenation of two ranges of data from their checksums, in
+     * time logarithmic in the length of the second range.
+     *
+     * @param crc1 the checksum of the first range.
+     * @param crc2 the checksum of the second range.
+     * @param len2 the length in bytes of the second range.
+     */
+    public static long combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        // 与zlib的crc32_combine相同: 用GF(2)上的矩阵表示在crc1后追加len2个0字节
+        long[] even = new long[64];
+        long[] odd = new long[64];
+        // 追加1个0位的算子
+        odd[0] = POLY;
+        long row = 1;
+        for (int n = 1; n < 64; ++n) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // 2个0位和4个0位
+        square(even, odd);
+        square(odd, even);
+        // 每次平方得到追加1, 2, 4...个0字节的算子
+        do {
+            square(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            len2 >>>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            len2 >>>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; ++i, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 64; ++n) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    /**
+     * Parses a checksum written as an unsigned decimal number, as in the headers of COS.
+     *
+     * @throws NumberFormatException if the string is not a valid checksum.
+     */
+    public static long fromString(String crc64) {
+        BigInteger value = new BigInteger(crc64.trim());
+        if (value.signum() < 0 || value.bitLength() > 64) {
+            throw new NumberFormatException("Invalid CRC64: " + crc64);
+        }
+        return value.longValue();
+    }
+
+    /**
+     * Formats a checksum as an unsigned decimal number, as in the headers of COS.
+     */
+    public static String toString(long crc64) {
+        if (crc64 >= 0) {
+            return Long.toString(crc64);
+        }
+        return BigInteger.valueOf(crc64).add(BigInteger.ONE.shiftLeft(64)).toString();
+    }
+}
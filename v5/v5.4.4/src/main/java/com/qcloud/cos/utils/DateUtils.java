@@ -25,6 +25,20 @@ public class DateUtils {
     protected static final DateTimeFormatter alternateIso8601DateFormat =
         DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(GMT);
 
+    // 最近一次格式化的RFC 822字符串, 同一秒内的请求直接复用
+    private static volatile FormattedSecond lastRFC822Date =
+            new FormattedSecond(Long.MIN_VALUE, null);
+
+    private static final class FormattedSecond {
+        private final long epochSecond;
+        private final String text;
+
+        private FormattedSecond(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+
     /**
      * Formats the specified date as an RFC 822 string.
      *
@@ -33,7 +47,19 @@ public class DateUtils {
      * @return The RFC 822 string representing the specified date.
      */
     public static String formatRFC822Date(Date date) {
-        return rfc822DateFormat.print(date.getTime());
+        long millis = date.getTime();
+        // RFC 822不包含毫秒, 按秒缓存
+        long epochSecond = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        FormattedSecond cached = lastRFC822Date;
+        if (cached.epochSecond == epochSecond) {
+            return cached.text;
+        }
+        String text = FastDateCodec.formatRFC822(millis);
+        if (text == null) {
+            return rfc822DateFormat.print(millis);
+        }
+        lastRFC822Date = new FormattedSecond(epochSecond, text);
+        return text;
     }
 
     /**
@@ -44,6 +70,10 @@ public class DateUtils {
      * @return The parsed Date object.
      */
     public static Date parseRFC822Date(String dateString) {
+        long millis = FastDateCodec.parseRFC822(dateString);
+        if (millis != FastDateCodec.UNPARSEABLE) {
+            return new Date(millis);
+        }
         return new Date(rfc822DateFormat.parseMillis(dateString));
     }
 
@@ -55,7 +85,8 @@ public class DateUtils {
      * @return The ISO 8601 string representing the specified date.
      */
     public static String formatISO8601Date(Date date) {
-        return iso8601DateFormat.print(date.getTime());
+        String text = FastDateCodec.formatISO8601(date.getTime());
+        return text != null ? text : iso8601DateFormat.print(date.getTime());
     }
     
     /**
@@ -68,6 +99,11 @@ public class DateUtils {
      * @return The parsed Date object.
      */
     public static Date parseISO8601Date(String dateString) {
+        // Fast path for the canonical forms returned by COS, anything else goes to Joda-Time.
+        long millis = FastDateCodec.parseISO8601(dateString);
+        if (millis != FastDateCodec.UNPARSEABLE) {
+            return new Date(millis);
+        }
 
         // For EC2 Spot Fleet.
         if (dateString.endsWith("+0000")) {
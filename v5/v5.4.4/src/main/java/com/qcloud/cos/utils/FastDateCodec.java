@@ -0,0 +1,236 @@
+package com.qcloud.cos.utils;
+
+/**
+ * Hand written codec for the fixed date formats COS actually sends and receives:
+ * <ul>
+ * <li>ISO 8601 in UTC with milliseconds, {@code 2018-04-01T12:00:00.000Z}, or without them,
+ * {@code 2018-04-01T12:00:00Z}, as found in the LastModified of listings;</li>
+ * <li>RFC 822 in GMT, {@code Sun, 01 Apr 2018 12:00:00 GMT}, as found in the Last-Modified and
+ * Expires headers.</li>
+ * </ul>
+ * The parsers do not allocate. They only accept the canonical form of these formats and return
+ * {@link #UNPARSEABLE} for anything else, including out of range fields, so that
+ * {@link DateUtils} can fall back to Joda-Time and keep its exact behavior and error messages.
+ */
+final class FastDateCodec {
+
+    /** returned by the parsers when the input is not in the canonical form */
+    static final long UNPARSEABLE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 24L * 3600 * MILLIS_PER_SECOND;
+    // 0000-03-01到1970-01-01的天数, 见daysFromCivil
+    private static final long DAYS_0000_03_01_TO_EPOCH = 719468L;
+    private static final long DAYS_PER_ERA = 146097L;
+
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final String[] MONTH_NAMES =
+            {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private static final int ISO8601_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSSZ".length();
+    private static final int ISO8601_NO_MILLIS_LENGTH = "yyyy-MM-ddTHH:mm:ssZ".length();
+    private static final int RFC822_LENGTH = "EEE, dd MMM yyyy HH:mm:ss GMT".length();
+
+    private FastDateCodec() {}
+
+    /**
+     * @return the epoch millis of an ISO 8601 date such as {@code 2018-04-01T12:00:00.000Z} or
+     *         {@code 2018-04-01T12:00:00Z}, or {@link #UNPARSEABLE}.
+     */
+    static long parseISO8601(String dateString) {
+        int length = dateString.length();
+        if ((length != ISO8601_LENGTH && length != ISO8601_NO_MILLIS_LENGTH)
+                || dateString.charAt(4) != '-' || dateString.charAt(7) != '-'
+                || dateString.charAt(10) != 'T' || dateString.charAt(13) != ':'
+                || dateString.charAt(16) != ':' || dateString.charAt(length - 1) != 'Z') {
+            return UNPARSEABLE;
+        }
+        int millis = 0;
+        if (length == ISO8601_LENGTH) {
+            if (dateString.charAt(19) != '.') {
+                return UNPARSEABLE;
+            }
+            millis = parseDigits(dateString, 20, 3);
+        }
+        return toEpochMillis(parseDigits(dateString, 0, 4), parseDigits(dateString, 5, 2),
+                parseDigits(dateString, 8, 2), parseDigits(dateString, 11, 2),
+                parseDigits(dateString, 14, 2), parseDigits(dateString, 17, 2), millis);
+    }
+
+    /**
+     * @return the epoch millis of an RFC 822 date such as {@code Sun, 01 Apr 2018 12:00:00 GMT},
+     *         or {@link #UNPARSEABLE}. The day of week must match the date.
+     */
+    static long parseRFC822(String dateString) {
+        if (dateString.length() != RFC822_LENGTH || dateString.charAt(3) != ','
+                || dateString.charAt(4) != ' ' || dateString.charAt(7) != ' '
+                || dateString.charAt(11) != ' ' || dateString.charAt(16) != ' '
+                || dateString.charAt(19) != ':' || dateString.charAt(22) != ':'
+                || !dateString.regionMatches(25, " GMT", 0, 4)) {
+            return UNPARSEABLE;
+        }
+        int month = indexOf(MONTH_NAMES, dateString, 8) + 1;
+        if (month == 0) {
+            return UNPARSEABLE;
+        }
+        long epochMillis = toEpochMillis(parseDigits(dateString, 12, 4), month,
+                parseDigits(dateString, 5, 2), parseDigits(dateString, 17, 2),
+                parseDigits(dateString, 20, 2), parseDigits(dateString, 23, 2), 0);
+        if (epochMillis == UNPARSEABLE) {
+            return UNPARSEABLE;
+        }
+        int dayOfWeek = dayOfWeek(floorDiv(epochMillis, MILLIS_PER_DAY));
+        return indexOf(DAY_NAMES, dateString, 0) == dayOfWeek ? epochMillis : UNPARSEABLE;
+    }
+
+    /**
+     * @return the date formatted as {@code 2018-04-01T12:00:00.000Z}, or null when the year is
+     *         not within [0, 9999].
+     */
+    static String formatISO8601(long epochMillis) {
+        long epochDay = floorDiv(epochMillis, MILLIS_PER_DAY);
+        long civil = civilFromDays(epochDay);
+        int year = (int) (civil >> 16);
+        if (year < 0 || year > 9999) {
+            return null;
+        }
+        int millisOfDay = (int) (epochMillis - epochDay * MILLIS_PER_DAY);
+        char[] buf = new char[ISO8601_LENGTH];
+        writeDigits(buf, 0, year, 4);
+        buf[4] = '-';
+        writeDigits(buf, 5, (int) (civil >> 8) & 0xFF, 2);
+        buf[7] = '-';
+        writeDigits(buf, 8, (int) civil & 0xFF, 2);
+        buf[10] = 'T';
+        writeTime(buf, 11, millisOfDay);
+        buf[19] = '.';
+        writeDigits(buf, 20, millisOfDay % 1000, 3);
+        buf[23] = 'Z';
+        return new String(buf);
+    }
+
+    /**
+     * @return the date formatted as {@code Sun, 01 Apr 2018 12:00:00 GMT}, or null when the year
+     *         is not within [0, 9999].
+     */
+    static String formatRFC822(long epochMillis) {
+        long epochDay = floorDiv(epochMillis, MILLIS_PER_DAY);
+        long civil = civilFromDays(epochDay);
+        int year = (int) (civil >> 16);
+        if (year < 0 || year > 9999) {
+            return null;
+        }
+        char[] buf = new char[RFC822_LENGTH];
+        DAY_NAMES[dayOfWeek(epochDay)].getChars(0, 3, buf, 0);
+        buf[3] = ',';
+        buf[4] = ' ';
+        writeDigits(buf, 5, (int) civil & 0xFF, 2);
+        buf[7] = ' ';
+        MONTH_NAMES[((int) (civil >> 8) & 0xFF) - 1].getChars(0, 3, buf, 8);
+        buf[11] = ' ';
+        writeDigits(buf, 12, year, 4);
+        buf[16] = ' ';
+        writeTime(buf, 17, (int) (epochMillis - epochDay * MILLIS_PER_DAY));
+        " GMT".getChars(0, 4, buf, 25);
+        return new String(buf);
+    }
+
+    private static long toEpochMillis(int year, int month, int day, int hour, int minute,
+            int second, int millis) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+                || second > 59 || millis < 0) {
+            return UNPARSEABLE;
+        }
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60 + second) * MILLIS_PER_SECOND + millis;
+    }
+
+    // 按公历计算日期相对1970-01-01的天数, 以3月为一年的开始使闰日落在年末, 每400年为一个周期
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_EPOCH;
+    }
+
+    // daysFromCivil的逆运算, 返回 year << 16 | month << 8 | day
+    private static long civilFromDays(long epochDay) {
+        long z = epochDay + DAYS_0000_03_01_TO_EPOCH;
+        long era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+        long dayOfEra = z - era * DAYS_PER_ERA;
+        long yearOfEra =
+                (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 16 | month << 8 | day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // 0表示星期一, 1970-01-01是星期四
+    private static int dayOfWeek(long epochDay) {
+        return (int) (((epochDay + 3) % 7 + 7) % 7);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    // 解析固定位数的十进制数字, 遇到非数字返回-1
+    private static int parseDigits(String str, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; ++i) {
+            int digit = str.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int indexOf(String[] names, String str, int start) {
+        for (int i = 0; i < names.length; ++i) {
+            if (str.regionMatches(start, names[i], 0, 3)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 写入HH:mm:ss
+    private static void writeTime(char[] buf, int start, int millisOfDay) {
+        int secondOfDay = millisOfDay / 1000;
+        writeDigits(buf, start, secondOfDay / 3600, 2);
+        buf[start + 2] = ':';
+        writeDigits(buf, start + 3, secondOfDay / 60 % 60, 2);
+        buf[start + 5] = ':';
+        writeDigits(buf, start + 6, secondOfDay % 60, 2);
+    }
+
+    private static void writeDigits(char[] buf, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; --i) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
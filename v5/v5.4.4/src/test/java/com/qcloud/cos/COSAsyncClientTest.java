@@ -0,0 +1,116 @@
+package com.qcloud.cos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.qcloud.cos.auth.BasicCOSCredentials;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.GetObjectMetadataRequest;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.utils.Md5Utils;
+
+public class COSAsyncClientTest extends AbstractCOSClientTest {
+
+    private static COSAsyncClient cosAsyncClient = null;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        AbstractCOSClientTest.initCosClient();
+        if (judgeUserInfoValid()) {
+            cosAsyncClient =
+                    new COSAsyncClient(new BasicCOSCredentials(secretId, secretKey), clientConfig);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        if (cosAsyncClient != null) {
+            cosAsyncClient.shutdown();
+        }
+        AbstractCOSClientTest.destoryCosClient();
+    }
+
+    @Test
+    public void testPutHeadGetListAsync() throws Exception {
+        if (!judgeUserInfoValid()) {
+            return;
+        }
+        final int fileNum = 8;
+        final String keyPrefix = "ut/async/";
+        List<File> localFiles = new ArrayList<>();
+        List<Future<PutObjectResult>> putFutures = new ArrayList<>();
+        try {
+            for (int i = 0; i < fileNum; ++i) {
+                File localFile = buildTestFile(i * 1024L);
+                localFiles.add(localFile);
+                putFutures.add(cosAsyncClient.putObjectAsync(
+                        new PutObjectRequest(bucket, keyPrefix + i, localFile)));
+            }
+            for (Future<PutObjectResult> putFuture : putFutures) {
+                assertNotNull(putFuture.get().getETag());
+            }
+
+            for (int i = 0; i < fileNum; ++i) {
+                ObjectMetadata objectMetadata = cosAsyncClient
+                        .getObjectMetadataAsync(
+                                new GetObjectMetadataRequest(bucket, keyPrefix + i))
+                        .get();
+                assertEquals(i * 1024L, objectMetadata.getContentLength());
+                COSObject cosObject = cosAsyncClient
+                        .getObjectAsync(new GetObjectRequest(bucket, keyPrefix + i)).get();
+                try {
+                    assertEquals(Md5Utils.md5AsBase64(localFiles.get(i)),
+                            Md5Utils.md5AsBase64(cosObject.getObjectContent()));
+                } finally {
+                    cosObject.close();
+                }
+            }
+
+            ObjectListing objectListing = cosAsyncClient
+                    .listObjectsAsync(new ListObjectsRequest(bucket, keyPrefix, null, null, 100))
+                    .get();
+            assertEquals(fileNum, objectListing.getObjectSummaries().size());
+        } finally {
+            for (int i = 0; i < fileNum; ++i) {
+                clearObject(keyPrefix + i);
+            }
+            for (File localFile : localFiles) {
+                assertTrue(localFile.delete());
+            }
+        }
+    }
+
+    @Test
+    public void testHeadNotExistObjectAsync() throws Exception {
+        if (!judgeUserInfoValid()) {
+            return;
+        }
+        Future<ObjectMetadata> future = cosAsyncClient.getObjectMetadataAsync(
+                new GetObjectMetadataRequest(bucket, "ut/async/not_exist_key"));
+        try {
+            future.get();
+            fail("head a not exist object should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CosServiceException);
+            assertEquals(404, ((CosServiceException) e.getCause()).getStatusCode());
+        }
+    }
+}
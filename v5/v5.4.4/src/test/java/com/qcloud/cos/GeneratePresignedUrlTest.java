@@ -7,7 +7,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -114,6 +119,50 @@ public class GeneratePresignedUrlTest extends AbstractCOSClientTest {
         assertTrue(localFile.delete());
     }
     
+    @Test
+    public void testBatchGetFiles() throws Exception {
+        if (!judgeUserInfoValid()) {
+            return;
+        }
+        final int fileNum = 3;
+        List<String> keys = new ArrayList<>();
+        List<File> localFiles = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < fileNum; ++i) {
+                File localFile = buildTestFile(1024 * (i + 1));
+                String key = "ut/batch_url/" + localFile.getName();
+                putObjectFromLocalFile(localFile, key);
+                localFiles.add(localFile);
+                keys.add(key);
+            }
+            Date expirationTime = new Date(System.currentTimeMillis() + 30 * 60 * 1000);
+            List<URL> urls = cosclient.generatePresignedUrls(bucket, keys, expirationTime,
+                    HttpMethodName.GET);
+            List<URL> parallelUrls = cosclient.generatePresignedUrls(bucket, keys,
+                    expirationTime, HttpMethodName.GET, executor);
+            assertEquals(fileNum, urls.size());
+            assertEquals(fileNum, parallelUrls.size());
+            for (int i = 0; i < fileNum; ++i) {
+                for (URL url : Arrays.asList(urls.get(i), parallelUrls.get(i))) {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    connection.setRequestMethod("GET");
+                    assertEquals(200, connection.getResponseCode());
+                    assertEquals(localFiles.get(i).length(), connection.getContentLength());
+                    connection.disconnect();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            for (String key : keys) {
+                clearObject(key);
+            }
+            for (File localFile : localFiles) {
+                assertTrue(localFile.delete());
+            }
+        }
+    }
+
     @Test
     public void testAnonymousUrl() {
         if (!judgeUserInfoValid()) {
@@ -0,0 +1,174 @@
+package com.qcloud.cos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.auth.BasicCOSCredentials;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.GetObjectMetadataRequest;
+import com.qcloud.cos.model.HeadObjectResult;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.region.Region;
+
+public class HeadObjectsTest {
+
+    // 不发送请求的客户端, key以"missing"开头时返回404, 以"denied"开头时返回403
+    private static class FakeHeadClient extends COSClient {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final Set<String> threadNames =
+                Collections.synchronizedSet(new HashSet<String>());
+
+        FakeHeadClient() {
+            this(new ClientConfig(new Region("ap-guangzhou")));
+        }
+
+        FakeHeadClient(ClientConfig clientConfig) {
+            super(new BasicCOSCredentials("AKIDtestsecretid", "testsecretkey"), clientConfig);
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+            requests.incrementAndGet();
+            threadNames.add(Thread.currentThread().getName());
+            int current = inFlight.incrementAndGet();
+            try {
+                int max = maxInFlight.get();
+                while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                    max = maxInFlight.get();
+                }
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new CosClientException("interrupted", e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            String key = request.getKey();
+            if (key.startsWith("missing") || key.startsWith("denied")) {
+                CosServiceException cse = new CosServiceException("injected failure");
+                cse.setStatusCode(key.startsWith("missing") ? 404 : 403);
+                throw cse;
+            }
+            if (key.startsWith("broken")) {
+                throw new CosClientException("connection reset");
+            }
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setHeader("ETag", "etag-" + key);
+            return metadata;
+        }
+    }
+
+    @Test
+    public void testHeadObjects() {
+        FakeHeadClient client = new FakeHeadClient();
+        try {
+            List<String> keys = new ArrayList<String>();
+            for (int i = 0; i < 200; ++i) {
+                keys.add((i % 10 == 3 ? "missing-" : i % 10 == 7 ? "denied-" : "key-") + i);
+            }
+            keys.add("broken-key");
+            keys.add("key-0");
+
+            Map<String, HeadObjectResult> results = client.headObjects("bucket", keys, 8);
+            assertEquals(201, results.size());
+            assertEquals(201, client.requests.get());
+            assertTrue(client.maxInFlight.get() <= 8);
+            assertEquals(keys.subList(0, 201), new ArrayList<String>(results.keySet()));
+
+            HeadObjectResult found = results.get("key-0");
+            assertTrue(found.exists());
+            assertTrue(found.isSuccessful());
+            assertEquals("etag-key-0", found.getMetadata().getETag());
+
+            HeadObjectResult missing = results.get("missing-3");
+            assertFalse(missing.exists());
+            assertTrue(missing.isSuccessful());
+            assertNull(missing.getException());
+
+            HeadObjectResult denied = results.get("denied-7");
+            assertFalse(denied.exists());
+            assertFalse(denied.isSuccessful());
+            assertEquals(403, ((CosServiceException) denied.getException()).getStatusCode());
+
+            assertFalse(results.get("broken-key").isSuccessful());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleWorkerRunsOnCallingThread() {
+        FakeHeadClient client = new FakeHeadClient();
+        try {
+            Map<String, HeadObjectResult> results =
+                    client.headObjects("bucket", Arrays.asList("a", "b", "c"), 1);
+            assertEquals(3, results.size());
+            assertEquals(1, client.maxInFlight.get());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreadsBoundedByMaxConnections() throws Exception {
+        ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        clientConfig.setMaxConnectionsCount(4);
+        final FakeHeadClient client = new FakeHeadClient(clientConfig);
+        try {
+            final List<String> keys = new ArrayList<String>();
+            for (int i = 0; i < 100; ++i) {
+                keys.add("key-" + i);
+            }
+            // 多个批量请求同时进行, 共享客户端的线程
+            List<Thread> callers = new ArrayList<Thread>();
+            for (int i = 0; i < 4; ++i) {
+                Thread caller = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        assertEquals(100, client.headObjects("bucket", keys, 4).size());
+                    }
+                }, "caller-" + i);
+                caller.start();
+                callers.add(caller);
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            assertEquals(400, client.requests.get());
+            int batchThreads = 0;
+            for (String threadName : client.threadNames) {
+                if (threadName.startsWith("cos-batch-")) {
+                    ++batchThreads;
+                }
+            }
+            assertTrue(batchThreads <= 4);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency() {
+        FakeHeadClient client = new FakeHeadClient();
+        try {
+            client.headObjects("bucket", Arrays.asList("a"), 0);
+        } finally {
+            client.shutdown();
+        }
+    }
+}
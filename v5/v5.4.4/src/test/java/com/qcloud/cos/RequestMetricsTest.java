@@ -0,0 +1,106 @@
+package com.qcloud.cos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.qcloud.cos.auth.BasicCOSCredentials;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.http.CosHttpRequest;
+import com.qcloud.cos.metrics.RequestMetricCollector;
+import com.qcloud.cos.metrics.RequestMetrics;
+import com.qcloud.cos.metrics.RequestMetrics.Phase;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.region.Region;
+
+public class RequestMetricsTest extends AbstractCOSClientTest {
+
+    private static final List<RequestMetrics> collectedMetrics = new ArrayList<>();
+    private static COSClient metricsClient = null;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        AbstractCOSClientTest.initCosClient();
+        if (judgeUserInfoValid()) {
+            ClientConfig metricsConfig = new ClientConfig(new Region(region));
+            metricsConfig.setHttpProxyIp(clientConfig.getHttpProxyIp());
+            metricsConfig.setHttpProxyPort(clientConfig.getHttpProxyPort());
+            metricsConfig.setRequestMetricCollector(new RequestMetricCollector() {
+                @Override
+                public void collectMetrics(CosHttpRequest<?> request, RequestMetrics metrics) {
+                    collectedMetrics.add(metrics);
+                }
+            });
+            metricsClient =
+                    new COSClient(new BasicCOSCredentials(secretId, secretKey), metricsConfig);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        if (metricsClient != null) {
+            metricsClient.shutdown();
+        }
+        AbstractCOSClientTest.destoryCosClient();
+    }
+
+    @Test
+    public void testPutHeadMetrics() throws Exception {
+        if (!judgeUserInfoValid()) {
+            return;
+        }
+        String key = "ut/metrics/put_head";
+        File localFile = buildTestFile(64 * 1024L);
+        try {
+            collectedMetrics.clear();
+            metricsClient.putObject(new PutObjectRequest(bucket, key, localFile));
+            ObjectMetadata objectMetadata = metricsClient.getObjectMetadata(bucket, key);
+            assertEquals(64 * 1024L, objectMetadata.getContentLength());
+
+            assertEquals(2, collectedMetrics.size());
+            RequestMetrics putMetrics = collectedMetrics.get(0);
+            assertEquals(200, putMetrics.getStatusCode());
+            assertNotNull(putMetrics.getRequestId());
+            assertNull(putMetrics.getException());
+            assertEquals(64 * 1024L, putMetrics.getBytesSent());
+            assertTrue(putMetrics.getPhaseNanos(Phase.SIGN) > 0);
+            assertTrue(putMetrics.getPhaseNanos(Phase.SEND) > 0);
+            assertTrue(putMetrics.getPhaseNanos(Phase.TIME_TO_FIRST_BYTE) > 0);
+            assertTrue(putMetrics.getTotalNanos() >= putMetrics.getPhaseNanos(Phase.SEND));
+            assertEquals(objectMetadata.getRawMetadataValue(Headers.REQUEST_ID),
+                    collectedMetrics.get(1).getRequestId());
+        } finally {
+            clearObject(key);
+            assertTrue(localFile.delete());
+        }
+    }
+
+    @Test
+    public void testErrorMetrics() throws Exception {
+        if (!judgeUserInfoValid()) {
+            return;
+        }
+        collectedMetrics.clear();
+        try {
+            metricsClient.getObjectMetadata(bucket, "ut/metrics/not_exist_key");
+            fail("head a not exist object should fail");
+        } catch (CosServiceException cse) {
+            assertEquals(1, collectedMetrics.size());
+            RequestMetrics metrics = collectedMetrics.get(0);
+            assertEquals(404, metrics.getStatusCode());
+            assertEquals(0, metrics.getRetriesAttempted());
+            assertTrue(metrics.getException() == cse);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.qcloud.cos.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.junit.Test;
+
+import com.qcloud.cos.http.HttpMethodName;
+import com.qcloud.cos.utils.UrlEncoderUtils;
+
+public class COSSignerTest {
+
+    private static final String SECRET_ID = "AKIDtestsecretid";
+    private static final String SECRET_KEY = "testsecretkey";
+
+    private static Map<String, String> parseAuthorization(String authStr) {
+        Map<String, String> authMap = new HashMap<>();
+        for (String member : authStr.split("&")) {
+            int index = member.indexOf('=');
+            authMap.put(member.substring(0, index), member.substring(index + 1));
+        }
+        return authMap;
+    }
+
+    private static String formatMap(TreeMap<String, String> kvMap) {
+        StringBuilder strBuilder = new StringBuilder();
+        for (Entry<String, String> entry : kvMap.entrySet()) {
+            if (strBuilder.length() != 0) {
+                strBuilder.append("&");
+            }
+            strBuilder.append(UrlEncoderUtils.encode(entry.getKey().toLowerCase())).append("=");
+            if (entry.getValue() != null) {
+                strBuilder.append(UrlEncoderUtils.encode(entry.getValue()));
+            }
+        }
+        return strBuilder.toString();
+    }
+
+    // 按照签名文档逐步计算签名, 与签名器的结果比对
+    private static String expectedSignature(Map<String, String> authMap, String method,
+            String path, Map<String, String> headers, Map<String, String> params) {
+        TreeMap<String, String> signHeaders = new TreeMap<>();
+        for (Entry<String, String> entry : headers.entrySet()) {
+            signHeaders.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        String formatStr = method + "\n" + path + "\n" + formatMap(new TreeMap<>(params)) + "\n"
+                + formatMap(signHeaders) + "\n";
+        String signKey = HmacUtils.hmacSha1Hex(SECRET_KEY, authMap.get("q-key-time"));
+        String stringToSign = "sha1\n" + authMap.get("q-sign-time") + "\n"
+                + DigestUtils.sha1Hex(formatStr) + "\n";
+        return HmacUtils.hmacSha1Hex(signKey, stringToSign);
+    }
+
+    @Test
+    public void testSignatureMatchesSpec() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/plain");
+        headers.put("x-cos-meta-name", "中文 value");
+        Map<String, String> params = new HashMap<>();
+        params.put("uploadId", "1234*abc");
+        params.put("partNumber", "3");
+        params.put("acl", null);
+
+        COSSigner signer = new COSSigner();
+        Date expiredTime = new Date(System.currentTimeMillis() + 3600 * 1000L);
+        String authStr = signer.buildAuthorizationStr(HttpMethodName.PUT, "/dir/中文.txt",
+                headers, params, new BasicCOSCredentials(SECRET_ID, SECRET_KEY), expiredTime);
+        Map<String, String> authMap = parseAuthorization(authStr);
+
+        assertEquals(SECRET_ID, authMap.get("q-ak"));
+        assertEquals("content-type;x-cos-meta-name", authMap.get("q-header-list"));
+        assertEquals("acl;partnumber;uploadid", authMap.get("q-url-param-list"));
+        assertEquals(expectedSignature(authMap, "put", "/dir/中文.txt", headers, params),
+                authMap.get("q-signature"));
+    }
+
+    @Test
+    public void testKeyTimeIsSignTime() {
+        COSSigner signer = new COSSigner();
+        COSCredentials cred = new BasicCOSCredentials(SECRET_ID, SECRET_KEY);
+        Date expiredTime = new Date(System.currentTimeMillis() + 600 * 1000L);
+        Date laterExpiredTime = new Date(expiredTime.getTime() + 1000L);
+        // 复用缓存的SignKey时, 签名仍然不能超过请求的有效期
+        for (Date expired : new Date[] {expiredTime, expiredTime, laterExpiredTime}) {
+            Map<String, String> authMap = parseAuthorization(
+                    signer.buildAuthorizationStr(HttpMethodName.GET, "/a", cred, expired));
+            assertEquals(authMap.get("q-sign-time"), authMap.get("q-key-time"));
+            assertEquals(expired.getTime() / 1000,
+                    Long.parseLong(authMap.get("q-sign-time").split(";")[1]));
+            assertEquals(expectedSignature(authMap, "get", "/a", new HashMap<String, String>(),
+                    new HashMap<String, String>()), authMap.get("q-signature"));
+        }
+    }
+
+    @Test
+    public void testAnonymousCredentials() {
+        COSSigner signer = new COSSigner();
+        assertNull(signer.buildAuthorizationStr(HttpMethodName.GET, "/a",
+                new AnonymousCOSCredentials(), new Date()));
+    }
+}
@@ -0,0 +1,158 @@
+package com.qcloud.cos.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.ObjectMetadata;
+
+public class ObjectMetadataCacheTest {
+
+    private static final String BUCKET = "test-1250000000";
+
+    private static ObjectMetadata metadataWithETag(String etag) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setHeader("ETag", etag);
+        metadata.addUserMetadata("owner", "test");
+        return metadata;
+    }
+
+    private static CosServiceException notFound() {
+        CosServiceException cse = new CosServiceException("Not Found");
+        cse.setStatusCode(404);
+        cse.setErrorCode("NoSuchKey");
+        cse.setRequestId("request-id");
+        return cse;
+    }
+
+    @Test
+    public void testHitReturnsCopy() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(100, 60 * 1000L);
+        assertNull(cache.get(BUCKET, "a.txt", null));
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-1"), System.nanoTime());
+
+        ObjectMetadata first = cache.get(BUCKET, "a.txt", null);
+        assertEquals("etag-1", first.getETag());
+        first.addUserMetadata("owner", "changed");
+        ObjectMetadata second = cache.get(BUCKET, "a.txt", null);
+        assertNotSame(first, second);
+        assertEquals("test", second.getUserMetaDataOf("owner"));
+
+        // 不同的版本与bucket分别缓存
+        assertNull(cache.get(BUCKET, "a.txt", "version-1"));
+        assertNull(cache.get("other-1250000000", "a.txt", null));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(100, 60 * 1000L);
+        cache.putNotFound(BUCKET, "missing.txt", null, notFound(), System.nanoTime());
+        for (int i = 0; i < 2; ++i) {
+            try {
+                cache.get(BUCKET, "missing.txt", null);
+                fail("a cached 404 should be thrown");
+            } catch (CosServiceException cse) {
+                assertEquals(404, cse.getStatusCode());
+                assertEquals("NoSuchKey", cse.getErrorCode());
+                assertEquals("request-id", cse.getRequestId());
+            }
+        }
+        assertEquals(2, cache.getNegativeHitCount());
+        assertEquals(2, cache.getHitCount());
+
+        ObjectMetadataCache noNegativeCache = new ObjectMetadataCache(100, 60 * 1000L, 0);
+        noNegativeCache.putNotFound(BUCKET, "missing.txt", null, notFound(), System.nanoTime());
+        assertNull(noNegativeCache.get(BUCKET, "missing.txt", null));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        ObjectMetadataCache cache = new ObjectMetadataCache(100, 20L);
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-1"), System.nanoTime());
+        assertNotNull(cache.get(BUCKET, "a.txt", null));
+        Thread.sleep(40);
+        assertNull(cache.get(BUCKET, "a.txt", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateAllVersions() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(100, 60 * 1000L);
+        long requestStartNanos = System.nanoTime();
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-2"), requestStartNanos);
+        cache.put(BUCKET, "a.txt", "version-1", metadataWithETag("etag-1"), requestStartNanos);
+        cache.put(BUCKET, "b.txt", null, metadataWithETag("etag-3"), requestStartNanos);
+        cache.invalidate(BUCKET, "a.txt");
+        assertNull(cache.get(BUCKET, "a.txt", null));
+        assertNull(cache.get(BUCKET, "a.txt", "version-1"));
+        assertNotNull(cache.get(BUCKET, "b.txt", null));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testResponseOlderThanInvalidationIsDropped() throws InterruptedException {
+        ObjectMetadataCache cache = new ObjectMetadataCache(100, 60 * 1000L);
+        // HEAD发出后对象被修改, 其结果可能是旧的
+        long requestStartNanos = System.nanoTime();
+        Thread.sleep(1);
+        cache.invalidate(BUCKET, "a.txt");
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-old"), requestStartNanos);
+        assertNull(cache.get(BUCKET, "a.txt", null));
+
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-new"), System.nanoTime());
+        assertEquals("etag-new", cache.get(BUCKET, "a.txt", null).getETag());
+    }
+
+    @Test
+    public void testInvalidationOnlyDropsItsKey() throws InterruptedException {
+        ObjectMetadataCache cache = new ObjectMetadataCache(1000, 60 * 1000L);
+        long requestStartNanos = System.nanoTime();
+        Thread.sleep(1);
+        // 失效其他key, 每个段都至少有一个
+        for (int i = 0; i < 100; ++i) {
+            cache.invalidate(BUCKET, "other-" + i);
+        }
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-1"), requestStartNanos);
+        assertEquals("etag-1", cache.get(BUCKET, "a.txt", null).getETag());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidationSurvivesEviction() throws InterruptedException {
+        ObjectMetadataCache cache = new ObjectMetadataCache(16, 60 * 1000L);
+        long requestStartNanos = System.nanoTime();
+        Thread.sleep(1);
+        cache.invalidate(BUCKET, "a.txt");
+        // 淘汰a.txt的失效记录
+        for (int i = 0; i < 1000; ++i) {
+            cache.put(BUCKET, "key-" + i, null, metadataWithETag("etag-" + i), System.nanoTime());
+        }
+        cache.put(BUCKET, "a.txt", null, metadataWithETag("etag-old"), requestStartNanos);
+        assertNull(cache.get(BUCKET, "a.txt", null));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        int maxEntries = 64;
+        ObjectMetadataCache cache = new ObjectMetadataCache(maxEntries, 60 * 1000L);
+        for (int i = 0; i < 1000; ++i) {
+            cache.put(BUCKET, "key-" + i, null, metadataWithETag("etag-" + i), System.nanoTime());
+        }
+        assertEquals(maxEntries, cache.size());
+        assertEquals(1000 - maxEntries, cache.getEvictionCount());
+        // 最近写入的key仍在缓存中
+        assertEquals("etag-999", cache.get(BUCKET, "key-999", null).getETag());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxEntries() {
+        new ObjectMetadataCache(0, 1000L);
+    }
+}
@@ -0,0 +1,105 @@
+package com.qcloud.cos.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.Headers;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.internal.CosMetadataResponseHandler;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.metrics.RequestMetrics;
+import com.qcloud.cos.region.Region;
+import com.qcloud.cos.retry.PredefinedRetryPolicies;
+import com.qcloud.cos.retry.RetryPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The sent bytes of a request are the bytes of content actually sent, not its Content-Length.
+ */
+public class BytesSentMetricsTest {
+    private static final int CONTENT_LENGTH = 1000;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    // 前这么多次请求返回500, 之后成功
+    private volatile int failedRequests = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int request = requests.incrementAndGet();
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[CONTENT_LENGTH];
+                while (in.read(buffer) != -1) {
+                }
+                exchange.getResponseHeaders().add(Headers.ETAG, "\"etag\"");
+                exchange.sendResponseHeaders(request > failedRequests ? 200 : 500, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private long put(boolean withContentLength) {
+        ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        clientConfig.setRetryPolicy(new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new RetryPolicy.BackoffStrategy() {
+                    @Override
+                    public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+                            CosClientException exception, int retriesAttempted) {
+                        return 0;
+                    }
+                }, 3));
+        CosHttpRequest<CosServiceRequest> request =
+                new CosHttpRequest<CosServiceRequest>(new CosServiceRequest());
+        request.setProtocol(HttpProtocol.http);
+        request.setEndpoint("127.0.0.1:" + server.getAddress().getPort());
+        request.setResourcePath("/key");
+        request.setHttpMethod(HttpMethodName.PUT);
+        if (withContentLength) {
+            request.addHeader(Headers.CONTENT_LENGTH, String.valueOf(CONTENT_LENGTH));
+        }
+        request.setContent(new ByteArrayInputStream(new byte[CONTENT_LENGTH]));
+        RequestMetrics metrics = new RequestMetrics();
+        request.setRequestMetrics(metrics);
+        DefaultCosHttpClient client = new DefaultCosHttpClient(clientConfig);
+        try {
+            client.exeute(request, new CosMetadataResponseHandler());
+        } finally {
+            client.shutdown();
+        }
+        return metrics.getBytesSent();
+    }
+
+    @Test
+    public void testChunkedContentCounted() {
+        assertEquals(CONTENT_LENGTH, put(false));
+    }
+
+    @Test
+    public void testRetriedContentCountedOncePerAttempt() {
+        failedRequests = 2;
+        assertEquals(3 * CONTENT_LENGTH, put(true));
+        assertEquals(3, requests.get());
+    }
+}
@@ -0,0 +1,172 @@
+package com.qcloud.cos.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.Headers;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.internal.CosMetadataResponseHandler;
+import com.qcloud.cos.internal.CosServiceRequest;
+import com.qcloud.cos.internal.CosServiceResponse;
+import com.qcloud.cos.region.Region;
+import com.qcloud.cos.retry.PredefinedRetryPolicies;
+import com.qcloud.cos.retry.RetryPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stream upload larger than the read limit can't be reset for a retry: the caller must see the
+ * error of the service, not the reset error. A request which succeeds after retries reports them
+ * in its response metadata.
+ */
+public class RetryResetContentTest {
+    private static final int READ_LIMIT = 1024;
+    private static final int CONTENT_LENGTH = 64 * READ_LIMIT;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    // 前这么多次请求返回503, 之后成功
+    private volatile int failedRequests = Integer.MAX_VALUE;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int request = requests.incrementAndGet();
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[READ_LIMIT];
+                while (in.read(buffer) != -1) {
+                }
+                if (request > failedRequests) {
+                    exchange.getResponseHeaders().add(Headers.ETAG, "\"etag\"");
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = ("<?xml version='1.0' encoding='utf-8' ?><Error>"
+                        + "<Code>SlowDown</Code><Message>Please reduce your request rate.</Message>"
+                        + "<RequestId>test-request-id</RequestId></Error>").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/xml");
+                exchange.sendResponseHeaders(503, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private ClientConfig newClientConfig() {
+        ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        clientConfig.setReadLimit(READ_LIMIT);
+        clientConfig.setRetryPolicy(new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new RetryPolicy.BackoffStrategy() {
+                    @Override
+                    public long delayBeforeNextRetry(CosServiceRequest originalRequest,
+                            CosClientException exception, int retriesAttempted) {
+                        return 0;
+                    }
+                }, 3));
+        return clientConfig;
+    }
+
+    private CosHttpRequest<CosServiceRequest> newPutRequest(InputStream content,
+            int contentLength) {
+        CosHttpRequest<CosServiceRequest> request =
+                new CosHttpRequest<CosServiceRequest>(new CosServiceRequest());
+        request.setProtocol(HttpProtocol.http);
+        request.setEndpoint("127.0.0.1:" + server.getAddress().getPort());
+        request.setResourcePath("/key");
+        request.setHttpMethod(HttpMethodName.PUT);
+        request.addHeader(Headers.CONTENT_LENGTH, String.valueOf(contentLength));
+        request.setContent(content);
+        return request;
+    }
+
+    private CosHttpRequest<CosServiceRequest> newPutRequest() {
+        // 不支持mark的流, 由SDK缓冲, 读过缓冲区后无法恢复
+        return newPutRequest(new InputStream() {
+            private int remaining = CONTENT_LENGTH;
+
+            @Override
+            public int read() {
+                return remaining-- > 0 ? 'a' : -1;
+            }
+        }, CONTENT_LENGTH);
+    }
+
+    private static HttpResponseHandler<CosServiceResponse<Void>> newResponseHandler() {
+        return new HttpResponseHandler<CosServiceResponse<Void>>() {
+            @Override
+            public CosServiceResponse<Void> handle(CosHttpResponse response) {
+                return new CosServiceResponse<Void>();
+            }
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        };
+    }
+
+    private void assertServiceError(Throwable e) {
+        assertTrue(String.valueOf(e), e instanceof CosServiceException);
+        CosServiceException cse = (CosServiceException) e;
+        assertEquals(503, cse.getStatusCode());
+        assertEquals("SlowDown", cse.getErrorCode());
+        assertEquals(0, cse.getRetriesAttempted());
+        assertEquals(1, cse.getSuppressed().length);
+        assertTrue(cse.getSuppressed()[0] instanceof IOException);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testServiceErrorReportedWhenContentNotResettable() {
+        DefaultCosHttpClient client = new DefaultCosHttpClient(newClientConfig());
+        try {
+            client.exeute(newPutRequest(), newResponseHandler());
+            fail("the request should fail");
+        } catch (CosClientException e) {
+            assertServiceError(e);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetriesReportedInResponseMetadata() {
+        failedRequests = 2;
+        DefaultCosHttpClient client = new DefaultCosHttpClient(newClientConfig());
+        try {
+            CosMetadataResponseHandler responseHandler = new CosMetadataResponseHandler();
+            client.exeute(newPutRequest(new ByteArrayInputStream(new byte[READ_LIMIT / 2]),
+                    READ_LIMIT / 2), responseHandler);
+            assertEquals(2, responseHandler.getResponseMetadata().getRetriesAttempted());
+            assertEquals(3, requests.get());
+        } finally {
+            client.shutdown();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.qcloud.cos.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.utils.StringUtils;
+
+public class AbstractHandlerTest {
+
+    // 记录每个元素结束时各种路径的匹配结果
+    private static class RecordingHandler extends AbstractHandler {
+        private final List<String> matched = new ArrayList<String>();
+
+        @Override
+        protected void doStartElement(String uri, String name, String qName, Attributes attrs) {
+            if (atTopLevel()) {
+                matched.add("start-root:" + name);
+            }
+        }
+
+        @Override
+        protected void doEndElement(String uri, String name, String qName) {
+            if (atTopLevel()) {
+                matched.add("end-root:" + name);
+            } else if (in("A")) {
+                matched.add("A/" + name);
+            } else if (in("A", "B")) {
+                matched.add("A/B/" + name + "=" + getText());
+            } else if (in("A", "*", "C")) {
+                matched.add("A/*/C/" + name + "=" + getText());
+            } else if (in("A", "B", "C", "D")) {
+                matched.add("A/B/C/D/" + name);
+            } else if (in("A", "B", "C", "D", "E")) {
+                matched.add("A/B/C/D/E/" + name);
+            } else {
+                matched.add("other:" + name);
+            }
+        }
+    }
+
+    private static void parse(AbstractHandler handler, String xml) throws Exception {
+        new XmlResponsesSaxParser().parseXmlInputStream(handler,
+                new ByteArrayInputStream(xml.getBytes(StringUtils.UTF8)));
+    }
+
+    @Test
+    public void testPathMatching() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        parse(handler, "<A><B><x>1</x><C><y>2</y><D><E><F/></E><z/></D></C></B>"
+                + "<Q><C><y>3</y></C></Q><G><H><I><J><K><L/></K></J></I></H></G></A>");
+        List<String> expected = new ArrayList<String>();
+        expected.add("start-root:A");
+        expected.add("A/B/x=1");
+        expected.add("A/*/C/y=2");
+        expected.add("A/B/C/D/E/F");
+        expected.add("A/B/C/D/E");
+        expected.add("A/B/C/D/z");
+        expected.add("A/*/C/D=");
+        expected.add("A/B/C=");
+        expected.add("A/B");
+        expected.add("A/*/C/y=3");
+        expected.add("other:C");
+        expected.add("A/Q");
+        expected.add("other:L");
+        expected.add("other:K");
+        expected.add("other:J");
+        expected.add("other:I");
+        expected.add("other:H");
+        expected.add("A/G");
+        expected.add("end-root:A");
+        assertEquals(expected, handler.matched);
+    }
+
+    @Test
+    public void testReaderReusedAfterFailure() throws Exception {
+        try {
+            parse(new RecordingHandler(), "<A><B></A>");
+            assertFalse("malformed xml should fail to parse", true);
+        } catch (CosClientException cce) {
+            assertTrue(cce.getMessage().startsWith("Failed to parse XML document"));
+        }
+        String xml = "<ListBucketResult><Name>bucket-1250000000</Name>"
+                + "<IsTruncated>false</IsTruncated><Contents><Key>a</Key></Contents>"
+                + "<Contents><Key>b</Key></Contents></ListBucketResult>";
+        for (int i = 0; i < 3; ++i) {
+            ObjectListing objectListing = new XmlResponsesSaxParser()
+                    .parseListBucketObjectsResponse(
+                            new ByteArrayInputStream(xml.getBytes(StringUtils.UTF8)), false)
+                    .getObjectListing();
+            assertEquals("bucket-1250000000", objectListing.getBucketName());
+            assertEquals(2, objectListing.getObjectSummaries().size());
+            assertEquals("b", objectListing.getObjectSummaries().get(1).getKey());
+        }
+    }
+}
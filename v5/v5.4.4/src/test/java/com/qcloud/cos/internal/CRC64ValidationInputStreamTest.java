@@ -0,0 +1,72 @@
+package com.qcloud.cos.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.utils.CRC64;
+import com.qcloud.cos.utils.IOUtils;
+
+public class CRC64ValidationInputStreamTest {
+
+    private static byte[] randomData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static long crc64(byte[] data) {
+        CRC64 crc64 = new CRC64();
+        crc64.update(data);
+        return crc64.getValue();
+    }
+
+    @Test
+    public void testResetRewindsChecksum() throws Exception {
+        byte[] data = randomData(5000);
+        CRC64CalculatingInputStream in =
+                new CRC64CalculatingInputStream(new ByteArrayInputStream(data));
+        in.read(new byte[1000]);
+        in.mark(5000);
+        in.read(new byte[1500]);
+        in.reset();
+        IOUtils.toByteArray(in);
+        assertEquals(crc64(data), in.getCRC64());
+        // 没有mark时从头开始
+        in = new CRC64CalculatingInputStream(new ByteArrayInputStream(data));
+        in.read(new byte[1000]);
+        in.reset();
+        IOUtils.toByteArray(in);
+        assertEquals(crc64(data), in.getCRC64());
+    }
+
+    @Test
+    public void testValidChecksum() throws Exception {
+        byte[] data = randomData(5000);
+        CRC64ValidationInputStream in =
+                new CRC64ValidationInputStream(new ByteArrayInputStream(data), crc64(data));
+        assertArrayEquals(data, IOUtils.toByteArray(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testCorruptData() throws Exception {
+        byte[] data = randomData(5000);
+        long expected = crc64(data);
+        data[1234] ^= 1;
+        CRC64ValidationInputStream in =
+                new CRC64ValidationInputStream(new ByteArrayInputStream(data), expected);
+        try {
+            IOUtils.toByteArray(in);
+            fail("the corrupt data should be detected");
+        } catch (CosClientException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.qcloud.cos.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.qcloud.cos.utils.IOUtils;
+
+public class FilePartInputStreamTest {
+
+    private static File createFile(byte[] data) throws IOException {
+        File file = File.createTempFile("file-part", ".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] randomData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        byte[] data = randomData(10000);
+        File file = createFile(data);
+        FilePartInputStream in = new FilePartInputStream(file, 1234, 5000);
+        try {
+            assertEquals(5000, in.available());
+            assertArrayEquals(Arrays.copyOfRange(data, 1234, 6234), IOUtils.toByteArray(in));
+            assertEquals(-1, in.read());
+        } finally {
+            in.release();
+        }
+    }
+
+    @Test
+    public void testRangeBeyondEndOfFile() throws Exception {
+        byte[] data = randomData(1000);
+        File file = createFile(data);
+        FilePartInputStream in = new FilePartInputStream(file, 600, 1000);
+        try {
+            assertArrayEquals(Arrays.copyOfRange(data, 600, 1000), IOUtils.toByteArray(in));
+        } finally {
+            in.release();
+        }
+    }
+
+    @Test
+    public void testMarkResetAndSkip() throws Exception {
+        byte[] data = randomData(4096);
+        File file = createFile(data);
+        FilePartInputStream in = new FilePartInputStream(file, 1024, 2048);
+        try {
+            assertTrue(in.markSupported());
+            assertEquals(100, in.skip(100));
+            in.mark(0);
+            assertEquals(data[1124] & 0xFF, in.read());
+            assertEquals(1947, in.skip(5000));
+            assertEquals(-1, in.read());
+            // 连接关闭内容后仍然可以重置后重试
+            in.close();
+            in.reset();
+            assertArrayEquals(Arrays.copyOfRange(data, 1124, 3072), IOUtils.toByteArray(in));
+        } finally {
+            in.release();
+        }
+        try {
+            in.read();
+            fail("a released stream can't be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentPartsShareOneChannel() throws Exception {
+        byte[] data = randomData(3000);
+        File file = createFile(data);
+        int openChannels = SharedFileChannel.openChannelCount();
+        FilePartInputStream first = new FilePartInputStream(file, 0, 1000);
+        FilePartInputStream second = new FilePartInputStream(file, 1000, 1000);
+        assertSame(first.getSharedChannel(), second.getSharedChannel());
+        assertEquals(openChannels + 1, SharedFileChannel.openChannelCount());
+        first.release();
+        first.release();
+        assertTrue(second.getSharedChannel().getChannel().isOpen());
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), IOUtils.toByteArray(second));
+        second.release();
+        assertEquals(openChannels, SharedFileChannel.openChannelCount());
+        assertTrue(!second.getSharedChannel().getChannel().isOpen());
+    }
+
+    @Test
+    public void testReopenClosedChannel() throws Exception {
+        byte[] data = randomData(3000);
+        File file = createFile(data);
+        FilePartInputStream first = new FilePartInputStream(file, 0, 1000);
+        FilePartInputStream second = new FilePartInputStream(file, 1000, 2000);
+        try {
+            // 模拟另一个线程读取时被中断而关闭了共享的通道
+            SharedFileChannel closed = second.getSharedChannel();
+            closed.getChannel().close();
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 3000), IOUtils.toByteArray(second));
+            assertNotSame(closed, second.getSharedChannel());
+            FilePartInputStream third = new FilePartInputStream(file, 0, 10);
+            assertSame(second.getSharedChannel(), third.getSharedChannel());
+            third.release();
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+}
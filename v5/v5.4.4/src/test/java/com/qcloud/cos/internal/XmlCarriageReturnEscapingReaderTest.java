@@ -0,0 +1,90 @@
+package com.qcloud.cos.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.utils.StringUtils;
+
+public class XmlCarriageReturnEscapingReaderTest {
+
+    // 每次最多返回maxChunk个字符, 模拟网络分段到达
+    private static class ChunkedReader extends Reader {
+        private final Reader in;
+        private final int maxChunk;
+
+        ChunkedReader(String content, int maxChunk) {
+            this.in = new StringReader(content);
+            this.maxChunk = maxChunk;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return in.read(cbuf, off, Math.min(len, maxChunk));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static String readAll(Reader reader, int readSize) throws IOException {
+        StringBuilder strBuilder = new StringBuilder();
+        char[] buf = new char[readSize];
+        int readLen;
+        while ((readLen = reader.read(buf, 0, readSize)) != -1) {
+            strBuilder.append(buf, 0, readLen);
+        }
+        reader.close();
+        return strBuilder.toString();
+    }
+
+    @Test
+    public void testSameAsWholeDocumentReplace() throws IOException {
+        Random random = new Random(20180401L);
+        char[] alphabet = {'a', 'b', '<', '>', '&', '\r', '\n', '中', '\uD83D', '\uDE00'};
+        for (int round = 0; round < 200; ++round) {
+            StringBuilder doc = new StringBuilder();
+            int docLen = random.nextInt(20000);
+            for (int i = 0; i < docLen; ++i) {
+                doc.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String expected = doc.toString().replaceAll("\r", "&#013;");
+            int maxChunk = 1 + random.nextInt(10000);
+            int readSize = 1 + random.nextInt(10000);
+            assertEquals(expected, readAll(new XmlCarriageReturnEscapingReader(
+                    new ChunkedReader(doc.toString(), maxChunk)), readSize));
+        }
+    }
+
+    @Test
+    public void testEmptyAndOnlyCarriageReturns() throws IOException {
+        assertEquals("", readAll(new XmlCarriageReturnEscapingReader(new StringReader("")), 8));
+        assertEquals("&#013;&#013;", readAll(
+                new XmlCarriageReturnEscapingReader(new StringReader("\r\r")), 1));
+    }
+
+    @Test
+    public void testParseKeyWithCarriageReturn() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<ListBucketResult><Name>bucket-1250000000</Name><Prefix></Prefix>"
+                + "<Marker></Marker><MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>"
+                + "<Contents><Key>a\rb\r\n中</Key><Size>10</Size></Contents>"
+                + "</ListBucketResult>";
+        ObjectListing objectListing = new XmlResponsesSaxParser()
+                .parseListBucketObjectsResponse(
+                        new ByteArrayInputStream(xml.getBytes(StringUtils.UTF8)), false)
+                .getObjectListing();
+        assertEquals(1, objectListing.getObjectSummaries().size());
+        assertEquals("a\rb\r\n中", objectListing.getObjectSummaries().get(0).getKey());
+        assertEquals(10, objectListing.getObjectSummaries().get(0).getSize());
+    }
+}
@@ -0,0 +1,179 @@
+package com.qcloud.cos.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.utils.IOUtils;
+
+public class MultipartUploadGcmContextTest {
+
+    private static final int PART_SIZE = 1024;
+
+    private final Random random = new Random(2017);
+    private final SecretKey cek = new SecretKeySpec(randomBytes(32), "AES");
+    private final byte[] iv = randomBytes(12);
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private Cipher newGcmCipher(int mode) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, cek, new GCMParameterSpec(128, iv));
+        return cipher;
+    }
+
+    private MultipartUploadGcmContext newContext() throws Exception {
+        CipherLite cipherLite = new CipherLite(newGcmCipher(Cipher.ENCRYPT_MODE),
+                ContentCryptoScheme.AES_GCM, cek, Cipher.ENCRYPT_MODE);
+        ContentCryptoMaterial cekMaterial = new ContentCryptoMaterial(
+                new HashMap<String, String>(), new byte[0], null, cipherLite);
+        return new MultipartUploadGcmContext("bucket", "key", cekMaterial, PART_SIZE);
+    }
+
+    // 与COSCryptoModuleBase上传分块时相同的加密流
+    private static InputStream newPartStream(MultipartUploadGcmContext context, byte[] data,
+            int partNumber, boolean lastPart) {
+        int offset = (partNumber - 1) * PART_SIZE;
+        int length = lastPart ? data.length - offset : PART_SIZE;
+        InputStream in = new ByteArrayInputStream(data, offset, length);
+        CipherLiteInputStream cipherStream =
+                new RenewableCipherLiteInputStream(in, context.newPartCipherLite(partNumber),
+                        512, true, lastPart);
+        return new GHashInputStream(cipherStream, context, partNumber, lastPart);
+    }
+
+    private static void readFully(InputStream in, byte[] b) throws Exception {
+        int offset = 0;
+        while (offset < b.length) {
+            int count = in.read(b, offset, b.length - offset);
+            assertTrue(count > 0);
+            offset += count;
+        }
+    }
+
+    private void testOutOfOrderParts(int length) throws Exception {
+        byte[] data = randomBytes(length);
+        int parts = (length + PART_SIZE - 1) / PART_SIZE;
+        MultipartUploadGcmContext context = newContext();
+        byte[][] encryptedParts = new byte[parts + 1][];
+        // 除最后一个分块外倒序上传
+        for (int partNumber = parts - 1; partNumber >= 1; --partNumber) {
+            encryptedParts[partNumber] =
+                    IOUtils.toByteArray(newPartStream(context, data, partNumber, false));
+            assertEquals(PART_SIZE, encryptedParts[partNumber].length);
+        }
+        encryptedParts[parts] = IOUtils.toByteArray(newPartStream(context, data, parts, true));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int partNumber = 1; partNumber <= parts; ++partNumber) {
+            out.write(encryptedParts[partNumber]);
+        }
+        byte[] ciphertext = out.toByteArray();
+        assertArrayEquals(newGcmCipher(Cipher.ENCRYPT_MODE).doFinal(data), ciphertext);
+        assertArrayEquals(data, newGcmCipher(Cipher.DECRYPT_MODE).doFinal(ciphertext));
+    }
+
+    @Test
+    public void testPartsMatchWholeObjectEncryption() throws Exception {
+        testOutOfOrderParts(5 * PART_SIZE + 37);
+    }
+
+    @Test
+    public void testLastPartOnBlockBoundary() throws Exception {
+        testOutOfOrderParts(3 * PART_SIZE + 64);
+    }
+
+    @Test
+    public void testFullLastPart() throws Exception {
+        testOutOfOrderParts(4 * PART_SIZE);
+    }
+
+    @Test
+    public void testResetRewindsHash() throws Exception {
+        byte[] data = randomBytes(2 * PART_SIZE + 100);
+        MultipartUploadGcmContext context = newContext();
+        InputStream firstPart = newPartStream(context, data, 1, false);
+        firstPart.mark(PART_SIZE);
+        byte[] head = new byte[300];
+        readFully(firstPart, head);
+        firstPart.reset();
+        byte[] retried = IOUtils.toByteArray(firstPart);
+        assertArrayEquals(head, Arrays.copyOf(retried, head.length));
+
+        byte[] secondPart = IOUtils.toByteArray(newPartStream(context, data, 2, false));
+        InputStream lastPart = newPartStream(context, data, 3, true);
+        lastPart.mark(PART_SIZE);
+        readFully(lastPart, new byte[50]);
+        lastPart.reset();
+        byte[] lastCiphertext = IOUtils.toByteArray(lastPart);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(retried);
+        out.write(secondPart);
+        out.write(lastCiphertext);
+        byte[] ciphertext = out.toByteArray();
+        assertArrayEquals(data, newGcmCipher(Cipher.DECRYPT_MODE).doFinal(ciphertext));
+    }
+
+    @Test
+    public void testLastPartBeforeOtherParts() throws Exception {
+        byte[] data = randomBytes(3 * PART_SIZE + 1);
+        MultipartUploadGcmContext context = newContext();
+        IOUtils.toByteArray(newPartStream(context, data, 1, false));
+        IOUtils.toByteArray(newPartStream(context, data, 3, false));
+        try {
+            newPartStream(context, data, 4, true);
+            fail("the last part must wait for part 2");
+        } catch (CosClientException e) {
+            assertEquals("The last part of an encrypted multipart upload must be uploaded after "
+                    + "all the other parts, part 2 has not been uploaded", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWrongPartSize() throws Exception {
+        MultipartUploadGcmContext context = newContext();
+        InputStream in = new GHashInputStream(
+                new ByteArrayInputStream(new byte[PART_SIZE - 16]), context, 1, false);
+        try {
+            IOUtils.toByteArray(in);
+            fail("a part but the last must be of the part size");
+        } catch (CosClientException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTableMultiplicationMatchesBitwise() throws Exception {
+        GHash ghash = new GHash(randomBytes(16));
+        long[] h = ghash.powerOfH(1);
+        for (int i = 0; i < 100; ++i) {
+            long[] y = {random.nextLong(), random.nextLong()};
+            long[] expected = GHash.multiply(y, h);
+            ghash.multiplyH(y);
+            assertArrayEquals(expected, y);
+        }
+        assertArrayEquals(GHash.multiply(ghash.powerOfH(3), ghash.powerOfH(4)),
+                ghash.powerOfH(7));
+    }
+}
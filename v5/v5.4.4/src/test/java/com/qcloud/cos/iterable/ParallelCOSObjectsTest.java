@@ -0,0 +1,206 @@
+package com.qcloud.cos.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+
+public class ParallelCOSObjectsTest {
+
+    // 模拟的COS, 按prefix/marker/delimiter/maxKeys列出内存中的key, 第failAtRequest个请求返回错误
+    private static class FakeCOS implements InvocationHandler {
+        private final TreeSet<String> keys;
+        private final int failAtRequest;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        FakeCOS(TreeSet<String> keys, int failAtRequest) {
+            this.keys = keys;
+            this.failAtRequest = failAtRequest;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            ListObjectsRequest request;
+            if (method.getName().equals("listObjects")) {
+                request = (ListObjectsRequest) args[0];
+            } else if (method.getName().equals("listNextBatchOfObjects")) {
+                ObjectListing previous = (ObjectListing) args[0];
+                request = new ListObjectsRequest(previous.getBucketName(), previous.getPrefix(),
+                        previous.getNextMarker(), previous.getDelimiter(),
+                        previous.getMaxKeys());
+            } else {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            int current = inFlight.incrementAndGet();
+            try {
+                int max = maxInFlight.get();
+                while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                    max = maxInFlight.get();
+                }
+                if (requests.incrementAndGet() == failAtRequest) {
+                    CosServiceException cse = new CosServiceException("injected failure");
+                    cse.setStatusCode(500);
+                    throw cse;
+                }
+                Thread.sleep(1);
+                return list(request);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private ObjectListing list(ListObjectsRequest request) {
+            String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+            String marker = request.getMarker();
+            String delimiter = request.getDelimiter();
+            int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+            ObjectListing listing = new ObjectListing();
+            listing.setBucketName(request.getBucketName());
+            listing.setPrefix(prefix);
+            listing.setDelimiter(delimiter);
+            listing.setMaxKeys(maxKeys);
+            int count = 0;
+            String last = null;
+            for (String key : marker == null ? keys.tailSet(prefix, true)
+                    : keys.tailSet(marker, false)) {
+                if (!key.startsWith(prefix)) {
+                    if (key.compareTo(prefix) > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+                String entry = index < 0 ? key : key.substring(0, index + delimiter.length());
+                if (entry.equals(last) || entry.equals(marker)) {
+                    continue;
+                }
+                if (count == maxKeys) {
+                    listing.setTruncated(true);
+                    break;
+                }
+                if (index < 0) {
+                    COSObjectSummary summary = new COSObjectSummary();
+                    summary.setKey(key);
+                    listing.getObjectSummaries().add(summary);
+                } else {
+                    listing.getCommonPrefixes().add(entry);
+                }
+                last = entry;
+                ++count;
+            }
+            listing.setNextMarker(last);
+            return listing;
+        }
+    }
+
+    private static TreeSet<String> buildKeys() {
+        TreeSet<String> keys = new TreeSet<String>();
+        for (int i = 0; i < 10; ++i) {
+            for (int j = 0; j < 5; ++j) {
+                for (int k = 0; k < 7; ++k) {
+                    keys.add("dir" + i + "/sub" + j + "/file" + k);
+                }
+                keys.add("dir" + i + "/file" + j);
+            }
+            keys.add("dir" + i + "/");
+            keys.add("root" + i);
+        }
+        keys.add("dir3");
+        keys.add("empty/");
+        keys.add("a/b/c/d/e/f");
+        return keys;
+    }
+
+    private static List<String> keysOf(Iterable<COSObjectSummary> objects) {
+        List<String> keys = new ArrayList<String>();
+        for (COSObjectSummary summary : objects) {
+            keys.add(summary.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testUnorderedListsAllKeysOnce() {
+        TreeSet<String> keys = buildKeys();
+        FakeCOS fakeCOS = new FakeCOS(keys, -1);
+        List<String> listed = keysOf(ParallelCOSObjects.inBucket(fakeCOS.proxy(), "bucket")
+                .withBatchSize(3).withConcurrency(4));
+        assertEquals(keys.size(), listed.size());
+        assertEquals(keys, new TreeSet<String>(listed));
+        assertTrue(fakeCOS.maxInFlight.get() <= 4);
+        assertTrue(fakeCOS.maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void testOrderedWithSplitPoints() {
+        TreeSet<String> keys = buildKeys();
+        FakeCOS fakeCOS = new FakeCOS(keys, -1);
+        List<String> listed = keysOf(ParallelCOSObjects.inBucket(fakeCOS.proxy(), "bucket")
+                .withBatchSize(4).withConcurrency(3).withOrdered(true)
+                .withSplitPoints(Arrays.asList("dir5/sub2/file3", "dir2/sub1", "root", "dir8/")));
+        assertEquals(new ArrayList<String>(keys), listed);
+    }
+
+    @Test
+    public void testFlatListingWithSplitPoints() {
+        TreeSet<String> keys = buildKeys();
+        FakeCOS fakeCOS = new FakeCOS(keys, -1);
+        List<String> listed = keysOf(ParallelCOSObjects.withPrefix(fakeCOS.proxy(), "bucket", "dir")
+                .withDelimiter(null).withBatchSize(10)
+                .withSplitPoints(Arrays.asList("dir1", "dir4/sub3", "dir7/file2")));
+        Collections.sort(listed);
+        assertEquals(new ArrayList<String>(keys.subSet("dir", "dis")), listed);
+        assertEquals(listed.size(), new HashSet<String>(listed).size());
+    }
+
+    @Test
+    public void testPrefixOrdered() {
+        TreeSet<String> keys = buildKeys();
+        FakeCOS fakeCOS = new FakeCOS(keys, -1);
+        List<String> listed = keysOf(ParallelCOSObjects.withPrefix(fakeCOS.proxy(), "bucket",
+                "dir4/").withBatchSize(2).withOrdered(true)
+                .withSplitPoints(Arrays.asList("dir1/sub0/", "dir4/sub1/", "dir9/")));
+        assertEquals(new ArrayList<String>(keys.subSet("dir4/", "dir40")), listed);
+    }
+
+    @Test
+    public void testFailureIsThrownToCaller() {
+        FakeCOS fakeCOS = new FakeCOS(buildKeys(), 5);
+        try {
+            keysOf(ParallelCOSObjects.inBucket(fakeCOS.proxy(), "bucket").withBatchSize(3));
+            fail("the injected failure should be thrown");
+        } catch (CosServiceException cse) {
+            assertEquals(500, cse.getStatusCode());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency() {
+        ParallelCOSObjects.inBucket(null, "bucket").withConcurrency(0);
+    }
+}
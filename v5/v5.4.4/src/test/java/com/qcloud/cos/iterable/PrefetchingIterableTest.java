@@ -0,0 +1,153 @@
+package com.qcloud.cos.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.ListMultipartUploadsRequest;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.MultipartUpload;
+import com.qcloud.cos.model.MultipartUploadListing;
+import com.qcloud.cos.model.ObjectListing;
+
+public class PrefetchingIterableTest {
+
+    // 模拟的COS, 桶内共有keyNum个key, 每页pageSize个, 第failAtPage页返回错误
+    private static class FakeCOS implements InvocationHandler {
+        private final int keyNum;
+        private final int pageSize;
+        private final int failAtPage;
+        private final AtomicInteger requestedPages = new AtomicInteger();
+
+        FakeCOS(int keyNum, int pageSize, int failAtPage) {
+            this.keyNum = keyNum;
+            this.pageSize = pageSize;
+            this.failAtPage = failAtPage;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        private static String keyOf(int index) {
+            return String.format("key-%08d", index);
+        }
+
+        private int firstIndexAfter(String marker) {
+            return marker == null ? 0 : Integer.parseInt(marker.substring(4)) + 1;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            int page = requestedPages.incrementAndGet();
+            if (page == failAtPage) {
+                CosServiceException cse = new CosServiceException("injected failure");
+                cse.setStatusCode(500);
+                throw cse;
+            }
+            if (method.getName().equals("listObjects")) {
+                return listObjects(((ListObjectsRequest) args[0]).getMarker());
+            } else if (method.getName().equals("listNextBatchOfObjects")) {
+                return listObjects(((ObjectListing) args[0]).getNextMarker());
+            } else if (method.getName().equals("listMultipartUploads")) {
+                return listUploads(((ListMultipartUploadsRequest) args[0]).getKeyMarker());
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        private ObjectListing listObjects(String marker) {
+            ObjectListing listing = new ObjectListing();
+            int start = firstIndexAfter(marker);
+            int end = Math.min(keyNum, start + pageSize);
+            for (int i = start; i < end; ++i) {
+                COSObjectSummary summary = new COSObjectSummary();
+                summary.setKey(keyOf(i));
+                listing.getObjectSummaries().add(summary);
+            }
+            listing.setTruncated(end < keyNum);
+            listing.setNextMarker(keyOf(end - 1));
+            return listing;
+        }
+
+        private MultipartUploadListing listUploads(String keyMarker) {
+            MultipartUploadListing listing = new MultipartUploadListing();
+            int start = firstIndexAfter(keyMarker);
+            int end = Math.min(keyNum, start + pageSize);
+            for (int i = start; i < end; ++i) {
+                listing.getMultipartUploads().add(new MultipartUpload());
+                listing.getMultipartUploads().get(i - start).setKey(keyOf(i));
+            }
+            listing.setTruncated(end < keyNum);
+            listing.setNextKeyMarker(keyOf(end - 1));
+            return listing;
+        }
+    }
+
+    @Test
+    public void testIterateAllPages() {
+        FakeCOS fakeCOS = new FakeCOS(1005, 100, -1);
+        int index = 0;
+        for (COSObjectSummary summary : COSObjects.inBucket(fakeCOS.proxy(), "bucket")) {
+            assertEquals(FakeCOS.keyOf(index++), summary.getKey());
+        }
+        assertEquals(1005, index);
+        assertEquals(11, fakeCOS.requestedPages.get());
+    }
+
+    @Test
+    public void testEmptyListing() {
+        FakeCOS fakeCOS = new FakeCOS(0, 100, -1);
+        assertFalse(COSObjects.inBucket(fakeCOS.proxy(), "bucket").iterator().hasNext());
+    }
+
+    @Test
+    public void testPrefetchIsBounded() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10000, 10, -1);
+        Iterator<COSObjectSummary> iterator = COSObjects.inBucket(fakeCOS.proxy(), "bucket")
+                .withPrefetchPages(3).iterator();
+        assertTrue(iterator.hasNext());
+        // 消费者停止消费后, 后台最多预取3页
+        Thread.sleep(200);
+        assertEquals(1 + 3, fakeCOS.requestedPages.get());
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        FakeCOS fakeCOS = new FakeCOS(1000, 10, 5);
+        int count = 0;
+        try {
+            for (@SuppressWarnings("unused")
+            COSObjectSummary summary : COSObjects.inBucket(fakeCOS.proxy(), "bucket")) {
+                ++count;
+            }
+            fail("the failure of the 5th page should be thrown");
+        } catch (CosServiceException cse) {
+            assertEquals(500, cse.getStatusCode());
+            assertEquals(40, count);
+        }
+    }
+
+    @Test
+    public void testIterateMultipartUploads() {
+        FakeCOS fakeCOS = new FakeCOS(250, 100, -1);
+        int index = 0;
+        for (MultipartUpload upload : COSMultipartUploads.inBucket(fakeCOS.proxy(), "bucket")
+                .withPrefetchPages(1)) {
+            assertEquals(FakeCOS.keyOf(index++), upload.getKey());
+        }
+        assertEquals(250, index);
+    }
+}
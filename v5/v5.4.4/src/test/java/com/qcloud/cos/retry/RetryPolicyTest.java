@@ -0,0 +1,79 @@
+package com.qcloud.cos.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.internal.CosServiceRequest;
+
+public class RetryPolicyTest {
+
+    private static CosServiceException buildServiceException(int statusCode, String errorCode) {
+        CosServiceException cse = new CosServiceException("test error");
+        cse.setStatusCode(statusCode);
+        cse.setErrorCode(errorCode);
+        return cse;
+    }
+
+    @Test
+    public void testDefaultRetryCondition() {
+        RetryPolicy.RetryCondition condition = PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION;
+        CosServiceRequest request = new CosServiceRequest();
+        assertTrue(condition.shouldRetry(request,
+                new CosClientException("io error", new IOException("reset")), 0));
+        assertTrue(condition.shouldRetry(request, buildServiceException(500, "InternalError"), 0));
+        assertTrue(condition.shouldRetry(request, buildServiceException(503, "SlowDown"), 0));
+        assertTrue(condition.shouldRetry(request, buildServiceException(429, null), 0));
+        assertFalse(condition.shouldRetry(request, buildServiceException(404, "NoSuchKey"), 0));
+        assertFalse(condition.shouldRetry(request, buildServiceException(403, "AccessDenied"), 0));
+        assertFalse(condition.shouldRetry(request, new CosClientException("bad argument"), 0));
+    }
+
+    @Test
+    public void testFullJitterBackoffIsCapped() {
+        FullJitterBackoffStrategy backoff = new FullJitterBackoffStrategy(100, 1000);
+        CosServiceRequest request = new CosServiceRequest();
+        CosClientException exception = new CosClientException("io error", new IOException());
+        for (int retries = 0; retries < 64; ++retries) {
+            long delay = backoff.delayBeforeNextRetry(request, exception, retries);
+            assertTrue(delay >= 0);
+            assertTrue(delay <= Math.min(1000, 100L << Math.min(retries, 30)));
+        }
+    }
+
+    @Test
+    public void testRetryBudget() {
+        RetryBudget retryBudget = new RetryBudget(2 * RetryBudget.RETRY_COST);
+        assertTrue(retryBudget.acquireRetry());
+        assertTrue(retryBudget.acquireRetry());
+        assertFalse(retryBudget.acquireRetry());
+        retryBudget.onSuccess(1);
+        assertEquals(RetryBudget.RETRY_COST, retryBudget.getAvailableCapacity());
+        assertTrue(retryBudget.acquireRetry());
+        retryBudget.onSuccess(0);
+        assertEquals(RetryBudget.NO_RETRY_INCREMENT, retryBudget.getAvailableCapacity());
+        for (int i = 0; i < 100; ++i) {
+            retryBudget.onSuccess(0);
+        }
+        assertEquals(retryBudget.getCapacity(), retryBudget.getAvailableCapacity());
+    }
+
+    @Test
+    public void testUnlimitedRetryBudget() {
+        RetryBudget retryBudget = new RetryBudget(0);
+        for (int i = 0; i < 1000; ++i) {
+            assertTrue(retryBudget.acquireRetry());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxErrorRetry() {
+        new RetryPolicy(null, null, -1);
+    }
+}
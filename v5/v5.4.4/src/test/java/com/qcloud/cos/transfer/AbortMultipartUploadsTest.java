@@ -0,0 +1,281 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.internal.RequestClientOptions.Marker;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.model.ListMultipartUploadsRequest;
+import com.qcloud.cos.model.ListPartsRequest;
+import com.qcloud.cos.model.MultipartUpload;
+import com.qcloud.cos.model.MultipartUploadListing;
+import com.qcloud.cos.model.PartListing;
+import com.qcloud.cos.model.PartSummary;
+import com.qcloud.cos.region.Region;
+
+public class AbortMultipartUploadsTest {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int PARTS_PAGE_SIZE = 2;
+    private static final long PART_SIZE = 1024;
+    private static final long NOW = 1500000000000L;
+
+    // 模拟的COS, 第i个分块上传有i % 3 + 1个分块, 偶数个的发起时间早于NOW.
+    // key中包含"locked"的终止失败, 包含"gone"的已被其他进程终止
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final TreeMap<String, MultipartUpload> uploads =
+                new TreeMap<String, MultipartUpload>();
+        private final Map<String, Integer> partCounts = new TreeMap<String, Integer>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        // 没有TransferManager的user agent的列举请求数
+        private final AtomicInteger listsWithoutUserAgent = new AtomicInteger();
+
+        FakeCOS(int uploadNum) {
+            for (int i = 0; i < uploadNum; ++i) {
+                String key;
+                if (i % 101 == 0) {
+                    key = String.format("tmp/locked-%06d", i);
+                } else if (i % 103 == 0) {
+                    key = String.format("tmp/gone-%06d", i);
+                } else {
+                    key = String.format(i % 5 == 0 ? "data/%06d" : "tmp/%06d", i);
+                }
+                MultipartUpload upload = new MultipartUpload();
+                upload.setKey(key);
+                upload.setUploadId("upload-" + i);
+                upload.setInitiated(new Date(NOW + (i % 2 == 0 ? -1000 : 1000)));
+                uploads.put(key, upload);
+                partCounts.put(upload.getUploadId(), i % 3 + 1);
+            }
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getClientConfig")) {
+                return clientConfig;
+            } else if (method.getName().equals("listMultipartUploads")) {
+                return list((ListMultipartUploadsRequest) args[0]);
+            } else if (method.getName().equals("listParts")) {
+                return listParts((ListPartsRequest) args[0]);
+            } else if (method.getName().equals("abortMultipartUpload")) {
+                int current = inFlight.incrementAndGet();
+                try {
+                    int max = maxInFlight.get();
+                    while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                        max = maxInFlight.get();
+                    }
+                    Thread.sleep(1);
+                    abort((AbortMultipartUploadRequest) args[0]);
+                    return null;
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        private synchronized MultipartUploadListing list(ListMultipartUploadsRequest request) {
+            String userAgent = request.getRequestClientOptions().getClientMarker(Marker.USER_AGENT);
+            if (userAgent == null || !userAgent.contains(TransferManager.class.getName())) {
+                listsWithoutUserAgent.incrementAndGet();
+            }
+            String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+            MultipartUploadListing listing = new MultipartUploadListing();
+            List<MultipartUpload> page = new ArrayList<MultipartUpload>();
+            String keyMarker = request.getKeyMarker();
+            for (MultipartUpload upload : keyMarker == null ? uploads.values()
+                    : uploads.tailMap(keyMarker, false).values()) {
+                if (!upload.getKey().startsWith(prefix)) {
+                    continue;
+                }
+                if (page.size() == PAGE_SIZE) {
+                    listing.setTruncated(true);
+                    break;
+                }
+                page.add(upload);
+                listing.setNextKeyMarker(upload.getKey());
+                listing.setNextUploadIdMarker(upload.getUploadId());
+            }
+            listing.setMultipartUploads(page);
+            return listing;
+        }
+
+        private PartListing listParts(ListPartsRequest request) {
+            int partCount = partCounts.get(request.getUploadId());
+            int first = request.getPartNumberMarker() == null ? 1
+                    : request.getPartNumberMarker() + 1;
+            PartListing listing = new PartListing();
+            List<PartSummary> parts = new ArrayList<PartSummary>();
+            for (int partNumber = first; partNumber <= partCount; ++partNumber) {
+                if (parts.size() == PARTS_PAGE_SIZE) {
+                    listing.setTruncated(true);
+                    break;
+                }
+                PartSummary part = new PartSummary();
+                part.setPartNumber(partNumber);
+                part.setSize(PART_SIZE);
+                parts.add(part);
+                listing.setNextPartNumberMarker(partNumber);
+            }
+            listing.setParts(parts);
+            return listing;
+        }
+
+        private void abort(AbortMultipartUploadRequest request) {
+            if (request.getKey().contains("locked")) {
+                CosServiceException cse = new CosServiceException("injected failure");
+                cse.setStatusCode(403);
+                cse.setErrorCode("AccessDenied");
+                throw cse;
+            }
+            if (request.getKey().contains("gone")) {
+                CosServiceException cse = new CosServiceException("injected failure");
+                cse.setStatusCode(404);
+                cse.setErrorCode("NoSuchUpload");
+                throw cse;
+            }
+            synchronized (this) {
+                uploads.remove(request.getKey());
+            }
+        }
+
+        synchronized List<MultipartUpload> remaining() {
+            return new ArrayList<MultipartUpload>(uploads.values());
+        }
+    }
+
+    // 计算满足条件的分块上传的期望值, 返回{上传数, 分块数, 失败数}
+    private static long[] expected(int uploadNum, String prefix) {
+        long[] expected = new long[3];
+        for (int i = 0; i < uploadNum; i += 2) {
+            String kind = i % 101 == 0 ? "locked" : i % 103 == 0 ? "gone" : "";
+            boolean inData = kind.isEmpty() && i % 5 == 0;
+            if (prefix != null && (prefix.equals("data/") != inData)) {
+                continue;
+            }
+            if (kind.equals("locked")) {
+                ++expected[2];
+            } else if (kind.isEmpty()) {
+                ++expected[0];
+                expected[1] += i % 3 + 1;
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    public void testAbortStaleUploads() {
+        int uploadNum = 2345;
+        FakeCOS fakeCOS = new FakeCOS(uploadNum);
+        ExecutorService threadPool = Executors.newFixedThreadPool(8);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            AbortMultipartUploadsResult result = transferManager.abortMultipartUploads("bucket",
+                    new Date(NOW), new AbortMultipartUploadsOptions().withConcurrency(4));
+            long[] expected = expected(uploadNum, null);
+            assertEquals(expected[0], result.getAbortedUploads());
+            assertEquals(expected[1], result.getReclaimedParts());
+            assertEquals(expected[1] * PART_SIZE, result.getReclaimedBytes());
+            assertEquals(expected[2], result.getFailedUploads());
+            assertEquals(expected[2], result.getFailures().size());
+            assertTrue(result.getFailures().get(0).getKey().contains("locked"));
+            assertEquals("AccessDenied",
+                    ((CosServiceException) result.getErrors().get(0)).getErrorCode());
+            assertTrue(fakeCOS.maxInFlight.get() <= 4);
+            assertEquals(0, fakeCOS.listsWithoutUserAgent.get());
+            // 包括最后一页在内, 所有过期且可终止的上传都已终止
+            for (MultipartUpload upload : fakeCOS.remaining()) {
+                assertTrue(upload.getKey(), upload.getInitiated().getTime() > NOW
+                        || upload.getKey().contains("locked")
+                        || upload.getKey().contains("gone"));
+            }
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testUploadsShareTheTransferLimit() {
+        int uploadNum = 500;
+        FakeCOS fakeCOS = new FakeCOS(uploadNum);
+        ExecutorService threadPool = Executors.newFixedThreadPool(8);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            // 终止分块上传和传输一样受TransferManager的并发上限约束
+            transferManager.getConfiguration().setMaxConcurrentPartRequests(2);
+            AbortMultipartUploadsResult result = transferManager.abortMultipartUploads("bucket",
+                    new Date(NOW), new AbortMultipartUploadsOptions().withConcurrency(8));
+            assertEquals(expected(uploadNum, null)[0], result.getAbortedUploads());
+            assertTrue(fakeCOS.maxInFlight.get() <= 2);
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDryRunWithPrefix() {
+        int uploadNum = 1000;
+        FakeCOS fakeCOS = new FakeCOS(uploadNum);
+        ExecutorService threadPool = Executors.newFixedThreadPool(4);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            AbortMultipartUploadsResult result = transferManager.abortMultipartUploads("bucket",
+                    new Date(NOW),
+                    new AbortMultipartUploadsOptions().withPrefix("data/").withDryRun(true));
+            long[] expected = expected(uploadNum, "data/");
+            assertTrue(result.isDryRun());
+            assertEquals(expected[0], result.getAbortedUploads());
+            assertEquals(expected[1] * PART_SIZE, result.getReclaimedBytes());
+            assertEquals(0, result.getFailedUploads());
+            assertEquals(uploadNum, fakeCOS.remaining().size());
+            assertEquals(0, fakeCOS.maxInFlight.get());
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLegacyAbortThrowsFirstFailure() {
+        int uploadNum = 250;
+        FakeCOS fakeCOS = new FakeCOS(uploadNum);
+        ExecutorService threadPool = Executors.newFixedThreadPool(4);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            try {
+                transferManager.abortMultipartUploads("bucket", new Date(NOW));
+                fail("the locked uploads should not be aborted");
+            } catch (CosServiceException cse) {
+                assertEquals("AccessDenied", cse.getErrorCode());
+            }
+            long[] expected = expected(uploadNum, null);
+            assertEquals(uploadNum - expected[0], fakeCOS.remaining().size());
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+}
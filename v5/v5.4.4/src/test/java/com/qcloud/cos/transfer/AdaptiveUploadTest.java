@@ -0,0 +1,340 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.InitiateMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
+import com.qcloud.cos.region.Region;
+
+public class AdaptiveUploadTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final int PART_SIZE = 64 * 1024;
+
+    private static AdaptiveUploadController newController(int maxPartsInFlight) {
+        return new AdaptiveUploadController(8 * MB, 4 * MB, 256 * MB, maxPartsInFlight,
+                new TransferProgress());
+    }
+
+    // 以给定的耗时完成一个分块
+    private static void succeed(AdaptiveUploadController controller, long bytes, double seconds) {
+        assertTrue(controller.tryStartPart());
+        controller.partSucceeded(controller.partStarted(), bytes, (long) (seconds * 1e9));
+        controller.partDone();
+    }
+
+    @Test
+    public void testAdditiveIncrease() {
+        AdaptiveUploadController controller = newController(4);
+        assertEquals(AdaptiveUploadController.INITIAL_PARTS_IN_FLIGHT,
+                controller.getMaxPartsInFlight());
+        // 每轮无拥塞地完成与并发数相同的分块后增加一个
+        succeed(controller, 8 * MB, 1);
+        assertEquals(2, controller.getMaxPartsInFlight());
+        succeed(controller, 8 * MB, 1);
+        assertEquals(3, controller.getMaxPartsInFlight());
+        for (int i = 0; i < 3; ++i) {
+            succeed(controller, 8 * MB, 1);
+        }
+        assertEquals(4, controller.getMaxPartsInFlight());
+        for (int i = 0; i < 10; ++i) {
+            succeed(controller, 8 * MB, 1);
+        }
+        assertEquals(4, controller.getMaxPartsInFlight());
+    }
+
+    @Test
+    public void testLimitsPartsInFlight() {
+        AdaptiveUploadController controller = newController(4);
+        assertTrue(controller.tryStartPart());
+        assertTrue(controller.tryStartPart());
+        assertTrue(!controller.tryStartPart());
+        controller.partDone();
+        assertTrue(controller.tryStartPart());
+        assertTrue(!controller.tryStartPart());
+    }
+
+    @Test
+    public void testMultiplicativeDecreaseOnFailure() {
+        AdaptiveUploadController controller = newController(16);
+        for (int i = 0; i < 30; ++i) {
+            succeed(controller, 8 * MB, 1);
+        }
+        assertEquals(8, controller.getMaxPartsInFlight());
+        // 在减少之前开始的分块失败不会再次减少
+        long first = controller.partStarted();
+        long second = controller.partStarted();
+        controller.partFailed(first);
+        assertEquals(4, controller.getMaxPartsInFlight());
+        assertEquals(4 * MB, controller.getPartSize());
+        controller.partFailed(second);
+        assertEquals(4, controller.getMaxPartsInFlight());
+        controller.partFailed(controller.partStarted());
+        assertEquals(2, controller.getMaxPartsInFlight());
+        controller.partFailed(controller.partStarted());
+        controller.partFailed(controller.partStarted());
+        assertEquals(1, controller.getMaxPartsInFlight());
+    }
+
+    @Test
+    public void testDecreaseOnLatency() {
+        AdaptiveUploadController controller = newController(16);
+        for (int i = 0; i < 5; ++i) {
+            succeed(controller, 8 * MB, 1);
+        }
+        assertEquals(4, controller.getMaxPartsInFlight());
+        succeed(controller, 8 * MB, 1.5);
+        assertEquals(4, controller.getMaxPartsInFlight());
+        // 每字节耗时超过最快的分块的两倍
+        succeed(controller, 8 * MB, 2.5);
+        assertEquals(2, controller.getMaxPartsInFlight());
+    }
+
+    @Test
+    public void testPartSizeFollowsThroughput() {
+        AdaptiveUploadController controller = newController(4);
+        // 每个连接16MB/s, 目标4秒一个分块, 每次最多翻倍
+        succeed(controller, 8 * MB, 0.5);
+        assertEquals(16 * MB, controller.nextPartSize(1024 * MB, 1000));
+        // 没有新的样本时不再调整
+        assertEquals(16 * MB, controller.nextPartSize(1024 * MB, 1000));
+        succeed(controller, 16 * MB, 1);
+        assertEquals(32 * MB, controller.nextPartSize(1024 * MB, 1000));
+        for (int i = 0; i < 10; ++i) {
+            succeed(controller, 32 * MB, 2);
+            controller.nextPartSize(1024 * MB, 1000);
+        }
+        assertEquals(64 * MB, controller.getPartSize());
+
+        // 链路变慢后分块变小, 但不小于最小分块大小
+        for (int i = 0; i < 20; ++i) {
+            succeed(controller, controller.getPartSize(), 40);
+            controller.nextPartSize(1024 * MB, 1000);
+        }
+        assertEquals(4 * MB, controller.getPartSize());
+    }
+
+    @Test
+    public void testPartSizeWithinLimits() {
+        AdaptiveUploadController controller = newController(4);
+        for (int i = 0; i < 20; ++i) {
+            succeed(controller, controller.getPartSize(), 0.01);
+            controller.nextPartSize(Long.MAX_VALUE / 2, 10000);
+        }
+        assertEquals(256 * MB, controller.getPartSize());
+        // 剩余的数据必须能放入剩余的分块中
+        assertEquals(300 * MB, controller.nextPartSize(3000 * MB, 10));
+        // 最后一个分块
+        assertEquals(MB, controller.nextPartSize(MB, 10));
+    }
+
+    @Test
+    public void testProgressExposesChosenValues() {
+        TransferProgress progress = new TransferProgress();
+        assertEquals(-1, progress.getPartSize());
+        assertEquals(0, progress.getMaxPartsInFlight());
+        AdaptiveUploadController controller =
+                new AdaptiveUploadController(8 * MB, 4 * MB, 256 * MB, 4, progress);
+        assertEquals(8 * MB, progress.getPartSize());
+        assertEquals(2, progress.getMaxPartsInFlight());
+        succeed(controller, 8 * MB, 0.5);
+        succeed(controller, 8 * MB, 0.5);
+        controller.nextPartSize(1024 * MB, 1000);
+        assertEquals(16 * MB, progress.getPartSize());
+        assertEquals(3, progress.getMaxPartsInFlight());
+    }
+
+    // 模拟的COS, 记录上传的分块和同时上传的最大分块数, 第failPart个分块上传失败
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final TreeMap<Integer, byte[]> parts = new TreeMap<Integer, byte[]>();
+        private final int failPart;
+        // 每个分块成功前的重试次数
+        private volatile int retriesAttempted = 0;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger aborts = new AtomicInteger();
+        private byte[] completedData;
+
+        FakeCOS(int failPart) {
+            this.failPart = failPart;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getClientConfig")) {
+                return clientConfig;
+            } else if (name.equals("initiateMultipartUpload")) {
+                InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+                result.setUploadId("upload-id");
+                return result;
+            } else if (name.equals("uploadPart")) {
+                UploadPartRequest request = (UploadPartRequest) args[0];
+                int count = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), count));
+                }
+                try {
+                    Thread.sleep(5);
+                    if (request.getPartNumber() == failPart) {
+                        throw new CosServiceException("part failed");
+                    }
+                    byte[] data = new byte[(int) request.getPartSize()];
+                    RandomAccessFile file = new RandomAccessFile(request.getFile(), "r");
+                    try {
+                        file.seek(request.getFileOffset());
+                        file.readFully(data);
+                    } finally {
+                        file.close();
+                    }
+                    synchronized (parts) {
+                        parts.put(request.getPartNumber(), data);
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag-" + request.getPartNumber());
+                result.setRetriesAttempted(retriesAttempted);
+                return result;
+            } else if (name.equals("completeMultipartUpload")) {
+                CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int partNumber = 1;
+                for (PartETag partETag : request.getPartETags()) {
+                    assertEquals(partNumber++, partETag.getPartNumber());
+                    synchronized (parts) {
+                        out.write(parts.get(partETag.getPartNumber()));
+                    }
+                }
+                completedData = out.toByteArray();
+                return new CompleteMultipartUploadResult();
+            } else if (name.equals("abortMultipartUpload")) {
+                aborts.incrementAndGet();
+                return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    private static File createFile(byte[] data) throws Exception {
+        File file = File.createTempFile("adaptive-upload", ".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS, int threads) {
+        TransferManager transferManager = new TransferManager(fakeCOS.proxy(),
+                new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>()));
+        TransferManagerConfiguration configuration = transferManager.getConfiguration();
+        configuration.setMinimumUploadPartSize(PART_SIZE);
+        configuration.setMultipartUploadThreshold(PART_SIZE);
+        configuration.setMaximumUploadPartSize(4 * PART_SIZE);
+        configuration.setMaxConcurrentPartsPerTransfer(3);
+        configuration.setAdaptiveUploadEnabled(true);
+        return transferManager;
+    }
+
+    private static void testAdaptiveUpload(int threads) throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(0);
+        TransferManager transferManager = newTransferManager(fakeCOS, threads);
+        byte[] data = new byte[40 * PART_SIZE + 12345];
+        new Random(data.length).nextBytes(data);
+        Upload upload = transferManager.upload("bucket", "key", createFile(data));
+        upload.waitForUploadResult();
+        assertArrayEquals(data, fakeCOS.completedData);
+        assertTrue(fakeCOS.maxInFlight.get() <= 3);
+        // 分块随吞吐量变大
+        assertEquals(PART_SIZE, fakeCOS.parts.firstEntry().getValue().length);
+        assertEquals(4 * PART_SIZE, upload.getProgress().getPartSize());
+        assertTrue(fakeCOS.parts.size() < 40);
+        assertTrue(upload.getProgress().getMaxPartsInFlight() >= 1);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testAdaptiveUpload() throws Exception {
+        testAdaptiveUpload(8);
+    }
+
+    @Test
+    public void testSingleThreadPool() throws Exception {
+        // 提交分块的线程自己上传分块, 不会等待被自己占用的线程池
+        testAdaptiveUpload(1);
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(3);
+        TransferManager transferManager = newTransferManager(fakeCOS, 4);
+        byte[] data = new byte[200 * PART_SIZE];
+        try {
+            transferManager.upload("bucket", "key", createFile(data)).waitForUploadResult();
+            fail("the upload should fail");
+        } catch (CosClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("part failed"));
+        }
+        assertEquals(1, fakeCOS.aborts.get());
+        // 失败后不再提交剩余的分块
+        assertTrue(fakeCOS.parts.size() < 20);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testRetriedPartsDecreaseConcurrency() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(0);
+        // 每个分块都重试过一次, 视为拥塞
+        fakeCOS.retriesAttempted = 1;
+        TransferManager transferManager = newTransferManager(fakeCOS, 8);
+        byte[] data = new byte[20 * PART_SIZE];
+        new Random(data.length).nextBytes(data);
+        Upload upload = transferManager.upload("bucket", "key", createFile(data));
+        upload.waitForUploadResult();
+        assertArrayEquals(data, fakeCOS.completedData);
+        assertEquals(1, upload.getProgress().getMaxPartsInFlight());
+        assertEquals(PART_SIZE, upload.getProgress().getPartSize());
+        assertEquals(20, fakeCOS.parts.size());
+        transferManager.shutdownNow(false);
+    }
+}
@@ -0,0 +1,249 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.exception.MultiObjectDeleteException;
+import com.qcloud.cos.exception.MultiObjectDeleteException.DeleteError;
+import com.qcloud.cos.model.COSObjectSummary;
+import com.qcloud.cos.model.DeleteObjectsRequest;
+import com.qcloud.cos.model.DeleteObjectsRequest.KeyVersion;
+import com.qcloud.cos.model.DeleteObjectsResult;
+import com.qcloud.cos.model.DeleteObjectsResult.DeletedObject;
+import com.qcloud.cos.model.ListObjectsRequest;
+import com.qcloud.cos.model.ObjectListing;
+import com.qcloud.cos.region.Region;
+
+public class BulkDeleteTest {
+
+    // 模拟的COS, key中包含"locked"的对象删除失败, 第failBatch个删除请求整体失败
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final TreeSet<String> keys = new TreeSet<String>();
+        private final int failBatch;
+        // 整批失败时抛出的错误, 为null时抛出503
+        private RuntimeException failBatchError;
+        private final AtomicInteger deleteRequests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        FakeCOS(int keyNum, int failBatch) {
+            for (int i = 0; i < keyNum; ++i) {
+                keys.add(String.format(i % 997 == 0 ? "logs/locked-%08d" : "logs/%08d", i));
+            }
+            keys.add("other/key");
+            this.failBatch = failBatch;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getClientConfig")) {
+                return clientConfig;
+            } else if (method.getName().equals("listObjects")) {
+                ListObjectsRequest request = (ListObjectsRequest) args[0];
+                return list(request.getPrefix(), request.getMarker(), request.getMaxKeys());
+            } else if (method.getName().equals("listNextBatchOfObjects")) {
+                ObjectListing previous = (ObjectListing) args[0];
+                return list(previous.getPrefix(), previous.getNextMarker(),
+                        previous.getMaxKeys());
+            } else if (method.getName().equals("deleteObjects")) {
+                int current = inFlight.incrementAndGet();
+                try {
+                    int max = maxInFlight.get();
+                    while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                        max = maxInFlight.get();
+                    }
+                    Thread.sleep(2);
+                    return delete((DeleteObjectsRequest) args[0]);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        private synchronized ObjectListing list(String prefix, String marker, Integer maxKeys) {
+            ObjectListing listing = new ObjectListing();
+            listing.setPrefix(prefix);
+            listing.setMaxKeys(maxKeys);
+            String last = null;
+            for (String key : marker == null ? keys : keys.tailSet(marker, false)) {
+                if (!key.startsWith(prefix)) {
+                    continue;
+                }
+                if (listing.getObjectSummaries().size() == maxKeys) {
+                    listing.setTruncated(true);
+                    break;
+                }
+                COSObjectSummary summary = new COSObjectSummary();
+                summary.setKey(key);
+                listing.getObjectSummaries().add(summary);
+                last = key;
+            }
+            listing.setNextMarker(last);
+            return listing;
+        }
+
+        private DeleteObjectsResult delete(DeleteObjectsRequest request) {
+            assertTrue(request.getKeys().size() <= BulkDeleteOptions.MAX_BATCH_SIZE);
+            if (deleteRequests.incrementAndGet() == failBatch) {
+                if (failBatchError != null) {
+                    throw failBatchError;
+                }
+                CosServiceException cse = new CosServiceException("injected failure");
+                cse.setStatusCode(503);
+                cse.setErrorCode("SlowDown");
+                throw cse;
+            }
+            List<DeleteError> errors = new ArrayList<DeleteError>();
+            List<DeletedObject> deletedObjects = new ArrayList<DeletedObject>();
+            for (KeyVersion keyVersion : request.getKeys()) {
+                if (keyVersion.getKey().contains("locked")) {
+                    DeleteError error = new DeleteError();
+                    error.setKey(keyVersion.getKey());
+                    error.setCode("AccessDenied");
+                    errors.add(error);
+                } else {
+                    synchronized (this) {
+                        keys.remove(keyVersion.getKey());
+                    }
+                    deletedObjects.add(new DeletedObject());
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new MultiObjectDeleteException(errors, deletedObjects);
+            }
+            return new DeleteObjectsResult(deletedObjects);
+        }
+    }
+
+    @Test
+    public void testDeletePrefix() {
+        FakeCOS fakeCOS = new FakeCOS(10500, -1);
+        ExecutorService threadPool = Executors.newFixedThreadPool(8);
+        final List<Long> progress = Collections.synchronizedList(new ArrayList<Long>());
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            BulkDeleteResult result = transferManager.deletePrefix("bucket", "logs/",
+                    new BulkDeleteOptions().withConcurrency(4)
+                            .withProgressListener(new BulkDeleteProgressListener() {
+                                @Override
+                                public void batchCompleted(BulkDeleteResult snapshot) {
+                                    progress.add(snapshot.getDeletedObjects()
+                                            + snapshot.getFailedObjects());
+                                }
+                            }));
+            assertEquals(11, result.getBatches());
+            assertEquals(11, result.getFailedObjects());
+            assertEquals(10500 - 11, result.getDeletedObjects());
+            assertEquals(11, result.getFailedKeys().size());
+            assertEquals("AccessDenied", result.getErrors().get(0).getCode());
+            assertTrue(result.getFailedKeys().get(0).getKey().contains("locked"));
+            assertEquals(12, fakeCOS.keys.size());
+            assertTrue(fakeCOS.keys.contains("other/key"));
+            assertTrue(fakeCOS.maxInFlight.get() <= 4);
+            assertEquals(11, progress.size());
+            assertEquals(10500L, (long) progress.get(10));
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsReportedAndRetried() {
+        FakeCOS fakeCOS = new FakeCOS(3000, 2);
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            BulkDeleteResult result = transferManager.deletePrefix("bucket", "logs/",
+                    new BulkDeleteOptions().withBatchSize(500).withConcurrency(2));
+            assertEquals(6, result.getBatches());
+            // 整批失败的500个key加上其余批次中无法删除的key
+            assertTrue(result.getFailedObjects() >= 500);
+            assertEquals(3000, result.getDeletedObjects() + result.getFailedObjects());
+            assertEquals(result.getFailedObjects(), result.getErrors().size());
+            boolean hasSlowDown = false;
+            for (DeleteError error : result.getErrors()) {
+                hasSlowDown |= "SlowDown".equals(error.getCode());
+            }
+            assertTrue(hasSlowDown);
+
+            BulkDeleteResult retryResult = transferManager.deleteAll("bucket",
+                    result.getFailedKeys().iterator(), null);
+            assertEquals(4, retryResult.getFailedObjects());
+            assertEquals(5, fakeCOS.keys.size());
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnexpectedBatchErrorIsReported() {
+        FakeCOS fakeCOS = new FakeCOS(3000, 3);
+        fakeCOS.failBatchError = new IllegalArgumentException("injected failure");
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            BulkDeleteResult result = transferManager.deletePrefix("bucket", "logs/",
+                    new BulkDeleteOptions().withBatchSize(500).withConcurrency(2));
+            assertEquals(6, result.getBatches());
+            assertTrue(result.getFailedObjects() >= 500);
+            assertEquals(3000, result.getDeletedObjects() + result.getFailedObjects());
+            assertEquals(result.getFailedObjects(), result.getFailedKeys().size());
+            int unexpectedErrors = 0;
+            for (DeleteError error : result.getErrors()) {
+                if ("IllegalArgumentException".equals(error.getCode())) {
+                    assertEquals("injected failure", error.getMessage());
+                    ++unexpectedErrors;
+                }
+            }
+            assertEquals(500, unexpectedErrors);
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRequestsShareTheTransferLimit() {
+        FakeCOS fakeCOS = new FakeCOS(5000, -1);
+        ExecutorService threadPool = Executors.newFixedThreadPool(8);
+        try {
+            TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+            // 删除请求和传输一样受TransferManager的并发上限约束
+            transferManager.getConfiguration().setMaxConcurrentPartRequests(2);
+            BulkDeleteResult result = transferManager.deletePrefix("bucket", "logs/",
+                    new BulkDeleteOptions().withBatchSize(100).withConcurrency(8));
+            assertEquals(50, result.getBatches());
+            assertEquals(5000, result.getDeletedObjects() + result.getFailedObjects());
+            assertTrue(fakeCOS.maxInFlight.get() <= 2);
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchSizeAboveLimit() {
+        new BulkDeleteOptions().withBatchSize(1001);
+    }
+}
@@ -0,0 +1,75 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.utils.CRC64;
+
+public class CompletedCrc64Test {
+
+    private static final int PART_SIZE = 4096;
+
+    private final byte[] data = new byte[3 * PART_SIZE + 100];
+
+    public CompletedCrc64Test() {
+        new Random(3).nextBytes(data);
+    }
+
+    private String crc64(int off, int len) {
+        CRC64 crc64 = new CRC64();
+        crc64.update(data, off, len);
+        return CRC64.toString(crc64.getValue());
+    }
+
+    // 倒序返回各分块, 与并发上传完成的顺序无关
+    private List<PartETag> parts() {
+        List<PartETag> parts = new ArrayList<PartETag>();
+        for (int partNumber = 4; partNumber >= 1; --partNumber) {
+            int off = (partNumber - 1) * PART_SIZE;
+            int len = Math.min(PART_SIZE, data.length - off);
+            PartETag part = new PartETag(partNumber, "etag-" + partNumber);
+            part.setCrc64Ecma(crc64(off, len));
+            part.setPartSize(len);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static CompleteMultipartUploadResult result(String crc64Ecma) {
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setCrc64Ecma(crc64Ecma);
+        return result;
+    }
+
+    @Test
+    public void testMatchingChecksum() {
+        TransferManagerUtils.checkCompletedCrc64(parts(), result(crc64(0, data.length)));
+    }
+
+    @Test
+    public void testMismatchingChecksum() {
+        try {
+            TransferManagerUtils.checkCompletedCrc64(parts(), result(crc64(1, data.length - 1)));
+            fail("the mismatch should be detected");
+        } catch (CosClientException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnknownChecksumsAreNotChecked() {
+        List<PartETag> parts = parts();
+        // 断点续传前上传的分块没有CRC64
+        parts.get(2).setCrc64Ecma(null);
+        TransferManagerUtils.checkCompletedCrc64(parts, result(crc64(1, data.length - 1)));
+        TransferManagerUtils.checkCompletedCrc64(parts(), result(null));
+    }
+}
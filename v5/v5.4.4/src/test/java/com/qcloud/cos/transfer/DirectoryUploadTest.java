@@ -0,0 +1,373 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.InitiateMultipartUploadRequest;
+import com.qcloud.cos.model.InitiateMultipartUploadResult;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
+import com.qcloud.cos.region.Region;
+
+public class DirectoryUploadTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    // 模拟的COS, 记录上传的对象, key中包含"bad"的对象上传失败
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+        private final Map<Integer, byte[]> parts = new TreeMap<Integer, byte[]>();
+        private final Map<String, String> contentTypes = new ConcurrentHashMap<String, String>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile int putDelayMillis = 1;
+        private String multipartKey;
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getClientConfig")) {
+                return clientConfig;
+            } else if (name.equals("putObject")) {
+                int current = inFlight.incrementAndGet();
+                try {
+                    int max = maxInFlight.get();
+                    while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                        max = maxInFlight.get();
+                    }
+                    PutObjectRequest request = (PutObjectRequest) args[0];
+                    if (request.getKey().contains("bad")) {
+                        throw new CosServiceException("put failed");
+                    }
+                    Thread.sleep(putDelayMillis);
+                    objects.put(request.getKey(), read(request.getFile(), 0,
+                            (int) request.getFile().length()));
+                    String contentType = request.getMetadata().getContentType();
+                    if (contentType != null) {
+                        contentTypes.put(request.getKey(), contentType);
+                    }
+                    return new PutObjectResult();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            } else if (name.equals("initiateMultipartUpload")) {
+                multipartKey = ((InitiateMultipartUploadRequest) args[0]).getKey();
+                InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+                result.setUploadId("upload-id");
+                return result;
+            } else if (name.equals("uploadPart")) {
+                UploadPartRequest request = (UploadPartRequest) args[0];
+                byte[] data = read(request.getFile(), request.getFileOffset(),
+                        (int) request.getPartSize());
+                synchronized (parts) {
+                    parts.put(request.getPartNumber(), data);
+                }
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag-" + request.getPartNumber());
+                return result;
+            } else if (name.equals("completeMultipartUpload")) {
+                CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+                assertEquals(parts.size(), request.getPartETags().size());
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                synchronized (parts) {
+                    for (byte[] part : parts.values()) {
+                        out.write(part);
+                    }
+                }
+                objects.put(multipartKey, out.toByteArray());
+                return new CompleteMultipartUploadResult();
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private static byte[] read(File file, long offset, int size) throws Exception {
+            byte[] data = new byte[size];
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek(offset);
+                raf.readFully(data);
+            } finally {
+                raf.close();
+            }
+            return data;
+        }
+    }
+
+    private static File newDirectory() throws Exception {
+        File directory = File.createTempFile("directory-upload", "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    private static byte[] createFile(File directory, String path, int size) throws Exception {
+        File file = new File(directory, path);
+        file.getParentFile().mkdirs();
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) path.length());
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return data;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS) {
+        TransferManager transferManager = new TransferManager(fakeCOS.proxy(),
+                new ThreadPoolExecutor(8, 8, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>()));
+        transferManager.getConfiguration().setMinimumUploadPartSize(PART_SIZE);
+        transferManager.getConfiguration().setMultipartUploadThreshold(4 * PART_SIZE);
+        return transferManager;
+    }
+
+    @Test
+    public void testUploadDirectoryWithFilters() throws Exception {
+        File directory = newDirectory();
+        try {
+            byte[] a = createFile(directory, "a.txt", 10);
+            createFile(directory, "b.log", 20);
+            byte[] c = createFile(directory, "sub/c.txt", 30);
+            createFile(directory, "sub/d.log", 40);
+            createFile(directory, ".git/config", 50);
+            byte[] e = createFile(directory, "sub/deeper/e", 60);
+            byte[] large = createFile(directory, "sub/large.bin", 5 * PART_SIZE + 7);
+            FakeCOS fakeCOS = new FakeCOS();
+            TransferManager transferManager = newTransferManager(fakeCOS);
+            final List<DirectoryUploadResult> progress = new ArrayList<DirectoryUploadResult>();
+
+            DirectoryUploadResult result = transferManager.uploadDirectory("bucket", "prefix",
+                    directory, new DirectoryUploadOptions().withExcludes(".git", "**.log")
+                            .withConcurrency(3).withProgressIntervalMillis(0)
+                            .withMetadataProvider(new ObjectMetadataProvider() {
+                                @Override
+                                public void provideObjectMetadata(File file,
+                                        ObjectMetadata metadata) {
+                                    metadata.setContentType("text/" + file.getName());
+                                }
+                            }).withProgressListener(new DirectoryUploadProgressListener() {
+                                @Override
+                                public void progressChanged(DirectoryUploadResult snapshot) {
+                                    progress.add(snapshot);
+                                }
+                            }));
+
+            assertEquals(4, result.getUploadedFiles());
+            assertEquals(0, result.getFailedFiles());
+            assertEquals(100 + large.length, result.getUploadedBytes());
+            assertEquals(4, fakeCOS.objects.size());
+            assertArrayEquals(a, fakeCOS.objects.get("prefix/a.txt"));
+            assertArrayEquals(c, fakeCOS.objects.get("prefix/sub/c.txt"));
+            assertArrayEquals(e, fakeCOS.objects.get("prefix/sub/deeper/e"));
+            assertArrayEquals(large, fakeCOS.objects.get("prefix/sub/large.bin"));
+            assertEquals("text/c.txt", fakeCOS.contentTypes.get("prefix/sub/c.txt"));
+            assertEquals(4, progress.size());
+            assertEquals(4, progress.get(3).getUploadedFiles());
+            assertTrue(result.getFilesPerSecond() > 0);
+            assertTrue(result.getBytesPerSecond() > 0);
+            transferManager.shutdownNow(false);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testIncludesWithoutSubdirectories() throws Exception {
+        File directory = newDirectory();
+        try {
+            createFile(directory, "a.txt", 10);
+            createFile(directory, "b.log", 20);
+            createFile(directory, "sub/c.txt", 30);
+            FakeCOS fakeCOS = new FakeCOS();
+            TransferManager transferManager = newTransferManager(fakeCOS);
+
+            DirectoryUploadResult result = transferManager.uploadDirectory("bucket", null,
+                    directory, new DirectoryUploadOptions().withIncludes("**.txt")
+                            .withIncludeSubdirectories(false));
+            assertEquals(1, result.getUploadedFiles());
+            assertTrue(fakeCOS.objects.containsKey("a.txt"));
+
+            result = transferManager.uploadDirectory("bucket", "all/", directory,
+                    new DirectoryUploadOptions().withIncludes("**.txt"));
+            assertEquals(2, result.getUploadedFiles());
+            assertTrue(fakeCOS.objects.containsKey("all/sub/c.txt"));
+            transferManager.shutdownNow(false);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlockUploads() throws Exception {
+        File directory = newDirectory();
+        try {
+            for (int i = 0; i < 20; ++i) {
+                createFile(directory, String.format("file%02d", i), 10);
+            }
+            final FakeCOS fakeCOS = new FakeCOS();
+            TransferManager transferManager = newTransferManager(fakeCOS);
+            final List<Long> progress = new ArrayList<Long>();
+            final AtomicInteger othersUploaded = new AtomicInteger();
+
+            DirectoryUploadResult result = transferManager.uploadDirectory("bucket", "slow",
+                    directory, new DirectoryUploadOptions().withConcurrency(4)
+                            .withProgressIntervalMillis(0)
+                            .withProgressListener(new DirectoryUploadProgressListener() {
+                                @Override
+                                public void progressChanged(DirectoryUploadResult snapshot) {
+                                    if (progress.isEmpty()) {
+                                        // 第一次通知时等待其他文件上传完
+                                        long deadline = System.nanoTime()
+                                                + TimeUnit.SECONDS.toNanos(5);
+                                        while (fakeCOS.objects.size() < 20
+                                                && System.nanoTime() < deadline) {
+                                            try {
+                                                Thread.sleep(1);
+                                            } catch (InterruptedException e) {
+                                                Thread.currentThread().interrupt();
+                                                return;
+                                            }
+                                        }
+                                        if (fakeCOS.objects.size() == 20) {
+                                            othersUploaded.incrementAndGet();
+                                        }
+                                    }
+                                    progress.add(snapshot.getUploadedFiles());
+                                }
+                            }));
+
+            assertEquals(20, result.getUploadedFiles());
+            assertEquals(1, othersUploaded.get());
+            // 其间的进度在第一次通知之后按顺序通知
+            assertEquals(20, progress.size());
+            for (int i = 0; i < 20; ++i) {
+                assertEquals(i + 1, progress.get(i).longValue());
+            }
+            transferManager.shutdownNow(false);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testManyFilesThroughBoundedQueue() throws Exception {
+        File directory = newDirectory();
+        try {
+            for (int i = 0; i < 300; ++i) {
+                createFile(directory, String.format("d%d/%s%03d", i % 7,
+                        i % 50 == 0 ? "bad" : "file", i), i);
+            }
+            FakeCOS fakeCOS = new FakeCOS();
+            TransferManager transferManager = newTransferManager(fakeCOS);
+
+            DirectoryUploadResult result = transferManager.uploadDirectory("bucket", "many",
+                    directory,
+                    new DirectoryUploadOptions().withConcurrency(4).withQueueCapacity(2));
+            assertEquals(294, result.getUploadedFiles());
+            assertEquals(6, result.getFailedFiles());
+            assertEquals(6, result.getFailures().size());
+            assertEquals(6, result.getErrors().size());
+            assertTrue(result.getFailures().get(0).getName().startsWith("bad"));
+            assertEquals(294, fakeCOS.objects.size());
+            assertTrue(fakeCOS.maxInFlight.get() <= 4);
+            transferManager.shutdownNow(false);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testOtherTransfersRunDuringDirectoryUpload() throws Exception {
+        File directory = newDirectory();
+        File single = File.createTempFile("single-upload", ".txt");
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 200; ++i) {
+                createFile(directory, String.format("file%03d", i), 10);
+            }
+            final FakeCOS fakeCOS = new FakeCOS();
+            fakeCOS.putDelayMillis = 5;
+            // 目录上传的默认并发数即线程池的大小
+            final TransferManager transferManager = new TransferManager(fakeCOS.proxy(),
+                    new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>()));
+            final File uploadedDirectory = directory;
+            Future<DirectoryUploadResult> directoryUpload =
+                    caller.submit(new Callable<DirectoryUploadResult>() {
+                        @Override
+                        public DirectoryUploadResult call() {
+                            return transferManager.uploadDirectory("bucket", "dir",
+                                    uploadedDirectory, null);
+                        }
+                    });
+            while (fakeCOS.objects.isEmpty()) {
+                Thread.sleep(1);
+            }
+            // 其他传输与目录上传的任务轮流运行, 不必等待整个目录上传完
+            transferManager.upload(new PutObjectRequest("bucket", "single", single))
+                    .waitForUploadResult();
+            assertTrue(fakeCOS.objects.containsKey("single"));
+            assertTrue(fakeCOS.objects.size() < 150);
+            assertEquals(200, directoryUpload.get(30, TimeUnit.SECONDS).getUploadedFiles());
+            assertTrue(fakeCOS.maxInFlight.get() <= 2);
+            transferManager.shutdownNow(false);
+        } finally {
+            caller.shutdown();
+            single.delete();
+            delete(directory);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.Headers;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.COSObjectInputStream;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.region.Region;
+import com.qcloud.cos.transfer.Transfer.TransferState;
+import com.qcloud.cos.utils.CRC64;
+
+public class MultipartDownloadTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+    private static final String ETAG = "etag-1";
+
+    // 模拟的COS, 按range返回对象数据, ETag不匹配时返回null
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private volatile byte[] content;
+        private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        // 成功返回了数据的range
+        private final Set<String> servedRanges =
+                Collections.synchronizedSet(new HashSet<String>());
+        private volatile String crc64;
+        private volatile String eTag = ETAG;
+        // 该偏移开始的range第一次只返回一半数据
+        private long truncatedRangeStart = -1;
+        // 收到这么多次请求后对象被修改
+        private int modifiedAfterRequests = Integer.MAX_VALUE;
+        // 数据被读完的range数
+        private final AtomicInteger completedRanges = new AtomicInteger();
+        // 从该偏移开始的range请求失败
+        private volatile long failedRangesFrom = Long.MAX_VALUE;
+        // 该偏移开始的range等待blocked之后才返回
+        private volatile long blockedRangeStart = -1;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        FakeCOS(int size) {
+            replaceObject(size, ETAG);
+        }
+
+        void replaceObject(int seed, String newETag) {
+            byte[] newContent = new byte[content == null ? seed : content.length];
+            new Random(seed).nextBytes(newContent);
+            CRC64 checksum = new CRC64();
+            checksum.update(newContent, 0, newContent.length);
+            content = newContent;
+            crc64 = CRC64.toString(checksum.getValue());
+            eTag = newETag;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getClientConfig")) {
+                return clientConfig;
+            } else if (name.equals("getObjectMetadata")) {
+                return newMetadata(content.length);
+            } else if (name.equals("getObject")) {
+                GetObjectRequest request = (GetObjectRequest) args[0];
+                long[] range = request.getRange();
+                if (range == null) {
+                    range = new long[] {0, content.length - 1};
+                }
+                int requests;
+                synchronized (ranges) {
+                    ranges.add(request.getRange() == null ? "all" : range[0] + "-" + range[1]);
+                    requests = ranges.size();
+                }
+                if (requests > modifiedAfterRequests) {
+                    eTag = "etag-2";
+                }
+                if (range[0] == blockedRangeStart) {
+                    blocked.await();
+                }
+                if (range[0] >= failedRangesFrom) {
+                    throw new CosServiceException("get failed");
+                }
+                if (request.getRange() != null && !request.getMatchingETagConstraints()
+                        .equals(Collections.singletonList(eTag))) {
+                    return null;
+                }
+                int length = (int) (range[1] - range[0] + 1);
+                synchronized (this) {
+                    if (range[0] == truncatedRangeStart) {
+                        truncatedRangeStart = -1;
+                        length /= 2;
+                    }
+                }
+                servedRanges.add(range[0] + "-" + range[1]);
+                COSObject cosObject = new COSObject();
+                cosObject.setObjectMetadata(newMetadata(length));
+                cosObject.setObjectContent(new COSObjectInputStream(
+                        new ByteArrayInputStream(content, (int) range[0], length) {
+                            @Override
+                            public synchronized int read() {
+                                int value = super.read();
+                                if (value == -1) {
+                                    completedRanges.incrementAndGet();
+                                }
+                                return value;
+                            }
+                        }, new HttpGet("http://localhost/")));
+                return cosObject;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private ObjectMetadata newMetadata(long contentLength) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(contentLength);
+            metadata.setHeader(Headers.ETAG, eTag);
+            metadata.setHeader(Headers.COS_HASH_CRC64_ECMA, crc64);
+            return metadata;
+        }
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS) {
+        TransferManager transferManager = new TransferManager(fakeCOS.proxy(),
+                new ThreadPoolExecutor(4, 4, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>()));
+        transferManager.getConfiguration().setMultipartDownloadEnabled(true);
+        transferManager.getConfiguration().setMultipartDownloadThreshold(4 * PART_SIZE);
+        transferManager.getConfiguration().setMultipartDownloadPartSize(PART_SIZE);
+        return transferManager;
+    }
+
+    private static byte[] read(File file) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            return data;
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testDownloadInRangesWithRetry() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10 * PART_SIZE + 123);
+        fakeCOS.truncatedRangeStart = 3 * PART_SIZE;
+        TransferManager transferManager = newTransferManager(fakeCOS);
+        File file = File.createTempFile("multipart-download", ".bin");
+        try {
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            download.waitForCompletion();
+
+            assertEquals(TransferState.Completed, download.getState());
+            assertArrayEquals(fakeCOS.content, read(file));
+            // 11个分块, 被截断的分块从已写入的位置重新请求
+            assertEquals(12, fakeCOS.ranges.size());
+            assertTrue(fakeCOS.ranges.contains((3 * PART_SIZE + PART_SIZE / 2) + "-"
+                    + (4 * PART_SIZE - 1)));
+            assertTrue(fakeCOS.ranges.contains(10 * PART_SIZE + "-" + (10 * PART_SIZE + 122)));
+            assertEquals(fakeCOS.content.length, download.getProgress().getTotalBytesToTransfer());
+            assertEquals("key", ((DownloadImpl) download).getKey());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSmallObjectUsesSingleRequest() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(4 * PART_SIZE - 1);
+        TransferManager transferManager = newTransferManager(fakeCOS);
+        File file = File.createTempFile("multipart-download", ".bin");
+        try {
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            download.waitForCompletion();
+            assertArrayEquals(fakeCOS.content, read(file));
+            assertEquals(Collections.singletonList("all"), fakeCOS.ranges);
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testObjectModifiedDuringDownload() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(20 * PART_SIZE);
+        fakeCOS.modifiedAfterRequests = 5;
+        TransferManager transferManager = newTransferManager(fakeCOS);
+        File file = File.createTempFile("multipart-download", ".bin");
+        try {
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            try {
+                download.waitForCompletion();
+                fail("the object was modified");
+            } catch (CosClientException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("was modified"));
+            }
+            assertEquals(TransferState.Failed, download.getState());
+            // 失败后尚未开始的分块不再发送请求
+            assertTrue(fakeCOS.ranges.size() < 20);
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCrc64Mismatch() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(6 * PART_SIZE);
+        fakeCOS.crc64 = "12345";
+        TransferManager transferManager = newTransferManager(fakeCOS);
+        File file = File.createTempFile("multipart-download", ".bin");
+        try {
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            try {
+                download.waitForCompletion();
+                fail("the CRC64 doesn't match");
+            } catch (CosClientException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("CRC64"));
+            }
+            assertEquals(TransferState.Failed, download.getState());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+        }
+    }
+
+    private static TransferManager newCheckpointedTransferManager(FakeCOS fakeCOS) {
+        TransferManager transferManager = newTransferManager(fakeCOS);
+        transferManager.getConfiguration().setDownloadCheckpointEnabled(true);
+        return transferManager;
+    }
+
+    private static void failDownload(TransferManager transferManager, File file)
+            throws Exception {
+        Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                file);
+        try {
+            download.waitForCompletion();
+            fail("the download should fail");
+        } catch (CosClientException e) {
+        }
+        // 完成任务在所有分块结束后才运行, 此时checkpoint已经关闭
+        assertEquals(TransferState.Failed, download.getState());
+    }
+
+    @Test
+    public void testResumeFromCheckpointAfterFailure() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10 * PART_SIZE + 123);
+        fakeCOS.failedRangesFrom = 6 * PART_SIZE;
+        File file = File.createTempFile("multipart-download", ".bin");
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        TransferManager transferManager = newCheckpointedTransferManager(fakeCOS);
+        try {
+            failDownload(transferManager, file);
+            transferManager.shutdownNow(false);
+            assertTrue(checkpointFile.exists());
+            List<String> served = new ArrayList<String>(fakeCOS.servedRanges);
+            assertTrue(served.size() > 0);
+
+            // 再次下载到同一个文件时只请求缺少的分块
+            fakeCOS.failedRangesFrom = Long.MAX_VALUE;
+            fakeCOS.ranges.clear();
+            transferManager = newCheckpointedTransferManager(fakeCOS);
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            download.waitForCompletion();
+
+            assertArrayEquals(fakeCOS.content, read(file));
+            assertEquals(11 - served.size(), fakeCOS.ranges.size());
+            for (String range : served) {
+                assertFalse(range, fakeCOS.ranges.contains(range));
+            }
+            // 模拟的COS不发送进度事件, 进度只包括之前已下载的分块
+            assertEquals(served.size() * (long) PART_SIZE,
+                    download.getProgress().getBytesTransferred());
+            assertFalse(checkpointFile.exists());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptResumedRangeDownloadedAgain() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10 * PART_SIZE + 123);
+        fakeCOS.failedRangesFrom = 6 * PART_SIZE;
+        File file = File.createTempFile("multipart-download", ".bin");
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        TransferManager transferManager = newCheckpointedTransferManager(fakeCOS);
+        try {
+            failDownload(transferManager, file);
+            transferManager.shutdownNow(false);
+            List<String> served = new ArrayList<String>(fakeCOS.servedRanges);
+            String corruptRange = "0-" + (PART_SIZE - 1);
+            assertTrue(served.toString(), served.contains(corruptRange));
+
+            // 已记录的分块在文件中被修改, 恢复时重新下载该分块
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(100);
+                raf.write(~fakeCOS.content[100]);
+            } finally {
+                raf.close();
+            }
+            fakeCOS.failedRangesFrom = Long.MAX_VALUE;
+            fakeCOS.ranges.clear();
+            transferManager = newCheckpointedTransferManager(fakeCOS);
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            download.waitForCompletion();
+
+            assertArrayEquals(fakeCOS.content, read(file));
+            assertEquals(11 - served.size() + 1, fakeCOS.ranges.size());
+            assertTrue(fakeCOS.ranges.contains(corruptRange));
+            for (String range : served) {
+                assertTrue(range, range.equals(corruptRange) || !fakeCOS.ranges.contains(range));
+            }
+            assertEquals((served.size() - 1) * (long) PART_SIZE,
+                    download.getProgress().getBytesTransferred());
+            assertFalse(checkpointFile.exists());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpointDiscardedWhenCrc64MismatchNotInFile() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(6 * PART_SIZE);
+        fakeCOS.crc64 = "12345";
+        File file = File.createTempFile("multipart-download", ".bin");
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        TransferManager transferManager = newCheckpointedTransferManager(fakeCOS);
+        try {
+            // 文件中的分块都与checkpoint一致, 无法定位损坏的数据, 丢弃checkpoint
+            failDownload(transferManager, file);
+            assertFalse(checkpointFile.exists());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void testPauseAndResumeMissingRanges() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10 * PART_SIZE + 123);
+        fakeCOS.blockedRangeStart = 5 * PART_SIZE;
+        File file = File.createTempFile("multipart-download", ".bin");
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        TransferManager transferManager = newCheckpointedTransferManager(fakeCOS);
+        try {
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            // 等待其他分块都下载完, 只有被阻塞的分块仍在进行
+            long deadline = System.currentTimeMillis() + 10000;
+            while (fakeCOS.completedRanges.get() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, fakeCOS.completedRanges.get());
+            Thread.sleep(100);
+            PersistableDownload persistableDownload = download.pause();
+            fakeCOS.blocked.countDown();
+            assertTrue(checkpointFile.exists());
+
+            fakeCOS.ranges.clear();
+            Download resumed = transferManager.resumeDownload(persistableDownload);
+            resumed.waitForCompletion();
+            assertArrayEquals(fakeCOS.content, read(file));
+            assertTrue(fakeCOS.ranges.contains(5 * PART_SIZE + "-" + (6 * PART_SIZE - 1)));
+            assertTrue(fakeCOS.ranges.toString(), fakeCOS.ranges.size() < 11);
+            assertFalse(checkpointFile.exists());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void testCheckpointDiscardedWhenObjectChanged() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(10 * PART_SIZE + 123);
+        fakeCOS.failedRangesFrom = 6 * PART_SIZE;
+        File file = File.createTempFile("multipart-download", ".bin");
+        File checkpointFile = DownloadCheckpoint.checkpointFile(file);
+        TransferManager transferManager = newCheckpointedTransferManager(fakeCOS);
+        try {
+            failDownload(transferManager, file);
+            assertTrue(checkpointFile.exists());
+
+            // 对象被覆盖后ETag变化, checkpoint作废, 重新下载所有分块
+            fakeCOS.replaceObject(42, "etag-3");
+            fakeCOS.failedRangesFrom = Long.MAX_VALUE;
+            fakeCOS.ranges.clear();
+            Download download = transferManager.download(new GetObjectRequest("bucket", "key"),
+                    file);
+            download.waitForCompletion();
+            assertArrayEquals(fakeCOS.content, read(file));
+            assertEquals(11, fakeCOS.ranges.size());
+            assertEquals(0, download.getProgress().getBytesTransferred());
+            assertFalse(checkpointFile.exists());
+        } finally {
+            transferManager.shutdownNow(false);
+            file.delete();
+            checkpointFile.delete();
+        }
+    }
+}
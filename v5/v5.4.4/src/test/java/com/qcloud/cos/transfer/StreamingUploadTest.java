@@ -0,0 +1,255 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.InitiateMultipartUploadResult;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
+import com.qcloud.cos.region.Region;
+import com.qcloud.cos.utils.IOUtils;
+
+public class StreamingUploadTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    // 模拟的COS, 记录上传的分块, 第failPart个分块上传失败
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final TreeMap<Integer, byte[]> parts = new TreeMap<Integer, byte[]>();
+        private final int failPart;
+        private final AtomicLong uploadedBytes = new AtomicLong();
+        private final AtomicInteger putObjects = new AtomicInteger();
+        private final AtomicInteger aborts = new AtomicInteger();
+        private byte[] putObjectData;
+        private byte[] completedData;
+
+        FakeCOS(int failPart) {
+            this.failPart = failPart;
+        }
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getClientConfig")) {
+                return clientConfig;
+            } else if (name.equals("putObject")) {
+                PutObjectRequest request = (PutObjectRequest) args[0];
+                putObjects.incrementAndGet();
+                putObjectData = IOUtils.toByteArray(request.getInputStream());
+                assertEquals(putObjectData.length, request.getMetadata().getContentLength());
+                return new PutObjectResult();
+            } else if (name.equals("initiateMultipartUpload")) {
+                InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+                result.setUploadId("upload-id");
+                return result;
+            } else if (name.equals("uploadPart")) {
+                UploadPartRequest request = (UploadPartRequest) args[0];
+                Thread.sleep(2);
+                if (request.getPartNumber() == failPart) {
+                    throw new CosServiceException("part failed");
+                }
+                byte[] data = IOUtils.toByteArray(request.getInputStream());
+                assertEquals(request.getPartSize(), data.length);
+                synchronized (parts) {
+                    parts.put(request.getPartNumber(), data);
+                }
+                uploadedBytes.addAndGet(data.length);
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag-" + request.getPartNumber());
+                return result;
+            } else if (name.equals("completeMultipartUpload")) {
+                CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int partNumber = 1;
+                for (PartETag partETag : request.getPartETags()) {
+                    assertEquals(partNumber++, partETag.getPartNumber());
+                    synchronized (parts) {
+                        out.write(parts.get(partETag.getPartNumber()));
+                    }
+                }
+                completedData = out.toByteArray();
+                return new CompleteMultipartUploadResult();
+            } else if (name.equals("abortMultipartUpload")) {
+                aborts.incrementAndGet();
+                return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    // 记录读取的数据量超过已上传数据量的最大值
+    private static class TrackingInputStream extends InputStream {
+        private final byte[] data;
+        private final FakeCOS cos;
+        private int position = 0;
+        private long maxBytesAhead = 0;
+
+        TrackingInputStream(byte[] data, FakeCOS cos) {
+            this.data = data;
+            this.cos = cos;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == data.length) {
+                return -1;
+            }
+            // 每次最多读取1000字节, 模拟管道的输出
+            int count = Math.min(Math.min(len, 1000), data.length - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            maxBytesAhead = Math.max(maxBytesAhead, position - cos.uploadedBytes.get());
+            return count;
+        }
+    }
+
+    private static byte[] randomData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS, int threads,
+            int buffers, boolean direct) {
+        TransferManager transferManager = new TransferManager(fakeCOS.proxy(),
+                new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>()));
+        transferManager.getConfiguration().setMinimumUploadPartSize(PART_SIZE);
+        transferManager.getConfiguration().setMultipartUploadThreshold(PART_SIZE);
+        transferManager.getConfiguration().setStreamingUploadPartBuffers(buffers);
+        transferManager.getConfiguration().setStreamingUploadDirectBuffers(direct);
+        return transferManager;
+    }
+
+    private static void testMultipartStream(int length, int threads, boolean direct)
+            throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(0);
+        TransferManager transferManager = newTransferManager(fakeCOS, threads, 3, direct);
+        byte[] data = randomData(length);
+        TrackingInputStream input = new TrackingInputStream(data, fakeCOS);
+        transferManager.upload("bucket", "key", input, new ObjectMetadata())
+                .waitForUploadResult();
+        assertEquals(0, fakeCOS.putObjects.get());
+        assertEquals((length + PART_SIZE - 1) / PART_SIZE, fakeCOS.parts.size());
+        assertArrayEquals(data, fakeCOS.completedData);
+        assertTrue(input.maxBytesAhead <= 3 * PART_SIZE);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testStreamUploadedInParts() throws Exception {
+        testMultipartStream(10 * PART_SIZE + 12345, 8, false);
+    }
+
+    @Test
+    public void testStreamUploadedInPartsWithDirectBuffers() throws Exception {
+        testMultipartStream(10 * PART_SIZE + 12345, 8, true);
+    }
+
+    @Test
+    public void testStreamEndingOnPartBoundary() throws Exception {
+        testMultipartStream(4 * PART_SIZE, 8, false);
+    }
+
+    @Test
+    public void testSingleThreadPool() throws Exception {
+        // 读取流的线程自己上传分块, 不会等待被自己占用的线程池
+        testMultipartStream(7 * PART_SIZE + 1, 1, false);
+    }
+
+    @Test
+    public void testShortStreamUploadedAtOnce() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(0);
+        TransferManager transferManager = newTransferManager(fakeCOS, 4, 3, false);
+        byte[] data = randomData(PART_SIZE - 1);
+        transferManager.upload("bucket", "key", new TrackingInputStream(data, fakeCOS),
+                new ObjectMetadata()).waitForUploadResult();
+        assertEquals(1, fakeCOS.putObjects.get());
+        assertEquals(0, fakeCOS.parts.size());
+        assertArrayEquals(data, fakeCOS.putObjectData);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(2);
+        TransferManager transferManager = newTransferManager(fakeCOS, 4, 2, false);
+        byte[] data = randomData(20 * PART_SIZE);
+        TrackingInputStream input = new TrackingInputStream(data, fakeCOS);
+        try {
+            transferManager.upload("bucket", "key", input, new ObjectMetadata())
+                    .waitForUploadResult();
+            fail("the upload should fail");
+        } catch (CosServiceException e) {
+            assertEquals("part failed", e.getErrorMessage());
+        }
+        assertTrue(fakeCOS.aborts.get() >= 1);
+        // 失败后不再读取流的剩余部分
+        assertTrue(input.position <= 3 * PART_SIZE);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testStreamOverPartLimitAbortsUpload() throws Exception {
+        FakeCOS fakeCOS = new FakeCOS(0);
+        TransferManager transferManager = newTransferManager(fakeCOS, 8, 3, false);
+        // 分块大小固定为1KB, 超过10000个分块
+        int partSize = 1024;
+        transferManager.getConfiguration().setMinimumUploadPartSize(partSize);
+        byte[] data = randomData(10005 * partSize);
+        TrackingInputStream input = new TrackingInputStream(data, fakeCOS);
+        try {
+            transferManager.upload("bucket", "key", input, new ObjectMetadata())
+                    .waitForUploadResult();
+            fail("the upload should fail");
+        } catch (CosClientException e) {
+            assertTrue(e.getMessage().contains("10000 parts"));
+        }
+        assertEquals(1, fakeCOS.aborts.get());
+        assertNull(fakeCOS.completedData);
+        // 读到第10001个分块即失败
+        assertEquals(10001 * partSize, input.position);
+        transferManager.shutdownNow(false);
+    }
+}
@@ -0,0 +1,396 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.InitiateMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
+import com.qcloud.cos.region.Region;
+
+public class TransferSchedulerTest {
+
+    private static TransferManager newTransferManager(ExecutorService threadPool) {
+        final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        COS cos = (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                new Class<?>[] {COS.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getClientConfig")) {
+                            return clientConfig;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new TransferManager(cos, threadPool);
+    }
+
+    private static ThreadPoolExecutor newThreadPool(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+    }
+
+    // 记录运行顺序的任务, 第一个任务等待gate
+    private static Runnable recordingTask(final List<String> order, final String name,
+            final CountDownLatch gate) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (order) {
+                    order.add(name);
+                }
+            }
+        };
+    }
+
+    private static void updateMax(AtomicInteger max, int current) {
+        int previous = max.get();
+        while (current > previous && !max.compareAndSet(previous, current)) {
+            previous = max.get();
+        }
+    }
+
+    @Test
+    public void testTransfersTakeTurns() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(1);
+        TransferManager transferManager = newTransferManager(threadPool);
+        transferManager.getConfiguration().setMaxConcurrentFiles(2);
+        TransferScheduler scheduler = new TransferScheduler(threadPool, transferManager);
+        List<String> order = new ArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+
+        ExecutorService big = scheduler.newTransfer();
+        ExecutorService small = scheduler.newTransfer();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        futures.add(big.submit(recordingTask(order, "a0", gate)));
+        for (int i = 1; i < 5; ++i) {
+            futures.add(big.submit(recordingTask(order, "a" + i, open)));
+        }
+        for (int i = 0; i < 3; ++i) {
+            futures.add(small.submit(recordingTask(order, "b" + i, open)));
+        }
+        gate.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("a0", "a1", "b0", "a2", "b1", "a3", "b2", "a4"), order);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testConcurrencyLimits() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(8);
+        TransferManager transferManager = newTransferManager(threadPool);
+        transferManager.getConfiguration().setMaxConcurrentPartRequests(4);
+        transferManager.getConfiguration().setMaxConcurrentPartsPerTransfer(2);
+        TransferScheduler scheduler = new TransferScheduler(threadPool, transferManager);
+        assertEquals(4, scheduler.getMaxConcurrentTasks());
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger maxInFlightPerTransfer = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < 3; ++t) {
+            ExecutorService transfer = scheduler.newTransfer();
+            final AtomicInteger transferInFlight = new AtomicInteger();
+            for (int i = 0; i < 10; ++i) {
+                futures.add(transfer.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        updateMax(maxInFlight, inFlight.incrementAndGet());
+                        updateMax(maxInFlightPerTransfer, transferInFlight.incrementAndGet());
+                        Thread.sleep(2);
+                        transferInFlight.decrementAndGet();
+                        inFlight.decrementAndGet();
+                        return null;
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(maxInFlight.get() <= 4);
+        assertTrue(maxInFlightPerTransfer.get() <= 2);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testMaxConcurrentFiles() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(4);
+        TransferManager transferManager = newTransferManager(threadPool);
+        transferManager.getConfiguration().setMaxConcurrentFiles(1);
+        TransferScheduler scheduler = new TransferScheduler(threadPool, transferManager);
+        List<String> order = new ArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+
+        ExecutorService first = scheduler.newTransfer();
+        ExecutorService second = scheduler.newTransfer();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 3; ++i) {
+            futures.add(first.submit(recordingTask(order, "a", gate)));
+        }
+        for (int i = 0; i < 3; ++i) {
+            futures.add(second.submit(recordingTask(order, "b", gate)));
+        }
+        // 第二个传输在第一个结束前不会开始, 即使线程池有空闲
+        Thread.sleep(50);
+        assertEquals(3, threadPool.getActiveCount());
+        gate.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("a", "a", "a", "b", "b", "b"), order);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testCompletionWaitingForPartsDoesNotDeadlock() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(2);
+        TransferManager transferManager = newTransferManager(threadPool);
+        final TransferScheduler scheduler = new TransferScheduler(threadPool, transferManager);
+        final AtomicInteger completed = new AtomicInteger();
+        List<Future<Future<Integer>>> uploads = new ArrayList<Future<Future<Integer>>>();
+        for (int t = 0; t < 6; ++t) {
+            final ExecutorService transfer = scheduler.newTransfer();
+            // 类似UploadMonitor: 提交各个分块, 再提交等待所有分块的完成任务
+            uploads.add(transfer.submit(new Callable<Future<Integer>>() {
+                @Override
+                public Future<Integer> call() {
+                    final List<Future<Integer>> parts = new ArrayList<Future<Integer>>();
+                    for (int i = 0; i < 5; ++i) {
+                        final int partNumber = i + 1;
+                        parts.add(transfer.submit(new Callable<Integer>() {
+                            @Override
+                            public Integer call() throws Exception {
+                                Thread.sleep(1);
+                                return partNumber;
+                            }
+                        }));
+                    }
+                    return transfer.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            int sum = 0;
+                            for (Future<Integer> part : parts) {
+                                sum += part.get();
+                            }
+                            completed.incrementAndGet();
+                            return sum;
+                        }
+                    });
+                }
+            }));
+        }
+        for (Future<Future<Integer>> upload : uploads) {
+            assertEquals(15, upload.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS)
+                    .intValue());
+        }
+        assertEquals(6, completed.get());
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testIdleTasksRunAfterAllOtherTasks() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(2);
+        TransferManager transferManager = newTransferManager(threadPool);
+        TransferScheduler scheduler = new TransferScheduler(threadPool, transferManager);
+        List<String> order = new ArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+
+        TransferScheduler.TransferExecutor transfer = scheduler.newTransfer();
+        Future<?> part = transfer.submit(recordingTask(order, "a", gate));
+        FutureTask<Object> completion =
+                new FutureTask<Object>(recordingTask(order, "done", open), null);
+        FutureTask<Object> next = new FutureTask<Object>(recordingTask(order, "next", open), null);
+        transfer.executeWhenIdle(completion);
+        transfer.executeWhenIdle(next);
+        // 等待时不占用线程, 之后提交的任务照常运行
+        transfer.submit(recordingTask(order, "b", open)).get(10, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertEquals(1, threadPool.getActiveCount());
+        assertTrue(!completion.isDone());
+        gate.countDown();
+        part.get(10, TimeUnit.SECONDS);
+        next.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("b", "a", "done", "next"), order);
+
+        // 空闲时立即运行
+        FutureTask<Object> idle = new FutureTask<Object>(recordingTask(order, "idle", open), null);
+        transfer.executeWhenIdle(idle);
+        idle.get(10, TimeUnit.SECONDS);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testLastEncryptedPartSubmittedAfterOtherParts() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(2);
+        TransferManager transferManager = newTransferManager(threadPool);
+        TransferScheduler.TransferExecutor transfer =
+                transferManager.getScheduler().newTransfer();
+        List<String> order = new ArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch open = new CountDownLatch(0);
+
+        UploadCallable.LastEncryptedPartTrigger trigger =
+                new UploadCallable.LastEncryptedPartTrigger(transfer);
+        PartETag noETag = null;
+        transfer.execute(trigger.newPart(
+                Executors.callable(recordingTask(order, "a", gate), noETag)));
+        transfer.execute(trigger.newPart(
+                Executors.callable(recordingTask(order, "b", open), noETag)));
+        FutureTask<PartETag> lastPart =
+                new FutureTask<PartETag>(recordingTask(order, "last", open), noETag);
+        trigger.lastPartReady(lastPart);
+        // 最后一个分块等待时不占用线程, 之后提交的任务照常运行
+        transfer.submit(recordingTask(order, "c", open)).get(10, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertEquals(1, threadPool.getActiveCount());
+        assertTrue(!lastPart.isDone());
+        gate.countDown();
+        lastPart.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("b", "c", "a", "last"), order);
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testIdleTaskCancelledOnShutdown() throws Exception {
+        ThreadPoolExecutor threadPool = newThreadPool(1);
+        TransferManager transferManager = newTransferManager(threadPool);
+        final CountDownLatch gate = new CountDownLatch(1);
+        // 占用唯一的线程, 传输的任务留在线程池的队列中
+        threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        TransferScheduler.TransferExecutor transfer =
+                transferManager.getScheduler().newTransfer();
+        Future<?> part = transfer.submit(recordingTask(new ArrayList<String>(), "a", gate));
+        FutureTask<Object> completion = new FutureTask<Object>(
+                recordingTask(new ArrayList<String>(), "done", gate), null);
+        transfer.executeWhenIdle(completion);
+        transferManager.shutdownNow(false);
+        assertTrue(part.isCancelled());
+        try {
+            completion.get(10, TimeUnit.SECONDS);
+            fail("the completion should be cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailedPartSkipsQueuedParts() throws Exception {
+        final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        final AtomicInteger uploadedParts = new AtomicInteger();
+        // 第1个分块立即失败, 其他分块上传较慢, 失败时大部分分块仍在排队
+        COS cos = (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                new Class<?>[] {COS.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Exception {
+                        String name = method.getName();
+                        if (name.equals("getClientConfig")) {
+                            return clientConfig;
+                        } else if (name.equals("initiateMultipartUpload")) {
+                            InitiateMultipartUploadResult result =
+                                    new InitiateMultipartUploadResult();
+                            result.setUploadId("upload-id");
+                            return result;
+                        } else if (name.equals("uploadPart")) {
+                            uploadedParts.incrementAndGet();
+                            UploadPartRequest request = (UploadPartRequest) args[0];
+                            if (request.getPartNumber() == 1) {
+                                throw new CosServiceException("part 1 failed");
+                            }
+                            Thread.sleep(20);
+                            UploadPartResult result = new UploadPartResult();
+                            result.setPartNumber(request.getPartNumber());
+                            result.setETag("etag-" + request.getPartNumber());
+                            return result;
+                        } else if (name.equals("abortMultipartUpload")) {
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+        int partSize = 64 * 1024;
+        File file = File.createTempFile("failed-part", ".dat");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(20 * partSize);
+        raf.close();
+        TransferManager transferManager = new TransferManager(cos, newThreadPool(2));
+        transferManager.getConfiguration().setMinimumUploadPartSize(partSize);
+        transferManager.getConfiguration().setMultipartUploadThreshold(partSize);
+        try {
+            Upload upload =
+                    transferManager.upload(new PutObjectRequest("bucket", "key", file));
+            try {
+                upload.waitForUploadResult();
+                fail("the upload should fail");
+            } catch (CosClientException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("part 1 failed"));
+            }
+            assertEquals(Transfer.TransferState.Failed, upload.getState());
+            // 只有失败时已开始的分块上传了, 其余的分块被跳过
+            assertTrue(String.valueOf(uploadedParts.get()), uploadedParts.get() <= 3);
+        } finally {
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    @Test
+    public void testDefaultConcurrency() {
+        int concurrency = TransferManagerUtils.getDefaultConcurrency(null);
+        assertTrue(concurrency >= 8 && concurrency <= 64);
+        ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        clientConfig.setMaxConnectionsCount(5);
+        assertEquals(5, TransferManagerUtils.getDefaultConcurrency(clientConfig));
+        ThreadPoolExecutor threadPool = TransferManagerUtils.createDefaultExecutorService();
+        assertEquals(concurrency, threadPool.getMaximumPoolSize());
+        threadPool.shutdown();
+    }
+}
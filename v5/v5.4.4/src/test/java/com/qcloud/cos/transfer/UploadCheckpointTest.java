@@ -0,0 +1,330 @@
+package com.qcloud.cos.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.qcloud.cos.COS;
+import com.qcloud.cos.ClientConfig;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.InitiateMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.SSECustomerKey;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.UploadPartResult;
+import com.qcloud.cos.region.Region;
+
+public class UploadCheckpointTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    private static File newDirectory() throws Exception {
+        File directory = File.createTempFile("upload-checkpoints", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private static File createFile(byte[] data) throws Exception {
+        File file = File.createTempFile("checkpointed-upload", ".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static PartETag newPart(int partNumber, long size, String crc64) {
+        PartETag part = new PartETag(partNumber, "\"etag-" + partNumber + "\"");
+        part.setPartSize(size);
+        part.setCrc64Ecma(crc64);
+        return part;
+    }
+
+    @Test
+    public void testJournalRoundTrip() throws Exception {
+        File file = new File(newDirectory(), "upload.checkpoint");
+        UploadCheckpoint checkpoint = UploadCheckpoint.create(file, "upload-id");
+        assertTrue(checkpoint.getParts().isEmpty());
+        checkpoint.append(newPart(2, 100, "18446744073709551615"));
+        checkpoint.append(newPart(1, 100, null));
+        checkpoint.close(false);
+        checkpoint.append(newPart(3, 100, null));
+
+        checkpoint = UploadCheckpoint.resume(file, "upload-id");
+        List<PartETag> parts = checkpoint.getParts();
+        assertEquals(2, parts.size());
+        assertEquals(2, parts.get(0).getPartNumber());
+        assertEquals("\"etag-2\"", parts.get(0).getETag());
+        assertEquals(100, parts.get(0).getPartSize());
+        assertEquals("18446744073709551615", parts.get(0).getCrc64Ecma());
+        assertEquals(1, parts.get(1).getPartNumber());
+        assertNull(parts.get(1).getCrc64Ecma());
+        checkpoint.close(true);
+        assertTrue(!file.exists());
+    }
+
+    @Test
+    public void testTornRecordDropped() throws Exception {
+        File file = new File(newDirectory(), "upload.checkpoint");
+        UploadCheckpoint checkpoint = UploadCheckpoint.create(file, "upload-id");
+        checkpoint.append(newPart(1, 100, "1"));
+        checkpoint.close(false);
+        // 模拟崩溃时写了一半的记录
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write("2 100 \"etag-2\" 2".getBytes("UTF-8"));
+        raf.close();
+
+        checkpoint = UploadCheckpoint.resume(file, "upload-id");
+        assertEquals(1, checkpoint.getParts().size());
+        checkpoint.append(newPart(3, 100, "3"));
+        checkpoint.close(false);
+        checkpoint = UploadCheckpoint.resume(file, "upload-id");
+        assertEquals(2, checkpoint.getParts().size());
+        assertEquals(3, checkpoint.getParts().get(1).getPartNumber());
+        checkpoint.close(false);
+
+        try {
+            UploadCheckpoint.resume(file, "other-upload-id");
+            fail("the checkpoint of another upload");
+        } catch (java.io.IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFileSample() throws Exception {
+        byte[] data = new byte[1024 * 1024 + 10];
+        new Random(1).nextBytes(data);
+        File file = createFile(data);
+        String sample = UploadCheckpoint.sampleFile(file);
+        assertEquals(sample, UploadCheckpoint.sampleFile(file));
+        // 最后一个字节总在采样中
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(data.length - 1);
+        raf.write(data[data.length - 1] ^ 1);
+        raf.close();
+        assertTrue(!sample.equals(UploadCheckpoint.sampleFile(file)));
+        assertNotNull(UploadCheckpoint.sampleFile(createFile(new byte[0])));
+    }
+
+    // 模拟的COS, 记录上传的分块, 第failPart个分块上传失败, 不支持列出分块
+    private static class FakeCOS implements InvocationHandler {
+        private final ClientConfig clientConfig = new ClientConfig(new Region("ap-guangzhou"));
+        private final TreeMap<Integer, byte[]> parts = new TreeMap<Integer, byte[]>();
+        private final AtomicInteger uploadedParts = new AtomicInteger();
+        private volatile int failPart;
+        private byte[] completedData;
+
+        COS proxy() {
+            return (COS) Proxy.newProxyInstance(COS.class.getClassLoader(),
+                    new Class<?>[] {COS.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getClientConfig")) {
+                return clientConfig;
+            } else if (name.equals("initiateMultipartUpload")) {
+                InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+                result.setUploadId("upload-id");
+                return result;
+            } else if (name.equals("uploadPart")) {
+                UploadPartRequest request = (UploadPartRequest) args[0];
+                if (request.getPartNumber() == failPart) {
+                    // 分块失败后未开始的分块会被跳过, 等待之前的分块都已开始上传
+                    Thread.sleep(50);
+                    throw new CosServiceException("part failed");
+                }
+                byte[] data = new byte[(int) request.getPartSize()];
+                RandomAccessFile file = new RandomAccessFile(request.getFile(), "r");
+                try {
+                    file.seek(request.getFileOffset());
+                    file.readFully(data);
+                } finally {
+                    file.close();
+                }
+                synchronized (parts) {
+                    parts.put(request.getPartNumber(), data);
+                }
+                uploadedParts.incrementAndGet();
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag-" + request.getPartNumber());
+                result.setPartSize(request.getPartSize());
+                return result;
+            } else if (name.equals("completeMultipartUpload")) {
+                CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+                // 与请求的序列化相同, 按分块号排序
+                TreeMap<Integer, PartETag> partETags = new TreeMap<Integer, PartETag>();
+                for (PartETag partETag : request.getPartETags()) {
+                    partETags.put(partETag.getPartNumber(), partETag);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int partNumber = 1;
+                for (PartETag partETag : partETags.values()) {
+                    assertEquals(partNumber++, partETag.getPartNumber());
+                    assertEquals("etag-" + partETag.getPartNumber(), partETag.getETag());
+                    synchronized (parts) {
+                        out.write(parts.get(partETag.getPartNumber()));
+                    }
+                }
+                completedData = out.toByteArray();
+                return new CompleteMultipartUploadResult();
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS, File directory) {
+        return newTransferManager(fakeCOS, directory, new ThreadPoolExecutor(4, 4, 60L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>()));
+    }
+
+    private static TransferManager newTransferManager(FakeCOS fakeCOS, File directory,
+            ThreadPoolExecutor threadPool) {
+        TransferManager transferManager = new TransferManager(fakeCOS.proxy(), threadPool);
+        TransferManagerConfiguration configuration = transferManager.getConfiguration();
+        configuration.setMinimumUploadPartSize(PART_SIZE);
+        configuration.setMultipartUploadThreshold(PART_SIZE);
+        configuration.setUploadCheckpointDirectory(directory);
+        return transferManager;
+    }
+
+    // 上传在第failPart个分块失败, 返回用于恢复的状态
+    private static PersistableUpload failUpload(FakeCOS fakeCOS, File directory, File file,
+            SSECustomerKey sseCustomerKey) throws Exception {
+        fakeCOS.failPart = 5;
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(4, 4, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        TransferManager transferManager = newTransferManager(fakeCOS, directory, threadPool);
+        Upload upload = transferManager.upload(
+                new com.qcloud.cos.model.PutObjectRequest("bucket", "key", file)
+                        .withSSECustomerKey(sseCustomerKey));
+        try {
+            upload.waitForUploadResult();
+            fail("the upload should fail");
+        } catch (CosClientException e) {
+            // expected
+        }
+        // 等待失败时仍在上传的分块结束
+        transferManager.shutdownNow(false);
+        assertTrue(threadPool.awaitTermination(10, TimeUnit.SECONDS));
+        PersistableUpload persistableUpload = upload.getResumeableMultipartUploadId();
+        assertNotNull(persistableUpload.getCheckpointFile());
+        assertTrue(new File(persistableUpload.getCheckpointFile()).isFile());
+        // 恢复的状态可以序列化保存
+        return PersistableTransfer.deserializeFrom(persistableUpload.serialize());
+    }
+
+    @Test
+    public void testResumeFromCheckpointWithoutListingParts() throws Exception {
+        byte[] data = new byte[10 * PART_SIZE + 123];
+        new Random(data.length).nextBytes(data);
+        File file = createFile(data);
+        File directory = newDirectory();
+        FakeCOS fakeCOS = new FakeCOS();
+        PersistableUpload persistableUpload = failUpload(fakeCOS, directory, file, null);
+        assertEquals(data.length, persistableUpload.getFileLength());
+        // 失败后才完成的分块没有记录在日志中, 续传时重新上传
+        UploadCheckpoint checkpoint =
+                UploadCheckpoint.resume(new File(persistableUpload.getCheckpointFile()),
+                        persistableUpload.getMultipartUploadId());
+        int journaledParts = checkpoint.getParts().size();
+        checkpoint.close(false);
+        assertTrue(journaledParts >= 4);
+
+        fakeCOS.failPart = 0;
+        fakeCOS.uploadedParts.set(0);
+        TransferManager transferManager = newTransferManager(fakeCOS, directory);
+        transferManager.resumeUpload(persistableUpload).waitForUploadResult();
+        assertArrayEquals(data, fakeCOS.completedData);
+        // 只上传了日志中没有的分块
+        assertEquals(11 - journaledParts, fakeCOS.uploadedParts.get());
+        assertTrue(!new File(persistableUpload.getCheckpointFile()).exists());
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testResumeRejectsChangedFile() throws Exception {
+        byte[] data = new byte[10 * PART_SIZE];
+        File file = createFile(data);
+        File directory = newDirectory();
+        FakeCOS fakeCOS = new FakeCOS();
+        PersistableUpload persistableUpload = failUpload(fakeCOS, directory, file, null);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(1);
+        raf.close();
+        file.setLastModified(persistableUpload.getFileLastModified());
+
+        TransferManager transferManager = newTransferManager(fakeCOS, directory);
+        try {
+            transferManager.resumeUpload(persistableUpload);
+            fail("the file has changed");
+        } catch (CosClientException e) {
+            assertTrue(e.getMessage().contains("has changed"));
+        }
+        transferManager.shutdownNow(false);
+    }
+
+    @Test
+    public void testResumeWithCustomerKey() throws Exception {
+        byte[] data = new byte[8 * PART_SIZE];
+        File file = createFile(data);
+        File directory = newDirectory();
+        FakeCOS fakeCOS = new FakeCOS();
+        byte[] key = new byte[32];
+        SSECustomerKey sseCustomerKey = new SSECustomerKey(key);
+        PersistableUpload persistableUpload =
+                failUpload(fakeCOS, directory, file, sseCustomerKey);
+        assertNotNull(persistableUpload.getSseCustomerKeyMd5());
+
+        fakeCOS.failPart = 0;
+        TransferManager transferManager = newTransferManager(fakeCOS, directory);
+        try {
+            transferManager.resumeUpload(persistableUpload);
+            fail("the key is needed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        key[0] = 1;
+        try {
+            transferManager.resumeUpload(persistableUpload, new SSECustomerKey(key));
+            fail("not the key of the upload");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        transferManager.resumeUpload(persistableUpload, sseCustomerKey).waitForUploadResult();
+        assertArrayEquals(data, fakeCOS.completedData);
+        transferManager.shutdownNow(false);
+    }
+}
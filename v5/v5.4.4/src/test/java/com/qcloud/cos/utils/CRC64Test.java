@@ -0,0 +1,79 @@
+package com.qcloud.cos.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CRC64Test {
+
+    private static long bytewise(byte[] data, int off, int len) {
+        CRC64 crc64 = new CRC64();
+        for (int i = off; i < off + len; ++i) {
+            crc64.update(data[i]);
+        }
+        return crc64.getValue();
+    }
+
+    @Test
+    public void testCheckValue() {
+        CRC64 crc64 = new CRC64();
+        crc64.update("123456789".getBytes());
+        assertEquals(0x995dc9bbdf1939faL, crc64.getValue());
+        crc64.reset();
+        assertEquals(0, crc64.getValue());
+    }
+
+    @Test
+    public void testSlicedMatchesBytewise() {
+        byte[] data = new byte[1000];
+        new Random(64).nextBytes(data);
+        for (int off = 0; off < 9; ++off) {
+            for (int len = 0; len < 40; ++len) {
+                CRC64 crc64 = new CRC64();
+                crc64.update(data, off, len);
+                assertEquals(bytewise(data, off, len), crc64.getValue());
+            }
+        }
+        CRC64 crc64 = new CRC64();
+        crc64.update(data, 3, 500);
+        crc64.update(data, 503, 497);
+        assertEquals(bytewise(data, 3, 997), crc64.getValue());
+    }
+
+    @Test
+    public void testCombine() {
+        byte[] data = new byte[100000];
+        new Random(100000).nextBytes(data);
+        int[] splits = {0, 1, 7, 8, 4096, 65536, 99999, 100000};
+        long whole = bytewise(data, 0, data.length);
+        for (int split : splits) {
+            long crc1 = bytewise(data, 0, split);
+            long crc2 = bytewise(data, split, data.length - split);
+            assertEquals(whole, CRC64.combine(crc1, crc2, data.length - split));
+        }
+        // 多个分块依次合并
+        long combined = 0;
+        for (int off = 0; off < data.length; off += 30000) {
+            int len = Math.min(30000, data.length - off);
+            combined = CRC64.combine(combined, bytewise(data, off, len), len);
+        }
+        assertEquals(whole, combined);
+    }
+
+    @Test
+    public void testUnsignedDecimal() {
+        long[] values = {0, 1, Long.MAX_VALUE, Long.MIN_VALUE, -1, 0x995dc9bbdf1939faL};
+        for (long value : values) {
+            assertEquals(value, CRC64.fromString(CRC64.toString(value)));
+        }
+        assertEquals("18446744073709551615", CRC64.toString(-1));
+        assertEquals("11051210869376104954", CRC64.toString(0x995dc9bbdf1939faL));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testOutOfRange() {
+        CRC64.fromString("18446744073709551616");
+    }
+}
@@ -0,0 +1,119 @@
+package com.qcloud.cos.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DateUtilsTest {
+
+    // 2000年前后各200年的范围
+    private static final long RANGE_MILLIS = 200 * 365L * 24 * 3600 * 1000;
+
+    // 只用Joda-Time的解析结果, 失败时返回异常类型
+    private static Object jodaParseISO8601(String dateString) {
+        try {
+            return DateUtils.iso8601DateFormat.parseMillis(dateString);
+        } catch (IllegalArgumentException e) {
+            try {
+                return DateUtils.alternateIso8601DateFormat.parseMillis(dateString);
+            } catch (IllegalArgumentException oops) {
+                return e.getClass();
+            }
+        }
+    }
+
+    private static Object parseISO8601(String dateString) {
+        try {
+            return DateUtils.parseISO8601Date(dateString).getTime();
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object jodaParseRFC822(String dateString) {
+        try {
+            return DateUtils.rfc822DateFormat.parseMillis(dateString);
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object parseRFC822(String dateString) {
+        try {
+            return DateUtils.parseRFC822Date(dateString).getTime();
+        } catch (IllegalArgumentException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test
+    public void testRandomDatesSameAsJoda() {
+        Random random = new Random(20180401L);
+        long base = 946684800000L;
+        for (int i = 0; i < 100000; ++i) {
+            long millis = base + (long) ((random.nextDouble() * 2 - 1) * RANGE_MILLIS);
+            if (i % 2 == 0) {
+                millis -= millis % 1000;
+            }
+            Date date = new Date(millis);
+            String iso8601 = DateUtils.iso8601DateFormat.print(millis);
+            String rfc822 = DateUtils.rfc822DateFormat.print(millis);
+            assertEquals(iso8601, DateUtils.formatISO8601Date(date));
+            assertEquals(rfc822, DateUtils.formatRFC822Date(date));
+            assertEquals(millis, DateUtils.parseISO8601Date(iso8601).getTime());
+            assertEquals(millis - (millis % 1000 + 1000) % 1000,
+                    DateUtils.parseRFC822Date(rfc822).getTime());
+            String iso8601NoMillis = DateUtils.alternateIso8601DateFormat.print(millis);
+            assertEquals(jodaParseISO8601(iso8601NoMillis), parseISO8601(iso8601NoMillis));
+        }
+    }
+
+    @Test
+    public void testEdgeCasesSameAsJoda() {
+        String[] iso8601Dates = {"2016-02-29T00:00:00.000Z", "2015-02-29T00:00:00.000Z",
+                "2000-02-29T23:59:59.999Z", "1900-02-29T00:00:00.000Z", "2018-04-31T00:00:00Z",
+                "2018-12-31T24:00:00.000Z", "2018-12-31T23:60:00.000Z",
+                "2018-12-31T23:59:60.000Z", "2018-00-01T00:00:00.000Z",
+                "2018-13-01T00:00:00.000Z", "2018-01-00T00:00:00.000Z",
+                "0000-01-01T00:00:00.000Z", "9999-12-31T23:59:59.999Z",
+                "1969-12-31T23:59:59.999Z", "1970-01-01T00:00:00.000Z",
+                "2018-04-01T12:00:00.1Z", "2018-04-01T12:00:00.123456Z",
+                "2018-04-01T12:00:00.000+08:00", "2018-04-01T12:00:00.000+0000",
+                "2018-04-01T12:00:00+0000", "2018-04-01t12:00:00.000Z",
+                "2018-04-01T12:00:00.0a0Z", "2018-4-01T12:00:00.000Z", "+018-04-01T12:00:00Z",
+                "2018-04-01 12:00:00.000Z", "2018-04-01T12:00:00.000z", ""};
+        for (String dateString : iso8601Dates) {
+            Object expected = dateString.endsWith("+0000")
+                    ? jodaParseISO8601(dateString.replace("+0000", "Z"))
+                    : jodaParseISO8601(dateString);
+            assertEquals(dateString, expected, parseISO8601(dateString));
+        }
+
+        String[] rfc822Dates = {"Sun, 01 Apr 2018 12:00:00 GMT", "Mon, 01 Apr 2018 12:00:00 GMT",
+                "Mon, 29 Feb 2016 00:00:00 GMT", "Sun, 29 Feb 2015 00:00:00 GMT",
+                "Thu, 01 Jan 1970 00:00:00 GMT", "Wed, 31 Dec 1969 23:59:59 GMT",
+                "Fri, 31 Dec 9999 23:59:59 GMT", "Sun, 01 apr 2018 12:00:00 GMT",
+                "sun, 01 Apr 2018 12:00:00 GMT", "Sun, 1 Apr 2018 12:00:00 GMT",
+                "Sun, 01 Apr 2018 24:00:00 GMT", "Sun, 01 Apr 2018 12:00:00 UTC",
+                "Sun, 01 Foo 2018 12:00:00 GMT", "Sun 01 Apr 2018 12:00:00 GMT", ""};
+        for (String dateString : rfc822Dates) {
+            assertEquals(dateString, jodaParseRFC822(dateString), parseRFC822(dateString));
+        }
+    }
+
+    @Test
+    public void testFormatRFC822CachedPerSecond() {
+        long millis = 1522584000000L;
+        assertEquals("Sun, 01 Apr 2018 12:00:00 GMT",
+                DateUtils.formatRFC822Date(new Date(millis)));
+        assertEquals("Sun, 01 Apr 2018 12:00:00 GMT",
+                DateUtils.formatRFC822Date(new Date(millis + 999)));
+        assertEquals("Sun, 01 Apr 2018 12:00:01 GMT",
+                DateUtils.formatRFC822Date(new Date(millis + 1000)));
+        assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", DateUtils.formatRFC822Date(new Date(-1)));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", DateUtils.formatRFC822Date(new Date(0)));
+    }
+}